@@ -0,0 +1,90 @@
+package com.company.covoituraje.benchmarks;
+
+import com.company.covoituraje.matching.api.MatchResult;
+import com.company.covoituraje.matching.service.GeoScorer;
+import com.company.covoituraje.matching.service.MatchingService;
+import com.company.covoituraje.matching.service.ScoringEngine;
+import com.company.covoituraje.matching.service.TripSnapshot;
+import com.company.covoituraje.matching.service.TripSnapshotCache;
+import com.company.covoituraje.shared.dto.TripDto;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks de MatchingService.findMatches sobre conjuntos sintéticos de trips.
+ * Throughput da operaciones por segundo y SampleTime la distribución de latencias (p99);
+ * la tasa de asignación se obtiene con el profiler gc (lo activa BenchmarkRunner).
+ *
+ * - findMatches: estado estable, con la foto de la sede ya en caché.
+ * - findMatchesColdSnapshot: sin caché, cada búsqueda convierte e indexa los trips.
+ * - findMatchesSequential: como findMatches pero sin puntuación paralela.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MatchingBenchmark {
+
+    @Param({"100", "10000", "100000"})
+    int tripCount;
+
+    @Param({"20"})
+    int limit;
+
+    private MatchingService cachedService;
+    private MatchingService coldService;
+    private MatchingService sequentialService;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        List<TripDto> trips = SyntheticTrips.generate(tripCount, 42L);
+        StubTripsServiceClient client = new StubTripsServiceClient(trips);
+        GeoScorer geoScorer = new GeoScorer(15.0);
+        ScoringEngine parallelEngine = new ScoringEngine();
+        ScoringEngine sequentialEngine = new ScoringEngine(Integer.MAX_VALUE, ForkJoinPool.commonPool());
+
+        // TTL far beyond the run so the snapshot is built once
+        TripSnapshotCache cache = new TripSnapshotCache(
+                sede -> TripSnapshot.of(client.getAvailableTrips(sede), geoScorer.radiusKm()),
+                TimeUnit.DAYS.toSeconds(1), 0);
+        cache.get(SyntheticTrips.SEDE);
+
+        cachedService = new MatchingService(new NoOpMatchRepository(), client, geoScorer, null, cache, parallelEngine);
+        coldService = new MatchingService(new NoOpMatchRepository(), client, geoScorer, null, null, parallelEngine);
+        sequentialService = new MatchingService(new NoOpMatchRepository(), client, geoScorer, null, cache, sequentialEngine);
+    }
+
+    @Benchmark
+    public List<MatchResult> findMatches() {
+        return cachedService.findMatches("passenger-1", SyntheticTrips.SEDE,
+                SyntheticTrips.PREFERRED_TIME, SyntheticTrips.PASSENGER_ORIGIN, limit);
+    }
+
+    @Benchmark
+    public List<MatchResult> findMatchesColdSnapshot() {
+        return coldService.findMatches("passenger-1", SyntheticTrips.SEDE,
+                SyntheticTrips.PREFERRED_TIME, SyntheticTrips.PASSENGER_ORIGIN, limit);
+    }
+
+    @Benchmark
+    public List<MatchResult> findMatchesSequential() {
+        return sequentialService.findMatches("passenger-1", SyntheticTrips.SEDE,
+                SyntheticTrips.PREFERRED_TIME, SyntheticTrips.PASSENGER_ORIGIN, limit);
+    }
+}
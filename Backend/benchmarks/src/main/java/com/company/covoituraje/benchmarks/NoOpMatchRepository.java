@@ -0,0 +1,24 @@
+package com.company.covoituraje.benchmarks;
+
+import com.company.covoituraje.matching.domain.Match;
+import com.company.covoituraje.matching.infrastructure.MatchRepository;
+import jakarta.persistence.EntityManager;
+
+import java.util.List;
+
+/**
+ * MatchRepository sin base de datos: cuenta las filas recibidas para que el JIT no elimine su construcción.
+ */
+final class NoOpMatchRepository extends MatchRepository {
+
+    long upserted;
+
+    NoOpMatchRepository() {
+        super((EntityManager) null);
+    }
+
+    @Override
+    public void upsertAll(List<Match> matches) {
+        upserted += matches.size();
+    }
+}
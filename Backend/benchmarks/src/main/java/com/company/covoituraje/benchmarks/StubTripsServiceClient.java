@@ -0,0 +1,30 @@
+package com.company.covoituraje.benchmarks;
+
+import com.company.covoituraje.http.ServiceHttpClient;
+import com.company.covoituraje.matching.integration.TripsServiceClient;
+import com.company.covoituraje.shared.dto.TripDto;
+
+import java.util.List;
+
+/**
+ * TripsServiceClient que devuelve siempre el mismo conjunto de trips, sin HTTP.
+ */
+final class StubTripsServiceClient extends TripsServiceClient {
+
+    private final List<TripDto> trips;
+
+    StubTripsServiceClient(List<TripDto> trips) {
+        super((ServiceHttpClient) null);
+        this.trips = trips;
+    }
+
+    @Override
+    public List<TripDto> getAvailableTrips(String destinationSedeId) {
+        return trips;
+    }
+
+    @Override
+    public boolean isServiceAvailable() {
+        return true;
+    }
+}
@@ -0,0 +1,47 @@
+package com.company.covoituraje.benchmarks;
+
+import com.company.covoituraje.shared.dto.TripDto;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Conjuntos de trips sintéticos y reproducibles para los benchmarks.
+ * Orígenes repartidos en un cuadrado de ~40 km alrededor de Madrid y salidas entre 06:00 y 10:00,
+ * de modo que la búsqueda de las 08:00 encuentra candidatos cercanos y lejanos.
+ */
+final class SyntheticTrips {
+
+    static final String SEDE = "SEDE-1";
+    static final String PASSENGER_ORIGIN = "40.4168,-3.7038";
+    static final String PREFERRED_TIME = "08:00";
+
+    private static final double CENTER_LAT = 40.4168;
+    private static final double CENTER_LNG = -3.7038;
+    private static final double SPREAD_DEGREES = 0.18;
+
+    private SyntheticTrips() {
+    }
+
+    static List<TripDto> generate(int count, long seed) {
+        Random random = new Random(seed);
+        List<TripDto> trips = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            TripDto trip = new TripDto();
+            trip.id = new UUID(seed, i).toString();
+            trip.driverId = "driver-" + i;
+            trip.origin = new TripDto.Origin();
+            trip.origin.lat = CENTER_LAT + (random.nextDouble() * 2 - 1) * SPREAD_DEGREES;
+            trip.origin.lng = CENTER_LNG + (random.nextDouble() * 2 - 1) * SPREAD_DEGREES;
+            trip.destinationSedeId = SEDE;
+            int minuteOfDay = 6 * 60 + random.nextInt(4 * 60);
+            trip.dateTime = String.format("2025-01-15T%02d:%02d:00Z", minuteOfDay / 60, minuteOfDay % 60);
+            trip.seatsTotal = 4;
+            trip.seatsFree = 1 + random.nextInt(4);
+            trips.add(trip);
+        }
+        return trips;
+    }
+}
@@ -1,21 +1,36 @@
 package com.company.covoituraje.booking.api;
 
 import com.company.covoituraje.booking.domain.Booking;
+import com.company.covoituraje.booking.domain.OutboxEvent;
 import com.company.covoituraje.booking.infrastructure.BookingRepository;
+import com.company.covoituraje.booking.infrastructure.JpaConfig;
+import com.company.covoituraje.booking.service.BookingCreationService;
 import com.company.covoituraje.booking.service.BookingValidationService;
-import com.company.covoituraje.booking.integration.NotificationServiceClient;
+import com.company.covoituraje.booking.service.IdempotencyException;
+import com.company.covoituraje.booking.service.IdempotencyStore;
+import com.company.covoituraje.booking.service.SeatLedger;
+import com.company.covoituraje.booking.service.SeatReleaseRelay;
+import com.company.covoituraje.booking.service.SeatReservations;
 import com.company.covoituraje.booking.service.BookingValidationException;
 import com.company.covoituraje.booking.integration.TripsServiceClient;
 import com.company.covoituraje.booking.integration.UsersServiceClient;
 import com.company.covoituraje.shared.i18n.MessageService;
+import com.company.covoituraje.shared.outbox.NotificationOutboxRelay;
+import com.company.covoituraje.shared.outbox.NotificationOutboxRepository;
 import com.company.covoituraje.shared.i18n.LocaleUtils;
+import com.company.covoituraje.shared.json.JsonArrayWriter;
+import com.company.covoituraje.shared.pagination.PageCursor;
 import jakarta.ws.rs.*;
 import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.StreamingOutput;
 
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
 import java.util.UUID;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 @Path("/bookings")
 @Produces(MediaType.APPLICATION_JSON)
@@ -24,7 +39,9 @@ public class BookingResource {
 
     private final BookingRepository repository;
     private final BookingValidationService validationService;
-    private final NotificationServiceClient notificationClient;
+    private final SeatReservations seatReservations;
+    private final BookingCreationService creationService;
+    private final IdempotencyStore idempotencyStore;
     private final MessageService messageService;
     
     static final class AuthContext {
@@ -47,35 +64,48 @@ public class BookingResource {
         TripsServiceClient tripsServiceClient = new TripsServiceClient(tripsServiceUrl);
         UsersServiceClient usersServiceClient = new UsersServiceClient(usersServiceUrl);
         this.validationService = new BookingValidationService(tripsServiceClient, usersServiceClient);
-        String notificationServiceUrl = System.getenv().getOrDefault("NOTIFICATION_SERVICE_URL", "http://localhost:8085/api");
-        this.notificationClient = new NotificationServiceClient(notificationServiceUrl);
-        this.messageService = new MessageService();
-    }
-
-    public BookingResource(BookingRepository repository, BookingValidationService validationService, NotificationServiceClient notificationClient) {
-        this.repository = repository;
-        this.validationService = validationService;
-        this.notificationClient = notificationClient;
+        this.seatReservations = SeatLedger.isEnabled() ? SeatLedger.shared() : SeatReservations.remote(validationService);
+        this.creationService = new BookingCreationService(repository, validationService, seatReservations);
+        this.idempotencyStore = IdempotencyStore.shared();
+        // Delivers the notifications that confirm and cancel write to the outbox
+        NotificationOutboxRelay.shared(() -> new NotificationOutboxRepository(JpaConfig.getEntityManagerFactory(), OutboxEvent.class));
+        // Retries the seat releases of cancelled bookings that still hold their seats
+        SeatReleaseRelay.shared(seatReservations);
         this.messageService = new MessageService();
     }
 
     public BookingResource(BookingRepository repository, BookingValidationService validationService) {
         this.repository = repository;
         this.validationService = validationService;
-        String notificationServiceUrl = System.getenv().getOrDefault("NOTIFICATION_SERVICE_URL", "http://localhost:8085/api");
-        this.notificationClient = new NotificationServiceClient(notificationServiceUrl);
+        this.seatReservations = SeatReservations.remote(validationService);
+        this.creationService = new BookingCreationService(repository, validationService, seatReservations);
+        this.idempotencyStore = new IdempotencyStore();
         this.messageService = new MessageService();
     }
 
-    public BookingResource(BookingRepository repository, BookingValidationService validationService, NotificationServiceClient notificationClient, MessageService messageService) {
+    public BookingResource(BookingRepository repository, BookingValidationService validationService, MessageService messageService) {
         this.repository = repository;
         this.validationService = validationService;
-        this.notificationClient = notificationClient;
+        this.seatReservations = SeatReservations.remote(validationService);
+        this.creationService = new BookingCreationService(repository, validationService, seatReservations);
+        this.idempotencyStore = new IdempotencyStore();
         this.messageService = messageService;
     }
 
+    /**
+     * With an Idempotency-Key header, retries of the same request replay the first response
+     * instead of validating, reserving seats and saving again.
+     */
     @POST
-    public BookingDto create(BookingCreateDto request, @HeaderParam("Accept-Language") String acceptLanguage) {
+    public BookingDto create(BookingCreateDto request,
+                             @HeaderParam("Idempotency-Key") String idempotencyKey,
+                             @HeaderParam("Accept-Language") String acceptLanguage) {
+        String fingerprint = request == null ? "" : request.tripId + ":" + request.seatsRequested;
+        return idempotent("create", idempotencyKey, fingerprint, acceptLanguage,
+                () -> create(request, acceptLanguage));
+    }
+
+    public BookingDto create(BookingCreateDto request, String acceptLanguage) {
         String currentUser = AuthContext.getUserId();
         if (currentUser == null || currentUser.isBlank()) {
             Locale locale = LocaleUtils.fromAcceptLanguage(acceptLanguage);
@@ -105,41 +135,31 @@ public class BookingResource {
             throw new BadRequestException(message);
         }
 
-        // Cross-service validations
+        // User check and seat reservation run concurrently; seats are given back if anything after fails
+        Booking booking;
         try {
-            // Validate user exists
-            validationService.validateUserExists(currentUser);
-            
-            // Validate trip availability
-            validationService.validateTripAvailability(request.tripId, request.seatsRequested);
-            
-            // TODO: Add driver validation when trips-service provides driver info
-            // validationService.validateUserIsNotDriver(request.tripId, currentUser);
+            booking = creationService.create(currentUser, tripId, request.seatsRequested);
         } catch (BookingValidationException e) {
             System.err.println("Booking validation error: " + e.getMessage());
             Locale locale = LocaleUtils.fromAcceptLanguage(acceptLanguage);
             String message = messageService.getMessage("bookings.error.validation_failed", locale);
             throw new BadRequestException(message + ": " + e.getMessage());
-        } catch (Exception e) {
-            System.err.println("Unexpected error during validation: " + e.getMessage());
-            e.printStackTrace();
-            Locale locale = LocaleUtils.fromAcceptLanguage(acceptLanguage);
-            String message = messageService.getMessage("bookings.error.validation_error", locale);
-            throw new BadRequestException(message + ": " + e.getMessage());
         }
-
-        // Create booking
-        Booking booking = new Booking(tripId, currentUser, request.seatsRequested, "PENDING");
-        booking = repository.save(booking);
         
         return mapToDto(booking);
     }
 
+    /**
+     * Streams the caller's bookings from the database cursor to the response.
+     * With limit or cursor the response is one keyset page: {"items": [...], "nextCursor": "..."}.
+     */
     @GET
-    public List<BookingDto> listMine(@QueryParam("from") String from,
-                                     @QueryParam("to") String to,
-                                     @QueryParam("status") String status,
-                                     @HeaderParam("Accept-Language") String acceptLanguage) {
+    public StreamingOutput listMine(@QueryParam("from") String from,
+                                    @QueryParam("to") String to,
+                                    @QueryParam("status") String status,
+                                    @QueryParam("limit") Integer limit,
+                                    @QueryParam("cursor") String cursor,
+                                    @HeaderParam("Accept-Language") String acceptLanguage) {
         String currentUser = AuthContext.getUserId();
         if (currentUser == null || currentUser.isBlank()) {
             Locale locale = LocaleUtils.fromAcceptLanguage(acceptLanguage);
@@ -149,24 +169,33 @@ public class BookingResource {
 
         java.time.OffsetDateTime fromDt = parseIsoDatetime(from);
         java.time.OffsetDateTime toDt = parseIsoDatetime(to);
-        List<Booking> bookings;
-        
-        if (fromDt != null && toDt != null) {
-            bookings = repository.findByPassengerIdAndCreatedAtBetween(currentUser, fromDt, toDt);
-        } else {
-            bookings = repository.findByPassengerId(currentUser);
+        boolean dateRange = fromDt != null && toDt != null;
+        // Filtered in SQL, before the page limit; statuses are stored upper case
+        String statusFilter = status == null || status.isBlank() ? null : status.toUpperCase(Locale.ROOT);
+
+        if (PageCursor.isRequested(limit, cursor)) {
+            int pageSize = PageCursor.resolveLimit(limit);
+            PageCursor after = decodeCursor(cursor, acceptLanguage);
+            java.time.OffsetDateTime afterCreatedAt = after != null ? java.time.OffsetDateTime.parse(after.key()) : null;
+            UUID afterId = after != null ? UUID.fromString(after.id()) : null;
+            return output -> JsonArrayWriter.writePage(output,
+                    repository.streamPageByPassengerId(currentUser, dateRange ? fromDt : null, dateRange ? toDt : null,
+                            statusFilter, afterCreatedAt, afterId, pageSize + 1),
+                    pageSize, this::mapToDto,
+                    b -> new PageCursor(b.getCreatedAt().format(java.time.format.DateTimeFormatter.ISO_OFFSET_DATE_TIME),
+                            b.getId().toString()));
         }
 
-        // Filter by status if provided
-        if (status != null && !status.isBlank()) {
-            bookings = bookings.stream()
-                    .filter(b -> status.equalsIgnoreCase(b.getStatus()))
-                    .collect(java.util.stream.Collectors.toList());
-        }
+        return output -> {
+            Stream<Booking> bookings;
+            if (dateRange) {
+                bookings = repository.streamByPassengerIdAndCreatedAtBetween(currentUser, fromDt, toDt, statusFilter);
+            } else {
+                bookings = repository.streamByPassengerId(currentUser, statusFilter);
+            }
 
-        return bookings.stream()
-                .map(this::mapToDto)
-                .collect(ArrayList::new, ArrayList::add, ArrayList::addAll);
+            JsonArrayWriter.write(output, bookings.map(this::mapToDto));
+        };
     }
 
     @GET
@@ -195,6 +224,20 @@ public class BookingResource {
                 .collect(ArrayList::new, ArrayList::add, ArrayList::addAll);
     }
 
+    // Cursors are opaque to clients; anything we did not issue is a bad request
+    private PageCursor decodeCursor(String cursor, String acceptLanguage) {
+        if (cursor == null || cursor.isBlank()) return null;
+        try {
+            PageCursor decoded = PageCursor.decode(cursor);
+            java.time.OffsetDateTime.parse(decoded.key());
+            UUID.fromString(decoded.id());
+            return decoded;
+        } catch (RuntimeException e) {
+            Locale locale = LocaleUtils.fromAcceptLanguage(acceptLanguage);
+            throw new BadRequestException(messageService.getMessage("common.error.invalid_cursor", locale));
+        }
+    }
+
     private java.time.OffsetDateTime parseIsoDatetime(String iso) {
         if (iso == null || iso.isBlank()) return null;
         try {
@@ -242,7 +285,13 @@ public class BookingResource {
 
     @PUT
     @Path("/{id}/confirm")
-    public BookingDto confirm(@PathParam("id") String id, @HeaderParam("Accept-Language") String acceptLanguage) {
+    public BookingDto confirm(@PathParam("id") String id,
+                              @HeaderParam("Idempotency-Key") String idempotencyKey,
+                              @HeaderParam("Accept-Language") String acceptLanguage) {
+        return idempotent("confirm", idempotencyKey, id, acceptLanguage, () -> confirm(id, acceptLanguage));
+    }
+
+    public BookingDto confirm(String id, String acceptLanguage) {
         String currentUser = AuthContext.getUserId();
         if (currentUser == null || currentUser.isBlank()) {
             Locale locale = LocaleUtils.fromAcceptLanguage(acceptLanguage);
@@ -279,15 +328,21 @@ public class BookingResource {
         }
 
         booking.confirm();
-        booking = repository.save(booking);
-        try { notificationClient.sendBookingConfirmed(currentUser, booking.getTripId().toString(), booking.getSeatsRequested()); } catch (Exception ignored) {}
-        
+        booking = repository.saveWithNotifications(booking,
+                OutboxEvent.bookingConfirmed(currentUser, booking.getTripId(), booking.getSeatsRequested()));
+
         return mapToDto(booking);
     }
 
     @PUT
     @Path("/{id}/cancel")
-    public BookingDto cancel(@PathParam("id") String id, @HeaderParam("Accept-Language") String acceptLanguage) {
+    public BookingDto cancel(@PathParam("id") String id,
+                             @HeaderParam("Idempotency-Key") String idempotencyKey,
+                             @HeaderParam("Accept-Language") String acceptLanguage) {
+        return idempotent("cancel", idempotencyKey, id, acceptLanguage, () -> cancel(id, acceptLanguage));
+    }
+
+    public BookingDto cancel(String id, String acceptLanguage) {
         String currentUser = AuthContext.getUserId();
         if (currentUser == null || currentUser.isBlank()) {
             Locale locale = LocaleUtils.fromAcceptLanguage(acceptLanguage);
@@ -323,13 +378,44 @@ public class BookingResource {
             throw new BadRequestException(message);
         }
 
+        // seats_reserved stays set with the cancellation: the release is pending until trips-service
+        // has the seats back, and SeatReleaseRelay retries it if the call below fails
         booking.cancel();
-        booking = repository.save(booking);
-        try { notificationClient.sendBookingCancelled(currentUser, booking.getTripId().toString()); } catch (Exception ignored) {}
-        
+        booking = repository.saveWithNotifications(booking,
+                OutboxEvent.bookingCancelled(currentUser, booking.getTripId()));
+        if (booking.isSeatsReserved()) {
+            repository.releasePendingSeats(booking.getId(),
+                    pending -> seatReservations.release(pending.getTripId(), pending.getSeatsRequested()));
+        }
+
         return mapToDto(booking);
     }
 
+    // Without a key (or an authenticated user to scope it) the request simply runs
+    private BookingDto idempotent(String operation, String idempotencyKey, String fingerprint,
+                                  String acceptLanguage, Supplier<BookingDto> action) {
+        String currentUser = AuthContext.getUserId();
+        if (idempotencyKey == null || idempotencyKey.isBlank() || currentUser == null || currentUser.isBlank()) {
+            return action.get();
+        }
+        if (idempotencyKey.length() > IdempotencyStore.MAX_KEY_LENGTH) {
+            Locale locale = LocaleUtils.fromAcceptLanguage(acceptLanguage);
+            String message = messageService.getMessage("bookings.error.idempotency_key_invalid", locale);
+            throw new BadRequestException(message);
+        }
+        try {
+            return idempotencyStore.execute(currentUser, operation, idempotencyKey, fingerprint, BookingDto.class, action);
+        } catch (IdempotencyException e) {
+            Locale locale = LocaleUtils.fromAcceptLanguage(acceptLanguage);
+            if (e.getReason() == IdempotencyException.Reason.KEY_REUSED) {
+                String message = messageService.getMessage("bookings.error.idempotency_key_reused", locale);
+                throw new ClientErrorException(message, 422);
+            }
+            String message = messageService.getMessage("bookings.error.idempotency_in_progress", locale);
+            throw new ClientErrorException(message, Response.Status.CONFLICT);
+        }
+    }
+
     private BookingDto mapToDto(Booking booking) {
         BookingDto dto = new BookingDto();
         dto.id = booking.getId().toString();
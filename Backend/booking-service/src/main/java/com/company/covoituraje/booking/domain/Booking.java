@@ -24,6 +24,10 @@ public class Booking {
     @Column(name = "status", nullable = false, length = 50)
     private String status;
     
+    // True when the seats were taken from the trip in trips-service and must be given back on cancel
+    @Column(name = "seats_reserved", nullable = false)
+    private boolean seatsReserved;
+    
     @Column(name = "created_at", nullable = false, updatable = false)
     private OffsetDateTime createdAt;
     
@@ -60,6 +64,9 @@ public class Booking {
     public String getStatus() { return status; }
     public void setStatus(String status) { this.status = status; }
 
+    public boolean isSeatsReserved() { return seatsReserved; }
+    public void setSeatsReserved(boolean seatsReserved) { this.seatsReserved = seatsReserved; }
+
     public OffsetDateTime getCreatedAt() { return createdAt; }
     public void setCreatedAt(OffsetDateTime createdAt) { this.createdAt = createdAt; }
 
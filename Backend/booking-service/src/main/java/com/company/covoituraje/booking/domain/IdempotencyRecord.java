@@ -0,0 +1,42 @@
+package com.company.covoituraje.booking.domain;
+
+import jakarta.persistence.*;
+import java.time.OffsetDateTime;
+
+@Entity
+@Table(name = "idempotency_keys", schema = "bookings")
+public class IdempotencyRecord {
+
+    @Id
+    @Column(name = "scope_key", length = 600)
+    private String scopeKey;
+
+    @Column(name = "fingerprint", nullable = false, length = 512)
+    private String fingerprint;
+
+    @Column(name = "response_body", nullable = false, columnDefinition = "TEXT")
+    private String responseBody;
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private OffsetDateTime createdAt;
+
+    @Column(name = "expires_at", nullable = false)
+    private OffsetDateTime expiresAt;
+
+    // Default constructor for JPA
+    public IdempotencyRecord() {}
+
+    public IdempotencyRecord(String scopeKey, String fingerprint, String responseBody, OffsetDateTime expiresAt) {
+        this.scopeKey = scopeKey;
+        this.fingerprint = fingerprint;
+        this.responseBody = responseBody;
+        this.createdAt = OffsetDateTime.now();
+        this.expiresAt = expiresAt;
+    }
+
+    public String getScopeKey() { return scopeKey; }
+    public String getFingerprint() { return fingerprint; }
+    public String getResponseBody() { return responseBody; }
+    public OffsetDateTime getCreatedAt() { return createdAt; }
+    public OffsetDateTime getExpiresAt() { return expiresAt; }
+}
@@ -0,0 +1,42 @@
+package com.company.covoituraje.booking.domain;
+
+import com.company.covoituraje.shared.outbox.NotificationOutboxEvent;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Table;
+
+import java.util.UUID;
+
+/**
+ * Notificación pendiente de entregar a notification-service (ver NotificationOutboxEvent). Se
+ * guarda en la misma transacción que el cambio de la reserva y la entrega NotificationOutboxRelay.
+ */
+@Entity
+@Table(name = "notification_outbox", schema = "bookings")
+public class OutboxEvent extends NotificationOutboxEvent {
+
+    public static final String BOOKING_CONFIRMED = "BOOKING_CONFIRMED";
+    public static final String BOOKING_CANCELLED = "BOOKING_CANCELLED";
+    public static final String BOOKING_REJECTED = "BOOKING_REJECTED";
+
+    // Default constructor for JPA
+    public OutboxEvent() {}
+
+    public OutboxEvent(String eventType, String recipientId, String title, String body) {
+        super(eventType, recipientId, title, body);
+    }
+
+    public static OutboxEvent bookingConfirmed(String passengerId, UUID tripId, int seatsRequested) {
+        return new OutboxEvent(BOOKING_CONFIRMED, passengerId, "Reserva confirmada",
+                "Tu reserva de " + seatsRequested + " asiento(s) ha sido confirmada");
+    }
+
+    public static OutboxEvent bookingCancelled(String passengerId, UUID tripId) {
+        return new OutboxEvent(BOOKING_CANCELLED, passengerId, "Viaje cancelado",
+                "El viaje " + tripId + " ha sido cancelado");
+    }
+
+    public static OutboxEvent bookingRejected(String passengerId, UUID tripId, int seatsRequested) {
+        return new OutboxEvent(BOOKING_REJECTED, passengerId, "Reserva cancelada",
+                "El viaje " + tripId + " ya no tiene plazas para tu reserva de " + seatsRequested + " asiento(s)");
+    }
+}
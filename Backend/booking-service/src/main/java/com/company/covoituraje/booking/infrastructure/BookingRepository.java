@@ -1,16 +1,37 @@
 package com.company.covoituraje.booking.infrastructure;
 
 import com.company.covoituraje.booking.domain.Booking;
+import com.company.covoituraje.booking.domain.OutboxEvent;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.EntityTransaction;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.Query;
 import jakarta.persistence.TypedQuery;
+import org.hibernate.jpa.HibernateHints;
 import java.time.OffsetDateTime;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
 
 public class BookingRepository {
     
+    // Rows fetched per round trip when streaming from a JDBC cursor
+    static final int STREAM_FETCH_SIZE = 500;
+
+    private static final String LOCK_PENDING_RELEASES_SQL =
+        "SELECT * FROM bookings.bookings WHERE status = 'CANCELLED' AND seats_reserved = true " +
+        "ORDER BY updated_at LIMIT ?1 FOR UPDATE SKIP LOCKED";
+    private static final String LOCK_PENDING_RELEASE_SQL =
+        "SELECT * FROM bookings.bookings WHERE id = ?1 AND status = 'CANCELLED' AND seats_reserved = true " +
+        "FOR UPDATE SKIP LOCKED";
+    private static final String ADD_FLUSHED_SEATS_SQL =
+        "INSERT INTO bookings.seat_ledger_flushed (trip_id, seats, updated_at) VALUES (?1, ?2, CURRENT_TIMESTAMP) " +
+        "ON CONFLICT (trip_id) DO UPDATE SET seats = seat_ledger_flushed.seats + EXCLUDED.seats, updated_at = EXCLUDED.updated_at";
+    
     private final EntityManager entityManager;
     
     public BookingRepository() {
@@ -40,6 +61,32 @@ public class BookingRepository {
         }
     }
 
+    /**
+     * Saves the booking and queues its notifications in the same transaction, so a notification
+     * is sent if and only if the change is committed.
+     */
+    public Booking saveWithNotifications(Booking booking, OutboxEvent... notifications) {
+        EntityTransaction tx = entityManager.getTransaction();
+        try {
+            tx.begin();
+            if (booking.getId() == null) {
+                entityManager.persist(booking);
+            } else {
+                booking = entityManager.merge(booking);
+            }
+            for (OutboxEvent notification : notifications) {
+                entityManager.persist(notification);
+            }
+            tx.commit();
+            return booking;
+        } catch (Exception e) {
+            if (tx.isActive()) {
+                tx.rollback();
+            }
+            throw e;
+        }
+    }
+
     public Optional<Booking> findById(UUID id) {
         Booking booking = entityManager.find(Booking.class, id);
         return Optional.ofNullable(booking);
@@ -77,6 +124,59 @@ public class BookingRepository {
         return query.getResultList();
     }
 
+    /**
+     * Streaming variants of the passenger listings: rows are read through a JDBC cursor
+     * and detached once read. A null status lists every status. The caller must close the stream.
+     */
+    public Stream<Booking> streamByPassengerId(String passengerId, String status) {
+        return streamPageByPassengerId(passengerId, null, null, status, null, null, 0);
+    }
+
+    public Stream<Booking> streamByPassengerIdAndCreatedAtBetween(String passengerId, OffsetDateTime from, OffsetDateTime to,
+                                                                  String status) {
+        return streamPageByPassengerId(passengerId, from, to, status, null, null, 0);
+    }
+
+    /**
+     * One page of a passenger's bookings, newest first in (createdAt, id) order, optionally
+     * restricted to a createdAt range and a status (null for any). Keyset pagination: the page
+     * starts right after (afterCreatedAt, afterId), so deep pages cost the same as the first one
+     * (index idx_bookings_passenger_created_at_id). Pass null afterCreatedAt/afterId for the first
+     * page, and a limit of 0 to read to the end.
+     */
+    public Stream<Booking> streamPageByPassengerId(String passengerId, OffsetDateTime from, OffsetDateTime to, String status,
+                                                   OffsetDateTime afterCreatedAt, UUID afterId, int limit) {
+        StringBuilder jpql = new StringBuilder("SELECT b FROM Booking b WHERE b.passengerId = :passengerId");
+        if (from != null && to != null) {
+            jpql.append(" AND b.createdAt >= :from AND b.createdAt <= :to");
+        }
+        if (status != null) {
+            jpql.append(" AND b.status = :status");
+        }
+        if (afterCreatedAt != null && afterId != null) {
+            jpql.append(" AND (b.createdAt < :afterCreatedAt OR (b.createdAt = :afterCreatedAt AND b.id < :afterId))");
+        }
+        jpql.append(" ORDER BY b.createdAt DESC, b.id DESC");
+
+        TypedQuery<Booking> query = entityManager.createQuery(jpql.toString(), Booking.class);
+        query.setParameter("passengerId", passengerId);
+        if (from != null && to != null) {
+            query.setParameter("from", from);
+            query.setParameter("to", to);
+        }
+        if (status != null) {
+            query.setParameter("status", status);
+        }
+        if (afterCreatedAt != null && afterId != null) {
+            query.setParameter("afterCreatedAt", afterCreatedAt);
+            query.setParameter("afterId", afterId);
+        }
+        if (limit > 0) {
+            query.setMaxResults(limit);
+        }
+        return stream(query);
+    }
+
     public List<Booking> findByStatus(String status) {
         TypedQuery<Booking> query = entityManager.createQuery(
             "SELECT b FROM Booking b WHERE b.status = :status ORDER BY b.createdAt DESC", 
@@ -85,6 +185,152 @@ public class BookingRepository {
         return query.getResultList();
     }
 
+    /**
+     * Seats currently held per trip by bookings that reserved them in trips-service
+     * (seats_reserved, including cancelled bookings whose release is still pending).
+     * Used to rebuild the in-memory seat ledger.
+     */
+    public Map<UUID, Integer> sumReservedSeatsByTrip() {
+        List<Object[]> rows = entityManager.createQuery(
+            "SELECT b.tripId, SUM(b.seatsRequested) FROM Booking b" +
+            " WHERE b.seatsReserved = true GROUP BY b.tripId",
+            Object[].class).getResultList();
+        Map<UUID, Integer> held = new HashMap<>(rows.size() * 2);
+        for (Object[] row : rows) {
+            held.put((UUID) row[0], ((Number) row[1]).intValue());
+        }
+        return held;
+    }
+
+    /**
+     * Seats per trip that the seat ledger has sent to trips-service (table seat_ledger_flushed).
+     * What a trip holds in sumReservedSeatsByTrip beyond this was never sent.
+     */
+    public Map<UUID, Integer> sumFlushedSeatsByTrip() {
+        @SuppressWarnings("unchecked")
+        List<Object[]> rows = entityManager.createNativeQuery(
+            "SELECT trip_id, seats FROM bookings.seat_ledger_flushed WHERE seats <> 0").getResultList();
+        Map<UUID, Integer> flushed = new HashMap<>(rows.size() * 2);
+        for (Object[] row : rows) {
+            flushed.put((UUID) row[0], ((Number) row[1]).intValue());
+        }
+        return flushed;
+    }
+
+    /**
+     * Adds deltas trips-service accepted from the seat ledger to seat_ledger_flushed, all trips
+     * in one transaction.
+     */
+    public void addFlushedSeats(Map<UUID, Integer> deltas) {
+        EntityTransaction tx = entityManager.getTransaction();
+        try {
+            tx.begin();
+            for (Map.Entry<UUID, Integer> delta : deltas.entrySet()) {
+                entityManager.createNativeQuery(ADD_FLUSHED_SEATS_SQL)
+                    .setParameter(1, delta.getKey())
+                    .setParameter(2, delta.getValue())
+                    .executeUpdate();
+            }
+            tx.commit();
+        } catch (Exception e) {
+            if (tx.isActive()) {
+                tx.rollback();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Cancels the newest active bookings of a trip that hold seats until at least seats seats are
+     * given back, and queues a notification to each passenger in the same transaction. Used by the
+     * seat ledger when trips-service can no longer take seats it already admitted (the driver
+     * lowered seatsTotal). The rows are locked, so a concurrent confirm or cancel waits.
+     *
+     * @return the seats given back; fewer than requested when not enough bookings are committed yet
+     */
+    public int cancelNewestHoldingSeats(UUID tripId, int seats) {
+        EntityTransaction tx = entityManager.getTransaction();
+        try {
+            tx.begin();
+            List<Booking> newestFirst = entityManager.createQuery(
+                "SELECT b FROM Booking b WHERE b.tripId = :tripId AND b.seatsReserved = true" +
+                " AND b.status <> 'CANCELLED' ORDER BY b.createdAt DESC, b.id DESC", Booking.class)
+                .setParameter("tripId", tripId)
+                .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+                .getResultList();
+            int released = 0;
+            for (Booking booking : newestFirst) {
+                if (released >= seats) break;
+                booking.cancel();
+                // Its seats never reach trips-service: the ledger drops them from the pending delta
+                booking.setSeatsReserved(false);
+                entityManager.persist(OutboxEvent.bookingRejected(booking.getPassengerId(), tripId, booking.getSeatsRequested()));
+                released += booking.getSeatsRequested();
+            }
+            tx.commit();
+            return released;
+        } catch (Exception e) {
+            if (tx.isActive()) {
+                tx.rollback();
+            }
+            throw e;
+        } finally {
+            // The ledger keeps this repository for the life of the service
+            entityManager.clear();
+        }
+    }
+
+    /**
+     * Gives back the seats of cancelled bookings that still hold them (status CANCELLED and
+     * seats_reserved). Locks up to limit of them, oldest cancellation first, and hands each one
+     * to release; the ones it returns true for get seats_reserved cleared in the same transaction.
+     * SKIP LOCKED keeps two callers from releasing the same booking; the flag is only cleared
+     * after the release, so a crash in between means a second release, never a lost one.
+     *
+     * @return the bookings released
+     */
+    public int releasePendingSeats(int limit, Predicate<Booking> release) {
+        try {
+            return releaseLocked(entityManager.createNativeQuery(LOCK_PENDING_RELEASES_SQL, Booking.class)
+                .setParameter(1, limit), release);
+        } finally {
+            // The seat release relay keeps this repository for the life of the service
+            entityManager.clear();
+        }
+    }
+
+    /**
+     * Same as releasePendingSeats(int, Predicate) for one booking, right after cancelling it
+     *
+     * @return false when the booking holds no seats or another caller is releasing them
+     */
+    public boolean releasePendingSeats(UUID bookingId, Predicate<Booking> release) {
+        return releaseLocked(entityManager.createNativeQuery(LOCK_PENDING_RELEASE_SQL, Booking.class)
+            .setParameter(1, bookingId), release) > 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    private int releaseLocked(Query lockQuery, Predicate<Booking> release) {
+        EntityTransaction tx = entityManager.getTransaction();
+        try {
+            tx.begin();
+            int released = 0;
+            for (Booking booking : (List<Booking>) lockQuery.getResultList()) {
+                if (release.test(booking)) {
+                    booking.setSeatsReserved(false);
+                    released++;
+                }
+            }
+            tx.commit();
+            return released;
+        } catch (Exception e) {
+            if (tx.isActive()) {
+                tx.rollback();
+            }
+            throw e;
+        }
+    }
+
     public void delete(Booking booking) {
         EntityTransaction tx = entityManager.getTransaction();
         try {
@@ -98,4 +344,13 @@ public class BookingRepository {
             throw e;
         }
     }
+
+    private <T> Stream<T> stream(TypedQuery<T> query) {
+        query.setHint(HibernateHints.HINT_FETCH_SIZE, STREAM_FETCH_SIZE);
+        query.setHint(HibernateHints.HINT_READ_ONLY, true);
+        return query.getResultStream().map(entity -> {
+            entityManager.detach(entity);
+            return entity;
+        });
+    }
 }
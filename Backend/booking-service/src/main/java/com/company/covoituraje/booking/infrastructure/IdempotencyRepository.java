@@ -0,0 +1,69 @@
+package com.company.covoituraje.booking.infrastructure;
+
+import com.company.covoituraje.booking.domain.IdempotencyRecord;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.EntityTransaction;
+
+import java.time.OffsetDateTime;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * Shared by every request thread, so each call uses its own short-lived EntityManager.
+ */
+public class IdempotencyRepository {
+
+    private final EntityManagerFactory entityManagerFactory;
+
+    public IdempotencyRepository() {
+        this.entityManagerFactory = JpaConfig.getEntityManagerFactory();
+    }
+
+    public IdempotencyRepository(EntityManagerFactory entityManagerFactory) {
+        this.entityManagerFactory = entityManagerFactory;
+    }
+
+    public Optional<IdempotencyRecord> findValid(String scopeKey, OffsetDateTime now) {
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        try {
+            IdempotencyRecord record = entityManager.find(IdempotencyRecord.class, scopeKey);
+            if (record == null || !record.getExpiresAt().isAfter(now)) {
+                return Optional.empty();
+            }
+            return Optional.of(record);
+        } finally {
+            entityManager.close();
+        }
+    }
+
+    public void save(IdempotencyRecord record) {
+        inTransaction(entityManager -> entityManager.merge(record));
+    }
+
+    public int deleteExpired(OffsetDateTime now) {
+        int[] deleted = new int[1];
+        inTransaction(entityManager -> deleted[0] = entityManager
+                .createQuery("DELETE FROM IdempotencyRecord r WHERE r.expiresAt <= :now")
+                .setParameter("now", now)
+                .executeUpdate());
+        return deleted[0];
+    }
+
+    private void inTransaction(Consumer<EntityManager> work) {
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        EntityTransaction tx = entityManager.getTransaction();
+        try {
+            tx.begin();
+            work.accept(entityManager);
+            tx.commit();
+        } catch (Exception e) {
+            if (tx.isActive()) {
+                tx.rollback();
+            }
+            throw e;
+        } finally {
+            entityManager.close();
+        }
+    }
+}
@@ -2,6 +2,7 @@ package com.company.covoituraje.booking.integration;
 
 import com.company.covoituraje.http.ServiceHttpClient;
 import com.company.covoituraje.http.ServiceIntegrationException;
+import com.company.covoituraje.shared.dto.SeatReservationDto;
 import com.company.covoituraje.shared.dto.TripDto;
 
 /**
@@ -39,6 +40,32 @@ public class TripsServiceClient {
         return trip.seatsFree >= seatsRequested;
     }
     
+    /**
+     * Reserva plazas en el trip con una única actualización condicional en trips-service.
+     * Devuelve las plazas que quedan libres. Un 409 indica que no hay plazas suficientes
+     * y un 404 que el trip no existe (ver ServiceIntegrationException.getStatusCode()).
+     */
+    public int reserveSeats(String tripId, int seats) throws ServiceIntegrationException {
+        try {
+            String path = "/trips/" + tripId + "/reservations";
+            return httpClient.post(path, new SeatReservationDto(seats), SeatReservationDto.class).seatsFree;
+        } catch (ServiceIntegrationException e) {
+            throw new ServiceIntegrationException("Error reserving " + seats + " seats on trip " + tripId, e);
+        }
+    }
+
+    /**
+     * Devuelve al trip plazas reservadas con reserveSeats
+     */
+    public int releaseSeats(String tripId, int seats) throws ServiceIntegrationException {
+        try {
+            String path = "/trips/" + tripId + "/reservations/release";
+            return httpClient.post(path, new SeatReservationDto(seats), SeatReservationDto.class).seatsFree;
+        } catch (ServiceIntegrationException e) {
+            throw new ServiceIntegrationException("Error releasing " + seats + " seats on trip " + tripId, e);
+        }
+    }
+
     /**
      * Verifica si el trips-service está disponible
      */
@@ -0,0 +1,101 @@
+package com.company.covoituraje.booking.service;
+
+import com.company.covoituraje.booking.domain.Booking;
+import com.company.covoituraje.booking.infrastructure.BookingRepository;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Creación de reservas en un único paso: la validación del usuario (users-service) y la
+ * reserva de plazas (trips-service) se lanzan a la vez, de modo que la latencia es la de la
+ * llamada más lenta y no la suma de ambas. Si un paso posterior falla, las plazas ya
+ * reservadas se devuelven al trip (compensación). Las plazas se toman de SeatReservations:
+ * el libro en memoria (SeatLedger) o directamente de trips-service.
+ */
+public class BookingCreationService {
+
+    private final BookingRepository repository;
+    private final BookingValidationService validationService;
+    private final SeatReservations seatReservations;
+    private final Executor executor;
+
+    public BookingCreationService(BookingRepository repository, BookingValidationService validationService) {
+        this(repository, validationService, SeatReservations.remote(validationService), ValidationExecutorHolder.INSTANCE);
+    }
+
+    public BookingCreationService(BookingRepository repository, BookingValidationService validationService,
+                                  SeatReservations seatReservations) {
+        this(repository, validationService, seatReservations, ValidationExecutorHolder.INSTANCE);
+    }
+
+    public BookingCreationService(BookingRepository repository, BookingValidationService validationService, Executor executor) {
+        this(repository, validationService, SeatReservations.remote(validationService), executor);
+    }
+
+    public BookingCreationService(BookingRepository repository, BookingValidationService validationService,
+                                  SeatReservations seatReservations, Executor executor) {
+        this.repository = repository;
+        this.validationService = validationService;
+        this.seatReservations = seatReservations;
+        this.executor = executor;
+    }
+
+    /**
+     * Valida al pasajero, reserva las plazas y guarda la reserva en estado PENDING.
+     *
+     * @throws BookingValidationException si el usuario no existe o el trip no tiene plazas;
+     *         en ese caso no queda ninguna plaza reservada a nombre de la reserva
+     */
+    public Booking create(String passengerId, UUID tripId, int seatsRequested) throws BookingValidationException {
+        CompletableFuture<Void> userCheck = CompletableFuture.runAsync(() -> {
+            try {
+                validationService.validateUserExists(passengerId);
+            } catch (BookingValidationException e) {
+                throw new CompletionException(e);
+            }
+        }, executor);
+
+        // The reservation doubles as the availability check, on the request thread
+        try {
+            seatReservations.reserve(tripId, seatsRequested);
+        } catch (BookingValidationException e) {
+            userCheck.cancel(false);
+            throw e;
+        }
+
+        try {
+            awaitUserCheck(userCheck);
+            Booking booking = new Booking(tripId, passengerId, seatsRequested, "PENDING");
+            booking.setSeatsReserved(true);
+            return repository.save(booking);
+        } catch (BookingValidationException | RuntimeException e) {
+            seatReservations.release(tripId, seatsRequested);
+            throw e;
+        }
+    }
+
+    private static void awaitUserCheck(CompletableFuture<Void> userCheck) throws BookingValidationException {
+        try {
+            userCheck.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof BookingValidationException) {
+                throw (BookingValidationException) e.getCause();
+            }
+            throw new BookingValidationException("Error checking if user exists: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    // Threads only wait on HTTP calls and are bounded by the request threads, one task per create
+    private static final class ValidationExecutorHolder {
+        static final ExecutorService INSTANCE = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "booking-validation");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
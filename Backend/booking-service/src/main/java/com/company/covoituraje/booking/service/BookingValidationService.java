@@ -38,6 +38,38 @@ public class BookingValidationService {
         }
     }
     
+    /**
+     * Reserva las plazas en trips-service: la comprobación de disponibilidad y el descuento
+     * son la misma operación atómica, así que dos reservas simultáneas no pueden sobrevender.
+     * Si falla la llamada sin respuesta (timeout) no se sabe si la reserva se aplicó;
+     * se trata como rechazo y no se compensa, prefiriendo una plaza bloqueada a una sobreventa.
+     */
+    public void reserveSeats(String tripId, int seatsRequested) throws BookingValidationException {
+        try {
+            tripsServiceClient.reserveSeats(tripId, seatsRequested);
+        } catch (ServiceIntegrationException e) {
+            if (e.getStatusCode() == 404 || e.getStatusCode() == 409) {
+                throw new BookingValidationException("Trip not found or insufficient seats available");
+            }
+            throw new BookingValidationException("Error reserving seats: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Devuelve al trip plazas reservadas con reserveSeats (compensación o cancelación).
+     * No lanza excepción: si falla se registra y devuelve false. Un trip que ya no existe (404)
+     * o que ya tiene esas plazas libres (409) no tiene nada que devolver y cuenta como hecho.
+     */
+    public boolean releaseSeats(String tripId, int seats) {
+        try {
+            tripsServiceClient.releaseSeats(tripId, seats);
+            return true;
+        } catch (ServiceIntegrationException e) {
+            System.err.println("Error releasing " + seats + " seats on trip " + tripId + ": " + e.getMessage());
+            return e.getStatusCode() == 404 || e.getStatusCode() == 409;
+        }
+    }
+
     /**
      * Valida que un usuario existe
      */
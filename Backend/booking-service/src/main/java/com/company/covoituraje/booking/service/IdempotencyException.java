@@ -0,0 +1,25 @@
+package com.company.covoituraje.booking.service;
+
+/**
+ * Excepción lanzada cuando una Idempotency-Key no puede usarse para la petición
+ */
+public class IdempotencyException extends RuntimeException {
+
+    public enum Reason {
+        /** La clave ya se usó con otros parámetros */
+        KEY_REUSED,
+        /** La petición original con esta clave sigue en curso */
+        IN_PROGRESS
+    }
+
+    private final Reason reason;
+
+    public IdempotencyException(Reason reason) {
+        super("Idempotency key " + reason.name().toLowerCase().replace('_', ' '));
+        this.reason = reason;
+    }
+
+    public Reason getReason() {
+        return reason;
+    }
+}
@@ -0,0 +1,241 @@
+package com.company.covoituraje.booking.service;
+
+import com.company.covoituraje.booking.domain.IdempotencyRecord;
+import com.company.covoituraje.booking.infrastructure.IdempotencyRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.Iterator;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Respuestas de las peticiones con cabecera Idempotency-Key. La primera petición con una
+ * clave ejecuta la operación y guarda su respuesta; los reintentos con la misma clave la
+ * reciben de nuevo sin repetir validaciones ni escrituras. Un reintento que llega mientras
+ * la primera petición sigue en curso espera su resultado.
+ *
+ * Las claves viven en memoria, con TTL y un máximo de entradas, y opcionalmente también en la
+ * tabla idempotency_keys para sobrevivir a un reinicio. Solo se guardan las respuestas correctas:
+ * si la operación falla, el siguiente reintento la ejecuta de nuevo.
+ */
+public class IdempotencyStore {
+
+    public static final int MAX_KEY_LENGTH = 255;
+    static final Duration DEFAULT_TTL = Duration.ofHours(24);
+    static final int DEFAULT_MAX_ENTRIES = 10_000;
+    static final long IN_FLIGHT_WAIT_MS = 10_000;
+    static final int PURGE_EVERY = 1_000;
+
+    private static IdempotencyStore shared;
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final Duration ttl;
+    private final int maxEntries;
+    private final IdempotencyRepository repository; // null: memory only
+
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    // Insertion order; with a fixed TTL also expiry order. Holds the entries themselves, so a key
+    // reused after expiry leaves a stale record that trim recognizes instead of a duplicate key
+    private final ConcurrentLinkedQueue<Entry> order = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger savesSincePurge = new AtomicInteger();
+
+    public IdempotencyStore() {
+        this(DEFAULT_TTL, DEFAULT_MAX_ENTRIES, null);
+    }
+
+    public IdempotencyStore(Duration ttl, int maxEntries, IdempotencyRepository repository) {
+        this.ttl = ttl;
+        this.maxEntries = maxEntries;
+        this.repository = repository;
+    }
+
+    /**
+     * Almacén compartido del servicio, configurado con BOOKING_IDEMPOTENCY_TTL_SECONDS,
+     * BOOKING_IDEMPOTENCY_MAX_ENTRIES y BOOKING_IDEMPOTENCY_PERSIST.
+     */
+    public static synchronized IdempotencyStore shared() {
+        if (shared == null) {
+            long ttlSeconds = envLong("BOOKING_IDEMPOTENCY_TTL_SECONDS", DEFAULT_TTL.getSeconds());
+            int maxEntries = (int) envLong("BOOKING_IDEMPOTENCY_MAX_ENTRIES", DEFAULT_MAX_ENTRIES);
+            boolean persist = "true".equalsIgnoreCase(System.getenv("BOOKING_IDEMPOTENCY_PERSIST"));
+            shared = new IdempotencyStore(Duration.ofSeconds(ttlSeconds), maxEntries,
+                    persist ? new IdempotencyRepository() : null);
+        }
+        return shared;
+    }
+
+    /**
+     * Ejecuta action una sola vez por (userId, operation, key) durante el TTL y devuelve su
+     * resultado, o el guardado si la clave ya se usó.
+     *
+     * @param fingerprint parámetros de la petición; reutilizar la clave con otros parámetros
+     *                    lanza IdempotencyException KEY_REUSED
+     * @throws IdempotencyException IN_PROGRESS si la petición original no termina a tiempo
+     */
+    public <T> T execute(String userId, String operation, String key, String fingerprint,
+                         Class<T> type, Supplier<T> action) {
+        String scopeKey = userId + "|" + operation + "|" + key;
+        while (true) {
+            long now = System.nanoTime();
+            Entry entry = entries.get(scopeKey);
+            if (entry != null && entry.isExpired(now)) {
+                entries.remove(scopeKey, entry);
+                entry = null;
+            }
+            if (entry == null) {
+                Entry mine = new Entry(scopeKey, fingerprint);
+                Entry existing = entries.putIfAbsent(scopeKey, mine);
+                if (existing == null) {
+                    order.add(mine);
+                    trim(now);
+                    return runFirst(scopeKey, mine, type, action);
+                }
+                entry = existing;
+            }
+
+            if (!entry.fingerprint.equals(fingerprint)) {
+                throw new IdempotencyException(IdempotencyException.Reason.KEY_REUSED);
+            }
+            Optional<Object> replayed = await(entry);
+            if (replayed.isPresent()) {
+                return type.cast(replayed.get());
+            }
+            // The original request failed and released the key: this retry runs the operation
+        }
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    // Records kept for trimming, including stale ones not yet reached
+    int trackedSize() {
+        return order.size();
+    }
+
+    private <T> T runFirst(String scopeKey, Entry mine, Class<T> type, Supplier<T> action) {
+        T value;
+        try {
+            value = loadStored(scopeKey, mine.fingerprint, type);
+            if (value == null) {
+                value = action.get();
+                store(scopeKey, mine.fingerprint, value);
+            }
+        } catch (RuntimeException e) {
+            entries.remove(scopeKey, mine);
+            mine.result.complete(null);
+            throw e;
+        }
+        mine.expiresAtNanos = System.nanoTime() + ttl.toNanos();
+        mine.result.complete(value);
+        return value;
+    }
+
+    // Empty when the original request failed
+    private Optional<Object> await(Entry entry) {
+        try {
+            return Optional.ofNullable(entry.result.get(IN_FLIGHT_WAIT_MS, TimeUnit.MILLISECONDS));
+        } catch (TimeoutException e) {
+            throw new IdempotencyException(IdempotencyException.Reason.IN_PROGRESS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IdempotencyException(IdempotencyException.Reason.IN_PROGRESS);
+        } catch (ExecutionException e) {
+            return Optional.empty();
+        }
+    }
+
+    private <T> T loadStored(String scopeKey, String fingerprint, Class<T> type) {
+        if (repository == null) return null;
+        try {
+            Optional<IdempotencyRecord> record = repository.findValid(scopeKey, OffsetDateTime.now());
+            if (record.isEmpty()) return null;
+            if (!record.get().getFingerprint().equals(fingerprint)) {
+                throw new IdempotencyException(IdempotencyException.Reason.KEY_REUSED);
+            }
+            return MAPPER.readValue(record.get().getResponseBody(), type);
+        } catch (IdempotencyException e) {
+            throw e;
+        } catch (Exception e) {
+            System.err.println("Error reading idempotency key " + scopeKey + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    // The operation already succeeded: a failure here only loses the replay after a restart
+    private void store(String scopeKey, String fingerprint, Object value) {
+        if (repository == null) return;
+        try {
+            OffsetDateTime now = OffsetDateTime.now();
+            repository.save(new IdempotencyRecord(scopeKey, fingerprint,
+                    MAPPER.writeValueAsString(value), now.plus(ttl)));
+            if (savesSincePurge.incrementAndGet() >= PURGE_EVERY) {
+                savesSincePurge.set(0);
+                repository.deleteExpired(now);
+            }
+        } catch (Exception e) {
+            System.err.println("Error storing idempotency key " + scopeKey + ": " + e.getMessage());
+        }
+    }
+
+    // Drops stale and expired records from the head and, over capacity, the oldest completed
+    // ones. Entries still in flight are skipped, not waited for: one slow request at the head
+    // must not stop eviction. Only in-flight entries can keep the store over capacity.
+    private void trim(long now) {
+        while (true) {
+            Entry oldest = order.peek();
+            if (oldest == null) return;
+            boolean stale = entries.get(oldest.scopeKey) != oldest;
+            if (!stale && !oldest.isExpired(now)) break;
+            if (order.remove(oldest) && !stale) {
+                entries.remove(oldest.scopeKey, oldest);
+            }
+        }
+        Iterator<Entry> it = order.iterator();
+        while (entries.size() > maxEntries && it.hasNext()) {
+            Entry entry = it.next();
+            boolean stale = entries.get(entry.scopeKey) != entry;
+            if (stale || entry.result.isDone()) {
+                it.remove();
+                if (!stale) {
+                    entries.remove(entry.scopeKey, entry);
+                }
+            }
+        }
+    }
+
+    private static long envLong(String name, long defaultValue) {
+        try {
+            return Long.parseLong(System.getenv().getOrDefault(name, String.valueOf(defaultValue)));
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    private static final class Entry {
+        final String scopeKey;
+        final String fingerprint;
+        final CompletableFuture<Object> result = new CompletableFuture<>();
+        volatile long expiresAtNanos; // set before result completes
+
+        Entry(String scopeKey, String fingerprint) {
+            this.scopeKey = scopeKey;
+            this.fingerprint = fingerprint;
+        }
+
+        // In-flight entries never expire
+        boolean isExpired(long now) {
+            return result.isDone() && now - expiresAtNanos >= 0;
+        }
+    }
+}
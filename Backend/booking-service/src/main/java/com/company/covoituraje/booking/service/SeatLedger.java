@@ -0,0 +1,447 @@
+package com.company.covoituraje.booking.service;
+
+import com.company.covoituraje.booking.infrastructure.BookingRepository;
+import com.company.covoituraje.booking.integration.TripsServiceClient;
+import com.company.covoituraje.http.ServiceIntegrationException;
+import com.company.covoituraje.shared.dto.TripDto;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Libro de plazas en memoria por trip. Las reservas y cancelaciones se admiten o rechazan
+ * al instante contra el contador local, sin tocar las filas de trips ni de bookings, y un
+ * hilo en segundo plano envía a trips-service el neto acumulado de cada trip en cada
+ * intervalo: una ráfaga de cien reservas sobre el mismo trip es una sola llamada.
+ *
+ * Cada trip se carga de trips-service la primera vez que se usa y se vuelve a sincronizar con
+ * las plazas libres que devuelve cada volcado; un trip sin volcados durante RELOAD_AFTER_MS se
+ * descarta y se recarga al usarse, así que los cambios de seatsTotal llegan al libro aunque el
+ * trip siga recibiendo reservas. Cada volcado aceptado se suma en la tabla seat_ledger_flushed;
+ * al arrancar, la diferencia entre lo que retienen las reservas (seats_reserved) y lo volcado
+ * es lo que se admitió o canceló antes de una caída sin llegar a trips-service, y se envía en
+ * los primeros volcados aunque el trip no vuelva a usarse.
+ *
+ * Si trips-service ya no puede tomar plazas admitidas aquí (el conductor redujo seatsTotal),
+ * las reservas más recientes del trip se cancelan hasta cubrir el exceso y se avisa a sus pasajeros.
+ *
+ * Supone que booking-service es el único que modifica las plazas de los trips (una sola
+ * instancia); con varias instancias debe desactivarse (BOOKING_SEAT_LEDGER_ENABLED=false).
+ * Con el libro desactivado seat_ledger_flushed no se actualiza: al volver a activarlo hay que
+ * igualarla a las plazas retenidas (como hace la migración V9).
+ */
+public class SeatLedger implements SeatReservations, AutoCloseable {
+
+    static final int STRIPES = 64;
+    static final long DEFAULT_FLUSH_INTERVAL_MS = 200;
+    static final long DEFAULT_RELOAD_AFTER_MS = 60_000;
+    static final long SHUTDOWN_TIMEOUT_MS = 10_000;
+
+    private static SeatLedger shared;
+
+    private final TripsServiceClient tripsClient;
+    private final BookingRepository bookings; // null: excess seats are retried instead of rolled back, flushes are not recorded
+    private final long flushIntervalMs;
+    private final long reloadAfterNanos;
+
+    // Striped locks: trips on different stripes never contend, one trip never blocks on the network
+    private final ReentrantLock[] stripes = new ReentrantLock[STRIPES];
+    private final ConcurrentHashMap<UUID, Entry> entries = new ConcurrentHashMap<>();
+    // Deltas admitted before a restart but never sent, consumed when the trip is first loaded
+    private final ConcurrentHashMap<UUID, Integer> rebuiltUnflushed = new ConcurrentHashMap<>();
+    // Deltas trips-service accepted but seat_ledger_flushed does not have yet; guarded by flushLock
+    private final Map<UUID, Integer> unrecorded = new HashMap<>();
+    private final Object flushLock = new Object();
+
+    private Thread flusher;
+    private volatile boolean running;
+    private volatile boolean closed;
+
+    public SeatLedger(TripsServiceClient tripsClient) {
+        this(tripsClient, null, DEFAULT_FLUSH_INTERVAL_MS, DEFAULT_RELOAD_AFTER_MS);
+    }
+
+    public SeatLedger(TripsServiceClient tripsClient, long flushIntervalMs, long reloadAfterMs) {
+        this(tripsClient, null, flushIntervalMs, reloadAfterMs);
+    }
+
+    /**
+     * @param bookings reservas usadas para cancelar el exceso cuando trips-service rechaza plazas
+     *                 ya admitidas; solo la usa el hilo de volcado
+     */
+    public SeatLedger(TripsServiceClient tripsClient, BookingRepository bookings, long flushIntervalMs, long reloadAfterMs) {
+        this.tripsClient = tripsClient;
+        this.bookings = bookings;
+        this.flushIntervalMs = flushIntervalMs;
+        this.reloadAfterNanos = TimeUnit.MILLISECONDS.toNanos(reloadAfterMs);
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Libro compartido del servicio: se reconstruye desde la tabla bookings, arranca el hilo
+     * de volcado y envía lo pendiente al parar la JVM.
+     */
+    public static synchronized SeatLedger shared() {
+        if (shared == null) {
+            String tripsServiceUrl = System.getenv("TRIPS_SERVICE_URL");
+            if (tripsServiceUrl == null || tripsServiceUrl.isBlank()) {
+                tripsServiceUrl = "http://localhost:8081";
+            }
+            long flushMs = DEFAULT_FLUSH_INTERVAL_MS;
+            try {
+                flushMs = Long.parseLong(System.getenv().getOrDefault("BOOKING_SEAT_LEDGER_FLUSH_MS",
+                        String.valueOf(DEFAULT_FLUSH_INTERVAL_MS)));
+            } catch (NumberFormatException ignored) {}
+            BookingRepository bookings = new BookingRepository();
+            SeatLedger ledger = new SeatLedger(new TripsServiceClient(tripsServiceUrl), bookings, flushMs, DEFAULT_RELOAD_AFTER_MS);
+            ledger.rebuild(bookings.sumReservedSeatsByTrip(), bookings.sumFlushedSeatsByTrip());
+            ledger.start();
+            Runtime.getRuntime().addShutdownHook(new Thread(ledger::close, "seat-ledger-shutdown"));
+            shared = ledger;
+        }
+        return shared;
+    }
+
+    /**
+     * true salvo que BOOKING_SEAT_LEDGER_ENABLED=false
+     */
+    public static boolean isEnabled() {
+        return !"false".equalsIgnoreCase(System.getenv("BOOKING_SEAT_LEDGER_ENABLED"));
+    }
+
+    /**
+     * Carga lo que quedó sin enviar antes de arrancar: por trip, las plazas retenidas según la
+     * tabla bookings (BookingRepository.sumReservedSeatsByTrip) menos las que el libro ya volcó
+     * en trips-service (BookingRepository.sumFlushedSeatsByTrip). Un trip que falta en uno de
+     * los dos mapas cuenta como 0. Debe llamarse antes de admitir reservas.
+     */
+    public void rebuild(Map<UUID, Integer> heldByTrip, Map<UUID, Integer> flushedByTrip) {
+        Map<UUID, Integer> pending = new HashMap<>(heldByTrip);
+        flushedByTrip.forEach((tripId, flushed) -> pending.merge(tripId, -flushed, Integer::sum));
+        pending.values().removeIf(delta -> delta == 0);
+        rebuiltUnflushed.clear();
+        rebuiltUnflushed.putAll(pending);
+    }
+
+    public synchronized void start() {
+        if (running || closed) return;
+        running = true;
+        flusher = new Thread(this::runFlusher, "seat-ledger-flush");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    @Override
+    public void reserve(UUID tripId, int seats) throws BookingValidationException {
+        while (true) {
+            Entry entry = entryFor(tripId);
+            ReentrantLock lock = stripe(tripId);
+            lock.lock();
+            try {
+                if (entry.evicted) continue;
+                if (entry.available < seats) {
+                    throw new BookingValidationException("Trip not found or insufficient seats available");
+                }
+                entry.available -= seats;
+                entry.unflushed += seats;
+                return;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    @Override
+    public boolean release(UUID tripId, int seats) {
+        while (true) {
+            Entry entry = entries.get(tripId);
+            if (entry == null) {
+                TripDto trip;
+                try {
+                    trip = tripsClient.getTripById(tripId.toString());
+                } catch (ServiceIntegrationException e) {
+                    System.err.println("Cannot release " + seats + " seats on trip " + tripId + ": " + e.getMessage());
+                    // A trip that no longer exists has nothing to give back
+                    return e.getStatusCode() == 404;
+                }
+                entry = install(tripId, trip);
+            }
+            ReentrantLock lock = stripe(tripId);
+            lock.lock();
+            try {
+                if (entry.evicted) continue;
+                entry.available += seats;
+                entry.unflushed -= seats;
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Plazas que el libro puede admitir todavía en el trip, o -1 si no está cargado
+     */
+    public int available(UUID tripId) {
+        Entry entry = entries.get(tripId);
+        if (entry == null) return -1;
+        ReentrantLock lock = stripe(tripId);
+        lock.lock();
+        try {
+            return entry.available;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Envía a trips-service el neto pendiente de cada trip, lo anota en seat_ledger_flushed y
+     * descarta los trips que llevan RELOAD_AFTER_MS sin sincronizarse
+     */
+    public void flush() {
+        synchronized (flushLock) {
+            loadRebuilt();
+            long now = System.nanoTime();
+            Map<UUID, Integer> sent = new HashMap<>();
+            for (Map.Entry<UUID, Entry> e : entries.entrySet()) {
+                UUID tripId = e.getKey();
+                Entry entry = e.getValue();
+                int delta;
+                ReentrantLock lock = stripe(tripId);
+                lock.lock();
+                try {
+                    delta = entry.unflushed;
+                    entry.unflushed = 0;
+                    if (delta == 0 && now - entry.syncedNanos >= reloadAfterNanos) {
+                        // Reloaded on next use, picking up changes made in trips-service (seatsTotal updates)
+                        entry.evicted = true;
+                        entries.remove(tripId, entry);
+                    }
+                } finally {
+                    lock.unlock();
+                }
+                if (delta != 0 && apply(tripId, entry, delta)) {
+                    sent.merge(tripId, delta, Integer::sum);
+                }
+            }
+            record(sent);
+        }
+    }
+
+    @Override
+    public void close() {
+        Thread thread;
+        synchronized (this) {
+            if (closed) return;
+            closed = true;
+            running = false;
+            thread = flusher;
+        }
+        if (thread != null) {
+            thread.interrupt();
+            try {
+                thread.join(SHUTDOWN_TIMEOUT_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        flush();
+    }
+
+    private void runFlusher() {
+        while (running) {
+            try {
+                Thread.sleep(flushIntervalMs);
+            } catch (InterruptedException e) {
+                break;
+            }
+            try {
+                flush();
+            } catch (RuntimeException e) {
+                System.err.println("Error flushing seat ledger: " + e.getMessage());
+            }
+        }
+    }
+
+    // true when trips-service took the delta, or already had the released seats free
+    private boolean apply(UUID tripId, Entry entry, int delta) {
+        int seatsFree;
+        try {
+            seatsFree = delta > 0
+                    ? tripsClient.reserveSeats(tripId.toString(), delta)
+                    : tripsClient.releaseSeats(tripId.toString(), -delta);
+        } catch (ServiceIntegrationException e) {
+            int status = e.getStatusCode();
+            if (status == 404) {
+                System.err.println("Trip " + tripId + " no longer exists; dropping " + delta + " seats from the ledger");
+                return false;
+            }
+            if (status == 409 && delta < 0) {
+                // trips-service already has those seats free
+                System.err.println("Trip " + tripId + " rejected releasing " + (-delta) + " seats: " + e.getMessage());
+                return true;
+            }
+            if (status == 409) {
+                // trips-service has fewer seats than admitted here
+                rejectExcess(tripId, entry, delta);
+                return false;
+            }
+            System.err.println("Error flushing " + delta + " seats for trip " + tripId + ", will retry: " + e.getMessage());
+            requeue(tripId, entry, delta);
+            return false;
+        }
+        resync(tripId, entry, seatsFree);
+        return true;
+    }
+
+    // Trips with deltas left from before a restart are sent even if nobody books on them again
+    private void loadRebuilt() {
+        for (UUID tripId : rebuiltUnflushed.keySet()) {
+            if (entries.containsKey(tripId)) continue;
+            TripDto trip;
+            try {
+                trip = tripsClient.getTripById(tripId.toString());
+            } catch (ServiceIntegrationException e) {
+                if (e.getStatusCode() == 404) {
+                    Integer delta = rebuiltUnflushed.remove(tripId);
+                    System.err.println("Trip " + tripId + " no longer exists; dropping " + delta + " seats from the ledger");
+                } else {
+                    System.err.println("Error loading seats of trip " + tripId + ", will retry: " + e.getMessage());
+                }
+                continue;
+            }
+            install(tripId, trip);
+        }
+    }
+
+    // Adds the accepted deltas to seat_ledger_flushed; a failed write is retried with the next flush
+    private void record(Map<UUID, Integer> sent) {
+        if (bookings == null) return;
+        sent.forEach((tripId, delta) -> unrecorded.merge(tripId, delta, Integer::sum));
+        unrecorded.values().removeIf(delta -> delta == 0);
+        if (unrecorded.isEmpty()) return;
+        try {
+            bookings.addFlushedSeats(unrecorded);
+            unrecorded.clear();
+        } catch (RuntimeException e) {
+            System.err.println("Error recording flushed seats of " + unrecorded.size() + " trips, will retry: " + e.getMessage());
+        }
+    }
+
+    // Seats this ledger admitted but trips-service cannot take: the newest bookings give them back
+    private void rejectExcess(UUID tripId, Entry entry, int delta) {
+        TripDto trip;
+        try {
+            trip = tripsClient.getTripById(tripId.toString());
+        } catch (ServiceIntegrationException e) {
+            System.err.println("Error reloading seats of trip " + tripId + ", will retry: " + e.getMessage());
+            requeue(tripId, entry, delta);
+            return;
+        }
+        int seatsFree = seatsFree(trip);
+        int excess = delta - seatsFree;
+        int rolledBack = 0;
+        if (excess > 0 && bookings != null) {
+            try {
+                rolledBack = bookings.cancelNewestHoldingSeats(tripId, excess);
+                System.err.println("Trip " + tripId + " has " + seatsFree + " free seats for " + delta
+                        + " admitted; cancelled bookings holding " + rolledBack);
+            } catch (RuntimeException e) {
+                System.err.println("Error cancelling excess bookings on trip " + tripId + ": " + e.getMessage());
+            }
+        }
+        // Whatever was not rolled back (bookings not committed yet) is sent again on the next flush
+        requeue(tripId, entry, delta - rolledBack);
+        resync(tripId, entry, seatsFree);
+    }
+
+    private void requeue(UUID tripId, Entry entry, int delta) {
+        ReentrantLock lock = stripe(tripId);
+        lock.lock();
+        try {
+            entry.unflushed += delta;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // seatsFree is what trips-service has after every flushed delta; unflushed ones still apply on top
+    private void resync(UUID tripId, Entry entry, int seatsFree) {
+        ReentrantLock lock = stripe(tripId);
+        lock.lock();
+        try {
+            entry.available = seatsFree - entry.unflushed;
+            entry.syncedNanos = System.nanoTime();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Entry entryFor(UUID tripId) throws BookingValidationException {
+        Entry entry = entries.get(tripId);
+        if (entry != null) return entry;
+
+        // Loaded outside the stripe lock so a slow trips-service call does not block other trips
+        TripDto trip;
+        try {
+            trip = tripsClient.getTripById(tripId.toString());
+        } catch (ServiceIntegrationException e) {
+            if (e.getStatusCode() == 404) {
+                throw new BookingValidationException("Trip not found or insufficient seats available");
+            }
+            throw new BookingValidationException("Error loading trip seats: " + e.getMessage());
+        }
+
+        return install(tripId, trip);
+    }
+
+    private Entry install(UUID tripId, TripDto trip) {
+        ReentrantLock lock = stripe(tripId);
+        lock.lock();
+        try {
+            Entry entry = entries.get(tripId);
+            if (entry == null) {
+                entry = newEntry(tripId, trip);
+                entries.put(tripId, entry);
+            }
+            return entry;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Debe llamarse con el lock de la franja adquirido
+    private Entry newEntry(UUID tripId, TripDto trip) {
+        Integer pending = rebuiltUnflushed.remove(tripId);
+        Entry entry = new Entry();
+        if (pending != null) {
+            // Reservations (positive) or cancellations (negative) admitted before a restart but never sent
+            entry.unflushed = pending;
+        }
+        entry.available = seatsFree(trip) - entry.unflushed;
+        entry.syncedNanos = System.nanoTime();
+        return entry;
+    }
+
+    private static int seatsFree(TripDto trip) {
+        return trip.seatsFree != null ? trip.seatsFree : 0;
+    }
+
+    private ReentrantLock stripe(UUID tripId) {
+        return stripes[(tripId.hashCode() & 0x7fffffff) % STRIPES];
+    }
+
+    // Estado de un trip; los campos se leen y escriben con el lock de su franja
+    private static final class Entry {
+        int available;
+        int unflushed;
+        long syncedNanos; // last load from, or flush to, trips-service
+        boolean evicted;
+    }
+}
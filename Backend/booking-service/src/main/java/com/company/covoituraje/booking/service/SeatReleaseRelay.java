@@ -0,0 +1,119 @@
+package com.company.covoituraje.booking.service;
+
+import com.company.covoituraje.booking.infrastructure.BookingRepository;
+
+/**
+ * Devuelve a trips-service las plazas de las reservas canceladas que todavía las retienen.
+ * Al cancelar, la reserva pasa a CANCELLED conservando seats_reserved en la misma transacción,
+ * y la petición intenta devolver las plazas enseguida; si esa llamada falla o el servicio cae
+ * antes de hacerla, este hilo la reintenta hasta que trips-service las acepta. La devolución
+ * es al menos una vez: seats_reserved solo se borra después de devolver las plazas.
+ */
+public class SeatReleaseRelay implements AutoCloseable {
+
+    static final int DEFAULT_BATCH_SIZE = 100;
+    static final long DEFAULT_POLL_INTERVAL_MS = 5_000;
+    static final long SHUTDOWN_TIMEOUT_MS = 10_000;
+
+    private static SeatReleaseRelay shared;
+
+    private final BookingRepository repository;
+    private final SeatReservations seatReservations;
+    private final int batchSize;
+    private final long pollIntervalMs;
+
+    private Thread worker;
+    private volatile boolean running;
+    private volatile boolean closed;
+
+    public SeatReleaseRelay(BookingRepository repository, SeatReservations seatReservations,
+                            int batchSize, long pollIntervalMs) {
+        this.repository = repository;
+        this.seatReservations = seatReservations;
+        this.batchSize = batchSize;
+        this.pollIntervalMs = pollIntervalMs;
+    }
+
+    /**
+     * Relay compartido del servicio, configurado con BOOKING_SEAT_RELEASE_POLL_MS. Arranca al
+     * primer uso con las SeatReservations del servicio (el libro de plazas o trips-service).
+     */
+    public static synchronized SeatReleaseRelay shared(SeatReservations seatReservations) {
+        if (shared == null) {
+            long pollMs = DEFAULT_POLL_INTERVAL_MS;
+            try {
+                pollMs = Long.parseLong(System.getenv().getOrDefault("BOOKING_SEAT_RELEASE_POLL_MS",
+                        String.valueOf(DEFAULT_POLL_INTERVAL_MS)));
+            } catch (NumberFormatException ignored) {}
+            SeatReleaseRelay relay = new SeatReleaseRelay(new BookingRepository(), seatReservations,
+                    DEFAULT_BATCH_SIZE, pollMs);
+            relay.start();
+            Runtime.getRuntime().addShutdownHook(new Thread(relay::close, "seat-release-shutdown"));
+            shared = relay;
+        }
+        return shared;
+    }
+
+    public synchronized void start() {
+        if (running || closed) return;
+        running = true;
+        worker = new Thread(this::runRelay, "seat-release-relay");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Devuelve lotes de plazas pendientes hasta que no quedan más o trips-service falla.
+     *
+     * @return reservas cuyas plazas se han devuelto
+     */
+    public int relay() {
+        int released = 0;
+        while (true) {
+            int[] taken = new int[1];
+            int batchReleased = repository.releasePendingSeats(batchSize, booking -> {
+                taken[0]++;
+                return seatReservations.release(booking.getTripId(), booking.getSeatsRequested());
+            });
+            released += batchReleased;
+            // A short batch means nothing else is pending; a failed release waits for the next poll
+            if (taken[0] < batchSize || batchReleased < taken[0]) {
+                return released;
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        Thread thread;
+        synchronized (this) {
+            if (closed) return;
+            closed = true;
+            running = false;
+            thread = worker;
+        }
+        if (thread != null) {
+            thread.interrupt();
+            try {
+                thread.join(SHUTDOWN_TIMEOUT_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void runRelay() {
+        while (running) {
+            try {
+                relay();
+            } catch (RuntimeException e) {
+                System.err.println("Error releasing seats of cancelled bookings: " + e.getMessage());
+            }
+            try {
+                Thread.sleep(pollIntervalMs);
+            } catch (InterruptedException e) {
+                break;
+            }
+        }
+    }
+}
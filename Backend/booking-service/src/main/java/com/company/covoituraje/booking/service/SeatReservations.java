@@ -0,0 +1,39 @@
+package com.company.covoituraje.booking.service;
+
+import java.util.UUID;
+
+/**
+ * Reserva y liberación de las plazas de un trip para las reservas de booking
+ */
+public interface SeatReservations {
+
+    /**
+     * Toma las plazas o lanza BookingValidationException si el trip no existe o no tiene suficientes
+     */
+    void reserve(UUID tripId, int seats) throws BookingValidationException;
+
+    /**
+     * Devuelve plazas tomadas con reserve. No lanza excepción: los fallos se registran.
+     *
+     * @return false si hay que reintentarlo; true también cuando ya no hay nada que devolver
+     *         (el trip no existe o ya tiene esas plazas libres)
+     */
+    boolean release(UUID tripId, int seats);
+
+    /**
+     * Reserva directa contra trips-service, una llamada HTTP por operación
+     */
+    static SeatReservations remote(BookingValidationService validationService) {
+        return new SeatReservations() {
+            @Override
+            public void reserve(UUID tripId, int seats) throws BookingValidationException {
+                validationService.reserveSeats(tripId.toString(), seats);
+            }
+
+            @Override
+            public boolean release(UUID tripId, int seats) {
+                return validationService.releaseSeats(tripId.toString(), seats);
+            }
+        };
+    }
+}
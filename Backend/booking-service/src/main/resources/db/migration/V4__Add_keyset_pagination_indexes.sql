@@ -0,0 +1,8 @@
+-- Set search path to bookings schema
+SET search_path TO bookings, public;
+
+-- Keyset pagination of GET /bookings walks a passenger's bookings by (created_at, id), newest first
+CREATE INDEX IF NOT EXISTS idx_bookings_passenger_created_at_id ON bookings(passenger_id, created_at DESC, id DESC);
+
+-- Covered by the composite index above
+DROP INDEX IF EXISTS idx_bookings_passenger_id;
@@ -0,0 +1,8 @@
+-- Set search path to bookings schema
+SET search_path TO bookings, public;
+
+-- Bookings created from now on take their seats from trips-service (POST /trips/{id}/reservations).
+-- Older bookings never did, so cancelling them must not give seats back.
+ALTER TABLE bookings ADD COLUMN IF NOT EXISTS seats_reserved BOOLEAN NOT NULL DEFAULT FALSE;
+
+COMMENT ON COLUMN bookings.seats_reserved IS 'Seats were reserved on the trip and are released when the booking is cancelled';
@@ -0,0 +1,19 @@
+-- Set search path to bookings schema
+SET search_path TO bookings, public;
+
+-- Responses of POST /bookings and PUT /bookings/{id}/confirm|cancel keyed by the client's
+-- Idempotency-Key, so a retried request replays the stored response instead of running again.
+-- Only used when BOOKING_IDEMPOTENCY_PERSIST=true; the in-memory store is always on.
+CREATE TABLE IF NOT EXISTS idempotency_keys (
+    scope_key VARCHAR(600) PRIMARY KEY,
+    fingerprint VARCHAR(512) NOT NULL,
+    response_body TEXT NOT NULL,
+    created_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    expires_at TIMESTAMP WITH TIME ZONE NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS idx_idempotency_keys_expires_at ON idempotency_keys(expires_at);
+
+COMMENT ON TABLE idempotency_keys IS 'Stored responses of idempotent booking requests';
+COMMENT ON COLUMN idempotency_keys.scope_key IS 'User, operation and Idempotency-Key header';
+COMMENT ON COLUMN idempotency_keys.fingerprint IS 'Request parameters the key was first used with';
@@ -0,0 +1,22 @@
+-- Set search path to bookings schema
+SET search_path TO bookings, public;
+
+-- Notifications written in the same transaction as the booking change and delivered to
+-- notification-service by a background relay. Rows are deleted once delivered.
+CREATE TABLE IF NOT EXISTS notification_outbox (
+    id UUID PRIMARY KEY,
+    event_type VARCHAR(50) NOT NULL,
+    recipient_id VARCHAR(255) NOT NULL,
+    title VARCHAR(255) NOT NULL,
+    body TEXT NOT NULL,
+    attempts INTEGER NOT NULL DEFAULT 0,
+    next_attempt_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    last_error TEXT,
+    created_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+-- The relay polls due events in order
+CREATE INDEX IF NOT EXISTS idx_notification_outbox_next_attempt ON notification_outbox(next_attempt_at, created_at);
+
+COMMENT ON TABLE notification_outbox IS 'Notifications pending delivery to notification-service';
+COMMENT ON COLUMN notification_outbox.next_attempt_at IS 'Earliest time of the next delivery attempt, pushed back after each failure';
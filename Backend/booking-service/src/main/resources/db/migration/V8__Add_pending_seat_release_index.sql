@@ -0,0 +1,9 @@
+-- Set search path to bookings schema
+SET search_path TO bookings, public;
+
+-- A cancelled booking keeps seats_reserved until its seats are given back to trips-service,
+-- so the release survives a failed call or a restart. The seat release relay polls these rows.
+CREATE INDEX IF NOT EXISTS idx_bookings_pending_seat_release ON bookings(updated_at)
+    WHERE status = 'CANCELLED' AND seats_reserved = TRUE;
+
+COMMENT ON COLUMN bookings.seats_reserved IS 'Seats are held on the trip: released when the booking is cancelled, cleared once trips-service has them back';
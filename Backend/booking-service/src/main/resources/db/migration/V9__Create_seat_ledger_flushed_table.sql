@@ -0,0 +1,19 @@
+-- Set search path to bookings schema
+SET search_path TO bookings, public;
+
+-- Seats the in-memory seat ledger has sent to trips-service, per trip. On restart the ledger
+-- sends the difference between the seats held by bookings (seats_reserved) and this count:
+-- reservations and cancellations it admitted but never flushed before going down.
+CREATE TABLE IF NOT EXISTS seat_ledger_flushed (
+    trip_id UUID PRIMARY KEY,
+    seats INTEGER NOT NULL,
+    updated_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+-- Until now every held seat was assumed to be in trips-service
+INSERT INTO seat_ledger_flushed (trip_id, seats)
+SELECT trip_id, SUM(seats_requested) FROM bookings WHERE seats_reserved = TRUE GROUP BY trip_id
+ON CONFLICT (trip_id) DO NOTHING;
+
+COMMENT ON TABLE seat_ledger_flushed IS 'Seats the booking seat ledger has taken in trips-service per trip';
+COMMENT ON COLUMN seat_ledger_flushed.seats IS 'Net of the reservations and releases trips-service accepted from the ledger';
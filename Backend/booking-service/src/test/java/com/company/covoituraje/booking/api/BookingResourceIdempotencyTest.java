@@ -0,0 +1,88 @@
+package com.company.covoituraje.booking.api;
+
+import com.company.covoituraje.booking.domain.Booking;
+import com.company.covoituraje.booking.infrastructure.BookingRepository;
+import com.company.covoituraje.booking.service.BookingValidationService;
+import com.company.covoituraje.shared.i18n.MessageService;
+import jakarta.ws.rs.ClientErrorException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class BookingResourceIdempotencyTest {
+
+    private final String tripId = UUID.randomUUID().toString();
+    private BookingRepository repository;
+    private BookingValidationService validationService;
+    private BookingResource resource;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(BookingRepository.class);
+        validationService = mock(BookingValidationService.class);
+        when(repository.save(any(Booking.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        resource = new BookingResource(repository, validationService, new MessageService());
+        BookingResource.AuthContext.setUserId("passenger-1");
+    }
+
+    @AfterEach
+    void tearDown() {
+        BookingResource.AuthContext.clear();
+    }
+
+    private BookingResource.BookingCreateDto request(int seats) {
+        BookingResource.BookingCreateDto request = new BookingResource.BookingCreateDto();
+        request.tripId = tripId;
+        request.seatsRequested = seats;
+        return request;
+    }
+
+    @Test
+    void create_retryWithSameKey_replaysFirstBooking() throws Exception {
+        BookingDto first = resource.create(request(1), "key-1", "en");
+        BookingDto retry = resource.create(request(1), "key-1", "en");
+
+        assertEquals(first.id, retry.id);
+        verify(validationService, times(1)).validateUserExists("passenger-1");
+        verify(validationService, times(1)).reserveSeats(tripId, 1);
+        verify(repository, times(1)).save(any(Booking.class));
+    }
+
+    @Test
+    void create_withoutKey_createsEveryTime() {
+        BookingDto first = resource.create(request(1), null, "en");
+        BookingDto second = resource.create(request(1), null, "en");
+
+        assertNotEquals(first.id, second.id);
+        verify(repository, times(2)).save(any(Booking.class));
+    }
+
+    @Test
+    void create_sameKeyOtherRequest_returns422() {
+        resource.create(request(1), "key-1", "en");
+
+        ClientErrorException e = assertThrows(ClientErrorException.class, () -> resource.create(request(2), "key-1", "en"));
+        assertEquals(422, e.getResponse().getStatus());
+    }
+
+    @Test
+    void confirm_retryWithSameKey_doesNotFailOnAlreadyConfirmed() {
+        Booking booking = new Booking(UUID.fromString(tripId), "passenger-1", 1, "PENDING");
+        when(repository.findById(booking.getId())).thenReturn(Optional.of(booking));
+        when(repository.saveWithNotifications(any(Booking.class), any())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        BookingDto first = resource.confirm(booking.getId().toString(), "key-2", "en");
+        BookingDto retry = resource.confirm(booking.getId().toString(), "key-2", "en");
+
+        assertEquals("CONFIRMED", first.status);
+        assertEquals("CONFIRMED", retry.status);
+        verify(repository, times(1)).saveWithNotifications(any(Booking.class), any());
+    }
+}
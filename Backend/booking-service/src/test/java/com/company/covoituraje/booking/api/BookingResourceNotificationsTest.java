@@ -1,34 +1,36 @@
 package com.company.covoituraje.booking.api;
 
 import com.company.covoituraje.booking.domain.Booking;
+import com.company.covoituraje.booking.domain.OutboxEvent;
 import com.company.covoituraje.booking.infrastructure.BookingRepository;
-import com.company.covoituraje.booking.integration.NotificationServiceClient;
 import com.company.covoituraje.booking.service.BookingValidationService;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 
 import java.util.Optional;
 import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 class BookingResourceNotificationsTest {
 
     private BookingRepository repository;
     private BookingValidationService validationService;
-    private NotificationServiceClient notifications;
     private BookingResource resource;
 
     @BeforeEach
     void setUp() {
         repository = mock(BookingRepository.class);
         validationService = mock(BookingValidationService.class);
-        notifications = mock(NotificationServiceClient.class);
-        resource = new BookingResource(repository, validationService, notifications);
+        resource = new BookingResource(repository, validationService);
         BookingResource.AuthContext.setUserId("user-001");
+        when(repository.saveWithNotifications(any(Booking.class), any())).thenAnswer(inv -> inv.getArgument(0));
     }
 
     @AfterEach
@@ -37,30 +39,45 @@ class BookingResourceNotificationsTest {
     }
 
     @Test
-    void confirm_should_send_notification() throws Exception {
-        UUID bookingId = UUID.randomUUID();
+    void confirm_should_queue_notification_with_the_booking() throws Exception {
         Booking booking = new Booking(UUID.randomUUID(), "user-001", 2, "PENDING");
-        when(repository.findById(bookingId)).thenReturn(Optional.of(booking));
-        when(repository.save(any())).thenAnswer(inv -> inv.getArgument(0));
+        when(repository.findById(booking.getId())).thenReturn(Optional.of(booking));
 
-        BookingDto dto = resource.confirm(bookingId.toString());
+        BookingDto dto = resource.confirm(booking.getId().toString(), "es");
 
         assertEquals("CONFIRMED", dto.status);
-        verify(notifications).sendBookingConfirmed("user-001", booking.getTripId().toString(), 2);
+        ArgumentCaptor<OutboxEvent> event = ArgumentCaptor.forClass(OutboxEvent.class);
+        verify(repository).saveWithNotifications(any(Booking.class), event.capture());
+        assertEquals(OutboxEvent.BOOKING_CONFIRMED, event.getValue().getEventType());
+        assertEquals("user-001", event.getValue().getRecipientId());
+        verify(repository, never()).save(any());
     }
 
     @Test
-    void cancel_should_send_notification() throws Exception {
-        UUID bookingId = UUID.randomUUID();
+    void cancel_should_queue_notification_with_the_booking() throws Exception {
         Booking booking = new Booking(UUID.randomUUID(), "user-001", 1, "CONFIRMED");
-        when(repository.findById(bookingId)).thenReturn(Optional.of(booking));
-        when(repository.save(any())).thenAnswer(inv -> inv.getArgument(0));
+        when(repository.findById(booking.getId())).thenReturn(Optional.of(booking));
 
-        BookingDto dto = resource.cancel(bookingId.toString());
+        BookingDto dto = resource.cancel(booking.getId().toString(), "es");
 
         assertEquals("CANCELLED", dto.status);
-        verify(notifications).sendBookingCancelled("user-001", booking.getTripId().toString());
+        ArgumentCaptor<OutboxEvent> event = ArgumentCaptor.forClass(OutboxEvent.class);
+        verify(repository).saveWithNotifications(any(Booking.class), event.capture());
+        assertEquals(OutboxEvent.BOOKING_CANCELLED, event.getValue().getEventType());
+        assertEquals("user-001", event.getValue().getRecipientId());
     }
-}
 
+    @Test
+    void cancel_should_leave_the_seat_release_pending_until_trips_service_takes_the_seats() throws Exception {
+        Booking booking = new Booking(UUID.randomUUID(), "user-001", 2, "CONFIRMED");
+        booking.setSeatsReserved(true);
+        when(repository.findById(booking.getId())).thenReturn(Optional.of(booking));
+
+        resource.cancel(booking.getId().toString(), "es");
 
+        ArgumentCaptor<Booking> saved = ArgumentCaptor.forClass(Booking.class);
+        verify(repository).saveWithNotifications(saved.capture(), any());
+        assertTrue(saved.getValue().isSeatsReserved());
+        verify(repository).releasePendingSeats(eq(booking.getId()), any());
+    }
+}
@@ -57,6 +57,10 @@ class BookingRepositoryIntegrationTest {
         try (var connection = postgres.createConnection("")) {
             try (var statement = connection.createStatement()) {
                 statement.execute("CREATE SCHEMA IF NOT EXISTS bookings;");
+                // Not an entity, so hbm2ddl does not create it (see V9__Create_seat_ledger_flushed_table.sql)
+                statement.execute("CREATE TABLE IF NOT EXISTS bookings.seat_ledger_flushed (" +
+                        "trip_id UUID PRIMARY KEY, seats INTEGER NOT NULL, " +
+                        "updated_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT CURRENT_TIMESTAMP);");
             }
         } catch (Exception e) {
             throw new RuntimeException("Failed to create schema", e);
@@ -169,4 +173,87 @@ class BookingRepositoryIntegrationTest {
         assertEquals(booking.getId(), foundBooking.get().getId());
         assertEquals("passenger-123", foundBooking.get().getPassengerId());
     }
+
+    @Test
+    void shouldSumReservedSeatsByTrip() {
+        // Given
+        UUID trip1 = UUID.randomUUID();
+        UUID trip2 = UUID.randomUUID();
+        Booking held1 = new Booking(trip1, "passenger-1", 2, "PENDING");
+        held1.setSeatsReserved(true);
+        Booking held2 = new Booking(trip1, "passenger-2", 1, "CONFIRMED");
+        held2.setSeatsReserved(true);
+        Booking cancelled = new Booking(trip1, "passenger-3", 3, "CANCELLED");
+        cancelled.setSeatsReserved(true);
+        Booking legacy = new Booking(trip2, "passenger-4", 2, "PENDING");
+        repository.save(held1);
+        repository.save(held2);
+        repository.save(cancelled);
+        repository.save(legacy);
+
+        // When
+        var held = repository.sumReservedSeatsByTrip();
+
+        // Then: the cancelled booking has not given its seats back yet
+        assertEquals(java.util.Map.of(trip1, 6), held);
+    }
+
+    @Test
+    void shouldClearPendingSeatReleasesOnlyOnceReleased() {
+        // Given
+        UUID tripId = UUID.randomUUID();
+        Booking released = new Booking(tripId, "passenger-1", 2, "CANCELLED");
+        released.setSeatsReserved(true);
+        Booking failing = new Booking(tripId, "passenger-2", 1, "CANCELLED");
+        failing.setSeatsReserved(true);
+        Booking active = new Booking(tripId, "passenger-3", 3, "PENDING");
+        active.setSeatsReserved(true);
+        repository.save(released);
+        repository.save(failing);
+        repository.save(active);
+
+        // When: trips-service only accepts the first release
+        int count = repository.releasePendingSeats(10, booking -> booking.getId().equals(released.getId()));
+
+        // Then
+        assertEquals(1, count);
+        assertEquals(java.util.Map.of(tripId, 4), repository.sumReservedSeatsByTrip());
+        assertFalse(repository.releasePendingSeats(released.getId(), booking -> true));
+        assertTrue(repository.releasePendingSeats(failing.getId(), booking -> true));
+    }
+
+    @Test
+    void shouldAccumulateFlushedSeatsPerTrip() {
+        // Given
+        UUID reserved = UUID.randomUUID();
+        UUID released = UUID.randomUUID();
+        repository.addFlushedSeats(java.util.Map.of(reserved, 3, released, 2));
+
+        // When
+        repository.addFlushedSeats(java.util.Map.of(reserved, 1, released, -2));
+        var flushed = repository.sumFlushedSeatsByTrip();
+
+        // Then: trips back at zero are left out
+        assertEquals(4, flushed.get(reserved));
+        assertFalse(flushed.containsKey(released));
+    }
+
+    @Test
+    void shouldFilterPagesByStatusBeforeTheLimit() {
+        // Given: the cancelled booking is the oldest, behind two newer active ones
+        String passengerId = "passenger-" + UUID.randomUUID();
+        repository.save(new Booking(UUID.randomUUID(), passengerId, 1, "CANCELLED"));
+        repository.save(new Booking(UUID.randomUUID(), passengerId, 1, "PENDING"));
+        repository.save(new Booking(UUID.randomUUID(), passengerId, 1, "CONFIRMED"));
+
+        // When
+        java.util.List<Booking> page;
+        try (var rows = repository.streamPageByPassengerId(passengerId, null, null, "CANCELLED", null, null, 2)) {
+            page = rows.toList();
+        }
+
+        // Then
+        assertEquals(1, page.size());
+        assertEquals("CANCELLED", page.get(0).getStatus());
+    }
 }
@@ -0,0 +1,115 @@
+package com.company.covoituraje.booking.service;
+
+import com.company.covoituraje.booking.domain.Booking;
+import com.company.covoituraje.booking.infrastructure.BookingRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * Test de la creación de reservas: validación y reserva de plazas en paralelo, y compensación
+ */
+class BookingCreationServiceTest {
+
+    private final UUID tripId = UUID.randomUUID();
+    private BookingRepository repository;
+    private BookingValidationService validationService;
+    private ExecutorService executor;
+    private BookingCreationService service;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(BookingRepository.class);
+        validationService = mock(BookingValidationService.class);
+        executor = Executors.newSingleThreadExecutor();
+        service = new BookingCreationService(repository, validationService, executor);
+        when(repository.save(any(Booking.class))).thenAnswer(invocation -> invocation.getArgument(0));
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void create_ShouldReserveSeatsAndSavePendingBooking() throws Exception {
+        // Act
+        Booking booking = service.create("passenger-1", tripId, 2);
+
+        // Assert
+        assertEquals("PENDING", booking.getStatus());
+        assertTrue(booking.isSeatsReserved());
+        verify(validationService).validateUserExists("passenger-1");
+        verify(validationService).reserveSeats(tripId.toString(), 2);
+        verify(validationService, never()).releaseSeats(anyString(), anyInt());
+    }
+
+    @Test
+    @Timeout(5)
+    void create_ShouldRunUserCheckAndReservationConcurrently() throws Exception {
+        // Arrange: each call only returns once the other one has started
+        CountDownLatch userCheckStarted = new CountDownLatch(1);
+        CountDownLatch reservationStarted = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            userCheckStarted.countDown();
+            assertTrue(reservationStarted.await(2, TimeUnit.SECONDS));
+            return null;
+        }).when(validationService).validateUserExists("passenger-1");
+        doAnswer(invocation -> {
+            reservationStarted.countDown();
+            assertTrue(userCheckStarted.await(2, TimeUnit.SECONDS));
+            return null;
+        }).when(validationService).reserveSeats(tripId.toString(), 1);
+
+        // Act & Assert
+        assertNotNull(service.create("passenger-1", tripId, 1));
+    }
+
+    @Test
+    void create_ShouldReleaseSeatsWhenUserDoesNotExist() throws Exception {
+        // Arrange
+        doThrow(new BookingValidationException("User not found")).when(validationService).validateUserExists("ghost");
+
+        // Act & Assert
+        BookingValidationException exception = assertThrows(BookingValidationException.class,
+                () -> service.create("ghost", tripId, 2));
+        assertEquals("User not found", exception.getMessage());
+        verify(validationService).releaseSeats(tripId.toString(), 2);
+        verify(repository, never()).save(any());
+    }
+
+    @Test
+    void create_ShouldNotSaveOrReleaseWhenSeatsAreNotAvailable() throws Exception {
+        // Arrange
+        doThrow(new BookingValidationException("Trip not found or insufficient seats available"))
+                .when(validationService).reserveSeats(tripId.toString(), 3);
+
+        // Act & Assert
+        assertThrows(BookingValidationException.class, () -> service.create("passenger-1", tripId, 3));
+        verify(validationService, never()).releaseSeats(anyString(), anyInt());
+        verify(repository, never()).save(any());
+    }
+
+    @Test
+    void create_ShouldReleaseSeatsWhenSaveFails() throws Exception {
+        // Arrange
+        when(repository.save(any(Booking.class))).thenThrow(new IllegalStateException("database down"));
+
+        // Act & Assert
+        assertThrows(IllegalStateException.class, () -> service.create("passenger-1", tripId, 1));
+        verify(validationService).releaseSeats(tripId.toString(), 1);
+    }
+}
@@ -161,4 +161,51 @@ class BookingValidationServiceTest {
         verify(tripsServiceClient).isServiceAvailable();
         verify(usersServiceClient).isServiceAvailable();
     }
+    
+    @Test
+    void reserveSeats_ShouldFailWithSeatsMessageOnConflict() throws Exception {
+        // Arrange
+        BookingValidationService service = new BookingValidationService(tripsServiceClient, usersServiceClient);
+        String tripId = "550e8400-e29b-41d4-a716-446655440001";
+        
+        when(tripsServiceClient.reserveSeats(tripId, 2))
+            .thenThrow(new ServiceIntegrationException("wrapped", new ServiceIntegrationException("HTTP 409", 409)));
+        
+        // Act & Assert
+        BookingValidationException exception = assertThrows(
+            BookingValidationException.class,
+            () -> service.reserveSeats(tripId, 2)
+        );
+        
+        assertEquals("Trip not found or insufficient seats available", exception.getMessage());
+    }
+    
+    @Test
+    void reserveSeats_ShouldFailWithErrorMessageWhenTripsServiceFails() throws Exception {
+        // Arrange
+        BookingValidationService service = new BookingValidationService(tripsServiceClient, usersServiceClient);
+        String tripId = "550e8400-e29b-41d4-a716-446655440001";
+        
+        when(tripsServiceClient.reserveSeats(tripId, 1)).thenThrow(new ServiceIntegrationException("timeout"));
+        
+        // Act & Assert
+        BookingValidationException exception = assertThrows(
+            BookingValidationException.class,
+            () -> service.reserveSeats(tripId, 1)
+        );
+        
+        assertTrue(exception.getMessage().startsWith("Error reserving seats"));
+    }
+    
+    @Test
+    void releaseSeats_ShouldReturnFalseInsteadOfThrowing() throws Exception {
+        // Arrange
+        BookingValidationService service = new BookingValidationService(tripsServiceClient, usersServiceClient);
+        String tripId = "550e8400-e29b-41d4-a716-446655440001";
+        
+        when(tripsServiceClient.releaseSeats(tripId, 1)).thenThrow(new ServiceIntegrationException("HTTP 500", 500));
+        
+        // Act & Assert
+        assertFalse(service.releaseSeats(tripId, 1));
+    }
 }
@@ -0,0 +1,156 @@
+package com.company.covoituraje.booking.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test del almacén de Idempotency-Key en memoria
+ */
+class IdempotencyStoreTest {
+
+    private final IdempotencyStore store = new IdempotencyStore();
+
+    @Test
+    void execute_ShouldRunOnceAndReplayTheStoredResult() {
+        AtomicInteger runs = new AtomicInteger();
+
+        String first = store.execute("user-1", "create", "key-1", "trip:1", String.class, () -> "booking-" + runs.incrementAndGet());
+        String retry = store.execute("user-1", "create", "key-1", "trip:1", String.class, () -> "booking-" + runs.incrementAndGet());
+
+        assertEquals("booking-1", first);
+        assertEquals("booking-1", retry);
+        assertEquals(1, runs.get());
+    }
+
+    @Test
+    void execute_ShouldScopeKeysByUserAndOperation() {
+        AtomicInteger runs = new AtomicInteger();
+
+        store.execute("user-1", "create", "key-1", "x", String.class, () -> "r" + runs.incrementAndGet());
+        store.execute("user-2", "create", "key-1", "x", String.class, () -> "r" + runs.incrementAndGet());
+        store.execute("user-1", "confirm", "key-1", "x", String.class, () -> "r" + runs.incrementAndGet());
+
+        assertEquals(3, runs.get());
+    }
+
+    @Test
+    void execute_ShouldRejectKeyReusedWithOtherParameters() {
+        store.execute("user-1", "create", "key-1", "trip:1", String.class, () -> "booking");
+
+        IdempotencyException exception = assertThrows(IdempotencyException.class,
+                () -> store.execute("user-1", "create", "key-1", "trip:2", String.class, () -> "other"));
+        assertEquals(IdempotencyException.Reason.KEY_REUSED, exception.getReason());
+    }
+
+    @Test
+    void execute_ShouldRunAgainAfterAFailure() {
+        assertThrows(IllegalStateException.class, () -> store.execute("user-1", "create", "key-1", "x", String.class,
+                () -> { throw new IllegalStateException("trips-service down"); }));
+
+        assertEquals("ok", store.execute("user-1", "create", "key-1", "x", String.class, () -> "ok"));
+    }
+
+    @Test
+    void execute_ShouldLetConcurrentRetriesWaitForTheFirstRequest() throws Exception {
+        AtomicInteger runs = new AtomicInteger();
+        CountDownLatch inside = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            Future<String> first = pool.submit(() -> store.execute("user-1", "create", "key-1", "x", String.class, () -> {
+                runs.incrementAndGet();
+                inside.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return "booking";
+            }));
+            assertTrue(inside.await(5, TimeUnit.SECONDS));
+            Future<String> retry1 = pool.submit(() -> store.execute("user-1", "create", "key-1", "x", String.class, () -> "dup" + runs.incrementAndGet()));
+            Future<String> retry2 = pool.submit(() -> store.execute("user-1", "create", "key-1", "x", String.class, () -> "dup" + runs.incrementAndGet()));
+            release.countDown();
+
+            assertEquals("booking", first.get(5, TimeUnit.SECONDS));
+            assertEquals("booking", retry1.get(5, TimeUnit.SECONDS));
+            assertEquals("booking", retry2.get(5, TimeUnit.SECONDS));
+            assertEquals(1, runs.get());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void execute_ShouldRunAgainOnceTheKeyExpires() {
+        IdempotencyStore shortLived = new IdempotencyStore(Duration.ZERO, 100, null);
+        AtomicInteger runs = new AtomicInteger();
+
+        shortLived.execute("user-1", "create", "key-1", "x", String.class, () -> "r" + runs.incrementAndGet());
+        shortLived.execute("user-1", "create", "key-1", "x", String.class, () -> "r" + runs.incrementAndGet());
+
+        assertEquals(2, runs.get());
+    }
+
+    @Test
+    void execute_ShouldStayWithinMaxEntries() {
+        IdempotencyStore bounded = new IdempotencyStore(Duration.ofHours(1), 10, null);
+
+        for (int i = 0; i < 100; i++) {
+            bounded.execute("user-1", "create", "key-" + i, "x", String.class, () -> "r");
+        }
+
+        assertTrue(bounded.size() <= 11, "size " + bounded.size());
+    }
+
+    @Test
+    void execute_ShouldTrackAKeyReusedAfterExpiryOnce() {
+        IdempotencyStore shortLived = new IdempotencyStore(Duration.ZERO, 100, null);
+
+        for (int i = 0; i < 5; i++) {
+            shortLived.execute("user-1", "create", "key-1", "x", String.class, () -> "r");
+        }
+
+        assertEquals(1, shortLived.size());
+        assertEquals(1, shortLived.trackedSize());
+    }
+
+    @Test
+    void execute_ShouldKeepEvictingPastARequestStillInFlight() throws Exception {
+        IdempotencyStore bounded = new IdempotencyStore(Duration.ofHours(1), 10, null);
+        CountDownLatch inside = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        try {
+            Future<String> slow = pool.submit(() -> bounded.execute("user-1", "create", "slow", "x", String.class, () -> {
+                inside.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return "booking";
+            }));
+            assertTrue(inside.await(5, TimeUnit.SECONDS));
+
+            for (int i = 0; i < 100; i++) {
+                bounded.execute("user-1", "create", "key-" + i, "x", String.class, () -> "r");
+            }
+
+            assertTrue(bounded.size() <= 11, "size " + bounded.size());
+            release.countDown();
+            assertEquals("booking", slow.get(5, TimeUnit.SECONDS));
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
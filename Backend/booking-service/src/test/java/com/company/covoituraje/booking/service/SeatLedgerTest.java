@@ -0,0 +1,298 @@
+package com.company.covoituraje.booking.service;
+
+import com.company.covoituraje.booking.infrastructure.BookingRepository;
+import com.company.covoituraje.booking.integration.TripsServiceClient;
+import com.company.covoituraje.http.ServiceIntegrationException;
+import com.company.covoituraje.shared.dto.TripDto;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * Test del libro de plazas en memoria: admisión inmediata, volcado neto y reconstrucción
+ */
+class SeatLedgerTest {
+
+    private final UUID tripId = UUID.randomUUID();
+    private TripsServiceClient tripsClient;
+    private SeatLedger ledger;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        tripsClient = mock(TripsServiceClient.class);
+        when(tripsClient.getTripById(tripId.toString())).thenReturn(trip(4, 4));
+        ledger = new SeatLedger(tripsClient, 60_000, 60_000);
+    }
+
+    private static TripDto trip(int seatsTotal, int seatsFree) {
+        TripDto trip = new TripDto();
+        trip.seatsTotal = seatsTotal;
+        trip.seatsFree = seatsFree;
+        return trip;
+    }
+
+    @Test
+    void reserve_ShouldAdmitUntilFullWithoutCallingTripsPerBooking() throws Exception {
+        // Act
+        ledger.reserve(tripId, 2);
+        ledger.reserve(tripId, 2);
+
+        // Assert
+        assertThrows(BookingValidationException.class, () -> ledger.reserve(tripId, 1));
+        assertEquals(0, ledger.available(tripId));
+        verify(tripsClient, times(1)).getTripById(tripId.toString());
+        verify(tripsClient, never()).reserveSeats(anyString(), anyInt());
+    }
+
+    @Test
+    void reserve_ShouldRejectUnknownTrip() throws Exception {
+        // Arrange
+        UUID unknown = UUID.randomUUID();
+        when(tripsClient.getTripById(unknown.toString())).thenThrow(new ServiceIntegrationException("HTTP 404", 404));
+
+        // Act & Assert
+        BookingValidationException exception = assertThrows(BookingValidationException.class,
+                () -> ledger.reserve(unknown, 1));
+        assertEquals("Trip not found or insufficient seats available", exception.getMessage());
+    }
+
+    @Test
+    void reserve_ShouldNeverOversellUnderConcurrentRequests() throws Exception {
+        // Arrange
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Boolean>> results = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            results.add(pool.submit(() -> {
+                start.await();
+                try {
+                    ledger.reserve(tripId, 1);
+                    return true;
+                } catch (BookingValidationException e) {
+                    return false;
+                }
+            }));
+        }
+
+        // Act
+        start.countDown();
+        int granted = 0;
+        for (Future<Boolean> result : results) {
+            if (result.get()) granted++;
+        }
+        pool.shutdown();
+
+        // Assert
+        assertEquals(4, granted);
+        assertEquals(0, ledger.available(tripId));
+    }
+
+    @Test
+    void flush_ShouldSendNetDeltaOncePerTrip() throws Exception {
+        // Arrange
+        ledger.reserve(tripId, 1);
+        ledger.reserve(tripId, 2);
+        ledger.release(tripId, 1);
+
+        // Act
+        ledger.flush();
+        ledger.flush();
+
+        // Assert
+        verify(tripsClient, times(1)).reserveSeats(tripId.toString(), 2);
+        verify(tripsClient, never()).releaseSeats(anyString(), anyInt());
+    }
+
+    @Test
+    void flush_ShouldSendNetReleases() throws Exception {
+        // Arrange
+        when(tripsClient.getTripById(tripId.toString())).thenReturn(trip(4, 1));
+        when(tripsClient.releaseSeats(tripId.toString(), 2)).thenReturn(3);
+
+        // Act
+        ledger.release(tripId, 2);
+        ledger.flush();
+
+        // Assert
+        verify(tripsClient).releaseSeats(tripId.toString(), 2);
+        assertEquals(3, ledger.available(tripId));
+    }
+
+    @Test
+    void flush_ShouldRetryAfterTripsServiceFailure() throws Exception {
+        // Arrange
+        when(tripsClient.reserveSeats(tripId.toString(), 1))
+                .thenThrow(new ServiceIntegrationException("timeout"))
+                .thenReturn(3);
+        ledger.reserve(tripId, 1);
+
+        // Act
+        ledger.flush();
+        ledger.flush();
+
+        // Assert
+        verify(tripsClient, times(2)).reserveSeats(tripId.toString(), 1);
+    }
+
+    @Test
+    void flush_ShouldStopAdmittingWhenTripsServiceHasFewerSeats() throws Exception {
+        // Arrange: the driver cut the trip to 1 free seat after it was loaded
+        ledger.reserve(tripId, 2);
+        when(tripsClient.reserveSeats(tripId.toString(), 2)).thenThrow(new ServiceIntegrationException("HTTP 409", 409));
+        when(tripsClient.getTripById(tripId.toString())).thenReturn(trip(1, 1));
+
+        // Act
+        ledger.flush();
+
+        // Assert
+        assertEquals(-1, ledger.available(tripId));
+        assertThrows(BookingValidationException.class, () -> ledger.reserve(tripId, 1));
+    }
+
+    @Test
+    void rebuild_ShouldResendSeatsHeldByBookingsButNeverFlushed() throws Exception {
+        // Arrange: bookings hold 3 seats, the ledger only flushed 1 before the restart
+        when(tripsClient.getTripById(tripId.toString())).thenReturn(trip(4, 3));
+        ledger.rebuild(Map.of(tripId, 3), Map.of(tripId, 1));
+
+        // Act
+        ledger.reserve(tripId, 1);
+        ledger.flush();
+
+        // Assert
+        assertEquals(0, ledger.available(tripId));
+        verify(tripsClient).reserveSeats(tripId.toString(), 3);
+    }
+
+    @Test
+    void flush_ShouldCancelTheNewestBookingsWhenTripsServiceHasFewerSeats() throws Exception {
+        // Arrange: the driver cut the trip to 1 free seat after 3 were admitted here
+        BookingRepository bookings = mock(BookingRepository.class);
+        SeatLedger withBookings = new SeatLedger(tripsClient, bookings, 60_000, 60_000);
+        withBookings.reserve(tripId, 3);
+        when(tripsClient.reserveSeats(tripId.toString(), 3)).thenThrow(new ServiceIntegrationException("HTTP 409", 409));
+        when(tripsClient.getTripById(tripId.toString())).thenReturn(trip(1, 1));
+        when(bookings.cancelNewestHoldingSeats(tripId, 2)).thenReturn(2);
+        when(tripsClient.reserveSeats(tripId.toString(), 1)).thenReturn(0);
+
+        // Act
+        withBookings.flush();
+        withBookings.flush();
+
+        // Assert
+        verify(bookings).cancelNewestHoldingSeats(tripId, 2);
+        verify(tripsClient).reserveSeats(tripId.toString(), 1);
+        assertEquals(0, withBookings.available(tripId));
+    }
+
+    @Test
+    void flush_ShouldTakeSeatsTotalChangesFromTheTripsResponse() throws Exception {
+        // Arrange: the driver lowered seatsTotal from 4 to 2 while the trip kept receiving bookings
+        when(tripsClient.reserveSeats(tripId.toString(), 1)).thenReturn(1);
+        ledger.reserve(tripId, 1);
+
+        // Act
+        ledger.flush();
+
+        // Assert
+        assertEquals(1, ledger.available(tripId));
+    }
+
+    @Test
+    void rebuild_ShouldReleaseFlushedSeatsNoLongerHeldByBookings() throws Exception {
+        // Arrange: the ledger flushed 3 seats, bookings only hold 1 (two cancellations never sent)
+        when(tripsClient.getTripById(tripId.toString())).thenReturn(trip(4, 1));
+        when(tripsClient.releaseSeats(tripId.toString(), 2)).thenReturn(3);
+        ledger.rebuild(Map.of(tripId, 1), Map.of(tripId, 3));
+
+        // Act
+        ledger.reserve(tripId, 3);
+        ledger.flush();
+
+        // Assert
+        verify(tripsClient).reserveSeats(tripId.toString(), 1);
+        verify(tripsClient, never()).releaseSeats(anyString(), anyInt());
+    }
+
+    @Test
+    void flush_ShouldEvictIdleTripsSoTheyAreReloaded() throws Exception {
+        // Arrange
+        SeatLedger evicting = new SeatLedger(tripsClient, 60_000, 0);
+        evicting.reserve(tripId, 1);
+        evicting.flush();
+
+        // Act
+        evicting.flush();
+
+        // Assert
+        assertEquals(-1, evicting.available(tripId));
+        evicting.reserve(tripId, 1);
+        verify(tripsClient, times(2)).getTripById(tripId.toString());
+    }
+
+    @Test
+    void rebuild_ShouldReleaseFlushedSeatsOfTripsWithoutBookingsEvenIfUnused() throws Exception {
+        // Arrange: the only booking was cancelled and released here, the release never flushed
+        when(tripsClient.getTripById(tripId.toString())).thenReturn(trip(4, 3));
+        when(tripsClient.releaseSeats(tripId.toString(), 1)).thenReturn(4);
+        ledger.rebuild(Map.of(), Map.of(tripId, 1));
+
+        // Act: nobody books on the trip again
+        ledger.flush();
+
+        // Assert
+        verify(tripsClient).releaseSeats(tripId.toString(), 1);
+        assertEquals(4, ledger.available(tripId));
+    }
+
+    @Test
+    void rebuild_ShouldLeaveSeatsTakenOutsideTheLedgerAlone() throws Exception {
+        // Arrange: 2 seats, one taken by a legacy booking without seats_reserved, one flushed by the ledger
+        when(tripsClient.getTripById(tripId.toString())).thenReturn(trip(2, 0));
+        ledger.rebuild(Map.of(tripId, 1), Map.of(tripId, 1));
+
+        // Act
+        ledger.flush();
+
+        // Assert
+        verify(tripsClient, never()).releaseSeats(anyString(), anyInt());
+        verify(tripsClient, never()).reserveSeats(anyString(), anyInt());
+        assertThrows(BookingValidationException.class, () -> ledger.reserve(tripId, 1));
+    }
+
+    @Test
+    void flush_ShouldRecordAcceptedDeltasAndRetryFailedWrites() throws Exception {
+        // Arrange
+        BookingRepository bookings = mock(BookingRepository.class);
+        SeatLedger recording = new SeatLedger(tripsClient, bookings, 60_000, 60_000);
+        when(tripsClient.reserveSeats(tripId.toString(), 2)).thenReturn(2);
+        when(tripsClient.releaseSeats(tripId.toString(), 1)).thenReturn(3);
+        List<Map<UUID, Integer>> recorded = new ArrayList<>();
+        doThrow(new RuntimeException("database down"))
+                .doAnswer(invocation -> recorded.add(Map.copyOf(invocation.getArgument(0))))
+                .when(bookings).addFlushedSeats(any());
+        recording.reserve(tripId, 2);
+        recording.flush();
+
+        // Act
+        recording.release(tripId, 1);
+        recording.flush();
+
+        // Assert: the failed +2 goes out with the next -1
+        assertEquals(List.of(Map.of(tripId, 1)), recorded);
+    }
+}
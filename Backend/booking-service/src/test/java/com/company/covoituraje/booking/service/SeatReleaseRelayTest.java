@@ -0,0 +1,81 @@
+package com.company.covoituraje.booking.service;
+
+import com.company.covoituraje.booking.domain.Booking;
+import com.company.covoituraje.booking.infrastructure.BookingRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Test del relay que reintenta la devolución de plazas de las reservas canceladas
+ */
+class SeatReleaseRelayTest {
+
+    private BookingRepository repository;
+    private SeatReservations seatReservations;
+    private SeatReleaseRelay relay;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(BookingRepository.class);
+        seatReservations = mock(SeatReservations.class);
+        relay = new SeatReleaseRelay(repository, seatReservations, 2, 60_000);
+    }
+
+    @SafeVarargs
+    private void pendingBatches(List<Booking>... batches) {
+        var stub = when(repository.releasePendingSeats(eq(2), any()));
+        for (List<Booking> batch : batches) {
+            stub = stub.thenAnswer(invocation -> {
+                Predicate<Booking> release = invocation.getArgument(1);
+                return (int) batch.stream().filter(release).count();
+            });
+        }
+        stub.thenReturn(0);
+    }
+
+    private static Booking cancelled(UUID tripId, int seats) {
+        Booking booking = new Booking(tripId, "passenger-1", seats, "CANCELLED");
+        booking.setSeatsReserved(true);
+        return booking;
+    }
+
+    @Test
+    void relay_ShouldReleaseEveryPendingBatch() {
+        // Arrange
+        UUID tripId = UUID.randomUUID();
+        when(seatReservations.release(eq(tripId), anyInt())).thenReturn(true);
+        pendingBatches(List.of(cancelled(tripId, 1), cancelled(tripId, 2)), List.of(cancelled(tripId, 3)));
+
+        // Act
+        int released = relay.relay();
+
+        // Assert
+        assertEquals(3, released);
+        verify(seatReservations).release(tripId, 1);
+        verify(seatReservations).release(tripId, 2);
+        verify(seatReservations).release(tripId, 3);
+    }
+
+    @Test
+    void relay_ShouldStopWhenTripsServiceFails() {
+        // Arrange
+        UUID tripId = UUID.randomUUID();
+        when(seatReservations.release(eq(tripId), anyInt())).thenReturn(false);
+        pendingBatches(List.of(cancelled(tripId, 1), cancelled(tripId, 2)), List.of(cancelled(tripId, 3)));
+
+        // Act
+        int released = relay.relay();
+
+        // Assert: left for the next poll
+        assertEquals(0, released);
+        verify(repository, times(1)).releasePendingSeats(eq(2), any());
+    }
+}
@@ -9,6 +9,9 @@ import jakarta.ws.rs.ext.Provider;
 import com.company.covoituraje.auth.JwtValidator;
 import com.company.covoituraje.auth.JwtValidationException;
 import com.company.covoituraje.auth.AuthUtils;
+import com.company.covoituraje.auth.ServiceAuth;
+import java.util.ArrayList;
+import java.util.List;
 
 @Provider
 @Priority(Priorities.AUTHENTICATION)
@@ -16,6 +19,7 @@ public class AuthFilter implements ContainerRequestFilter {
     private final JwtValidator jwtValidator;
     private final boolean requireEmployeeRole;
     private final boolean authDisabled;
+    private final String serviceToken;
 
     public AuthFilter() {
         String issuer = System.getenv("OIDC_ISSUER_URI");
@@ -24,18 +28,22 @@ public class AuthFilter implements ContainerRequestFilter {
         String require = System.getenv("REQUIRE_ROLE_EMPLOYEE");
         this.requireEmployeeRole = "true".equalsIgnoreCase(require);
         this.authDisabled = "true".equalsIgnoreCase(System.getenv("AUTH_DISABLED"));
+        this.serviceToken = ServiceAuth.configuredToken();
     }
 
     public AuthFilter(JwtValidator jwtValidator) {
-        this.jwtValidator = jwtValidator;
-        this.requireEmployeeRole = false;
-        this.authDisabled = false;
+        this(jwtValidator, false);
     }
 
     public AuthFilter(JwtValidator jwtValidator, boolean requireEmployeeRole) {
+        this(jwtValidator, requireEmployeeRole, null);
+    }
+
+    public AuthFilter(JwtValidator jwtValidator, boolean requireEmployeeRole, String serviceToken) {
         this.jwtValidator = jwtValidator;
         this.requireEmployeeRole = requireEmployeeRole;
         this.authDisabled = false;
+        this.serviceToken = serviceToken;
     }
 
     @Override
@@ -55,9 +63,24 @@ public class AuthFilter implements ContainerRequestFilter {
         if (authDisabled) {
             String devUser = System.getenv().getOrDefault("AUTH_BYPASS_USER_ID", "dev-user");
             MatchesResource.AuthContext.setUserId(devUser);
+            MatchesResource.AuthContext.setRoles(List.of(ServiceAuth.SERVICE_ROLE, ServiceAuth.ADMIN_ROLE));
             return;
         }
+        // Calls from other services carry the shared service token, with or without a user JWT
+        String presentedServiceToken = requestContext.getHeaderString(ServiceAuth.HEADER);
+        boolean service = false;
+        if (presentedServiceToken != null) {
+            if (!ServiceAuth.matches(presentedServiceToken, serviceToken)) {
+                requestContext.abortWith(Response.status(Response.Status.UNAUTHORIZED).build());
+                return;
+            }
+            service = true;
+            MatchesResource.AuthContext.setRoles(List.of(ServiceAuth.SERVICE_ROLE));
+        }
         String auth = requestContext.getHeaderString("Authorization");
+        if (service && auth == null) {
+            return;
+        }
         if (auth == null || !auth.startsWith("Bearer ")) {
             requestContext.abortWith(Response.status(Response.Status.UNAUTHORIZED).build());
             return;
@@ -72,9 +95,14 @@ public class AuthFilter implements ContainerRequestFilter {
                 MatchesResource.AuthContext.setUserId(userId);
             }
             
+            List<String> roles = new ArrayList<>(AuthUtils.extractRealmRoles(token));
+            if (service) {
+                roles.add(ServiceAuth.SERVICE_ROLE);
+            }
+            MatchesResource.AuthContext.setRoles(roles);
+            
             // Check employee role if required
-            if (requireEmployeeRole) {
-                var roles = AuthUtils.extractRealmRoles(token);
+            if (requireEmployeeRole && !service) {
                 if (!roles.contains("EMPLOYEE")) {
                     requestContext.abortWith(Response.status(403).build());
                     return;
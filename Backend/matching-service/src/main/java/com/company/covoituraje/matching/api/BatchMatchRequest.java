@@ -0,0 +1,15 @@
+package com.company.covoituraje.matching.api;
+
+import java.util.List;
+
+public class BatchMatchRequest {
+    public List<Query> queries;
+
+    public static class Query {
+        public String passengerId;
+        public String destinationSedeId;
+        public String time;
+        public String origin;
+        public Integer limit;
+    }
+}
@@ -0,0 +1,9 @@
+package com.company.covoituraje.matching.api;
+
+import java.util.List;
+
+public class BatchMatchResultDto {
+    public String passengerId;
+    public String destinationSedeId;
+    public List<MatchDto> matches;
+}
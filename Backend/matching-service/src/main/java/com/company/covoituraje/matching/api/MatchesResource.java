@@ -1,32 +1,52 @@
 package com.company.covoituraje.matching.api;
 
+import com.company.covoituraje.auth.ServiceAuth;
+import com.company.covoituraje.matching.service.GeoScorer;
 import com.company.covoituraje.matching.service.MatchingService;
+import com.company.covoituraje.matching.service.TripSnapshotCache;
 import com.company.covoituraje.matching.infrastructure.MatchRepository;
+import com.company.covoituraje.matching.infrastructure.JpaConfig;
+import com.company.covoituraje.matching.infrastructure.MatchWriteBehindQueue;
 import com.company.covoituraje.matching.integration.TripsServiceClient;
-import com.company.covoituraje.matching.integration.NotificationServiceClient;
+import com.company.covoituraje.matching.domain.OutboxEvent;
 import com.company.covoituraje.shared.i18n.MessageService;
 import com.company.covoituraje.shared.i18n.LocaleUtils;
+import com.company.covoituraje.shared.json.JsonArrayWriter;
+import com.company.covoituraje.shared.outbox.NotificationOutboxRelay;
+import com.company.covoituraje.shared.outbox.NotificationOutboxRepository;
+import com.company.covoituraje.shared.pagination.PageCursor;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.ws.rs.*;
 import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.StreamingOutput;
 
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
+import java.util.stream.Stream;
 
 @Path("/matches")
 @Produces(MediaType.APPLICATION_JSON)
 public class MatchesResource {
 
+    static final int MAX_BATCH_QUERIES = 5_000;
+
+    private static final ObjectMapper BATCH_MAPPER = new ObjectMapper()
+            .configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false);
+
     private final MatchingService matchingService;
     private final MatchRepository matchRepository;
-    private final NotificationServiceClient notificationClient;
     private final MessageService messageService;
     
     static final class AuthContext {
         private static final ThreadLocal<String> USER_ID = new ThreadLocal<>();
+        private static final ThreadLocal<List<String>> ROLES = new ThreadLocal<>();
         static void setUserId(String userId) { USER_ID.set(userId); }
         static String getUserId() { return USER_ID.get(); }
-        static void clear() { USER_ID.remove(); }
+        static void setRoles(List<String> roles) { ROLES.set(roles); }
+        static boolean hasRole(String role) { return ROLES.get() != null && ROLES.get().contains(role); }
+        static void clear() { USER_ID.remove(); ROLES.remove(); }
     }
 
     public MatchesResource() {
@@ -36,32 +56,24 @@ public class MatchesResource {
         }
         MatchRepository matchRepository = new MatchRepository();
         TripsServiceClient tripsServiceClient = new TripsServiceClient(tripsServiceUrl);
-        this.matchingService = new MatchingService(matchRepository, tripsServiceClient);
+        GeoScorer geoScorer = GeoScorer.fromEnvironment();
+        this.matchingService = new MatchingService(matchRepository, tripsServiceClient, geoScorer,
+                MatchWriteBehindQueue.shared(), TripSnapshotCache.shared(tripsServiceClient, geoScorer.radiusKm()));
         this.matchRepository = matchRepository;
-        String notificationServiceUrl = System.getenv().getOrDefault("NOTIFICATION_SERVICE_URL", "http://localhost:8085/api");
-        this.notificationClient = new NotificationServiceClient(notificationServiceUrl);
+        // Delivers the notifications that accept and reject write to the outbox
+        NotificationOutboxRelay.shared(() -> new NotificationOutboxRepository(JpaConfig.getEntityManagerFactory(), OutboxEvent.class));
         this.messageService = new MessageService();
     }
 
     public MatchesResource(MatchingService matchingService, MatchRepository matchRepository) {
         this.matchingService = matchingService;
         this.matchRepository = matchRepository;
-        String notificationServiceUrl = System.getenv().getOrDefault("NOTIFICATION_SERVICE_URL", "http://localhost:8085/api");
-        this.notificationClient = new NotificationServiceClient(notificationServiceUrl);
         this.messageService = new MessageService();
     }
 
-    public MatchesResource(MatchingService matchingService, MatchRepository matchRepository, NotificationServiceClient notificationClient) {
+    public MatchesResource(MatchingService matchingService, MatchRepository matchRepository, MessageService messageService) {
         this.matchingService = matchingService;
         this.matchRepository = matchRepository;
-        this.notificationClient = notificationClient;
-        this.messageService = new MessageService();
-    }
-
-    public MatchesResource(MatchingService matchingService, MatchRepository matchRepository, NotificationServiceClient notificationClient, MessageService messageService) {
-        this.matchingService = matchingService;
-        this.matchRepository = matchRepository;
-        this.notificationClient = notificationClient;
         this.messageService = messageService;
     }
 
@@ -69,6 +81,7 @@ public class MatchesResource {
     public List<MatchDto> findMatches(@QueryParam("destinationSedeId") String destinationSedeId,
                                      @QueryParam("time") String time,
                                      @QueryParam("origin") String origin,
+                                     @QueryParam("limit") Integer limit,
                                      @HeaderParam("Accept-Language") String acceptLanguage) {
         
         String currentUser = AuthContext.getUserId();
@@ -90,7 +103,8 @@ public class MatchesResource {
             currentUser, 
             destinationSedeId, 
             time, 
-            origin
+            origin,
+            limit != null ? limit : MatchingService.DEFAULT_LIMIT
         );
 
         // Convert to DTOs
@@ -99,11 +113,80 @@ public class MatchesResource {
                 .collect(ArrayList::new, ArrayList::add, ArrayList::addAll);
     }
 
+    /**
+     * Matches for many passengers in one request (admin tools, nightly suggestions).
+     * Trips are loaded once per sede for the whole batch and results are streamed
+     * as a JSON array, one element per passenger, as soon as each one is scored.
+     * Requires the ADMIN or SERVICE role: it reveals the matches of any passenger.
+     */
+    @POST
+    @Path("/batch")
+    @Consumes(MediaType.APPLICATION_JSON)
+    public StreamingOutput findMatchesBatch(BatchMatchRequest request,
+                                            @HeaderParam("Accept-Language") String acceptLanguage) {
+        if (!AuthContext.hasRole(ServiceAuth.ADMIN_ROLE) && !AuthContext.hasRole(ServiceAuth.SERVICE_ROLE)) {
+            Locale locale = LocaleUtils.fromAcceptLanguage(acceptLanguage);
+            String message = messageService.getMessage("matches.error.access_denied", locale);
+            throw new ForbiddenException(message);
+        }
+        if (request == null || request.queries == null || request.queries.isEmpty()) {
+            Locale locale = LocaleUtils.fromAcceptLanguage(acceptLanguage);
+            String message = messageService.getMessage("matches.error.batch_queries_required", locale);
+            throw new BadRequestException(message);
+        }
+        if (request.queries.size() > MAX_BATCH_QUERIES) {
+            Locale locale = LocaleUtils.fromAcceptLanguage(acceptLanguage);
+            String message = messageService.getMessage("matches.error.batch_too_large", locale, String.valueOf(MAX_BATCH_QUERIES));
+            throw new BadRequestException(message);
+        }
+
+        // Validate everything up front: once streaming starts the status can't change
+        List<MatchingService.PassengerQuery> queries = new ArrayList<>(request.queries.size());
+        for (BatchMatchRequest.Query query : request.queries) {
+            if (query == null || query.passengerId == null || query.passengerId.isBlank()) {
+                Locale locale = LocaleUtils.fromAcceptLanguage(acceptLanguage);
+                String message = messageService.getMessage("matches.error.user_id_required", locale);
+                throw new BadRequestException(message);
+            }
+            if (query.destinationSedeId == null || query.destinationSedeId.isBlank()) {
+                Locale locale = LocaleUtils.fromAcceptLanguage(acceptLanguage);
+                String message = messageService.getMessage("matches.error.destination_sede_required", locale);
+                throw new BadRequestException(message);
+            }
+            queries.add(new MatchingService.PassengerQuery(query.passengerId, query.destinationSedeId,
+                    query.time, query.origin, query.limit != null ? query.limit : MatchingService.DEFAULT_LIMIT));
+        }
+
+        return output -> {
+            try (JsonGenerator generator = BATCH_MAPPER.getFactory().createGenerator(output)) {
+                generator.writeStartArray();
+                matchingService.findMatchesBatch(queries, (query, matches) -> {
+                    BatchMatchResultDto result = new BatchMatchResultDto();
+                    result.passengerId = query.passengerId;
+                    result.destinationSedeId = query.destinationSedeId;
+                    result.matches = new ArrayList<>(matches.size());
+                    for (MatchResult match : matches) {
+                        result.matches.add(mapToDto(match));
+                    }
+                    BATCH_MAPPER.writeValue(generator, result);
+                    generator.flush();
+                });
+                generator.writeEndArray();
+            }
+        };
+    }
+
+    /**
+     * Streams the caller's stored matches from the database cursor to the response.
+     * With limit or cursor the response is one keyset page: {"items": [...], "nextCursor": "..."}.
+     */
     @GET
     @Path("/my-matches")
-    public List<MatchDto> getMyMatches(@QueryParam("from") String from,
-                                       @QueryParam("to") String to,
-                                       @HeaderParam("Accept-Language") String acceptLanguage) {
+    public StreamingOutput getMyMatches(@QueryParam("from") String from,
+                                        @QueryParam("to") String to,
+                                        @QueryParam("limit") Integer limit,
+                                        @QueryParam("cursor") String cursor,
+                                        @HeaderParam("Accept-Language") String acceptLanguage) {
         String currentUser = AuthContext.getUserId();
         if (currentUser == null || currentUser.isBlank()) {
             Locale locale = LocaleUtils.fromAcceptLanguage(acceptLanguage);
@@ -113,24 +196,40 @@ public class MatchesResource {
 
         java.time.OffsetDateTime fromDt = parseIsoDatetime(from);
         java.time.OffsetDateTime toDt = parseIsoDatetime(to);
-        List<com.company.covoituraje.matching.domain.Match> matches;
-        if (fromDt != null && toDt != null) {
-            matches = matchRepository.findByPassengerIdAndCreatedAtBetween(currentUser, fromDt, toDt);
-        } else {
-            matches = matchRepository.findByPassengerId(currentUser);
+        boolean dateRange = fromDt != null && toDt != null;
+
+        if (PageCursor.isRequested(limit, cursor)) {
+            int pageSize = PageCursor.resolveLimit(limit);
+            PageCursor after = decodeCursor(cursor, acceptLanguage);
+            return output -> JsonArrayWriter.writePage(output,
+                    matchRepository.streamPageByPassengerId(currentUser, dateRange ? fromDt : null, dateRange ? toDt : null,
+                            afterCreatedAt(after), afterId(after), pageSize + 1),
+                    pageSize, this::mapDomainToDto, MatchesResource::cursorOf);
         }
 
-        return matches.stream()
-                .map(this::mapDomainToDto)
-                .collect(ArrayList::new, ArrayList::add, ArrayList::addAll);
+        return output -> {
+            Stream<com.company.covoituraje.matching.domain.Match> matches;
+            if (dateRange) {
+                matches = matchRepository.streamByPassengerIdAndCreatedAtBetween(currentUser, fromDt, toDt);
+            } else {
+                matches = matchRepository.streamByPassengerId(currentUser);
+            }
+
+            JsonArrayWriter.write(output, matches.map(this::mapDomainToDto));
+        };
     }
 
+    /**
+     * Streams a driver's stored matches; paginated like /my-matches when limit or cursor is given.
+     */
     @GET
     @Path("/driver/{driverId}")
-    public List<MatchDto> getDriverMatches(@PathParam("driverId") String driverId,
-                                           @QueryParam("from") String from,
-                                           @QueryParam("to") String to,
-                                           @HeaderParam("Accept-Language") String acceptLanguage) {
+    public StreamingOutput getDriverMatches(@PathParam("driverId") String driverId,
+                                            @QueryParam("from") String from,
+                                            @QueryParam("to") String to,
+                                            @QueryParam("limit") Integer limit,
+                                            @QueryParam("cursor") String cursor,
+                                            @HeaderParam("Accept-Language") String acceptLanguage) {
         String currentUser = AuthContext.getUserId();
         if (currentUser == null || currentUser.isBlank()) {
             Locale locale = LocaleUtils.fromAcceptLanguage(acceptLanguage);
@@ -148,16 +247,54 @@ public class MatchesResource {
 
         java.time.OffsetDateTime fromDt = parseIsoDatetime(from);
         java.time.OffsetDateTime toDt = parseIsoDatetime(to);
-        List<com.company.covoituraje.matching.domain.Match> matches;
-        if (fromDt != null && toDt != null) {
-            matches = matchRepository.findByDriverIdAndCreatedAtBetween(driverId, fromDt, toDt);
-        } else {
-            matches = matchRepository.findByDriverId(driverId);
+        boolean dateRange = fromDt != null && toDt != null;
+
+        if (PageCursor.isRequested(limit, cursor)) {
+            int pageSize = PageCursor.resolveLimit(limit);
+            PageCursor after = decodeCursor(cursor, acceptLanguage);
+            return output -> JsonArrayWriter.writePage(output,
+                    matchRepository.streamPageByDriverId(driverId, dateRange ? fromDt : null, dateRange ? toDt : null,
+                            afterCreatedAt(after), afterId(after), pageSize + 1),
+                    pageSize, this::mapDomainToDto, MatchesResource::cursorOf);
         }
 
-        return matches.stream()
-                .map(this::mapDomainToDto)
-                .collect(ArrayList::new, ArrayList::add, ArrayList::addAll);
+        return output -> {
+            Stream<com.company.covoituraje.matching.domain.Match> matches;
+            if (dateRange) {
+                matches = matchRepository.streamByDriverIdAndCreatedAtBetween(driverId, fromDt, toDt);
+            } else {
+                matches = matchRepository.streamByDriverId(driverId);
+            }
+
+            JsonArrayWriter.write(output, matches.map(this::mapDomainToDto));
+        };
+    }
+
+    // Cursors are opaque to clients; anything we did not issue is a bad request
+    private PageCursor decodeCursor(String cursor, String acceptLanguage) {
+        if (cursor == null || cursor.isBlank()) return null;
+        try {
+            PageCursor decoded = PageCursor.decode(cursor);
+            java.time.OffsetDateTime.parse(decoded.key());
+            java.util.UUID.fromString(decoded.id());
+            return decoded;
+        } catch (RuntimeException e) {
+            Locale locale = LocaleUtils.fromAcceptLanguage(acceptLanguage);
+            throw new BadRequestException(messageService.getMessage("common.error.invalid_cursor", locale));
+        }
+    }
+
+    private static java.time.OffsetDateTime afterCreatedAt(PageCursor after) {
+        return after != null ? java.time.OffsetDateTime.parse(after.key()) : null;
+    }
+
+    private static java.util.UUID afterId(PageCursor after) {
+        return after != null ? java.util.UUID.fromString(after.id()) : null;
+    }
+
+    private static PageCursor cursorOf(com.company.covoituraje.matching.domain.Match match) {
+        return new PageCursor(match.getCreatedAt().format(java.time.format.DateTimeFormatter.ISO_OFFSET_DATE_TIME),
+                match.getId().toString());
     }
 
     private MatchDto mapToDto(MatchResult matchResult) {
@@ -205,8 +342,9 @@ public class MatchesResource {
             throw new ForbiddenException("Access denied");
         }
         match.accept();
-        match = matchRepository.save(match);
-        try { notificationClient.sendMatchAccepted(match.getPassengerId(), match.getDriverId(), match.getTripId().toString()); } catch (Exception ignored) {}
+        match = matchRepository.saveWithNotifications(match,
+                OutboxEvent.matchAccepted(match.getPassengerId(), match.getTripId()),
+                OutboxEvent.matchAccepted(match.getDriverId(), match.getTripId()));
         return mapDomainToDto(match);
     }
 
@@ -224,8 +362,8 @@ public class MatchesResource {
             throw new ForbiddenException("Access denied");
         }
         match.reject();
-        match = matchRepository.save(match);
-        try { notificationClient.sendMatchRejected(match.getPassengerId(), match.getTripId().toString()); } catch (Exception ignored) {}
+        match = matchRepository.saveWithNotifications(match,
+                OutboxEvent.matchRejected(match.getPassengerId(), match.getTripId()));
         return mapDomainToDto(match);
     }
 }
@@ -0,0 +1,118 @@
+package com.company.covoituraje.matching.api;
+
+import com.company.covoituraje.matching.domain.StandingQuery;
+import com.company.covoituraje.matching.infrastructure.StandingQueryRepository;
+import com.company.covoituraje.matching.service.DepartureTime;
+import com.company.covoituraje.matching.service.GeoScorer;
+import com.company.covoituraje.matching.service.StandingQueryIndex;
+import com.company.covoituraje.shared.i18n.LocaleUtils;
+import com.company.covoituraje.shared.i18n.MessageService;
+import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.MediaType;
+
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+
+/**
+ * Standing match queries: a passenger registers what they are looking for once and
+ * matching-service evaluates every new or updated trip against it (reverse matching).
+ */
+@Path("/matches/queries")
+@Produces(MediaType.APPLICATION_JSON)
+@Consumes(MediaType.APPLICATION_JSON)
+public class StandingQueriesResource {
+
+    private final StandingQueryRepository repository;
+    private final StandingQueryIndex index;
+    private final MessageService messageService;
+
+    public StandingQueriesResource() {
+        this.repository = new StandingQueryRepository();
+        this.index = StandingQueryIndex.shared(GeoScorer.fromEnvironment());
+        this.messageService = new MessageService();
+    }
+
+    public StandingQueriesResource(StandingQueryRepository repository, StandingQueryIndex index, MessageService messageService) {
+        this.repository = repository;
+        this.index = index;
+        this.messageService = messageService;
+    }
+
+    @POST
+    public StandingQueryDto create(StandingQueryDto create, @HeaderParam("Accept-Language") String acceptLanguage) {
+        String currentUser = requireUser(acceptLanguage);
+        if (create == null || create.destinationSedeId == null || create.destinationSedeId.isBlank()) {
+            Locale locale = LocaleUtils.fromAcceptLanguage(acceptLanguage);
+            String message = messageService.getMessage("matches.error.destination_sede_required", locale);
+            throw new BadRequestException(message);
+        }
+        String time = create.time != null && !create.time.isBlank() ? create.time.trim() : null;
+        if (time != null && DepartureTime.parsePreferredMinuteOfDay(time) < 0) {
+            throw new BadRequestException("Invalid time format, expected HH:mm");
+        }
+        int window = create.timeWindowMinutes != null ? create.timeWindowMinutes : StandingQuery.DEFAULT_TIME_WINDOW_MINUTES;
+        if (window <= 0 || window > StandingQuery.MAX_TIME_WINDOW_MINUTES) {
+            throw new BadRequestException("timeWindowMinutes must be between 1 and " + StandingQuery.MAX_TIME_WINDOW_MINUTES);
+        }
+        if (create.radiusKm != null && create.radiusKm <= 0.0) {
+            throw new BadRequestException("radiusKm must be positive");
+        }
+        String origin = create.origin != null && !create.origin.isBlank() ? create.origin.trim() : null;
+
+        StandingQuery standingQuery = new StandingQuery(currentUser, create.destinationSedeId, time, window, origin, create.radiusKm);
+        standingQuery = repository.save(standingQuery);
+        index.put(standingQuery);
+        return mapToDto(standingQuery);
+    }
+
+    @GET
+    public List<StandingQueryDto> listMine(@HeaderParam("Accept-Language") String acceptLanguage) {
+        String currentUser = requireUser(acceptLanguage);
+        return repository.findByPassengerId(currentUser).stream()
+                .map(this::mapToDto)
+                .collect(ArrayList::new, ArrayList::add, ArrayList::addAll);
+    }
+
+    @DELETE
+    @Path("/{id}")
+    public void delete(@PathParam("id") String id, @HeaderParam("Accept-Language") String acceptLanguage) {
+        String currentUser = requireUser(acceptLanguage);
+        UUID queryId;
+        try { queryId = UUID.fromString(id); } catch (IllegalArgumentException e) { throw new BadRequestException("Invalid standing query ID format"); }
+        StandingQuery standingQuery = repository.findById(queryId).orElseThrow(() -> new NotFoundException("Standing query not found"));
+        if (!currentUser.equals(standingQuery.getPassengerId())) {
+            Locale locale = LocaleUtils.fromAcceptLanguage(acceptLanguage);
+            String message = messageService.getMessage("matches.error.access_denied", locale);
+            throw new ForbiddenException(message);
+        }
+        repository.delete(standingQuery);
+        index.remove(queryId);
+    }
+
+    private String requireUser(String acceptLanguage) {
+        String currentUser = MatchesResource.AuthContext.getUserId();
+        if (currentUser == null || currentUser.isBlank()) {
+            Locale locale = LocaleUtils.fromAcceptLanguage(acceptLanguage);
+            String message = messageService.getMessage("matches.error.user_id_required", locale);
+            throw new BadRequestException(message);
+        }
+        return currentUser;
+    }
+
+    private StandingQueryDto mapToDto(StandingQuery standingQuery) {
+        StandingQueryDto dto = new StandingQueryDto();
+        dto.id = standingQuery.getId().toString();
+        dto.destinationSedeId = standingQuery.getDestinationSedeId();
+        dto.time = standingQuery.getPreferredTime();
+        dto.timeWindowMinutes = standingQuery.getTimeWindowMinutes();
+        dto.origin = standingQuery.getOriginLocation();
+        dto.radiusKm = standingQuery.getRadiusKm();
+        dto.createdAt = standingQuery.getCreatedAt() != null
+                ? standingQuery.getCreatedAt().format(DateTimeFormatter.ISO_OFFSET_DATE_TIME)
+                : null;
+        return dto;
+    }
+}
@@ -0,0 +1,11 @@
+package com.company.covoituraje.matching.api;
+
+public class StandingQueryDto {
+    public String id;
+    public String destinationSedeId;
+    public String time;               // HH:mm, null for any time
+    public Integer timeWindowMinutes; // minutes around time, default 60
+    public String origin;             // "lat,lng", null for any origin
+    public Double radiusKm;           // null for the service default
+    public String createdAt;
+}
@@ -0,0 +1,72 @@
+package com.company.covoituraje.matching.api;
+
+import com.company.covoituraje.auth.ServiceAuth;
+import com.company.covoituraje.matching.domain.Match;
+import com.company.covoituraje.matching.infrastructure.MatchRepository;
+import com.company.covoituraje.matching.infrastructure.MatchWriteBehindQueue;
+import com.company.covoituraje.matching.integration.TripsServiceClient;
+import com.company.covoituraje.matching.service.GeoScorer;
+import com.company.covoituraje.matching.service.ReverseMatchingService;
+import com.company.covoituraje.matching.service.StandingQueryIndex;
+import com.company.covoituraje.matching.service.TripSnapshotCache;
+import com.company.covoituraje.shared.dto.TripDto;
+import com.company.covoituraje.shared.i18n.LocaleUtils;
+import com.company.covoituraje.shared.i18n.MessageService;
+import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.MediaType;
+
+import java.util.List;
+
+/**
+ * Trip events published by trips-service on create/update. Each event is matched
+ * against the standing queries of its sede and time bucket only. Only other services
+ * (SERVICE role) may publish them: the trip in the body is trusted as is.
+ */
+@Path("/matches/trip-events")
+@Produces(MediaType.APPLICATION_JSON)
+@Consumes(MediaType.APPLICATION_JSON)
+public class TripEventsResource {
+
+    private final ReverseMatchingService reverseMatchingService;
+    private final MessageService messageService;
+
+    public TripEventsResource() {
+        String tripsServiceUrl = System.getenv("TRIPS_SERVICE_URL");
+        if (tripsServiceUrl == null || tripsServiceUrl.isBlank()) {
+            tripsServiceUrl = "http://localhost:8081";
+        }
+        GeoScorer geoScorer = GeoScorer.fromEnvironment();
+        this.reverseMatchingService = new ReverseMatchingService(
+                StandingQueryIndex.shared(geoScorer),
+                new MatchRepository(),
+                MatchWriteBehindQueue.shared(),
+                TripSnapshotCache.shared(new TripsServiceClient(tripsServiceUrl), geoScorer.radiusKm()));
+        this.messageService = new MessageService();
+    }
+
+    public TripEventsResource(ReverseMatchingService reverseMatchingService) {
+        this.reverseMatchingService = reverseMatchingService;
+        this.messageService = new MessageService();
+    }
+
+    @POST
+    public TripEventResult tripChanged(TripDto trip, @HeaderParam("Accept-Language") String acceptLanguage) {
+        if (!MatchesResource.AuthContext.hasRole(ServiceAuth.SERVICE_ROLE)) {
+            throw new ForbiddenException(messageService.getMessage("common.error.service_only",
+                    LocaleUtils.fromAcceptLanguage(acceptLanguage)));
+        }
+        if (trip == null || trip.id == null) {
+            throw new BadRequestException("Trip is required");
+        }
+        List<Match> newMatches = reverseMatchingService.onTripChanged(trip);
+        TripEventResult result = new TripEventResult();
+        result.tripId = trip.id;
+        result.newMatches = newMatches.size();
+        return result;
+    }
+
+    public static class TripEventResult {
+        public String tripId;
+        public int newMatches;
+    }
+}
@@ -4,8 +4,13 @@ public class TripInfo {
     public String id;
     public String driverId;
     public String origin;
+    public double originLat = Double.NaN;
+    public double originLng = Double.NaN;
     public String destinationSedeId;
     public String dateTime;
+    // Decoded once from dateTime when the trip is loaded (see DepartureTime.decode)
+    public long departureEpochSecond = Long.MIN_VALUE;
+    public int departureMinuteOfDay = -1;
     public int seatsTotal;
     public int seatsFree;
 }
@@ -6,7 +6,8 @@ import java.time.OffsetDateTime;
 import java.util.UUID;
 
 @Entity
-@Table(name = "matches", schema = "matches")
+@Table(name = "matches", schema = "matches",
+       uniqueConstraints = @UniqueConstraint(name = "uk_matches_trip_passenger", columnNames = {"trip_id", "passenger_id"}))
 public class Match {
     
     @Id
@@ -0,0 +1,42 @@
+package com.company.covoituraje.matching.domain;
+
+import com.company.covoituraje.shared.outbox.NotificationOutboxEvent;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Table;
+
+import java.util.UUID;
+
+/**
+ * Notificación pendiente de entregar a notification-service (ver NotificationOutboxEvent). Se
+ * guarda en la misma transacción que el cambio del match y la entrega NotificationOutboxRelay.
+ */
+@Entity
+@Table(name = "notification_outbox", schema = "matches")
+public class OutboxEvent extends NotificationOutboxEvent {
+
+    public static final String MATCH_ACCEPTED = "MATCH_ACCEPTED";
+    public static final String MATCH_REJECTED = "MATCH_REJECTED";
+    public static final String NEW_MATCH = "NEW_MATCH";
+
+    // Default constructor for JPA
+    public OutboxEvent() {}
+
+    public OutboxEvent(String eventType, String recipientId, String title, String body) {
+        super(eventType, recipientId, title, body);
+    }
+
+    public static OutboxEvent matchAccepted(String recipientId, UUID tripId) {
+        return new OutboxEvent(MATCH_ACCEPTED, recipientId, "Match aceptado",
+                "Se ha aceptado el match para el viaje " + tripId);
+    }
+
+    public static OutboxEvent matchRejected(String recipientId, UUID tripId) {
+        return new OutboxEvent(MATCH_REJECTED, recipientId, "Match rechazado",
+                "Se ha rechazado el match para el viaje " + tripId);
+    }
+
+    public static OutboxEvent newMatch(String passengerId, UUID tripId, String dateTime) {
+        return new OutboxEvent(NEW_MATCH, passengerId, "Nuevo viaje compatible",
+                "Hay un nuevo viaje compatible con tu búsqueda (" + dateTime + "): " + tripId);
+    }
+}
@@ -0,0 +1,91 @@
+package com.company.covoituraje.matching.domain;
+
+import jakarta.persistence.*;
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+@Entity
+@Table(name = "standing_queries", schema = "matches")
+public class StandingQuery {
+
+    public static final int DEFAULT_TIME_WINDOW_MINUTES = 60;
+    public static final int MAX_TIME_WINDOW_MINUTES = 180;
+
+    @Id
+    @Column(name = "id")
+    private UUID id;
+
+    @Column(name = "passenger_id", nullable = false)
+    private String passengerId;
+
+    @Column(name = "destination_sede_id", nullable = false)
+    private String destinationSedeId;
+
+    @Column(name = "preferred_time", length = 5)
+    private String preferredTime;
+
+    @Column(name = "time_window_minutes", nullable = false)
+    private int timeWindowMinutes;
+
+    @Column(name = "origin_location")
+    private String originLocation;
+
+    @Column(name = "radius_km")
+    private Double radiusKm;
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private OffsetDateTime createdAt;
+
+    @Column(name = "updated_at", nullable = false)
+    private OffsetDateTime updatedAt;
+
+    // Default constructor for JPA
+    public StandingQuery() {}
+
+    // Constructor for registering a new standing query
+    public StandingQuery(String passengerId, String destinationSedeId, String preferredTime,
+                         int timeWindowMinutes, String originLocation, Double radiusKm) {
+        this.id = UUID.randomUUID();
+        this.passengerId = passengerId;
+        this.destinationSedeId = destinationSedeId;
+        this.preferredTime = preferredTime;
+        this.timeWindowMinutes = timeWindowMinutes;
+        this.originLocation = originLocation;
+        this.radiusKm = radiusKm;
+        this.createdAt = OffsetDateTime.now();
+        this.updatedAt = OffsetDateTime.now();
+    }
+
+    // Getters and Setters
+    public UUID getId() { return id; }
+    public void setId(UUID id) { this.id = id; }
+
+    public String getPassengerId() { return passengerId; }
+    public void setPassengerId(String passengerId) { this.passengerId = passengerId; }
+
+    public String getDestinationSedeId() { return destinationSedeId; }
+    public void setDestinationSedeId(String destinationSedeId) { this.destinationSedeId = destinationSedeId; }
+
+    public String getPreferredTime() { return preferredTime; }
+    public void setPreferredTime(String preferredTime) { this.preferredTime = preferredTime; }
+
+    public int getTimeWindowMinutes() { return timeWindowMinutes; }
+    public void setTimeWindowMinutes(int timeWindowMinutes) { this.timeWindowMinutes = timeWindowMinutes; }
+
+    public String getOriginLocation() { return originLocation; }
+    public void setOriginLocation(String originLocation) { this.originLocation = originLocation; }
+
+    public Double getRadiusKm() { return radiusKm; }
+    public void setRadiusKm(Double radiusKm) { this.radiusKm = radiusKm; }
+
+    public OffsetDateTime getCreatedAt() { return createdAt; }
+    public void setCreatedAt(OffsetDateTime createdAt) { this.createdAt = createdAt; }
+
+    public OffsetDateTime getUpdatedAt() { return updatedAt; }
+    public void setUpdatedAt(OffsetDateTime updatedAt) { this.updatedAt = updatedAt; }
+
+    @PreUpdate
+    protected void onUpdate() {
+        this.updatedAt = OffsetDateTime.now();
+    }
+}
@@ -1,17 +1,34 @@
 package com.company.covoituraje.matching.infrastructure;
 
 import com.company.covoituraje.matching.domain.Match;
+import com.company.covoituraje.matching.domain.OutboxEvent;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.EntityTransaction;
 import jakarta.persistence.TypedQuery;
+import org.hibernate.Session;
+import org.hibernate.jpa.HibernateHints;
+
+import java.sql.PreparedStatement;
 import java.time.OffsetDateTime;
 import java.math.BigDecimal;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 public class MatchRepository {
     
+    static final int UPSERT_BATCH_SIZE = 500;
+    
+    // Rows fetched per round trip when streaming from a JDBC cursor
+    static final int STREAM_FETCH_SIZE = 500;
+    
+    private static final String UPSERT_SQL =
+        "INSERT INTO matches.matches (id, trip_id, passenger_id, driver_id, match_score, status, created_at, updated_at) " +
+        "VALUES (?, ?, ?, ?, ?, ?, ?, ?) " +
+        "ON CONFLICT (trip_id, passenger_id) DO UPDATE SET " +
+        "match_score = EXCLUDED.match_score, updated_at = EXCLUDED.updated_at";
+    
     private final EntityManager entityManager;
     
     public MatchRepository() {
@@ -41,6 +58,90 @@ public class MatchRepository {
         }
     }
 
+    /**
+     * Saves the match and queues its notifications in the same transaction, so a notification
+     * is sent if and only if the change is committed.
+     */
+    public Match saveWithNotifications(Match match, OutboxEvent... notifications) {
+        EntityTransaction tx = entityManager.getTransaction();
+        try {
+            tx.begin();
+            if (match.getId() == null) {
+                entityManager.persist(match);
+            } else {
+                match = entityManager.merge(match);
+            }
+            for (OutboxEvent notification : notifications) {
+                entityManager.persist(notification);
+            }
+            tx.commit();
+            return match;
+        } catch (Exception e) {
+            if (tx.isActive()) {
+                tx.rollback();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Inserts or updates the given matches keyed by (tripId, passengerId) in a single
+     * transaction, sending the statements as JDBC batches. Existing rows keep their
+     * id, status and createdAt; only score and updatedAt are refreshed.
+     */
+    public void upsertAll(List<Match> matches) {
+        upsertAll(matches, List.of());
+    }
+
+    /**
+     * Same as upsertAll(matches), also queueing the notifications in that transaction, so
+     * they are sent if and only if the matches are committed.
+     */
+    public void upsertAll(List<Match> matches, List<OutboxEvent> notifications) {
+        if (matches == null || matches.isEmpty()) {
+            return;
+        }
+        EntityTransaction tx = entityManager.getTransaction();
+        try {
+            tx.begin();
+            entityManager.unwrap(Session.class).doWork(connection -> {
+                try (PreparedStatement statement = connection.prepareStatement(UPSERT_SQL)) {
+                    int pending = 0;
+                    for (Match match : matches) {
+                        OffsetDateTime now = OffsetDateTime.now();
+                        statement.setObject(1, match.getId() != null ? match.getId() : UUID.randomUUID());
+                        statement.setObject(2, match.getTripId());
+                        statement.setString(3, match.getPassengerId());
+                        statement.setString(4, match.getDriverId());
+                        statement.setBigDecimal(5, match.getMatchScore());
+                        statement.setString(6, match.getStatus());
+                        statement.setObject(7, match.getCreatedAt() != null ? match.getCreatedAt() : now);
+                        statement.setObject(8, match.getUpdatedAt() != null ? match.getUpdatedAt() : now);
+                        statement.addBatch();
+                        if (++pending == UPSERT_BATCH_SIZE) {
+                            statement.executeBatch();
+                            pending = 0;
+                        }
+                    }
+                    if (pending > 0) {
+                        statement.executeBatch();
+                    }
+                }
+            });
+            for (OutboxEvent notification : notifications) {
+                entityManager.persist(notification);
+            }
+            tx.commit();
+            // Managed entities may now be stale
+            entityManager.clear();
+        } catch (Exception e) {
+            if (tx.isActive()) {
+                tx.rollback();
+            }
+            throw e;
+        }
+    }
+
     public Optional<Match> findById(UUID id) {
         Match match = entityManager.find(Match.class, id);
         return Optional.ofNullable(match);
@@ -78,6 +179,28 @@ public class MatchRepository {
         return query.getResultList();
     }
 
+    /**
+     * Streaming variants of the passenger listings: rows are read through a JDBC cursor
+     * and detached once read. The caller must close the stream.
+     */
+    public Stream<Match> streamByPassengerId(String passengerId) {
+        TypedQuery<Match> query = entityManager.createQuery(
+            "SELECT m FROM Match m WHERE m.passengerId = :passengerId ORDER BY m.matchScore DESC",
+            Match.class);
+        query.setParameter("passengerId", passengerId);
+        return stream(query);
+    }
+
+    public Stream<Match> streamByPassengerIdAndCreatedAtBetween(String passengerId, OffsetDateTime from, OffsetDateTime to) {
+        TypedQuery<Match> query = entityManager.createQuery(
+            "SELECT m FROM Match m WHERE m.passengerId = :passengerId AND m.createdAt >= :from AND m.createdAt <= :to ORDER BY m.matchScore DESC",
+            Match.class);
+        query.setParameter("passengerId", passengerId);
+        query.setParameter("from", from);
+        query.setParameter("to", to);
+        return stream(query);
+    }
+
     public List<Match> findByDriverId(String driverId) {
         TypedQuery<Match> query = entityManager.createQuery(
             "SELECT m FROM Match m WHERE m.driverId = :driverId ORDER BY m.matchScore DESC", 
@@ -96,6 +219,44 @@ public class MatchRepository {
         return query.getResultList();
     }
 
+    public Stream<Match> streamByDriverId(String driverId) {
+        TypedQuery<Match> query = entityManager.createQuery(
+            "SELECT m FROM Match m WHERE m.driverId = :driverId ORDER BY m.matchScore DESC",
+            Match.class);
+        query.setParameter("driverId", driverId);
+        return stream(query);
+    }
+
+    public Stream<Match> streamByDriverIdAndCreatedAtBetween(String driverId, OffsetDateTime from, OffsetDateTime to) {
+        TypedQuery<Match> query = entityManager.createQuery(
+            "SELECT m FROM Match m WHERE m.driverId = :driverId AND m.createdAt >= :from AND m.createdAt <= :to ORDER BY m.matchScore DESC",
+            Match.class);
+        query.setParameter("driverId", driverId);
+        query.setParameter("from", from);
+        query.setParameter("to", to);
+        return stream(query);
+    }
+
+    /**
+     * One page of a passenger's matches, newest first in (createdAt, id) order. Keyset
+     * pagination on columns no upsert rewrites (matchScore changes with every search), so a
+     * match never moves across the cursor between two pages and deep pages cost the same as
+     * the first one (index idx_matches_passenger_created_at_id).
+     * Pass null afterCreatedAt/afterId for the first page.
+     */
+    public Stream<Match> streamPageByPassengerId(String passengerId, OffsetDateTime from, OffsetDateTime to,
+                                                 OffsetDateTime afterCreatedAt, UUID afterId, int limit) {
+        return streamPage("passengerId", passengerId, from, to, afterCreatedAt, afterId, limit);
+    }
+
+    /**
+     * Same as streamPageByPassengerId for the matches of a driver (index idx_matches_driver_created_at_id).
+     */
+    public Stream<Match> streamPageByDriverId(String driverId, OffsetDateTime from, OffsetDateTime to,
+                                              OffsetDateTime afterCreatedAt, UUID afterId, int limit) {
+        return streamPage("driverId", driverId, from, to, afterCreatedAt, afterId, limit);
+    }
+
     public List<Match> findByStatus(String status) {
         TypedQuery<Match> query = entityManager.createQuery(
             "SELECT m FROM Match m WHERE m.status = :status ORDER BY m.matchScore DESC", 
@@ -134,4 +295,40 @@ public class MatchRepository {
             throw e;
         }
     }
+
+    // ownerField is one of our own attribute names, never client input
+    private Stream<Match> streamPage(String ownerField, String ownerId, OffsetDateTime from, OffsetDateTime to,
+                                     OffsetDateTime afterCreatedAt, UUID afterId, int limit) {
+        StringBuilder jpql = new StringBuilder("SELECT m FROM Match m WHERE m.")
+            .append(ownerField).append(" = :ownerId");
+        if (from != null && to != null) {
+            jpql.append(" AND m.createdAt >= :from AND m.createdAt <= :to");
+        }
+        if (afterCreatedAt != null && afterId != null) {
+            jpql.append(" AND (m.createdAt < :afterCreatedAt OR (m.createdAt = :afterCreatedAt AND m.id < :afterId))");
+        }
+        jpql.append(" ORDER BY m.createdAt DESC, m.id DESC");
+
+        TypedQuery<Match> query = entityManager.createQuery(jpql.toString(), Match.class);
+        query.setParameter("ownerId", ownerId);
+        if (from != null && to != null) {
+            query.setParameter("from", from);
+            query.setParameter("to", to);
+        }
+        if (afterCreatedAt != null && afterId != null) {
+            query.setParameter("afterCreatedAt", afterCreatedAt);
+            query.setParameter("afterId", afterId);
+        }
+        query.setMaxResults(limit);
+        return stream(query);
+    }
+
+    private <T> Stream<T> stream(TypedQuery<T> query) {
+        query.setHint(HibernateHints.HINT_FETCH_SIZE, STREAM_FETCH_SIZE);
+        query.setHint(HibernateHints.HINT_READ_ONLY, true);
+        return query.getResultStream().map(entity -> {
+            entityManager.detach(entity);
+            return entity;
+        });
+    }
 }
@@ -0,0 +1,266 @@
+package com.company.covoituraje.matching.infrastructure;
+
+import com.company.covoituraje.matching.domain.Match;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Persistencia diferida de matches fuera del hilo de la petición.
+ * Los matches pendientes se agrupan por (tripId, passengerId), de modo que solo se
+ * escribe la última puntuación, y un hilo en segundo plano los vuelca en lotes
+ * con MatchRepository.upsertAll. La cola está acotada: si está llena, enqueue espera
+ * un tiempo máximo y devuelve false para que el llamante escriba de forma síncrona.
+ * Un lote que no se puede escribir vuelve a la cola (sin pisar puntuaciones más nuevas)
+ * y se reintenta con espera creciente; al cerrar se intenta una sola vez.
+ */
+public class MatchWriteBehindQueue implements AutoCloseable {
+
+    static final int DEFAULT_CAPACITY = 10_000;
+    static final int DEFAULT_BATCH_SIZE = MatchRepository.UPSERT_BATCH_SIZE;
+    static final long DEFAULT_FLUSH_INTERVAL_MS = 200;
+    static final long DEFAULT_OFFER_TIMEOUT_MS = 50;
+    static final long MAX_RETRY_BACKOFF_MS = 5_000;
+    static final long SHUTDOWN_TIMEOUT_MS = 10_000;
+
+    private static MatchWriteBehindQueue shared;
+
+    private final MatchRepository repository;
+    private final int capacity;
+    private final int batchSize;
+    private final long flushIntervalMs;
+    private final long offerTimeoutMs;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private final Condition stopped = lock.newCondition();
+    private final LinkedHashMap<String, Match> pending = new LinkedHashMap<>();
+
+    private Thread flusher;
+    private volatile boolean running;
+    private volatile boolean closed;
+
+    public MatchWriteBehindQueue(MatchRepository repository) {
+        this(repository, DEFAULT_CAPACITY, DEFAULT_BATCH_SIZE, DEFAULT_FLUSH_INTERVAL_MS, DEFAULT_OFFER_TIMEOUT_MS);
+    }
+
+    public MatchWriteBehindQueue(MatchRepository repository, int capacity, int batchSize,
+                                 long flushIntervalMs, long offerTimeoutMs) {
+        this.repository = repository;
+        this.capacity = capacity;
+        this.batchSize = batchSize;
+        this.flushIntervalMs = flushIntervalMs;
+        this.offerTimeoutMs = offerTimeoutMs;
+    }
+
+    /**
+     * Cola compartida del servicio, con su propio MatchRepository (y EntityManager)
+     * de uso exclusivo del hilo de volcado. Se vacía al parar la JVM.
+     */
+    public static synchronized MatchWriteBehindQueue shared() {
+        if (shared == null) {
+            shared = new MatchWriteBehindQueue(new MatchRepository());
+            shared.start();
+            MatchWriteBehindQueue queue = shared;
+            Runtime.getRuntime().addShutdownHook(new Thread(queue::close, "match-write-behind-shutdown"));
+        }
+        return shared;
+    }
+
+    public synchronized void start() {
+        if (running || closed) return;
+        running = true;
+        flusher = new Thread(this::runFlusher, "match-write-behind");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /**
+     * Encola un match para su persistencia. Devuelve false si la cola sigue llena
+     * tras esperar el tiempo máximo o si ya está cerrada.
+     */
+    public boolean enqueue(Match match) {
+        return enqueueAll(List.of(match)).isEmpty();
+    }
+
+    /**
+     * Encola todos los matches y devuelve los que no han cabido. El tiempo máximo de espera
+     * es para todo el lote: en cuanto se agota, el resto se devuelve sin esperar más.
+     */
+    public List<Match> enqueueAll(List<Match> matches) {
+        int queued = 0;
+        lock.lock();
+        try {
+            long remainingNanos = TimeUnit.MILLISECONDS.toNanos(offerTimeoutMs);
+            for (Match match : matches) {
+                String key = key(match);
+                while (!closed && pending.size() >= capacity && !pending.containsKey(key) && remainingNanos > 0L) {
+                    remainingNanos = notFull.awaitNanos(remainingNanos);
+                }
+                if (closed || (pending.size() >= capacity && !pending.containsKey(key))) {
+                    break;
+                }
+                pending.put(key, match);
+                notEmpty.signal();
+                queued++;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            lock.unlock();
+        }
+        return new ArrayList<>(matches.subList(queued, matches.size()));
+    }
+
+    public int pendingCount() {
+        lock.lock();
+        try {
+            return pending.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Deja de aceptar matches y espera a que el hilo de volcado escriba los pendientes.
+     */
+    @Override
+    public void close() {
+        Thread thread;
+        lock.lock();
+        try {
+            if (closed) return;
+            closed = true;
+            running = false;
+            notEmpty.signalAll();
+            notFull.signalAll();
+            stopped.signalAll();
+            thread = flusher;
+        } finally {
+            lock.unlock();
+        }
+        if (thread != null) {
+            try {
+                thread.join(SHUTDOWN_TIMEOUT_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        } else {
+            // Nunca arrancado: volcar en el hilo actual
+            flushRemaining();
+        }
+    }
+
+    private void runFlusher() {
+        long backoffMs = 0;
+        while (true) {
+            List<Match> batch;
+            try {
+                batch = takeBatch();
+                if (batch == null) {
+                    break;
+                }
+                if (batch.isEmpty() || write(batch)) {
+                    backoffMs = 0;
+                    continue;
+                }
+                requeue(batch);
+                backoffMs = Math.min(Math.max(backoffMs * 2, flushIntervalMs), MAX_RETRY_BACKOFF_MS);
+                awaitRetry(backoffMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        flushRemaining();
+    }
+
+    // Puts a failed batch back unless a newer score for the same key was queued meanwhile
+    private void requeue(List<Match> batch) {
+        lock.lock();
+        try {
+            for (Match match : batch) {
+                pending.putIfAbsent(key(match), match);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Waits before retrying a failed write; close() ends the wait
+    private void awaitRetry(long backoffMs) throws InterruptedException {
+        lock.lock();
+        try {
+            long remainingNanos = TimeUnit.MILLISECONDS.toNanos(backoffMs);
+            while (running && remainingNanos > 0L) {
+                remainingNanos = stopped.awaitNanos(remainingNanos);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Devuelve el siguiente lote, una lista vacía si no hay nada tras el intervalo, o null al cerrar sin pendientes
+    private List<Match> takeBatch() throws InterruptedException {
+        lock.lock();
+        try {
+            if (pending.isEmpty()) {
+                if (!running) return null;
+                notEmpty.await(flushIntervalMs, TimeUnit.MILLISECONDS);
+            }
+            return drain(batchSize);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void flushRemaining() {
+        while (true) {
+            List<Match> batch;
+            lock.lock();
+            try {
+                batch = drain(batchSize);
+            } finally {
+                lock.unlock();
+            }
+            if (batch.isEmpty()) return;
+            // Shutting down: one attempt per batch, so a database outage cannot hold the JVM
+            write(batch);
+        }
+    }
+
+    // Debe llamarse con el lock adquirido
+    private List<Match> drain(int max) {
+        List<Match> batch = new ArrayList<>(Math.min(max, pending.size()));
+        Iterator<Map.Entry<String, Match>> it = pending.entrySet().iterator();
+        while (it.hasNext() && batch.size() < max) {
+            batch.add(it.next().getValue());
+            it.remove();
+        }
+        if (!batch.isEmpty()) {
+            notFull.signalAll();
+        }
+        return batch;
+    }
+
+    private boolean write(List<Match> batch) {
+        try {
+            repository.upsertAll(batch);
+            return true;
+        } catch (Exception e) {
+            System.err.println("Error flushing " + batch.size() + " matches: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private static String key(Match match) {
+        return match.getTripId() + ":" + match.getPassengerId();
+    }
+}
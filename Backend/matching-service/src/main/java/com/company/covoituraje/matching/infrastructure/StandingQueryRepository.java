@@ -0,0 +1,73 @@
+package com.company.covoituraje.matching.infrastructure;
+
+import com.company.covoituraje.matching.domain.StandingQuery;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityTransaction;
+import jakarta.persistence.TypedQuery;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+public class StandingQueryRepository {
+
+    private final EntityManager entityManager;
+
+    public StandingQueryRepository() {
+        this.entityManager = JpaConfig.createEntityManager();
+    }
+
+    public StandingQueryRepository(EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+
+    public StandingQuery save(StandingQuery standingQuery) {
+        EntityTransaction tx = entityManager.getTransaction();
+        try {
+            tx.begin();
+            standingQuery = entityManager.merge(standingQuery);
+            tx.commit();
+            return standingQuery;
+        } catch (Exception e) {
+            if (tx.isActive()) {
+                tx.rollback();
+            }
+            throw e;
+        }
+    }
+
+    public Optional<StandingQuery> findById(UUID id) {
+        return Optional.ofNullable(entityManager.find(StandingQuery.class, id));
+    }
+
+    public List<StandingQuery> findAll() {
+        TypedQuery<StandingQuery> query = entityManager.createQuery(
+            "SELECT q FROM StandingQuery q ORDER BY q.createdAt ASC", StandingQuery.class);
+        return query.getResultList();
+    }
+
+    public List<StandingQuery> findByPassengerId(String passengerId) {
+        TypedQuery<StandingQuery> query = entityManager.createQuery(
+            "SELECT q FROM StandingQuery q WHERE q.passengerId = :passengerId ORDER BY q.createdAt ASC",
+            StandingQuery.class);
+        query.setParameter("passengerId", passengerId);
+        return query.getResultList();
+    }
+
+    public void delete(StandingQuery standingQuery) {
+        EntityTransaction tx = entityManager.getTransaction();
+        try {
+            tx.begin();
+            if (!entityManager.contains(standingQuery)) {
+                standingQuery = entityManager.merge(standingQuery);
+            }
+            entityManager.remove(standingQuery);
+            tx.commit();
+        } catch (Exception e) {
+            if (tx.isActive()) {
+                tx.rollback();
+            }
+            throw e;
+        }
+    }
+}
@@ -1,41 +0,0 @@
-package com.company.covoituraje.matching.integration;
-
-import com.company.covoituraje.http.ServiceHttpClient;
-import com.company.covoituraje.http.ServiceIntegrationException;
-
-public class NotificationServiceClient {
-
-    private final ServiceHttpClient httpClient;
-
-    public NotificationServiceClient(String baseUrl) {
-        this.httpClient = new ServiceHttpClient(baseUrl);
-    }
-
-    public NotificationServiceClient(ServiceHttpClient httpClient) {
-        this.httpClient = httpClient;
-    }
-
-    public void sendMatchAccepted(String passengerId, String driverId, String tripId) throws ServiceIntegrationException {
-        String title = "Match aceptado";
-        String body = "Se ha aceptado el match para el viaje " + tripId;
-        httpClient.post("/notifications/send", new SendRequest(title, body), String.class);
-    }
-
-    public void sendMatchRejected(String passengerId, String tripId) throws ServiceIntegrationException {
-        String title = "Match rechazado";
-        String body = "Se ha rechazado el match para el viaje " + tripId;
-        httpClient.post("/notifications/send", new SendRequest(title, body), String.class);
-    }
-
-    public static class SendRequest {
-        public String title;
-        public String body;
-        public SendRequest() {}
-        public SendRequest(String title, String body) {
-            this.title = title;
-            this.body = body;
-        }
-    }
-}
-
-
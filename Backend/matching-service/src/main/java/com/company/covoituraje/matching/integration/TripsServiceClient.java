@@ -2,6 +2,7 @@ package com.company.covoituraje.matching.integration;
 
 import com.company.covoituraje.http.ServiceHttpClient;
 import com.company.covoituraje.http.ServiceIntegrationException;
+import com.company.covoituraje.shared.dto.TripChangesDto;
 import com.company.covoituraje.shared.dto.TripDto;
 
 import java.util.Arrays;
@@ -59,6 +60,17 @@ public class TripsServiceClient {
         }
     }
     
+    /**
+     * Obtiene los trips creados, modificados o borrados después de la versión indicada
+     */
+    public TripChangesDto getTripChanges(long sinceVersion) throws ServiceIntegrationException {
+        try {
+            return httpClient.get("/trips/changes?since=" + sinceVersion, TripChangesDto.class);
+        } catch (ServiceIntegrationException e) {
+            throw new ServiceIntegrationException("Error fetching trip changes since version: " + sinceVersion, e);
+        }
+    }
+    
     /**
      * Verifica si el trips-service está disponible
      */
@@ -0,0 +1,69 @@
+package com.company.covoituraje.matching.service;
+
+import com.company.covoituraje.matching.api.TripInfo;
+
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Decodificación de horas de salida a primitivos.
+ * Los trips se decodifican una sola vez al cargarlos (TripInfo.departureEpochSecond y
+ * TripInfo.departureMinuteOfDay) y la hora preferida del pasajero una vez por búsqueda,
+ * de modo que la puntuación compara enteros sin parsear ni reservar memoria.
+ */
+public final class DepartureTime {
+
+    public static final int UNKNOWN_MINUTE = -1;
+    public static final long UNKNOWN_EPOCH_SECOND = Long.MIN_VALUE;
+
+    private static final int MINUTES_PER_DAY = 24 * 60;
+
+    private DepartureTime() {
+    }
+
+    /**
+     * Rellena los campos precalculados del trip a partir de su dateTime ISO-8601.
+     * Si no es interpretable quedan con los valores UNKNOWN.
+     */
+    public static void decode(TripInfo trip) {
+        trip.departureEpochSecond = UNKNOWN_EPOCH_SECOND;
+        trip.departureMinuteOfDay = UNKNOWN_MINUTE;
+        if (trip.dateTime == null) return;
+        try {
+            OffsetDateTime dateTime = OffsetDateTime.parse(trip.dateTime, DateTimeFormatter.ISO_OFFSET_DATE_TIME);
+            trip.departureEpochSecond = dateTime.toEpochSecond();
+            trip.departureMinuteOfDay = dateTime.getHour() * 60 + dateTime.getMinute();
+        } catch (Exception e) {
+            // Fecha no interpretable: el trip se trata como de hora desconocida
+        }
+    }
+
+    /**
+     * Minuto del día de una hora "HH:mm", o UNKNOWN_MINUTE si no es válida.
+     */
+    public static int parsePreferredMinuteOfDay(String hhmm) {
+        if (hhmm == null || hhmm.isBlank()) return UNKNOWN_MINUTE;
+        int colon = hhmm.indexOf(':');
+        if (colon <= 0) return UNKNOWN_MINUTE;
+        int end = hhmm.indexOf(':', colon + 1);
+        try {
+            int hour = Integer.parseInt(hhmm.substring(0, colon).trim());
+            int minute = Integer.parseInt(hhmm.substring(colon + 1, end < 0 ? hhmm.length() : end).trim());
+            if (hour < 0 || hour > 23 || minute < 0 || minute > 59) return UNKNOWN_MINUTE;
+            return hour * 60 + minute;
+        } catch (NumberFormatException e) {
+            return UNKNOWN_MINUTE;
+        }
+    }
+
+    /**
+     * Minutos entre la salida del trip y la hora preferida, dando la vuelta a medianoche
+     * como la ventana de TripSpatialIndex (23:50 y 00:10 están a 20 minutos), o -1 si alguna
+     * de las dos es desconocida.
+     */
+    public static int minutesApart(int tripMinuteOfDay, int preferredMinuteOfDay) {
+        if (tripMinuteOfDay < 0 || preferredMinuteOfDay < 0) return -1;
+        int apart = Math.abs(tripMinuteOfDay - preferredMinuteOfDay);
+        return Math.min(apart, MINUTES_PER_DAY - apart);
+    }
+}
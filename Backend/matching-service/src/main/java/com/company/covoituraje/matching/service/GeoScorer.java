@@ -0,0 +1,128 @@
+package com.company.covoituraje.matching.service;
+
+/**
+ * Puntuación de proximidad entre orígenes a partir de coordenadas lat/lng.
+ * Usa la aproximación equirectangular (suficiente para distancias urbanas) con
+ * una caída lineal de 1.0 en el mismo punto a 0.0 en el radio máximo.
+ * Los trips fuera del radio se descartan con un bounding box antes de calcular distancias.
+ */
+public class GeoScorer {
+
+    static final double DEFAULT_RADIUS_KM = 15.0;
+    static final double REJECTED = -1.0;
+    static final double UNKNOWN_LOCATION_SCORE = 0.3;
+
+    private static final double EARTH_RADIUS_KM = 6371.0088;
+    private static final double KM_PER_DEGREE = Math.toRadians(1.0) * EARTH_RADIUS_KM;
+
+    private final double radiusKm;
+
+    public GeoScorer(double radiusKm) {
+        if (radiusKm <= 0.0) {
+            throw new IllegalArgumentException("radiusKm must be positive");
+        }
+        this.radiusKm = radiusKm;
+    }
+
+    /**
+     * Crea el scorer con el radio de MATCHING_ORIGIN_RADIUS_KM o el radio por defecto.
+     */
+    public static GeoScorer fromEnvironment() {
+        String value = System.getenv("MATCHING_ORIGIN_RADIUS_KM");
+        if (value != null && !value.isBlank()) {
+            try {
+                return new GeoScorer(Double.parseDouble(value.trim()));
+            } catch (IllegalArgumentException e) {
+                System.err.println("Invalid MATCHING_ORIGIN_RADIUS_KM, using default: " + value);
+            }
+        }
+        return new GeoScorer(DEFAULT_RADIUS_KM);
+    }
+
+    public double radiusKm() {
+        return radiusKm;
+    }
+
+    /**
+     * Prepara el origen del pasajero una sola vez por búsqueda.
+     * Devuelve null si el origen no tiene formato "lat,lng".
+     */
+    public Origin forOrigin(String location) {
+        double lat = parseLatitude(location);
+        double lng = parseLongitude(location);
+        if (Double.isNaN(lat) || Double.isNaN(lng)) {
+            return null;
+        }
+        return new Origin(lat, lng, radiusKm);
+    }
+
+    public static final class Origin {
+        private final double lat;
+        private final double lng;
+        private final double radiusKm;
+        private final double cosLat;
+        private final double maxLatDelta;
+        private final double maxLngDelta;
+
+        private Origin(double lat, double lng, double radiusKm) {
+            this.lat = lat;
+            this.lng = lng;
+            this.radiusKm = radiusKm;
+            this.cosLat = Math.cos(Math.toRadians(lat));
+            this.maxLatDelta = radiusKm / KM_PER_DEGREE;
+            this.maxLngDelta = radiusKm / (KM_PER_DEGREE * Math.max(0.01, cosLat));
+        }
+
+        public double lat() { return lat; }
+        public double lng() { return lng; }
+
+        /**
+         * Distancia aproximada en km hasta el punto dado.
+         */
+        public double distanceKm(double otherLat, double otherLng) {
+            double x = (otherLng - lng) * cosLat;
+            double y = otherLat - lat;
+            return Math.sqrt(x * x + y * y) * KM_PER_DEGREE;
+        }
+
+        /**
+         * Puntuación entre 0.0 y 1.0 según la distancia, o REJECTED si el punto queda fuera del radio.
+         * Puntos sin coordenadas reciben una puntuación neutra.
+         */
+        public double score(double otherLat, double otherLng) {
+            if (Double.isNaN(otherLat) || Double.isNaN(otherLng)) {
+                return UNKNOWN_LOCATION_SCORE;
+            }
+            if (Math.abs(otherLat - lat) > maxLatDelta || Math.abs(otherLng - lng) > maxLngDelta) {
+                return REJECTED;
+            }
+            double distance = distanceKm(otherLat, otherLng);
+            if (distance > radiusKm) {
+                return REJECTED;
+            }
+            return 1.0 - distance / radiusKm;
+        }
+    }
+
+    static double parseLatitude(String location) {
+        if (location == null) return Double.NaN;
+        int comma = location.indexOf(',');
+        if (comma <= 0) return Double.NaN;
+        try {
+            return Double.parseDouble(location.substring(0, comma).trim());
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    static double parseLongitude(String location) {
+        if (location == null) return Double.NaN;
+        int comma = location.indexOf(',');
+        if (comma <= 0 || comma == location.length() - 1) return Double.NaN;
+        try {
+            return Double.parseDouble(location.substring(comma + 1).trim());
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+}
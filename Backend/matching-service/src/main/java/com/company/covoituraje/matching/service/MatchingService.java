@@ -2,58 +2,81 @@ package com.company.covoituraje.matching.service;
 
 import com.company.covoituraje.matching.domain.Match;
 import com.company.covoituraje.matching.infrastructure.MatchRepository;
+import com.company.covoituraje.matching.infrastructure.MatchWriteBehindQueue;
 import com.company.covoituraje.matching.integration.TripsServiceClient;
 import com.company.covoituraje.matching.api.TripInfo;
 import com.company.covoituraje.matching.api.MatchResult;
 import com.company.covoituraje.http.ServiceIntegrationException;
 import com.company.covoituraje.shared.dto.TripDto;
 
+import java.io.IOException;
 import java.math.BigDecimal;
-import java.time.OffsetDateTime;
-import java.time.format.DateTimeFormatter;
 import java.util.*;
-import java.util.stream.Collectors;
 
 public class MatchingService {
     
+    public static final int DEFAULT_LIMIT = 20;
+    public static final int MAX_LIMIT = 100;
+    
     private final MatchRepository matchRepository;
     private final TripsServiceClient tripsServiceClient;
+    private final GeoScorer geoScorer;
+    private final MatchWriteBehindQueue writeBehindQueue;
+    private final TripSnapshotCache tripSnapshotCache;
+    private final ScoringEngine scoringEngine;
     
     public MatchingService(MatchRepository matchRepository, TripsServiceClient tripsServiceClient) {
+        this(matchRepository, tripsServiceClient, GeoScorer.fromEnvironment());
+    }
+    
+    public MatchingService(MatchRepository matchRepository, TripsServiceClient tripsServiceClient, GeoScorer geoScorer) {
+        this(matchRepository, tripsServiceClient, geoScorer, null);
+    }
+    
+    /**
+     * @param writeBehindQueue cola de persistencia diferida; si es null los matches se guardan en la petición
+     */
+    public MatchingService(MatchRepository matchRepository, TripsServiceClient tripsServiceClient,
+                           GeoScorer geoScorer, MatchWriteBehindQueue writeBehindQueue) {
+        this(matchRepository, tripsServiceClient, geoScorer, writeBehindQueue, null);
+    }
+    
+    /**
+     * @param tripSnapshotCache caché de trips por sede; si es null se consulta trips-service en cada búsqueda
+     */
+    public MatchingService(MatchRepository matchRepository, TripsServiceClient tripsServiceClient,
+                           GeoScorer geoScorer, MatchWriteBehindQueue writeBehindQueue,
+                           TripSnapshotCache tripSnapshotCache) {
+        this(matchRepository, tripsServiceClient, geoScorer, writeBehindQueue, tripSnapshotCache,
+             ScoringEngine.fromEnvironment());
+    }
+    
+    /**
+     * @param scoringEngine motor de puntuación (secuencial o paralelo según el número de candidatos)
+     */
+    public MatchingService(MatchRepository matchRepository, TripsServiceClient tripsServiceClient,
+                           GeoScorer geoScorer, MatchWriteBehindQueue writeBehindQueue,
+                           TripSnapshotCache tripSnapshotCache, ScoringEngine scoringEngine) {
         this.matchRepository = matchRepository;
         this.tripsServiceClient = tripsServiceClient;
+        this.geoScorer = geoScorer;
+        this.writeBehindQueue = writeBehindQueue;
+        this.tripSnapshotCache = tripSnapshotCache;
+        this.scoringEngine = scoringEngine;
     }
     
     public List<MatchResult> findMatches(String passengerId, String destinationSedeId, 
                                        String preferredTime, String originLocation) {
+        return findMatches(passengerId, destinationSedeId, preferredTime, originLocation, DEFAULT_LIMIT);
+    }
+    
+    public List<MatchResult> findMatches(String passengerId, String destinationSedeId, 
+                                       String preferredTime, String originLocation, int limit) {
         
-        // Get real trip data from trips-service
-        List<TripInfo> availableTrips = getAvailableTripsFromService(destinationSedeId);
-        
-        List<MatchResult> matches = new ArrayList<>();
-        
-        for (TripInfo trip : availableTrips) {
-            if (trip.seatsFree <= 0) continue; // Skip trips with no available seats
-            
-            double score = calculateMatchScore(trip, destinationSedeId, preferredTime, originLocation);
-            
-            if (score > 0.0) { // Only include trips with some compatibility
-                MatchResult match = new MatchResult();
-                match.tripId = trip.id;
-                match.driverId = trip.driverId;
-                match.origin = trip.origin;
-                match.destinationSedeId = trip.destinationSedeId;
-                match.dateTime = trip.dateTime;
-                match.seatsFree = trip.seatsFree;
-                match.score = score;
-                match.reasons = getMatchReasons(trip, destinationSedeId, preferredTime, originLocation, score);
-                
-                matches.add(match);
-            }
-        }
+        // Get real trip data from trips-service (or the local snapshot)
+        TripSnapshot snapshot = getAvailableTripsFromService(destinationSedeId);
         
-        // Sort by score (highest first)
-        matches.sort((a, b) -> Double.compare(b.score, a.score));
+        List<MatchResult> matches = matchAgainst(snapshot, destinationSedeId, preferredTime, originLocation, limit);
         
         // Save matches to database for tracking
         saveMatchesToDatabase(passengerId, matches);
@@ -61,148 +84,123 @@ public class MatchingService {
         return matches;
     }
     
-    private List<TripInfo> getAvailableTripsFromService(String destinationSedeId) {
-        try {
-            List<TripDto> tripDtos = tripsServiceClient.getAvailableTrips(destinationSedeId);
-            return tripDtos.stream()
-                    .filter(trip -> trip.seatsFree > 0) // Only trips with available seats
-                    .map(this::convertToTripInfo)
-                    .collect(Collectors.toList());
-        } catch (ServiceIntegrationException e) {
-            // Log the error and return empty list as fallback
-            System.err.println("Error fetching trips from trips-service: " + e.getMessage());
-            return new ArrayList<>();
+    /**
+     * Búsqueda de matches para muchos pasajeros. Los trips de cada sede se obtienen una
+     * sola vez para todo el lote y todas las búsquedas de la sede usan el mismo índice.
+     * Los resultados se entregan a consumer pasajero a pasajero, en el orden de la petición.
+     */
+    public void findMatchesBatch(List<PassengerQuery> queries, MatchesConsumer consumer) throws IOException {
+        Map<String, TripSnapshot> snapshots = new HashMap<>();
+        for (PassengerQuery query : queries) {
+            TripSnapshot snapshot = snapshots.computeIfAbsent(query.destinationSedeId, this::getAvailableTripsFromService);
+            List<MatchResult> matches = matchAgainst(snapshot, query.destinationSedeId,
+                                                     query.preferredTime, query.originLocation, query.limit);
+            saveMatchesToDatabase(query.passengerId, matches);
+            consumer.accept(query, matches);
         }
     }
     
-    private TripInfo convertToTripInfo(TripDto tripDto) {
-        TripInfo tripInfo = new TripInfo();
-        tripInfo.id = tripDto.id;
-        tripInfo.driverId = tripDto.driverId;
-        tripInfo.destinationSedeId = tripDto.destinationSedeId;
-        tripInfo.dateTime = tripDto.dateTime;
-        tripInfo.seatsTotal = tripDto.seatsTotal;
-        tripInfo.seatsFree = tripDto.seatsFree;
-        
-        // Convert origin from DTO format to string format
-        if (tripDto.origin != null) {
-            tripInfo.origin = tripDto.origin.lat + "," + tripDto.origin.lng;
-        } else {
-            tripInfo.origin = "0.0,0.0"; // Default fallback
+    /**
+     * Búsqueda de un pasajero dentro de un lote
+     */
+    public static final class PassengerQuery {
+        public final String passengerId;
+        public final String destinationSedeId;
+        public final String preferredTime;
+        public final String originLocation;
+        public final int limit;
+        
+        public PassengerQuery(String passengerId, String destinationSedeId, String preferredTime,
+                              String originLocation, int limit) {
+            this.passengerId = passengerId;
+            this.destinationSedeId = destinationSedeId;
+            this.preferredTime = preferredTime;
+            this.originLocation = originLocation;
+            this.limit = limit;
         }
-        
-        return tripInfo;
     }
     
-    private double calculateMatchScore(TripInfo trip, String destinationSedeId, 
-                                    String preferredTime, String originLocation) {
-        double score = 0.0;
-        
-        // 1. Destination match (40% weight)
-        if (destinationSedeId != null && destinationSedeId.equals(trip.destinationSedeId)) {
-            score += 0.4;
-        }
-        
-        // 2. Time compatibility (30% weight)
-        if (preferredTime != null) {
-            double timeScore = calculateTimeScore(trip.dateTime, preferredTime);
-            score += timeScore * 0.3;
-        }
-        
-        // 3. Origin proximity (20% weight)
-        if (originLocation != null) {
-            double locationScore = calculateLocationScore(trip.origin, originLocation);
-            score += locationScore * 0.2;
-        }
-        
-        // 4. Availability bonus (10% weight)
-        if (trip.seatsFree > 0) {
-            double availabilityScore = Math.min(1.0, trip.seatsFree / 4.0); // Max score for 4+ seats
-            score += availabilityScore * 0.1;
-        }
-        
-        return Math.min(1.0, score); // Cap at 1.0
+    /**
+     * Recibe los matches de cada pasajero de un lote en cuanto están calculados
+     */
+    public interface MatchesConsumer {
+        void accept(PassengerQuery query, List<MatchResult> matches) throws IOException;
     }
     
-    private double calculateTimeScore(String tripTime, String preferredTime) {
-        try {
-            // Parse times (simplified - assumes HH:mm format for preferredTime)
-            OffsetDateTime tripDateTime = OffsetDateTime.parse(tripTime, DateTimeFormatter.ISO_OFFSET_DATE_TIME);
-            int tripHour = tripDateTime.getHour();
-            int tripMinute = tripDateTime.getMinute();
-            int tripMinutes = tripHour * 60 + tripMinute;
-            
-            String[] preferredParts = preferredTime.split(":");
-            int preferredHour = Integer.parseInt(preferredParts[0]);
-            int preferredMinute = Integer.parseInt(preferredParts[1]);
-            int preferredMinutes = preferredHour * 60 + preferredMinute;
-            
-            int timeDiff = Math.abs(tripMinutes - preferredMinutes);
+    private List<MatchResult> matchAgainst(TripSnapshot snapshot, String destinationSedeId,
+                                           String preferredTime, String originLocation, int limit) {
+        // Parse the passenger query once per search
+        GeoScorer.Origin origin = geoScorer.forOrigin(originLocation);
+        int preferredMinutes = preferredTime != null
+                ? DepartureTime.parsePreferredMinuteOfDay(preferredTime)
+                : DepartureTime.UNKNOWN_MINUTE;
+        
+        // Only score trips from nearby cells and within the time window
+        List<TripInfo> candidates = snapshot.index().candidates(destinationSedeId,
+                origin != null ? origin.lat() : Double.NaN,
+                origin != null ? origin.lng() : Double.NaN,
+                preferredMinutes);
+        
+        // Score in parallel for big candidate sets; only the best candidates become a MatchResult
+        ScoringEngine.Query query = new ScoringEngine.Query(destinationSedeId, preferredTime != null,
+                preferredMinutes, originLocation != null, origin);
+        List<TopKSelector.Scored<TripInfo>> selection =
+                scoringEngine.selectTop(candidates, query, normalizeLimit(limit));
+        
+        // Selected trips come out sorted by score (highest first)
+        List<MatchResult> matches = new ArrayList<>(selection.size());
+        for (TopKSelector.Scored<TripInfo> selected : selection) {
+            TripInfo trip = selected.item();
+            MatchResult match = new MatchResult();
+            match.tripId = trip.id;
+            match.driverId = trip.driverId;
+            match.origin = trip.origin;
+            match.destinationSedeId = trip.destinationSedeId;
+            match.dateTime = trip.dateTime;
+            match.seatsFree = trip.seatsFree;
+            match.score = selected.score();
+            match.reasons = getMatchReasons(trip, destinationSedeId, preferredMinutes, match.score);
             
-            if (timeDiff <= 15) return 1.0;      // Perfect match
-            if (timeDiff <= 30) return 0.8;      // Good match
-            if (timeDiff <= 60) return 0.5;      // Acceptable match
-            if (timeDiff <= 120) return 0.2;     // Poor match
-            return 0.0;                          // No match
-            
-        } catch (Exception e) {
-            return 0.0;
+            matches.add(match);
         }
+        return matches;
     }
     
-    private double calculateLocationScore(String tripOrigin, String userOrigin) {
-        // Simplified location matching based on Madrid districts
-        // In production, this would use real geocoding and distance calculation
-        
-        if (tripOrigin.equalsIgnoreCase(userOrigin)) {
-            return 1.0; // Same location
-        }
-        
-        // Define proximity groups
-        Map<String, List<String>> proximityGroups = new HashMap<>();
-        proximityGroups.put("north", Arrays.asList("Madrid Norte", "Madrid Centro"));
-        proximityGroups.put("south", Arrays.asList("Madrid Sur", "Madrid Centro"));
-        proximityGroups.put("east", Arrays.asList("Madrid Este", "Madrid Centro"));
-        proximityGroups.put("west", Arrays.asList("Madrid Oeste", "Madrid Centro"));
-        proximityGroups.put("center", Arrays.asList("Madrid Centro", "Madrid Norte", "Madrid Sur", "Madrid Este", "Madrid Oeste"));
-        
-        // Check if origins are in the same proximity group
-        for (List<String> group : proximityGroups.values()) {
-            if (group.contains(tripOrigin) && group.contains(userOrigin)) {
-                return 0.7; // Same proximity group
+    static int normalizeLimit(int limit) {
+        if (limit <= 0) return DEFAULT_LIMIT;
+        return Math.min(limit, MAX_LIMIT);
+    }
+    
+    private TripSnapshot getAvailableTripsFromService(String destinationSedeId) {
+        try {
+            if (tripSnapshotCache != null) {
+                return tripSnapshotCache.get(destinationSedeId);
             }
+            List<TripDto> tripDtos = tripsServiceClient.getAvailableTrips(destinationSedeId);
+            return TripSnapshot.of(tripDtos, geoScorer.radiusKm());
+        } catch (ServiceIntegrationException e) {
+            // Log the error and return empty list as fallback
+            System.err.println("Error fetching trips from trips-service: " + e.getMessage());
+            return TripSnapshot.empty();
         }
-        
-        return 0.3; // Different areas but still in Madrid
     }
     
     private List<String> getMatchReasons(TripInfo trip, String destinationSedeId, 
-                                       String preferredTime, String originLocation, double score) {
+                                       int preferredMinutes, double score) {
         List<String> reasons = new ArrayList<>();
         
         if (destinationSedeId != null && destinationSedeId.equals(trip.destinationSedeId)) {
             reasons.add("Same destination");
         }
         
-        if (preferredTime != null) {
-            try {
-                OffsetDateTime tripDateTime = OffsetDateTime.parse(trip.dateTime, DateTimeFormatter.ISO_OFFSET_DATE_TIME);
-                String[] preferredParts = preferredTime.split(":");
-                int preferredHour = Integer.parseInt(preferredParts[0]);
-                int preferredMinute = Integer.parseInt(preferredParts[1]);
-                
-                int timeDiff = Math.abs(tripDateTime.getHour() * 60 + tripDateTime.getMinute() - 
-                                      (preferredHour * 60 + preferredMinute));
-                
-                if (timeDiff <= 15) {
-                    reasons.add("Perfect time match");
-                } else if (timeDiff <= 30) {
-                    reasons.add("Good time match");
-                } else if (timeDiff <= 60) {
-                    reasons.add("Acceptable time");
-                }
-            } catch (Exception e) {
-                // Ignore time parsing errors
+        int timeDiff = DepartureTime.minutesApart(trip.departureMinuteOfDay, preferredMinutes);
+        if (timeDiff >= 0) {
+            if (timeDiff <= 15) {
+                reasons.add("Perfect time match");
+            } else if (timeDiff <= 30) {
+                reasons.add("Good time match");
+            } else if (timeDiff <= 60) {
+                reasons.add("Acceptable time");
             }
         }
         
@@ -218,28 +216,29 @@ public class MatchingService {
     }
     
     private void saveMatchesToDatabase(String passengerId, List<MatchResult> matches) {
+        List<Match> rows = new ArrayList<>(matches.size());
         for (MatchResult match : matches) {
             try {
                 UUID tripId = UUID.fromString(match.tripId);
-                
-                // Check if match already exists
-                List<Match> existingMatches = matchRepository.findByTripIdAndPassengerId(tripId, passengerId);
-                if (!existingMatches.isEmpty()) {
-                    // Update existing match
-                    Match existingMatch = existingMatches.get(0);
-                    existingMatch.setMatchScore(BigDecimal.valueOf(match.score));
-                    existingMatch.setUpdatedAt(OffsetDateTime.now());
-                    matchRepository.save(existingMatch);
-                } else {
-                    // Create new match
-                    Match newMatch = new Match(tripId, passengerId, match.driverId, 
-                                             BigDecimal.valueOf(match.score), "PENDING");
-                    matchRepository.save(newMatch);
-                }
-            } catch (Exception e) {
+                rows.add(new Match(tripId, passengerId, match.driverId, 
+                                   BigDecimal.valueOf(match.score), "PENDING"));
+            } catch (IllegalArgumentException e) {
                 // Log error but continue processing
                 System.err.println("Error saving match: " + e.getMessage());
             }
         }
+        
+        // Hand off to the background flusher; only what does not fit is written here
+        if (writeBehindQueue != null) {
+            rows = writeBehindQueue.enqueueAll(rows);
+            if (rows.isEmpty()) return;
+        }
+        
+        try {
+            // Single transaction: inserts new matches, refreshes the score of existing ones
+            matchRepository.upsertAll(rows);
+        } catch (Exception e) {
+            System.err.println("Error saving matches: " + e.getMessage());
+        }
     }
 }
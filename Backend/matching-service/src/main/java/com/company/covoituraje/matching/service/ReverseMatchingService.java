@@ -0,0 +1,131 @@
+package com.company.covoituraje.matching.service;
+
+import com.company.covoituraje.matching.api.TripInfo;
+import com.company.covoituraje.matching.domain.Match;
+import com.company.covoituraje.matching.domain.OutboxEvent;
+import com.company.covoituraje.matching.infrastructure.MatchRepository;
+import com.company.covoituraje.matching.infrastructure.MatchWriteBehindQueue;
+import com.company.covoituraje.shared.dto.TripDto;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Matching inverso: cuando se crea o modifica un trip se evalúan solo las búsquedas
+ * permanentes de su sede y franja horaria, y los pasajeros con un match nuevo reciben
+ * una notificación a través del outbox. Evita que los pasajeros tengan que repetir GET /matches.
+ */
+public class ReverseMatchingService {
+
+    private final StandingQueryIndex standingQueryIndex;
+    private final MatchRepository matchRepository;
+    private final MatchWriteBehindQueue writeBehindQueue;
+    private final TripSnapshotCache tripSnapshotCache;
+
+    /**
+     * @param writeBehindQueue cola de persistencia diferida; si es null los matches se guardan en la petición
+     * @param tripSnapshotCache caché de trips a invalidar para la sede del trip; puede ser null
+     */
+    public ReverseMatchingService(StandingQueryIndex standingQueryIndex, MatchRepository matchRepository,
+                                  MatchWriteBehindQueue writeBehindQueue, TripSnapshotCache tripSnapshotCache) {
+        this.standingQueryIndex = standingQueryIndex;
+        this.matchRepository = matchRepository;
+        this.writeBehindQueue = writeBehindQueue;
+        this.tripSnapshotCache = tripSnapshotCache;
+    }
+
+    /**
+     * Evalúa el trip creado o modificado contra las búsquedas afectadas.
+     * Devuelve los matches nuevos (pasajeros que aún no tenían match con este trip).
+     */
+    public List<Match> onTripChanged(TripDto tripDto) {
+        if (tripSnapshotCache != null && tripDto.destinationSedeId != null) {
+            tripSnapshotCache.invalidate(tripDto.destinationSedeId);
+        }
+
+        UUID tripId;
+        try {
+            tripId = UUID.fromString(tripDto.id);
+        } catch (IllegalArgumentException | NullPointerException e) {
+            System.err.println("Ignoring trip event with invalid id: " + tripDto.id);
+            return List.of();
+        }
+        if (tripDto.seatsFree == null || tripDto.seatsFree <= 0) {
+            return List.of(); // Full trips are not offered to anyone
+        }
+
+        TripInfo trip = TripSnapshot.toTripInfo(tripDto);
+        List<StandingQueryIndex.Entry> affected = standingQueryIndex.affected(trip.destinationSedeId, trip.departureMinuteOfDay);
+        if (affected.isEmpty()) {
+            return List.of();
+        }
+
+        List<Match> rows = new ArrayList<>();
+        for (StandingQueryIndex.Entry entry : affected) {
+            if (entry.passengerId.equals(trip.driverId)) continue; // Drivers don't ride with themselves
+            double score = ScoringEngine.score(entry.query, true, trip.departureMinuteOfDay, trip.seatsFree,
+                                               trip.originLat, trip.originLng);
+            if (score > 0.0) {
+                rows.add(new Match(tripId, entry.passengerId, trip.driverId, BigDecimal.valueOf(score), "PENDING"));
+            }
+        }
+        if (rows.isEmpty()) {
+            return List.of();
+        }
+
+        // Passengers already matched with this trip only get their score refreshed
+        Set<String> alreadyMatched = new HashSet<>();
+        try {
+            for (Match existing : matchRepository.findByTripId(tripId)) {
+                alreadyMatched.add(existing.getPassengerId());
+            }
+        } catch (Exception e) {
+            System.err.println("Error loading existing matches for trip " + tripId + ": " + e.getMessage());
+        }
+
+        List<Match> newMatches = new ArrayList<>();
+        List<Match> refreshed = new ArrayList<>();
+        for (Match match : rows) {
+            if (alreadyMatched.add(match.getPassengerId())) {
+                newMatches.add(match);
+            } else {
+                refreshed.add(match);
+            }
+        }
+        saveMatches(refreshed);
+        if (newMatches.isEmpty()) {
+            return newMatches;
+        }
+
+        // New matches skip the write-behind queue: they are stored together with their
+        // notifications, which the outbox relay delivers and retries
+        List<OutboxEvent> notifications = new ArrayList<>(newMatches.size());
+        for (Match match : newMatches) {
+            notifications.add(OutboxEvent.newMatch(match.getPassengerId(), tripId, trip.dateTime));
+        }
+        try {
+            matchRepository.upsertAll(newMatches, notifications);
+        } catch (Exception e) {
+            // Passengers still find the trip through GET /matches
+            System.err.println("Error saving new reverse matches for trip " + tripId + ": " + e.getMessage());
+            return List.of();
+        }
+        return newMatches;
+    }
+
+    private void saveMatches(List<Match> rows) {
+        if (writeBehindQueue != null) {
+            rows = writeBehindQueue.enqueueAll(rows);
+            if (rows.isEmpty()) return;
+        }
+        try {
+            matchRepository.upsertAll(rows);
+        } catch (Exception e) {
+            System.err.println("Error saving reverse matches: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package com.company.covoituraje.matching.service;
+
+import com.company.covoituraje.matching.api.TripInfo;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Puntuación de candidatos y selección de los K mejores.
+ * Los candidatos se copian a un lote en formato struct-of-arrays (un array primitivo por
+ * atributo) y se puntúan con un bucle sin objetos intermedios. Por debajo del umbral se
+ * puntúa en el hilo de la petición; por encima se reparte el lote en tramos sobre un
+ * ForkJoinPool, cada tramo con su propio top-K, y los resultados se fusionan en orden de
+ * tramo, de modo que el resultado es idéntico al secuencial (incluidos los empates).
+ */
+public class ScoringEngine {
+
+    static final int DEFAULT_PARALLEL_THRESHOLD = 5_000;
+    static final int MIN_CHUNK_SIZE = 1_024;
+
+    private final int parallelThreshold;
+    private final ForkJoinPool pool;
+
+    public ScoringEngine() {
+        this(DEFAULT_PARALLEL_THRESHOLD, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param parallelThreshold número de candidatos a partir del cual se puntúa en paralelo
+     */
+    public ScoringEngine(int parallelThreshold, ForkJoinPool pool) {
+        this.parallelThreshold = Math.max(1, parallelThreshold);
+        this.pool = pool;
+    }
+
+    /**
+     * Crea el motor con el umbral de MATCHING_PARALLEL_THRESHOLD o el umbral por defecto.
+     */
+    public static ScoringEngine fromEnvironment() {
+        String value = System.getenv("MATCHING_PARALLEL_THRESHOLD");
+        if (value != null && !value.isBlank()) {
+            try {
+                return new ScoringEngine(Integer.parseInt(value.trim()), ForkJoinPool.commonPool());
+            } catch (NumberFormatException e) {
+                System.err.println("Invalid MATCHING_PARALLEL_THRESHOLD, using default: " + value);
+            }
+        }
+        return new ScoringEngine();
+    }
+
+    public int parallelThreshold() {
+        return parallelThreshold;
+    }
+
+    /**
+     * Puntúa los candidatos y devuelve los limit mejores de mayor a menor puntuación.
+     * Los trips sin plazas o con puntuación 0 no se devuelven.
+     */
+    public List<TopKSelector.Scored<TripInfo>> selectTop(List<TripInfo> candidates, Query query, int limit) {
+        CandidateBatch batch = CandidateBatch.of(candidates, query.destinationSedeId);
+        TopKSelector<TripInfo> topK;
+        if (batch.size < parallelThreshold || pool.getParallelism() <= 1) {
+            topK = new TopKSelector<>(limit);
+            scoreRange(batch, query, 0, batch.size, topK);
+        } else {
+            int chunkSize = Math.max(MIN_CHUNK_SIZE, batch.size / (pool.getParallelism() * 4));
+            topK = pool.invoke(new ScoreTask(batch, query, 0, batch.size, limit, chunkSize));
+        }
+        return topK.drainDescending();
+    }
+
+    /**
+     * Consulta del pasajero ya decodificada, compartida por todos los hilos de puntuación.
+     */
+    public static final class Query {
+        final String destinationSedeId;
+        final boolean hasPreferredTime;
+        final int preferredMinutes;
+        final boolean hasOrigin;
+        final GeoScorer.Origin origin;
+
+        /**
+         * @param hasPreferredTime el pasajero indicó hora (aunque no sea interpretable)
+         * @param hasOrigin el pasajero indicó origen; origin es null si no tiene formato "lat,lng"
+         */
+        public Query(String destinationSedeId, boolean hasPreferredTime, int preferredMinutes,
+                     boolean hasOrigin, GeoScorer.Origin origin) {
+            this.destinationSedeId = destinationSedeId;
+            this.hasPreferredTime = hasPreferredTime;
+            this.preferredMinutes = preferredMinutes;
+            this.hasOrigin = hasOrigin;
+            this.origin = origin;
+        }
+    }
+
+    // Puntúa [from, to) del lote y ofrece al top-K los trips compatibles
+    static void scoreRange(CandidateBatch batch, Query query, int from, int to, TopKSelector<TripInfo> topK) {
+        double[] lat = batch.originLat;
+        double[] lng = batch.originLng;
+        int[] minutes = batch.minuteOfDay;
+        int[] seats = batch.seatsFree;
+        boolean[] sameDestination = batch.sameDestination;
+        for (int i = from; i < to; i++) {
+            if (seats[i] <= 0) continue; // Skip trips with no available seats
+            double score = score(query, sameDestination[i], minutes[i], seats[i], lat[i], lng[i]);
+            if (score > 0.0) { // Only include trips with some compatibility
+                topK.offer(batch.trips[i], score);
+            }
+        }
+    }
+
+    static double score(Query query, boolean sameDestination, int minuteOfDay, int seatsFree,
+                        double originLat, double originLng) {
+        // Trips beyond the origin radius are not candidates at all
+        double locationScore = 0.0;
+        if (query.hasOrigin) {
+            locationScore = query.origin != null
+                    ? query.origin.score(originLat, originLng)
+                    : GeoScorer.UNKNOWN_LOCATION_SCORE;
+            if (locationScore == GeoScorer.REJECTED) {
+                return 0.0;
+            }
+        }
+
+        double score = 0.0;
+
+        // 1. Destination match (40% weight)
+        if (sameDestination) {
+            score += 0.4;
+        }
+
+        // 2. Time compatibility (30% weight)
+        if (query.hasPreferredTime) {
+            score += timeScore(minuteOfDay, query.preferredMinutes) * 0.3;
+        }
+
+        // 3. Origin proximity (20% weight)
+        if (query.hasOrigin) {
+            score += locationScore * 0.2;
+        }
+
+        // 4. Availability bonus (10% weight)
+        if (seatsFree > 0) {
+            double availabilityScore = Math.min(1.0, seatsFree / 4.0); // Max score for 4+ seats
+            score += availabilityScore * 0.1;
+        }
+
+        return Math.min(1.0, score); // Cap at 1.0
+    }
+
+    static double timeScore(int tripMinutes, int preferredMinutes) {
+        // Unknown trip or preferred time scores nothing
+        int timeDiff = DepartureTime.minutesApart(tripMinutes, preferredMinutes);
+        if (timeDiff < 0) return 0.0;
+
+        if (timeDiff <= 15) return 1.0;      // Perfect match
+        if (timeDiff <= 30) return 0.8;      // Good match
+        if (timeDiff <= 60) return 0.5;      // Acceptable match
+        if (timeDiff <= 120) return 0.2;     // Poor match
+        return 0.0;                          // No match
+    }
+
+    /**
+     * Candidatos de una búsqueda en formato struct-of-arrays.
+     */
+    static final class CandidateBatch {
+        final int size;
+        final TripInfo[] trips;
+        final double[] originLat;
+        final double[] originLng;
+        final int[] minuteOfDay;
+        final int[] seatsFree;
+        final boolean[] sameDestination;
+
+        private CandidateBatch(int size) {
+            this.size = size;
+            this.trips = new TripInfo[size];
+            this.originLat = new double[size];
+            this.originLng = new double[size];
+            this.minuteOfDay = new int[size];
+            this.seatsFree = new int[size];
+            this.sameDestination = new boolean[size];
+        }
+
+        static CandidateBatch of(List<TripInfo> candidates, String destinationSedeId) {
+            CandidateBatch batch = new CandidateBatch(candidates.size());
+            int i = 0;
+            for (TripInfo trip : candidates) {
+                batch.trips[i] = trip;
+                batch.originLat[i] = trip.originLat;
+                batch.originLng[i] = trip.originLng;
+                batch.minuteOfDay[i] = trip.departureMinuteOfDay;
+                batch.seatsFree[i] = trip.seatsFree;
+                batch.sameDestination[i] = destinationSedeId != null && destinationSedeId.equals(trip.destinationSedeId);
+                i++;
+            }
+            return batch;
+        }
+    }
+
+    private static final class ScoreTask extends RecursiveTask<TopKSelector<TripInfo>> {
+        private final CandidateBatch batch;
+        private final Query query;
+        private final int from;
+        private final int to;
+        private final int limit;
+        private final int chunkSize;
+
+        ScoreTask(CandidateBatch batch, Query query, int from, int to, int limit, int chunkSize) {
+            this.batch = batch;
+            this.query = query;
+            this.from = from;
+            this.to = to;
+            this.limit = limit;
+            this.chunkSize = chunkSize;
+        }
+
+        @Override
+        protected TopKSelector<TripInfo> compute() {
+            if (to - from <= chunkSize) {
+                TopKSelector<TripInfo> topK = new TopKSelector<>(limit);
+                scoreRange(batch, query, from, to, topK);
+                return topK;
+            }
+            int middle = (from + to) >>> 1;
+            ScoreTask left = new ScoreTask(batch, query, from, middle, limit, chunkSize);
+            ScoreTask right = new ScoreTask(batch, query, middle, to, limit, chunkSize);
+            right.fork();
+            TopKSelector<TripInfo> merged = left.compute();
+            TopKSelector<TripInfo> rightTopK = right.join();
+            // The left half goes first, so ties keep the candidate order
+            for (TopKSelector.Scored<TripInfo> scored : rightTopK.drainDescending()) {
+                if (!merged.offer(scored.item(), scored.score())) {
+                    break; // The rest of the right half scores lower
+                }
+            }
+            return merged;
+        }
+    }
+}
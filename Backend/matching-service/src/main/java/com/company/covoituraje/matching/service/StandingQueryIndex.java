@@ -0,0 +1,215 @@
+package com.company.covoituraje.matching.service;
+
+import com.company.covoituraje.matching.domain.StandingQuery;
+import com.company.covoituraje.matching.infrastructure.StandingQueryRepository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Índice en memoria de las búsquedas permanentes de los pasajeros, agrupadas por sede
+ * y franja horaria. Cada búsqueda se registra en todas las franjas que cubre su ventana,
+ * de modo que al crear o modificar un trip solo se consulta la franja de su hora de salida
+ * y el coste depende de las búsquedas afectadas, no del total.
+ */
+public class StandingQueryIndex {
+
+    static final int TIME_BUCKET_MINUTES = TripSpatialIndex.TIME_BUCKET_MINUTES;
+
+    private static final int MINUTES_PER_DAY = 24 * 60;
+    private static final int BUCKETS_PER_DAY = MINUTES_PER_DAY / TIME_BUCKET_MINUTES;
+    private static final int ANY_TIME_BUCKET = -1;
+
+    private static StandingQueryIndex shared;
+
+    private final GeoScorer defaultGeoScorer;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<UUID, Entry> byId = new HashMap<>();
+    private final Map<String, Map<Integer, Map<UUID, Entry>>> bySede = new HashMap<>();
+
+    public StandingQueryIndex(GeoScorer defaultGeoScorer) {
+        this.defaultGeoScorer = defaultGeoScorer;
+    }
+
+    /**
+     * Índice compartido del servicio, cargado desde la base de datos en el primer uso.
+     * Si la carga falla se arranca vacío y se irá llenando con las nuevas búsquedas.
+     */
+    public static synchronized StandingQueryIndex shared(GeoScorer defaultGeoScorer) {
+        if (shared == null) {
+            StandingQueryIndex index = new StandingQueryIndex(defaultGeoScorer);
+            try {
+                index.putAll(new StandingQueryRepository().findAll());
+            } catch (Exception e) {
+                System.err.println("Error loading standing queries: " + e.getMessage());
+            }
+            shared = index;
+        }
+        return shared;
+    }
+
+    public void putAll(Collection<StandingQuery> standingQueries) {
+        for (StandingQuery standingQuery : standingQueries) {
+            put(standingQuery);
+        }
+    }
+
+    /**
+     * Añade la búsqueda o reemplaza la que tenga el mismo id.
+     */
+    public void put(StandingQuery standingQuery) {
+        Entry entry = Entry.of(standingQuery, defaultGeoScorer);
+        lock.writeLock().lock();
+        try {
+            removeLocked(entry.id);
+            byId.put(entry.id, entry);
+            Map<Integer, Map<UUID, Entry>> buckets = bySede.computeIfAbsent(entry.destinationSedeId, k -> new HashMap<>());
+            for (int bucket : bucketsFor(entry)) {
+                buckets.computeIfAbsent(bucket, k -> new LinkedHashMap<>()).put(entry.id, entry);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(UUID id) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return byId.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Búsquedas de la sede cuya ventana horaria incluye la salida del trip.
+     * Un trip sin hora conocida afecta a todas las búsquedas de la sede.
+     */
+    public List<Entry> affected(String destinationSedeId, int tripMinuteOfDay) {
+        lock.readLock().lock();
+        try {
+            Map<Integer, Map<UUID, Entry>> buckets = destinationSedeId != null ? bySede.get(destinationSedeId) : null;
+            if (buckets == null) return List.of();
+
+            List<Entry> result = new ArrayList<>();
+            if (tripMinuteOfDay < 0) {
+                Map<UUID, Entry> distinct = new LinkedHashMap<>();
+                for (Map<UUID, Entry> entries : buckets.values()) {
+                    distinct.putAll(entries);
+                }
+                result.addAll(distinct.values());
+                return result;
+            }
+
+            Map<UUID, Entry> inBucket = buckets.get(tripMinuteOfDay / TIME_BUCKET_MINUTES);
+            if (inBucket != null) {
+                for (Entry entry : inBucket.values()) {
+                    if (entry.accepts(tripMinuteOfDay)) {
+                        result.add(entry);
+                    }
+                }
+            }
+            Map<UUID, Entry> anyTime = buckets.get(ANY_TIME_BUCKET);
+            if (anyTime != null) {
+                result.addAll(anyTime.values());
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Debe llamarse con el lock de escritura adquirido
+    private void removeLocked(UUID id) {
+        Entry previous = byId.remove(id);
+        if (previous == null) return;
+        Map<Integer, Map<UUID, Entry>> buckets = bySede.get(previous.destinationSedeId);
+        if (buckets == null) return;
+        for (int bucket : bucketsFor(previous)) {
+            Map<UUID, Entry> entries = buckets.get(bucket);
+            if (entries != null) {
+                entries.remove(id);
+                if (entries.isEmpty()) buckets.remove(bucket);
+            }
+        }
+        if (buckets.isEmpty()) bySede.remove(previous.destinationSedeId);
+    }
+
+    private static int[] bucketsFor(Entry entry) {
+        if (entry.preferredMinutes < 0) {
+            return new int[] { ANY_TIME_BUCKET };
+        }
+        int first = Math.floorDiv(entry.preferredMinutes - entry.timeWindowMinutes, TIME_BUCKET_MINUTES);
+        int last = Math.floorDiv(entry.preferredMinutes + entry.timeWindowMinutes, TIME_BUCKET_MINUTES);
+        int count = Math.min(BUCKETS_PER_DAY, last - first + 1);
+        int[] buckets = new int[count];
+        for (int i = 0; i < count; i++) {
+            buckets[i] = Math.floorMod(first + i, BUCKETS_PER_DAY);
+        }
+        return buckets;
+    }
+
+    /**
+     * Búsqueda permanente ya decodificada para puntuar trips sin volver a parsearla.
+     */
+    public static final class Entry {
+        final UUID id;
+        final String passengerId;
+        final String destinationSedeId;
+        final int preferredMinutes;
+        final int timeWindowMinutes;
+        final ScoringEngine.Query query;
+
+        private Entry(UUID id, String passengerId, String destinationSedeId, int preferredMinutes,
+                      int timeWindowMinutes, ScoringEngine.Query query) {
+            this.id = id;
+            this.passengerId = passengerId;
+            this.destinationSedeId = destinationSedeId;
+            this.preferredMinutes = preferredMinutes;
+            this.timeWindowMinutes = timeWindowMinutes;
+            this.query = query;
+        }
+
+        static Entry of(StandingQuery standingQuery, GeoScorer defaultGeoScorer) {
+            String preferredTime = standingQuery.getPreferredTime();
+            int preferredMinutes = preferredTime != null
+                    ? DepartureTime.parsePreferredMinuteOfDay(preferredTime)
+                    : DepartureTime.UNKNOWN_MINUTE;
+            String originLocation = standingQuery.getOriginLocation();
+            GeoScorer geoScorer = standingQuery.getRadiusKm() != null
+                    ? new GeoScorer(standingQuery.getRadiusKm())
+                    : defaultGeoScorer;
+            ScoringEngine.Query query = new ScoringEngine.Query(standingQuery.getDestinationSedeId(),
+                    preferredTime != null, preferredMinutes,
+                    originLocation != null, geoScorer.forOrigin(originLocation));
+            return new Entry(standingQuery.getId(), standingQuery.getPassengerId(),
+                    standingQuery.getDestinationSedeId(), preferredMinutes,
+                    standingQuery.getTimeWindowMinutes(), query);
+        }
+
+        public UUID id() { return id; }
+        public String passengerId() { return passengerId; }
+
+        // true si la salida del trip cae dentro de la ventana (con vuelta a medianoche)
+        boolean accepts(int tripMinuteOfDay) {
+            if (preferredMinutes < 0) return true;
+            int diff = Math.abs(tripMinuteOfDay - preferredMinutes);
+            return Math.min(diff, MINUTES_PER_DAY - diff) <= timeWindowMinutes;
+        }
+    }
+}
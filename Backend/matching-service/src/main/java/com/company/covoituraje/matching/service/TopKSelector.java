@@ -0,0 +1,155 @@
+package com.company.covoituraje.matching.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Selección de los K elementos con mayor puntuación usando un min-heap acotado.
+ * Cada oferta cuesta O(log K) y la memoria es O(K) independientemente del número de candidatos.
+ * A igual puntuación se conserva el elemento ofrecido antes, como hacía la ordenación estable anterior.
+ */
+public class TopKSelector<T> {
+
+    private final int capacity;
+    private final double[] scores;
+    private final long[] sequences;
+    private final Object[] items;
+    private int size;
+    private long nextSequence;
+
+    public TopKSelector(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.capacity = capacity;
+        this.scores = new double[capacity];
+        this.sequences = new long[capacity];
+        this.items = new Object[capacity];
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Puntuación mínima que debe superar un candidato para entrar en la selección
+     * una vez llena, o NEGATIVE_INFINITY si aún hay hueco.
+     */
+    public double threshold() {
+        return size < capacity ? Double.NEGATIVE_INFINITY : scores[0];
+    }
+
+    /**
+     * Ofrece un elemento. Devuelve true si ha entrado en la selección.
+     */
+    public boolean offer(T item, double score) {
+        long sequence = nextSequence++;
+        if (size < capacity) {
+            scores[size] = score;
+            sequences[size] = sequence;
+            items[size] = item;
+            siftUp(size++);
+            return true;
+        }
+        if (!isBetter(score, sequence, 0)) {
+            return false;
+        }
+        scores[0] = score;
+        sequences[0] = sequence;
+        items[0] = item;
+        siftDown(0);
+        return true;
+    }
+
+    /**
+     * Devuelve los elementos seleccionados de mayor a menor puntuación y vacía el selector.
+     */
+    @SuppressWarnings("unchecked")
+    public List<Scored<T>> drainDescending() {
+        int count = size;
+        Object[] ordered = new Object[count];
+        for (int i = count - 1; i >= 0; i--) {
+            ordered[i] = new Scored<>((T) items[0], scores[0]);
+            removeHead();
+        }
+        List<Scored<T>> result = new ArrayList<>(count);
+        for (Object scored : ordered) {
+            result.add((Scored<T>) scored);
+        }
+        nextSequence = 0;
+        return result;
+    }
+
+    public static final class Scored<T> {
+        private final T item;
+        private final double score;
+
+        Scored(T item, double score) {
+            this.item = item;
+            this.score = score;
+        }
+
+        public T item() { return item; }
+        public double score() { return score; }
+    }
+
+    private void removeHead() {
+        int last = --size;
+        scores[0] = scores[last];
+        sequences[0] = sequences[last];
+        items[0] = items[last];
+        items[last] = null;
+        if (size > 0) {
+            siftDown(0);
+        }
+    }
+
+    // true si (score, sequence) debe quedar por encima del elemento en la posición dada
+    private boolean isBetter(double score, long sequence, int index) {
+        int cmp = Double.compare(score, scores[index]);
+        return cmp > 0 || (cmp == 0 && sequence < sequences[index]);
+    }
+
+    private void siftUp(int index) {
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (!isBetter(scores[parent], sequences[parent], index)) {
+                break;
+            }
+            swap(index, parent);
+            index = parent;
+        }
+    }
+
+    private void siftDown(int index) {
+        int half = size >>> 1;
+        while (index < half) {
+            int child = 2 * index + 1;
+            int right = child + 1;
+            if (right < size && isBetter(scores[child], sequences[child], right)) {
+                child = right;
+            }
+            if (!isBetter(scores[index], sequences[index], child)) {
+                break;
+            }
+            swap(index, child);
+            index = child;
+        }
+    }
+
+    private void swap(int a, int b) {
+        double score = scores[a];
+        scores[a] = scores[b];
+        scores[b] = score;
+        long sequence = sequences[a];
+        sequences[a] = sequences[b];
+        sequences[b] = sequence;
+        Object item = items[a];
+        items[a] = items[b];
+        items[b] = item;
+    }
+}
@@ -0,0 +1,71 @@
+package com.company.covoituraje.matching.service;
+
+import com.company.covoituraje.matching.api.TripInfo;
+import com.company.covoituraje.shared.dto.TripDto;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Foto inmutable de los trips con plazas libres de una sede, ya convertidos a TripInfo
+ * e indexados. Se puede compartir entre peticiones.
+ */
+public final class TripSnapshot {
+
+    private static final TripSnapshot EMPTY = new TripSnapshot(Collections.emptyList(), new TripSpatialIndex());
+
+    private final List<TripInfo> trips;
+    private final TripSpatialIndex index;
+
+    private TripSnapshot(List<TripInfo> trips, TripSpatialIndex index) {
+        this.trips = trips;
+        this.index = index;
+    }
+
+    public static TripSnapshot empty() {
+        return EMPTY;
+    }
+
+    public static TripSnapshot of(List<TripDto> tripDtos, double searchRadiusKm) {
+        List<TripInfo> trips = new ArrayList<>(tripDtos.size());
+        for (TripDto tripDto : tripDtos) {
+            if (tripDto.seatsFree > 0) { // Only trips with available seats
+                trips.add(toTripInfo(tripDto));
+            }
+        }
+        return new TripSnapshot(Collections.unmodifiableList(trips), TripSpatialIndex.of(trips, searchRadiusKm));
+    }
+
+    public List<TripInfo> trips() {
+        return trips;
+    }
+
+    public TripSpatialIndex index() {
+        return index;
+    }
+
+    static TripInfo toTripInfo(TripDto tripDto) {
+        TripInfo tripInfo = new TripInfo();
+        tripInfo.id = tripDto.id;
+        tripInfo.driverId = tripDto.driverId;
+        tripInfo.destinationSedeId = tripDto.destinationSedeId;
+        tripInfo.dateTime = tripDto.dateTime;
+        DepartureTime.decode(tripInfo);
+        tripInfo.seatsTotal = tripDto.seatsTotal;
+        tripInfo.seatsFree = tripDto.seatsFree;
+        
+        // Convert origin from DTO format to string format
+        if (tripDto.origin != null) {
+            tripInfo.origin = tripDto.origin.lat + "," + tripDto.origin.lng;
+            if (tripDto.origin.lat != null && tripDto.origin.lng != null) {
+                tripInfo.originLat = tripDto.origin.lat;
+                tripInfo.originLng = tripDto.origin.lng;
+            }
+        } else {
+            tripInfo.origin = "0.0,0.0"; // Default fallback
+        }
+        
+        return tripInfo;
+    }
+}
@@ -0,0 +1,223 @@
+package com.company.covoituraje.matching.service;
+
+import com.company.covoituraje.http.ServiceIntegrationException;
+import com.company.covoituraje.matching.integration.TripsServiceClient;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongSupplier;
+
+/**
+ * Caché por sede de las fotos de trips obtenidas de trips-service.
+ * Una foto con menos de ttl se sirve directamente; entre ttl y ttl + maxStale se sirve
+ * la foto antigua y se refresca en segundo plano (stale-while-revalidate); más allá
+ * se recarga en la petición. Las cargas concurrentes de una misma sede se agrupan en una sola.
+ *
+ * La sede llega del cliente, así que la caché guarda como mucho maxEntries sedes: al superar
+ * el límite se descarta la usada hace más tiempo, y una sede cuya primera carga falla no se guarda.
+ */
+public class TripSnapshotCache {
+
+    /**
+     * Carga la foto de una sede desde el origen de datos.
+     */
+    public interface Loader {
+        TripSnapshot load(String destinationSedeId) throws ServiceIntegrationException;
+    }
+
+    static final long DEFAULT_TTL_SECONDS = 30;
+    static final long DEFAULT_MAX_STALE_SECONDS = 300;
+    static final int DEFAULT_MAX_ENTRIES = 256;
+
+    private static TripSnapshotCache shared;
+
+    private final Loader loader;
+    private final long ttlNanos;
+    private final long maxStaleNanos;
+    private final int maxEntries;
+    private final Executor refreshExecutor;
+    private final LongSupplier nanoClock;
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+    public TripSnapshotCache(Loader loader, long ttlSeconds, long maxStaleSeconds) {
+        this(loader, ttlSeconds, maxStaleSeconds, DEFAULT_MAX_ENTRIES);
+    }
+
+    public TripSnapshotCache(Loader loader, long ttlSeconds, long maxStaleSeconds, int maxEntries) {
+        this(loader, ttlSeconds, maxStaleSeconds, maxEntries, defaultRefreshExecutor(), System::nanoTime);
+    }
+
+    TripSnapshotCache(Loader loader, long ttlSeconds, long maxStaleSeconds,
+                      Executor refreshExecutor, LongSupplier nanoClock) {
+        this(loader, ttlSeconds, maxStaleSeconds, DEFAULT_MAX_ENTRIES, refreshExecutor, nanoClock);
+    }
+
+    TripSnapshotCache(Loader loader, long ttlSeconds, long maxStaleSeconds, int maxEntries,
+                      Executor refreshExecutor, LongSupplier nanoClock) {
+        this.loader = loader;
+        this.ttlNanos = TimeUnit.SECONDS.toNanos(ttlSeconds);
+        this.maxStaleNanos = TimeUnit.SECONDS.toNanos(maxStaleSeconds);
+        this.maxEntries = maxEntries;
+        this.refreshExecutor = refreshExecutor;
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * Caché compartida del servicio. Lee TTL de MATCHING_TRIPS_CACHE_TTL_SECONDS, la
+     * ventana stale de MATCHING_TRIPS_CACHE_MAX_STALE_SECONDS y el máximo de sedes de
+     * MATCHING_TRIPS_CACHE_MAX_SEDES.
+     */
+    public static synchronized TripSnapshotCache shared(TripsServiceClient tripsServiceClient, double searchRadiusKm) {
+        if (shared == null) {
+            Loader loader = sedeId -> TripSnapshot.of(tripsServiceClient.getAvailableTrips(sedeId), searchRadiusKm);
+            shared = new TripSnapshotCache(loader,
+                    readLong("MATCHING_TRIPS_CACHE_TTL_SECONDS", DEFAULT_TTL_SECONDS),
+                    readLong("MATCHING_TRIPS_CACHE_MAX_STALE_SECONDS", DEFAULT_MAX_STALE_SECONDS),
+                    (int) readLong("MATCHING_TRIPS_CACHE_MAX_SEDES", DEFAULT_MAX_ENTRIES));
+        }
+        return shared;
+    }
+
+    public TripSnapshot get(String destinationSedeId) throws ServiceIntegrationException {
+        long now = nanoClock.getAsLong();
+        Entry entry = entryFor(destinationSedeId, now);
+        Loaded current = entry.loaded;
+        if (current != null) {
+            long age = now - current.loadedAtNanos;
+            if (age < ttlNanos) {
+                return current.snapshot;
+            }
+            if (age < ttlNanos + maxStaleNanos) {
+                refreshInBackground(destinationSedeId, entry);
+                return current.snapshot;
+            }
+        }
+        try {
+            return load(destinationSedeId, entry).join();
+        } catch (CompletionException e) {
+            if (current != null) {
+                // Better an old snapshot than no trips at all
+                System.err.println("Serving stale trips for " + destinationSedeId + ": " + e.getCause().getMessage());
+                return current.snapshot;
+            }
+            // Never loaded: do not keep the sede (it may not even exist)
+            entries.remove(destinationSedeId, entry);
+            if (e.getCause() instanceof ServiceIntegrationException) {
+                throw (ServiceIntegrationException) e.getCause();
+            }
+            throw new ServiceIntegrationException("Error loading trips for destination: " + destinationSedeId, e.getCause());
+        }
+    }
+
+    /**
+     * Descarta la foto de una sede para que la siguiente petición la recargue.
+     */
+    public void invalidate(String destinationSedeId) {
+        entries.remove(destinationSedeId);
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    private Entry entryFor(String destinationSedeId, long now) {
+        Entry entry = entries.get(destinationSedeId);
+        if (entry == null) {
+            Entry created = new Entry();
+            entry = entries.putIfAbsent(destinationSedeId, created);
+            if (entry == null) {
+                entry = created;
+                entry.lastUsedNanos = now;
+                evictOverCapacity(destinationSedeId);
+            }
+        }
+        entry.lastUsedNanos = now;
+        return entry;
+    }
+
+    // Linear scan, only when a new sede is added; the number of sedes is small
+    private void evictOverCapacity(String justAdded) {
+        while (entries.size() > maxEntries) {
+            String oldestKey = null;
+            Entry oldest = null;
+            for (Map.Entry<String, Entry> candidate : entries.entrySet()) {
+                if (candidate.getKey().equals(justAdded)) continue;
+                if (oldest == null || candidate.getValue().lastUsedNanos - oldest.lastUsedNanos < 0) {
+                    oldestKey = candidate.getKey();
+                    oldest = candidate.getValue();
+                }
+            }
+            if (oldest == null) return;
+            entries.remove(oldestKey, oldest);
+        }
+    }
+
+    private void refreshInBackground(String destinationSedeId, Entry entry) {
+        if (entry.inFlight.get() != null) return;
+        try {
+            refreshExecutor.execute(() -> load(destinationSedeId, entry));
+        } catch (RuntimeException e) {
+            System.err.println("Could not schedule trips refresh for " + destinationSedeId + ": " + e.getMessage());
+        }
+    }
+
+    // Ejecuta la carga en el hilo actual, o devuelve la que ya está en curso para esta sede
+    private CompletableFuture<TripSnapshot> load(String destinationSedeId, Entry entry) {
+        CompletableFuture<TripSnapshot> mine = new CompletableFuture<>();
+        CompletableFuture<TripSnapshot> existing = entry.inFlight.compareAndExchange(null, mine);
+        if (existing != null) {
+            return existing;
+        }
+        try {
+            TripSnapshot snapshot = loader.load(destinationSedeId);
+            entry.loaded = new Loaded(snapshot, nanoClock.getAsLong());
+            mine.complete(snapshot);
+        } catch (Exception e) {
+            mine.completeExceptionally(e);
+        } finally {
+            entry.inFlight.set(null);
+        }
+        return mine;
+    }
+
+    private static long readLong(String name, long defaultValue) {
+        String value = System.getenv(name);
+        if (value == null || value.isBlank()) return defaultValue;
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid " + name + ", using default: " + value);
+            return defaultValue;
+        }
+    }
+
+    private static Executor defaultRefreshExecutor() {
+        return Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "trip-snapshot-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private static final class Entry {
+        volatile Loaded loaded;
+        volatile long lastUsedNanos;
+        final AtomicReference<CompletableFuture<TripSnapshot>> inFlight = new AtomicReference<>();
+    }
+
+    private static final class Loaded {
+        final TripSnapshot snapshot;
+        final long loadedAtNanos;
+
+        Loaded(TripSnapshot snapshot, long loadedAtNanos) {
+            this.snapshot = snapshot;
+            this.loadedAtNanos = loadedAtNanos;
+        }
+    }
+}
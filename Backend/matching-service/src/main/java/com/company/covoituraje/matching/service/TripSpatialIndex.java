@@ -0,0 +1,183 @@
+package com.company.covoituraje.matching.service;
+
+import com.company.covoituraje.matching.api.TripInfo;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Índice en memoria de los orígenes de los trips, agrupados por sede de destino,
+ * franja horaria de salida y celda de una rejilla uniforme lat/lng.
+ * Permite obtener los candidatos de una búsqueda tocando solo las celdas cercanas
+ * al origen del pasajero y las franjas dentro de la ventana horaria.
+ */
+public class TripSpatialIndex {
+
+    static final double DEFAULT_CELL_SIZE_DEGREES = 0.05;   // ~5.5 km de latitud
+    static final double DEFAULT_SEARCH_RADIUS_KM = 15.0;
+    static final int DEFAULT_TIME_WINDOW_MINUTES = 120;
+    static final int TIME_BUCKET_MINUTES = 30;
+
+    private static final int MINUTES_PER_DAY = 24 * 60;
+    private static final int BUCKETS_PER_DAY = MINUTES_PER_DAY / TIME_BUCKET_MINUTES;
+    private static final double KM_PER_DEGREE = 111.32;
+
+    private final double cellSizeDegrees;
+    private final double searchRadiusKm;
+    private final int timeWindowMinutes;
+    private final Map<String, SedeGrid> grids = new HashMap<>();
+    private int size;
+
+    public TripSpatialIndex() {
+        this(DEFAULT_CELL_SIZE_DEGREES, DEFAULT_SEARCH_RADIUS_KM, DEFAULT_TIME_WINDOW_MINUTES);
+    }
+
+    public TripSpatialIndex(double cellSizeDegrees, double searchRadiusKm, int timeWindowMinutes) {
+        if (cellSizeDegrees <= 0.0) {
+            throw new IllegalArgumentException("cellSizeDegrees must be positive");
+        }
+        this.cellSizeDegrees = cellSizeDegrees;
+        this.searchRadiusKm = searchRadiusKm;
+        this.timeWindowMinutes = timeWindowMinutes;
+    }
+
+    public static TripSpatialIndex of(Collection<TripInfo> trips) {
+        return of(trips, DEFAULT_SEARCH_RADIUS_KM);
+    }
+
+    public static TripSpatialIndex of(Collection<TripInfo> trips, double searchRadiusKm) {
+        TripSpatialIndex index = new TripSpatialIndex(DEFAULT_CELL_SIZE_DEGREES, searchRadiusKm, DEFAULT_TIME_WINDOW_MINUTES);
+        for (TripInfo trip : trips) {
+            index.add(trip);
+        }
+        return index;
+    }
+
+    /**
+     * Añade un trip al índice. Los trips sin sede no se indexan.
+     */
+    public void add(TripInfo trip) {
+        if (trip == null || trip.destinationSedeId == null) return;
+        SedeGrid grid = grids.computeIfAbsent(trip.destinationSedeId, k -> new SedeGrid());
+
+        int minuteOfDay = trip.departureMinuteOfDay;
+        int bucket = minuteOfDay < 0 ? SedeGrid.UNKNOWN_TIME_BUCKET : minuteOfDay / TIME_BUCKET_MINUTES;
+
+        long cell;
+        double lat = trip.originLat;
+        double lng = trip.originLng;
+        if (Double.isNaN(lat) || Double.isNaN(lng)) {
+            cell = SedeGrid.UNKNOWN_CELL;
+        } else {
+            cell = cellKey(cellRow(lat), cellColumn(lng));
+        }
+
+        grid.add(bucket, cell, trip);
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Devuelve los trips de la sede cuyo origen cae en las celdas cercanas al origen
+     * del pasajero y cuya hora de salida está dentro de la ventana horaria.
+     * Si el origen o la hora preferida no son interpretables, esa dimensión no se filtra.
+     */
+    public List<TripInfo> candidates(String destinationSedeId, String originLocation, String preferredTime) {
+        return candidates(destinationSedeId,
+                GeoScorer.parseLatitude(originLocation),
+                GeoScorer.parseLongitude(originLocation),
+                DepartureTime.parsePreferredMinuteOfDay(preferredTime));
+    }
+
+    /**
+     * Igual que candidates(String, String, String) con la consulta ya decodificada:
+     * lat/lng NaN o preferredMinutes negativo desactivan el filtro correspondiente.
+     */
+    public List<TripInfo> candidates(String destinationSedeId, double lat, double lng, int preferredMinutes) {
+        SedeGrid grid = destinationSedeId != null ? grids.get(destinationSedeId) : null;
+        if (grid == null) return Collections.emptyList();
+
+        boolean filterByCell = !Double.isNaN(lat) && !Double.isNaN(lng);
+
+        List<TripInfo> result = new ArrayList<>();
+        for (int bucket : bucketsInWindow(preferredMinutes)) {
+            Map<Long, List<TripInfo>> cells = grid.buckets.get(bucket);
+            if (cells == null) continue;
+            if (!filterByCell) {
+                for (List<TripInfo> trips : cells.values()) {
+                    result.addAll(trips);
+                }
+                continue;
+            }
+            int rowSpan = (int) Math.ceil(searchRadiusKm / KM_PER_DEGREE / cellSizeDegrees);
+            double kmPerDegreeLng = KM_PER_DEGREE * Math.max(0.01, Math.cos(Math.toRadians(lat)));
+            int columnSpan = (int) Math.ceil(searchRadiusKm / kmPerDegreeLng / cellSizeDegrees);
+            int row = cellRow(lat);
+            int column = cellColumn(lng);
+            for (int r = row - rowSpan; r <= row + rowSpan; r++) {
+                for (int c = column - columnSpan; c <= column + columnSpan; c++) {
+                    List<TripInfo> trips = cells.get(cellKey(r, c));
+                    if (trips != null) {
+                        result.addAll(trips);
+                    }
+                }
+            }
+            // Trips sin origen conocido no se pueden descartar por distancia
+            List<TripInfo> unknown = cells.get(SedeGrid.UNKNOWN_CELL);
+            if (unknown != null) {
+                result.addAll(unknown);
+            }
+        }
+        return result;
+    }
+
+    private int[] bucketsInWindow(int preferredMinutes) {
+        if (preferredMinutes < 0) {
+            int[] all = new int[BUCKETS_PER_DAY + 1];
+            for (int i = 0; i < BUCKETS_PER_DAY; i++) all[i] = i;
+            all[BUCKETS_PER_DAY] = SedeGrid.UNKNOWN_TIME_BUCKET;
+            return all;
+        }
+        int first = Math.floorDiv(preferredMinutes - timeWindowMinutes, TIME_BUCKET_MINUTES);
+        int last = Math.floorDiv(preferredMinutes + timeWindowMinutes, TIME_BUCKET_MINUTES);
+        int count = Math.min(BUCKETS_PER_DAY, last - first + 1);
+        int[] buckets = new int[count + 1];
+        for (int i = 0; i < count; i++) {
+            buckets[i] = Math.floorMod(first + i, BUCKETS_PER_DAY);
+        }
+        buckets[count] = SedeGrid.UNKNOWN_TIME_BUCKET;
+        return buckets;
+    }
+
+    private int cellRow(double lat) {
+        return (int) Math.floor(lat / cellSizeDegrees);
+    }
+
+    private int cellColumn(double lng) {
+        return (int) Math.floor(lng / cellSizeDegrees);
+    }
+
+    private static long cellKey(int row, int column) {
+        return ((long) row << 32) | (column & 0xffffffffL);
+    }
+
+    private static final class SedeGrid {
+        static final int UNKNOWN_TIME_BUCKET = -1;
+        static final long UNKNOWN_CELL = Long.MIN_VALUE;
+
+        final Map<Integer, Map<Long, List<TripInfo>>> buckets = new HashMap<>();
+
+        void add(int bucket, long cell, TripInfo trip) {
+            buckets.computeIfAbsent(bucket, k -> new HashMap<>())
+                   .computeIfAbsent(cell, k -> new ArrayList<>())
+                   .add(trip);
+        }
+    }
+}
@@ -0,0 +1,20 @@
+-- Set search path to matches schema
+SET search_path TO matches, public;
+
+-- Keep one match per (trip, passenger) before adding the constraint: a decided match
+-- (ACCEPTED/REJECTED) wins over PENDING ones, then the most recent
+DELETE FROM matches
+WHERE id IN (
+    SELECT id FROM (
+        SELECT id,
+               ROW_NUMBER() OVER (
+                   PARTITION BY trip_id, passenger_id
+                   ORDER BY (status <> 'PENDING') DESC, updated_at DESC NULLS LAST, id DESC
+               ) AS rn
+        FROM matches
+    ) ranked
+    WHERE ranked.rn > 1
+);
+
+-- One match per trip and passenger, required by the bulk upsert (ON CONFLICT)
+CREATE UNIQUE INDEX IF NOT EXISTS uk_matches_trip_passenger ON matches(trip_id, passenger_id);
@@ -0,0 +1,25 @@
+-- Set search path to matches schema
+SET search_path TO matches, public;
+
+-- Standing match queries: passengers waiting for trips to a sede
+CREATE TABLE IF NOT EXISTS standing_queries (
+    id UUID PRIMARY KEY DEFAULT gen_random_uuid(),
+    passenger_id VARCHAR(255) NOT NULL,
+    destination_sede_id VARCHAR(255) NOT NULL,
+    preferred_time VARCHAR(5),
+    time_window_minutes INTEGER NOT NULL DEFAULT 60 CHECK (time_window_minutes > 0 AND time_window_minutes <= 180),
+    origin_location VARCHAR(255),
+    radius_km DOUBLE PRECISION CHECK (radius_km IS NULL OR radius_km > 0),
+    created_at TIMESTAMP WITH TIME ZONE DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP WITH TIME ZONE DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE INDEX IF NOT EXISTS idx_standing_queries_passenger_id ON standing_queries(passenger_id);
+CREATE INDEX IF NOT EXISTS idx_standing_queries_sede ON standing_queries(destination_sede_id);
+
+-- Add comments
+COMMENT ON TABLE standing_queries IS 'Standing match queries evaluated against every created or updated trip';
+COMMENT ON COLUMN standing_queries.preferred_time IS 'Preferred departure time (HH:mm), NULL for any time';
+COMMENT ON COLUMN standing_queries.time_window_minutes IS 'Accepted distance in minutes from the preferred time';
+COMMENT ON COLUMN standing_queries.origin_location IS 'Passenger origin as "lat,lng", NULL for any origin';
+COMMENT ON COLUMN standing_queries.radius_km IS 'Maximum origin distance in km, NULL for the service default';
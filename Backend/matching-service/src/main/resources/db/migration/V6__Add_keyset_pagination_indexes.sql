@@ -0,0 +1,10 @@
+-- Set search path to matches schema
+SET search_path TO matches, public;
+
+-- Keyset pagination of /matches/my-matches and /matches/driver/{id} walks (match_score DESC, id)
+CREATE INDEX IF NOT EXISTS idx_matches_passenger_score_id ON matches(passenger_id, match_score DESC, id);
+CREATE INDEX IF NOT EXISTS idx_matches_driver_score_id ON matches(driver_id, match_score DESC, id);
+
+-- Covered by the composite indexes above
+DROP INDEX IF EXISTS idx_matches_passenger_id;
+DROP INDEX IF EXISTS idx_matches_driver_id;
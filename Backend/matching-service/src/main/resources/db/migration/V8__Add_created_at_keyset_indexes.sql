@@ -0,0 +1,7 @@
+-- Set search path to matches schema
+SET search_path TO matches, public;
+
+-- Keyset pagination of /matches/my-matches and /matches/driver/{id} now walks (created_at, id),
+-- newest first: match_score is rewritten by every upsert, so rows moved across the cursor
+CREATE INDEX IF NOT EXISTS idx_matches_passenger_created_at_id ON matches(passenger_id, created_at DESC, id DESC);
+CREATE INDEX IF NOT EXISTS idx_matches_driver_created_at_id ON matches(driver_id, created_at DESC, id DESC);
@@ -2,6 +2,7 @@ package com.company.covoituraje.matching.api;
 
 import com.company.covoituraje.auth.JwtValidationException;
 import com.company.covoituraje.auth.JwtValidator;
+import com.company.covoituraje.auth.ServiceAuth;
 import jakarta.ws.rs.container.ContainerRequestContext;
 import jakarta.ws.rs.core.Response;
 import org.junit.jupiter.api.Test;
@@ -82,6 +83,35 @@ class AuthFilterTest {
         verify(ctx).abortWith(cap.capture());
         assertEquals(403, cap.getValue().getStatus());
     }
-}
 
+    @Test
+    void validServiceToken_withoutJwt_grantsServiceRole() {
+        JwtValidator validator = mock(JwtValidator.class);
+        AuthFilter filter = new AuthFilter(validator, true, "s3cret");
+        ContainerRequestContext ctx = mock(ContainerRequestContext.class);
+        when(ctx.getHeaderString(ServiceAuth.HEADER)).thenReturn("s3cret");
+
+        try {
+            filter.filter(ctx);
+
+            verify(ctx, never()).abortWith(any());
+            assertTrue(MatchesResource.AuthContext.hasRole(ServiceAuth.SERVICE_ROLE));
+        } finally {
+            MatchesResource.AuthContext.clear();
+        }
+    }
+
+    @Test
+    void wrongServiceToken_aborts401() {
+        JwtValidator validator = mock(JwtValidator.class);
+        AuthFilter filter = new AuthFilter(validator, false, "s3cret");
+        ContainerRequestContext ctx = mock(ContainerRequestContext.class);
+        when(ctx.getHeaderString(ServiceAuth.HEADER)).thenReturn("guess");
+
+        filter.filter(ctx);
 
+        ArgumentCaptor<Response> cap = ArgumentCaptor.forClass(Response.class);
+        verify(ctx).abortWith(cap.capture());
+        assertEquals(401, cap.getValue().getStatus());
+    }
+}
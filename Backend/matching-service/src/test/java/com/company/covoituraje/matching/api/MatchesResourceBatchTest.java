@@ -0,0 +1,80 @@
+package com.company.covoituraje.matching.api;
+
+import com.company.covoituraje.auth.ServiceAuth;
+import com.company.covoituraje.matching.infrastructure.MatchRepository;
+import com.company.covoituraje.matching.service.MatchingService;
+import com.company.covoituraje.shared.i18n.MessageService;
+import jakarta.ws.rs.BadRequestException;
+import jakarta.ws.rs.ForbiddenException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class MatchesResourceBatchTest {
+
+    private MatchingService service;
+    private MatchesResource resource;
+    private final MessageService messageService = new MessageService();
+
+    @BeforeEach
+    void setUp() {
+        service = mock(MatchingService.class);
+        resource = new MatchesResource(service, mock(MatchRepository.class), messageService);
+    }
+
+    @AfterEach
+    void tearDown() {
+        MatchesResource.AuthContext.clear();
+    }
+
+    private static BatchMatchRequest request(int queries) {
+        BatchMatchRequest request = new BatchMatchRequest();
+        request.queries = new ArrayList<>();
+        for (int i = 0; i < queries; i++) {
+            BatchMatchRequest.Query query = new BatchMatchRequest.Query();
+            query.passengerId = "p-" + i;
+            query.destinationSedeId = "SEDE-1";
+            request.queries.add(query);
+        }
+        return request;
+    }
+
+    @Test
+    void findMatchesBatch_employee_returns403() {
+        MatchesResource.AuthContext.setUserId("user-1");
+        MatchesResource.AuthContext.setRoles(List.of("EMPLOYEE"));
+
+        assertThrows(ForbiddenException.class, () -> resource.findMatchesBatch(request(1), "en"));
+        verifyNoInteractions(service);
+    }
+
+    @Test
+    void findMatchesBatch_admin_acceptsRequest() {
+        MatchesResource.AuthContext.setRoles(List.of(ServiceAuth.ADMIN_ROLE));
+
+        assertNotNull(resource.findMatchesBatch(request(2), "en"));
+    }
+
+    @Test
+    void findMatchesBatch_invalidSize_usesLocalizedMessages() {
+        MatchesResource.AuthContext.setRoles(List.of(ServiceAuth.SERVICE_ROLE));
+        Locale es = Locale.forLanguageTag("es");
+
+        BadRequestException empty = assertThrows(BadRequestException.class,
+                () -> resource.findMatchesBatch(request(0), "es"));
+        assertEquals(messageService.getMessage("matches.error.batch_queries_required", es), empty.getMessage());
+
+        BadRequestException tooLarge = assertThrows(BadRequestException.class,
+                () -> resource.findMatchesBatch(request(MatchesResource.MAX_BATCH_QUERIES + 1), "es"));
+        assertEquals(messageService.getMessage("matches.error.batch_too_large", es, String.valueOf(MatchesResource.MAX_BATCH_QUERIES)),
+                tooLarge.getMessage());
+        assertTrue(tooLarge.getMessage().contains("5000"));
+    }
+}
@@ -1,16 +1,18 @@
 package com.company.covoituraje.matching.api;
 
 import com.company.covoituraje.matching.domain.Match;
+import com.company.covoituraje.matching.domain.OutboxEvent;
 import com.company.covoituraje.matching.infrastructure.MatchRepository;
 import com.company.covoituraje.matching.integration.TripsServiceClient;
 import com.company.covoituraje.matching.service.MatchingService;
-import com.company.covoituraje.matching.integration.NotificationServiceClient;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 
 import java.math.BigDecimal;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -22,7 +24,6 @@ class MatchesResourceNotificationsTest {
 
     private MatchRepository repository;
     private MatchingService service;
-    private NotificationServiceClient notifications;
     private MatchesResource resource;
 
     @BeforeEach
@@ -30,8 +31,7 @@ class MatchesResourceNotificationsTest {
         repository = Mockito.mock(MatchRepository.class);
         TripsServiceClient trips = Mockito.mock(TripsServiceClient.class);
         service = new MatchingService(repository, trips);
-        notifications = Mockito.mock(NotificationServiceClient.class);
-        resource = new MatchesResource(service, repository, notifications);
+        resource = new MatchesResource(service, repository);
         MatchesResource.AuthContext.setUserId("user-1");
     }
 
@@ -41,28 +41,34 @@ class MatchesResourceNotificationsTest {
     }
 
     @Test
-    void accept_should_send_notification_to_driver_and_passenger() throws Exception {
+    void accept_should_queue_notifications_to_passenger_and_driver() throws Exception {
         UUID matchId = UUID.randomUUID();
         Match m = new Match(UUID.randomUUID(), "user-1", "driver-1", BigDecimal.valueOf(0.8), "PENDING");
         when(repository.findById(matchId)).thenReturn(Optional.of(m));
-        when(repository.save(any())).thenAnswer(inv -> inv.getArgument(0));
+        when(repository.saveWithNotifications(any(Match.class), any(OutboxEvent[].class))).thenAnswer(inv -> inv.getArgument(0));
 
         MatchDto dto = resource.accept(matchId.toString());
 
         assertEquals("ACCEPTED", dto.status);
-        verify(notifications).sendMatchAccepted("user-1", "driver-1", m.getTripId().toString());
+        ArgumentCaptor<OutboxEvent> events = ArgumentCaptor.forClass(OutboxEvent.class);
+        verify(repository).saveWithNotifications(any(Match.class), events.capture(), events.capture());
+        assertEquals(List.of("user-1", "driver-1"), events.getAllValues().stream().map(OutboxEvent::getRecipientId).toList());
+        assertEquals(OutboxEvent.MATCH_ACCEPTED, events.getAllValues().get(0).getEventType());
     }
 
     @Test
-    void reject_should_send_notification_to_passenger() throws Exception {
+    void reject_should_queue_notification_to_passenger() throws Exception {
         UUID matchId = UUID.randomUUID();
         Match m = new Match(UUID.randomUUID(), "user-1", "driver-1", BigDecimal.valueOf(0.8), "PENDING");
         when(repository.findById(matchId)).thenReturn(Optional.of(m));
-        when(repository.save(any())).thenAnswer(inv -> inv.getArgument(0));
+        when(repository.saveWithNotifications(any(Match.class), any(OutboxEvent[].class))).thenAnswer(inv -> inv.getArgument(0));
 
         MatchDto dto = resource.reject(matchId.toString());
 
         assertEquals("REJECTED", dto.status);
-        verify(notifications).sendMatchRejected("user-1", m.getTripId().toString());
+        ArgumentCaptor<OutboxEvent> event = ArgumentCaptor.forClass(OutboxEvent.class);
+        verify(repository).saveWithNotifications(any(Match.class), event.capture());
+        assertEquals("user-1", event.getValue().getRecipientId());
+        assertEquals(OutboxEvent.MATCH_REJECTED, event.getValue().getEventType());
     }
 }
@@ -0,0 +1,75 @@
+package com.company.covoituraje.matching.api;
+
+import com.company.covoituraje.matching.domain.Match;
+import com.company.covoituraje.matching.infrastructure.MatchRepository;
+import com.company.covoituraje.matching.integration.TripsServiceClient;
+import com.company.covoituraje.matching.service.MatchingService;
+import com.company.covoituraje.shared.pagination.PageCursor;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class MatchesResourcePaginationTest {
+
+    private MatchRepository repository;
+    private MatchesResource resource;
+
+    @BeforeEach
+    void setUp() {
+        repository = Mockito.mock(MatchRepository.class);
+        MatchingService service = new MatchingService(repository, Mockito.mock(TripsServiceClient.class));
+        resource = new MatchesResource(service, repository);
+        MatchesResource.AuthContext.setUserId("user-1");
+    }
+
+    @AfterEach
+    void tearDown() {
+        MatchesResource.AuthContext.clear();
+    }
+
+    @Test
+    void my_matches_should_page_by_creation_time_not_by_score() throws Exception {
+        OffsetDateTime newest = OffsetDateTime.of(2025, 3, 2, 8, 30, 0, 123_456_000, ZoneOffset.UTC);
+        Match first = match(newest, "0.40");
+        Match second = match(newest.minusMinutes(5), "0.90");
+        when(repository.streamPageByPassengerId(eq("user-1"), isNull(), isNull(), isNull(), isNull(), eq(2)))
+                .thenReturn(Stream.of(first, second));
+        when(repository.streamPageByPassengerId(eq("user-1"), isNull(), isNull(), eq(newest), eq(first.getId()), eq(2)))
+                .thenReturn(Stream.of(second));
+
+        JsonNode page = write(resource.getMyMatches(null, null, 1, null, null));
+        PageCursor cursor = PageCursor.decode(page.get("nextCursor").asText());
+        write(resource.getMyMatches(null, null, 1, page.get("nextCursor").asText(), null));
+
+        assertEquals(1, page.get("items").size());
+        assertEquals(newest, OffsetDateTime.parse(cursor.key()));
+        verify(repository).streamPageByPassengerId("user-1", null, null, newest, first.getId(), 2);
+    }
+
+    private static JsonNode write(jakarta.ws.rs.core.StreamingOutput output) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        output.write(bytes);
+        return new ObjectMapper().readTree(bytes.toByteArray());
+    }
+
+    private static Match match(OffsetDateTime createdAt, String score) {
+        Match match = new Match(UUID.randomUUID(), "user-1", "driver-1", new BigDecimal(score), "PENDING");
+        match.setId(UUID.randomUUID());
+        match.setCreatedAt(createdAt);
+        return match;
+    }
+}
@@ -0,0 +1,56 @@
+package com.company.covoituraje.matching.api;
+
+import com.company.covoituraje.auth.ServiceAuth;
+import com.company.covoituraje.matching.service.ReverseMatchingService;
+import com.company.covoituraje.shared.dto.TripDto;
+import jakarta.ws.rs.ForbiddenException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class TripEventsResourceTest {
+
+    private ReverseMatchingService reverseMatchingService;
+    private TripEventsResource resource;
+
+    @BeforeEach
+    void setUp() {
+        reverseMatchingService = mock(ReverseMatchingService.class);
+        resource = new TripEventsResource(reverseMatchingService);
+    }
+
+    @AfterEach
+    void tearDown() {
+        MatchesResource.AuthContext.clear();
+    }
+
+    @Test
+    void tripChanged_fromService_isMatched() {
+        MatchesResource.AuthContext.setRoles(List.of(ServiceAuth.SERVICE_ROLE));
+        TripDto trip = new TripDto();
+        trip.id = UUID.randomUUID().toString();
+        when(reverseMatchingService.onTripChanged(trip)).thenReturn(List.of());
+
+        TripEventsResource.TripEventResult result = resource.tripChanged(trip, "en");
+
+        assertEquals(trip.id, result.tripId);
+        verify(reverseMatchingService).onTripChanged(trip);
+    }
+
+    @Test
+    void tripChanged_fromEndUser_returns403() {
+        MatchesResource.AuthContext.setUserId("user-1");
+        MatchesResource.AuthContext.setRoles(List.of("EMPLOYEE"));
+        TripDto trip = new TripDto();
+        trip.id = UUID.randomUUID().toString();
+
+        assertThrows(ForbiddenException.class, () -> resource.tripChanged(trip, "en"));
+        verifyNoInteractions(reverseMatchingService);
+    }
+}
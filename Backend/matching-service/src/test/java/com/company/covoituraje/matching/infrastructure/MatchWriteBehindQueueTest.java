@@ -0,0 +1,149 @@
+package com.company.covoituraje.matching.infrastructure;
+
+import com.company.covoituraje.matching.domain.Match;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+class MatchWriteBehindQueueTest {
+
+    @Test
+    void enqueue_coalescesByTripAndPassenger() {
+        MatchRepository repository = mock(MatchRepository.class);
+        MatchWriteBehindQueue queue = new MatchWriteBehindQueue(repository, 10, 10, 50, 0);
+        UUID tripId = UUID.randomUUID();
+
+        queue.enqueue(match(tripId, "passenger-1", "0.50"));
+        queue.enqueue(match(tripId, "passenger-1", "0.90"));
+        queue.enqueue(match(tripId, "passenger-2", "0.70"));
+
+        assertEquals(2, queue.pendingCount());
+
+        queue.close();
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Match>> captor = ArgumentCaptor.forClass(List.class);
+        verify(repository).upsertAll(captor.capture());
+        List<Match> written = captor.getValue();
+        assertEquals(2, written.size());
+        assertEquals(new BigDecimal("0.90"), written.get(0).getMatchScore());
+    }
+
+    @Test
+    void enqueue_whenFull_rejectsNewKeys() {
+        MatchRepository repository = mock(MatchRepository.class);
+        MatchWriteBehindQueue queue = new MatchWriteBehindQueue(repository, 2, 10, 50, 10);
+        UUID tripId = UUID.randomUUID();
+
+        assertTrue(queue.enqueue(match(tripId, "passenger-1", "0.50")));
+        assertTrue(queue.enqueue(match(tripId, "passenger-2", "0.50")));
+        assertFalse(queue.enqueue(match(tripId, "passenger-3", "0.50")));
+        // Updating an already pending key does not need room
+        assertTrue(queue.enqueue(match(tripId, "passenger-1", "0.60")));
+    }
+
+    @Test
+    void flusher_writesInBatches() throws Exception {
+        MatchRepository repository = mock(MatchRepository.class);
+        List<Integer> batchSizes = new ArrayList<>();
+        doAnswer(invocation -> {
+            synchronized (batchSizes) {
+                batchSizes.add(((List<?>) invocation.getArgument(0)).size());
+            }
+            return null;
+        }).when(repository).upsertAll(anyList());
+        MatchWriteBehindQueue queue = new MatchWriteBehindQueue(repository, 100, 3, 10, 0);
+
+        for (int i = 0; i < 7; i++) {
+            queue.enqueue(match(UUID.randomUUID(), "passenger-" + i, "0.50"));
+        }
+        queue.start();
+        queue.close();
+
+        assertEquals(0, queue.pendingCount());
+        synchronized (batchSizes) {
+            assertEquals(7, batchSizes.stream().mapToInt(Integer::intValue).sum());
+            assertTrue(batchSizes.stream().allMatch(size -> size <= 3));
+        }
+    }
+
+    @Test
+    void enqueue_afterClose_isRejected() {
+        MatchRepository repository = mock(MatchRepository.class);
+        MatchWriteBehindQueue queue = new MatchWriteBehindQueue(repository);
+        queue.start();
+        queue.close();
+
+        List<Match> rejected = queue.enqueueAll(List.of(match(UUID.randomUUID(), "passenger-1", "0.50")));
+
+        assertEquals(1, rejected.size());
+        verify(repository, never()).upsertAll(anyList());
+    }
+
+    @Test
+    void enqueueAll_whenFull_waitsOnceForTheWholeBatch() {
+        MatchRepository repository = mock(MatchRepository.class);
+        MatchWriteBehindQueue queue = new MatchWriteBehindQueue(repository, 1, 10, 50, 100);
+        List<Match> matches = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            matches.add(match(UUID.randomUUID(), "passenger-" + i, "0.50"));
+        }
+
+        long started = System.nanoTime();
+        List<Match> rejected = queue.enqueueAll(matches);
+        long elapsedMs = (System.nanoTime() - started) / 1_000_000;
+
+        assertEquals(matches.subList(1, 20), rejected);
+        assertTrue(elapsedMs < 1_000, "waited " + elapsedMs + " ms");
+    }
+
+    @Test
+    void flusher_requeuesFailedBatchesWithoutOverwritingNewerScores() throws Exception {
+        MatchRepository repository = mock(MatchRepository.class);
+        List<Match> written = new ArrayList<>();
+        CountDownLatch failed = new CountDownLatch(1);
+        CountDownLatch retry = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            failed.countDown();
+            retry.await();
+            throw new RuntimeException("database down");
+        }).doAnswer(invocation -> {
+            synchronized (written) {
+                written.addAll(invocation.getArgument(0));
+            }
+            return null;
+        }).when(repository).upsertAll(anyList());
+        MatchWriteBehindQueue queue = new MatchWriteBehindQueue(repository, 10, 10, 10, 0);
+        UUID tripId = UUID.randomUUID();
+        queue.enqueue(match(tripId, "passenger-1", "0.50"));
+        queue.enqueue(match(tripId, "passenger-2", "0.50"));
+        queue.start();
+
+        assertTrue(failed.await(5, TimeUnit.SECONDS));
+        queue.enqueue(match(tripId, "passenger-1", "0.90"));
+        retry.countDown();
+        queue.close();
+
+        synchronized (written) {
+            assertEquals(2, written.size());
+            assertEquals(new BigDecimal("0.90"), written.stream()
+                    .filter(match -> match.getPassengerId().equals("passenger-1"))
+                    .findFirst().orElseThrow().getMatchScore());
+        }
+    }
+
+    private static Match match(UUID tripId, String passengerId, String score) {
+        return new Match(tripId, passengerId, "driver-1", new BigDecimal(score), "PENDING");
+    }
+}
@@ -214,4 +214,25 @@ class MatchRepositoryIntegrationTest {
         assertEquals("ACCEPTED", updatedMatch.getStatus());
         assertTrue(updatedMatch.isAccepted());
     }
+
+    @Test
+    void shouldUpsertMatchesByTripAndPassenger() {
+        // Given
+        UUID tripId = UUID.randomUUID();
+        Match existing = repository.save(new Match(tripId, "passenger-123", "driver-1", BigDecimal.valueOf(0.5), "ACCEPTED"));
+
+        // When
+        repository.upsertAll(List.of(
+            new Match(tripId, "passenger-123", "driver-1", new BigDecimal("0.90"), "PENDING"),
+            new Match(UUID.randomUUID(), "passenger-123", "driver-2", new BigDecimal("0.70"), "PENDING")
+        ));
+
+        // Then
+        List<Match> matches = repository.findByPassengerId("passenger-123");
+        assertEquals(2, matches.size());
+        Match updated = repository.findByTripIdAndPassengerId(tripId, "passenger-123").get(0);
+        assertEquals(existing.getId(), updated.getId());
+        assertEquals(0, new BigDecimal("0.90").compareTo(updated.getMatchScore()));
+        assertEquals("ACCEPTED", updated.getStatus());
+    }
 }
@@ -0,0 +1,59 @@
+package com.company.covoituraje.matching.service;
+
+import com.company.covoituraje.matching.api.TripInfo;
+import org.junit.jupiter.api.Test;
+
+import java.time.OffsetDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DepartureTimeTest {
+
+    @Test
+    void decode_fillsEpochSecondAndMinuteOfDay() {
+        TripInfo trip = new TripInfo();
+        trip.dateTime = "2025-01-15T08:30:00+01:00";
+
+        DepartureTime.decode(trip);
+
+        assertEquals(OffsetDateTime.parse("2025-01-15T08:30:00+01:00").toEpochSecond(), trip.departureEpochSecond);
+        assertEquals(8 * 60 + 30, trip.departureMinuteOfDay);
+    }
+
+    @Test
+    void decode_invalidOrMissingDateTime_leavesUnknown() {
+        TripInfo invalid = new TripInfo();
+        invalid.dateTime = "tomorrow morning";
+        DepartureTime.decode(invalid);
+        assertEquals(DepartureTime.UNKNOWN_MINUTE, invalid.departureMinuteOfDay);
+        assertEquals(DepartureTime.UNKNOWN_EPOCH_SECOND, invalid.departureEpochSecond);
+
+        TripInfo missing = new TripInfo();
+        DepartureTime.decode(missing);
+        assertEquals(DepartureTime.UNKNOWN_MINUTE, missing.departureMinuteOfDay);
+    }
+
+    @Test
+    void parsePreferredMinuteOfDay_acceptsHourMinuteOnly() {
+        assertEquals(8 * 60, DepartureTime.parsePreferredMinuteOfDay("08:00"));
+        assertEquals(23 * 60 + 59, DepartureTime.parsePreferredMinuteOfDay(" 23 : 59 "));
+        assertEquals(7 * 60 + 45, DepartureTime.parsePreferredMinuteOfDay("07:45:30"));
+        assertEquals(DepartureTime.UNKNOWN_MINUTE, DepartureTime.parsePreferredMinuteOfDay("24:00"));
+        assertEquals(DepartureTime.UNKNOWN_MINUTE, DepartureTime.parsePreferredMinuteOfDay("8h"));
+        assertEquals(DepartureTime.UNKNOWN_MINUTE, DepartureTime.parsePreferredMinuteOfDay(null));
+    }
+
+    @Test
+    void minutesApart_unknownSideReturnsNegative() {
+        assertEquals(30, DepartureTime.minutesApart(8 * 60 + 30, 8 * 60));
+        assertEquals(-1, DepartureTime.minutesApart(DepartureTime.UNKNOWN_MINUTE, 8 * 60));
+        assertEquals(-1, DepartureTime.minutesApart(8 * 60, DepartureTime.UNKNOWN_MINUTE));
+    }
+
+    @Test
+    void minutesApart_wrapsAroundMidnight() {
+        assertEquals(20, DepartureTime.minutesApart(23 * 60 + 50, 10));
+        assertEquals(20, DepartureTime.minutesApart(10, 23 * 60 + 50));
+        assertEquals(12 * 60, DepartureTime.minutesApart(0, 12 * 60));
+    }
+}
@@ -0,0 +1,57 @@
+package com.company.covoituraje.matching.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GeoScorerTest {
+
+    private final GeoScorer scorer = new GeoScorer(10.0);
+
+    @Test
+    void score_samePoint_isMaximum() {
+        GeoScorer.Origin origin = scorer.forOrigin("40.4168,-3.7038");
+
+        assertEquals(1.0, origin.score(40.4168, -3.7038), 1e-9);
+    }
+
+    @Test
+    void score_decaysWithDistance() {
+        GeoScorer.Origin origin = scorer.forOrigin("40.4168,-3.7038");
+
+        double close = origin.score(40.4268, -3.7038);  // ~1.1 km
+        double further = origin.score(40.4668, -3.7038); // ~5.6 km
+
+        assertTrue(close > further);
+        assertTrue(further > 0.0);
+    }
+
+    @Test
+    void score_beyondRadius_isRejected() {
+        GeoScorer.Origin origin = scorer.forOrigin("40.4168,-3.7038");
+
+        assertEquals(GeoScorer.REJECTED, origin.score(41.3874, 2.1686));   // Barcelona, outside bounding box
+        assertEquals(GeoScorer.REJECTED, origin.score(40.4968, -3.6138));  // inside bounding box, ~11.7 km
+    }
+
+    @Test
+    void distanceKm_matchesKnownDistance() {
+        GeoScorer.Origin origin = scorer.forOrigin("40.4168,-3.7038");
+
+        // Puerta del Sol - Plaza de Castilla, ~5.7 km
+        assertEquals(5.7, origin.distanceKm(40.4669, -3.6889), 0.2);
+    }
+
+    @Test
+    void forOrigin_withoutCoordinates_returnsNull() {
+        assertNull(scorer.forOrigin("Madrid Norte"));
+        assertNull(scorer.forOrigin(null));
+    }
+
+    @Test
+    void score_tripWithoutCoordinates_isNeutral() {
+        GeoScorer.Origin origin = scorer.forOrigin("40.4168,-3.7038");
+
+        assertEquals(GeoScorer.UNKNOWN_LOCATION_SCORE, origin.score(Double.NaN, Double.NaN));
+    }
+}
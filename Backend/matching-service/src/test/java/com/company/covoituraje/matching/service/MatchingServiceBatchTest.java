@@ -0,0 +1,85 @@
+package com.company.covoituraje.matching.service;
+
+import com.company.covoituraje.matching.api.MatchResult;
+import com.company.covoituraje.matching.infrastructure.MatchRepository;
+import com.company.covoituraje.matching.integration.TripsServiceClient;
+import com.company.covoituraje.shared.dto.TripDto;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class MatchingServiceBatchTest {
+
+    @Test
+    void findMatchesBatch_loadsTripsOncePerSedeAndEmitsInRequestOrder() throws Exception {
+        TripsServiceClient tripsClient = mock(TripsServiceClient.class);
+        when(tripsClient.getAvailableTrips("SEDE-1")).thenReturn(List.of(
+                trip("SEDE-1", 40.4168, -3.7038, "2025-01-15T08:00:00Z"),
+                trip("SEDE-1", 40.4300, -3.6900, "2025-01-15T18:00:00Z")));
+        when(tripsClient.getAvailableTrips("SEDE-2")).thenReturn(List.of(
+                trip("SEDE-2", 40.4168, -3.7038, "2025-01-15T08:00:00Z")));
+        MatchRepository matchRepository = mock(MatchRepository.class);
+        MatchingService service = new MatchingService(matchRepository, tripsClient, new GeoScorer(15.0),
+                null, null, new ScoringEngine(Integer.MAX_VALUE, ForkJoinPool.commonPool()));
+
+        List<MatchingService.PassengerQuery> queries = List.of(
+                new MatchingService.PassengerQuery("p1", "SEDE-1", "08:00", "40.4168,-3.7038", 20),
+                new MatchingService.PassengerQuery("p2", "SEDE-2", "08:00", null, 20),
+                new MatchingService.PassengerQuery("p3", "SEDE-1", "18:00", null, 1));
+        List<String> emitted = new ArrayList<>();
+        List<Integer> sizes = new ArrayList<>();
+
+        service.findMatchesBatch(queries, (query, matches) -> {
+            emitted.add(query.passengerId);
+            sizes.add(matches.size());
+        });
+
+        assertEquals(List.of("p1", "p2", "p3"), emitted);
+        assertEquals(List.of(1, 1, 1), sizes);
+        verify(tripsClient, times(1)).getAvailableTrips("SEDE-1");
+        verify(tripsClient, times(1)).getAvailableTrips("SEDE-2");
+        verify(matchRepository, times(3)).upsertAll(anyList());
+    }
+
+    @Test
+    void findMatchesBatch_returnsSameMatchesAsSingleSearch() throws Exception {
+        TripsServiceClient tripsClient = mock(TripsServiceClient.class);
+        when(tripsClient.getAvailableTrips("SEDE-1")).thenReturn(List.of(
+                trip("SEDE-1", 40.4168, -3.7038, "2025-01-15T08:00:00Z"),
+                trip("SEDE-1", 40.4500, -3.7000, "2025-01-15T08:45:00Z")));
+        MatchingService service = new MatchingService(mock(MatchRepository.class), tripsClient, new GeoScorer(15.0),
+                null, null, new ScoringEngine());
+
+        List<MatchResult> single = service.findMatches("p1", "SEDE-1", "08:00", "40.4168,-3.7038", 20);
+        List<List<MatchResult>> batched = new ArrayList<>();
+        service.findMatchesBatch(List.of(new MatchingService.PassengerQuery("p1", "SEDE-1", "08:00", "40.4168,-3.7038", 20)),
+                (query, matches) -> batched.add(matches));
+
+        assertEquals(single.size(), batched.get(0).size());
+        for (int i = 0; i < single.size(); i++) {
+            assertEquals(single.get(i).tripId, batched.get(0).get(i).tripId);
+            assertEquals(single.get(i).score, batched.get(0).get(i).score);
+        }
+    }
+
+    private static TripDto trip(String sede, double lat, double lng, String dateTime) {
+        TripDto trip = new TripDto();
+        trip.id = UUID.randomUUID().toString();
+        trip.driverId = "driver-" + trip.id;
+        trip.origin = new TripDto.Origin();
+        trip.origin.lat = lat;
+        trip.origin.lng = lng;
+        trip.destinationSedeId = sede;
+        trip.dateTime = dateTime;
+        trip.seatsTotal = 3;
+        trip.seatsFree = 2;
+        return trip;
+    }
+}
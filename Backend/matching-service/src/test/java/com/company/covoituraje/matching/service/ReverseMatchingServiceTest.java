@@ -0,0 +1,102 @@
+package com.company.covoituraje.matching.service;
+
+import com.company.covoituraje.matching.domain.Match;
+import com.company.covoituraje.matching.domain.OutboxEvent;
+import com.company.covoituraje.matching.domain.StandingQuery;
+import com.company.covoituraje.matching.infrastructure.MatchRepository;
+import com.company.covoituraje.shared.dto.TripDto;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class ReverseMatchingServiceTest {
+
+    private MatchRepository matchRepository;
+    private StandingQueryIndex index;
+    private ReverseMatchingService service;
+
+    @BeforeEach
+    void setUp() {
+        matchRepository = mock(MatchRepository.class);
+        index = new StandingQueryIndex(new GeoScorer(15.0));
+        service = new ReverseMatchingService(index, matchRepository, null, null);
+    }
+
+    @Test
+    void onTripChanged_matchesAndNotifiesOnlyAffectedPassengers() throws Exception {
+        index.put(new StandingQuery("p-near", "SEDE-1", "08:00", 60, "40.4200,-3.7000", null));
+        index.put(new StandingQuery("p-far", "SEDE-1", "08:00", 60, "41.3874,2.1686", null));
+        index.put(new StandingQuery("p-evening", "SEDE-1", "18:00", 60, "40.4200,-3.7000", null));
+        TripDto trip = trip("driver-1", "2025-01-15T08:15:00Z");
+        when(matchRepository.findByTripId(any())).thenReturn(List.of());
+
+        List<Match> newMatches = service.onTripChanged(trip);
+
+        assertEquals(1, newMatches.size());
+        assertEquals("p-near", newMatches.get(0).getPassengerId());
+        // The match and its notification are committed together
+        verify(matchRepository).upsertAll(argThat(rows -> rows.size() == 1),
+                argThat((List<OutboxEvent> events) -> events.size() == 1
+                        && events.get(0).getRecipientId().equals("p-near")
+                        && events.get(0).getEventType().equals(OutboxEvent.NEW_MATCH)
+                        && events.get(0).getBody().contains(trip.id)));
+    }
+
+    @Test
+    void onTripChanged_storeFails_reportsNoNewMatches() {
+        index.put(new StandingQuery("p-near", "SEDE-1", "08:00", 60, "40.4200,-3.7000", null));
+        TripDto trip = trip("driver-1", "2025-01-15T08:15:00Z");
+        when(matchRepository.findByTripId(any())).thenReturn(List.of());
+        doThrow(new RuntimeException("db down")).when(matchRepository).upsertAll(anyList(), anyList());
+
+        assertTrue(service.onTripChanged(trip).isEmpty());
+    }
+
+    @Test
+    void onTripChanged_doesNotRenotifyPassengersAlreadyMatched() throws Exception {
+        index.put(new StandingQuery("p-near", "SEDE-1", "08:00", 60, "40.4200,-3.7000", null));
+        TripDto trip = trip("driver-1", "2025-01-15T08:15:00Z");
+        Match existing = new Match(UUID.fromString(trip.id), "p-near", "driver-1", BigDecimal.valueOf(0.8), "PENDING");
+        when(matchRepository.findByTripId(any())).thenReturn(List.of(existing));
+
+        List<Match> newMatches = service.onTripChanged(trip);
+
+        assertTrue(newMatches.isEmpty());
+        verify(matchRepository).upsertAll(anyList()); // score refreshed
+        verify(matchRepository, never()).upsertAll(anyList(), anyList());
+    }
+
+    @Test
+    void onTripChanged_skipsDriverOwnQueryAndFullTrips() {
+        index.put(new StandingQuery("driver-1", "SEDE-1", "08:00", 60, null, null));
+        TripDto trip = trip("driver-1", "2025-01-15T08:15:00Z");
+
+        assertTrue(service.onTripChanged(trip).isEmpty());
+
+        trip.seatsFree = 0;
+        index.put(new StandingQuery("p1", "SEDE-1", "08:00", 60, null, null));
+        assertTrue(service.onTripChanged(trip).isEmpty());
+        verifyNoInteractions(matchRepository);
+    }
+
+    private static TripDto trip(String driverId, String dateTime) {
+        TripDto trip = new TripDto();
+        trip.id = UUID.randomUUID().toString();
+        trip.driverId = driverId;
+        trip.origin = new TripDto.Origin();
+        trip.origin.lat = 40.4168;
+        trip.origin.lng = -3.7038;
+        trip.destinationSedeId = "SEDE-1";
+        trip.dateTime = dateTime;
+        trip.seatsTotal = 3;
+        trip.seatsFree = 2;
+        return trip;
+    }
+}
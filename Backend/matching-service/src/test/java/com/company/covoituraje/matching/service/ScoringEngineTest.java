@@ -0,0 +1,96 @@
+package com.company.covoituraje.matching.service;
+
+import com.company.covoituraje.matching.api.TripInfo;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ScoringEngineTest {
+
+    private static final GeoScorer GEO = new GeoScorer(15.0);
+
+    @Test
+    void selectTop_parallelMatchesSequentialIncludingTies() {
+        List<TripInfo> trips = randomTrips(20_000, 42L);
+        ScoringEngine.Query query = new ScoringEngine.Query("SEDE-1", true,
+                DepartureTime.parsePreferredMinuteOfDay("08:00"), true, GEO.forOrigin("40.4168,-3.7038"));
+
+        ScoringEngine sequential = new ScoringEngine(Integer.MAX_VALUE, ForkJoinPool.commonPool());
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            ScoringEngine parallel = new ScoringEngine(1_000, pool);
+
+            List<TopKSelector.Scored<TripInfo>> expected = sequential.selectTop(trips, query, 50);
+            List<TopKSelector.Scored<TripInfo>> actual = parallel.selectTop(trips, query, 50);
+
+            assertEquals(50, expected.size());
+            assertEquals(ids(expected), ids(actual));
+            for (int i = 0; i < expected.size(); i++) {
+                assertEquals(expected.get(i).score(), actual.get(i).score());
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void selectTop_skipsFullTripsAndTripsOutsideRadius() {
+        TripInfo near = trip("near", "40.4168,-3.7038", "2025-01-15T08:00:00Z", 2);
+        TripInfo full = trip("full", "40.4168,-3.7038", "2025-01-15T08:00:00Z", 0);
+        TripInfo far = trip("far", "41.3874,2.1686", "2025-01-15T08:00:00Z", 2);
+        ScoringEngine.Query query = new ScoringEngine.Query("SEDE-1", true,
+                DepartureTime.parsePreferredMinuteOfDay("08:00"), true, GEO.forOrigin("40.4168,-3.7038"));
+
+        List<TopKSelector.Scored<TripInfo>> result = new ScoringEngine().selectTop(List.of(near, full, far), query, 10);
+
+        assertEquals(List.of("near"), ids(result));
+        // 0.4 destination + 0.3 time + 0.2 origin + 0.05 availability
+        assertEquals(0.95, result.get(0).score(), 1e-9);
+    }
+
+    @Test
+    void timeScore_unknownTimeScoresZero() {
+        assertEquals(1.0, ScoringEngine.timeScore(8 * 60 + 10, 8 * 60));
+        assertEquals(0.2, ScoringEngine.timeScore(10 * 60, 8 * 60));
+        assertEquals(0.0, ScoringEngine.timeScore(DepartureTime.UNKNOWN_MINUTE, 8 * 60));
+    }
+
+    private static List<String> ids(List<TopKSelector.Scored<TripInfo>> scored) {
+        List<String> ids = new ArrayList<>();
+        for (TopKSelector.Scored<TripInfo> s : scored) ids.add(s.item().id);
+        return ids;
+    }
+
+    private static List<TripInfo> randomTrips(int count, long seed) {
+        Random random = new Random(seed);
+        List<TripInfo> trips = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            // Coarse coordinates and times so that many trips tie on score
+            double lat = 40.30 + random.nextInt(20) * 0.01;
+            double lng = -3.80 + random.nextInt(20) * 0.01;
+            String time = String.format("2025-01-15T%02d:%02d:00Z", 6 + random.nextInt(4), random.nextInt(4) * 15);
+            trips.add(trip("t" + i, lat + "," + lng, time, random.nextInt(5)));
+        }
+        return trips;
+    }
+
+    private static TripInfo trip(String id, String origin, String dateTime, int seatsFree) {
+        TripInfo trip = new TripInfo();
+        trip.id = id;
+        trip.driverId = "driver-" + id;
+        trip.destinationSedeId = "SEDE-1";
+        trip.origin = origin;
+        trip.originLat = GeoScorer.parseLatitude(origin);
+        trip.originLng = GeoScorer.parseLongitude(origin);
+        trip.dateTime = dateTime;
+        DepartureTime.decode(trip);
+        trip.seatsTotal = 4;
+        trip.seatsFree = seatsFree;
+        return trip;
+    }
+}
@@ -0,0 +1,71 @@
+package com.company.covoituraje.matching.service;
+
+import com.company.covoituraje.matching.domain.StandingQuery;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StandingQueryIndexTest {
+
+    private final StandingQueryIndex index = new StandingQueryIndex(new GeoScorer(15.0));
+
+    @Test
+    void affected_onlyReturnsQueriesOfSedeWhoseWindowContainsTheDeparture() {
+        index.put(query("p-eight", "SEDE-1", "08:00", 30));
+        index.put(query("p-nine", "SEDE-1", "09:00", 30));
+        index.put(query("p-any", "SEDE-1", null, 60));
+        index.put(query("p-other-sede", "SEDE-2", "08:00", 30));
+
+        List<StandingQueryIndex.Entry> affected = index.affected("SEDE-1", 8 * 60 + 20);
+
+        assertEquals(Set.of("p-eight", "p-any"), passengers(affected));
+    }
+
+    @Test
+    void affected_windowWrapsAroundMidnight() {
+        index.put(query("p-late", "SEDE-1", "23:45", 60));
+
+        assertEquals(Set.of("p-late"), passengers(index.affected("SEDE-1", 30)));
+        assertTrue(index.affected("SEDE-1", 90).isEmpty());
+    }
+
+    @Test
+    void affected_tripWithUnknownTimeReachesEveryQueryOfTheSedeOnce() {
+        index.put(query("p-eight", "SEDE-1", "08:00", 120));
+        index.put(query("p-any", "SEDE-1", null, 60));
+
+        List<StandingQueryIndex.Entry> affected = index.affected("SEDE-1", DepartureTime.UNKNOWN_MINUTE);
+
+        assertEquals(2, affected.size());
+        assertEquals(Set.of("p-eight", "p-any"), passengers(affected));
+    }
+
+    @Test
+    void putAndRemove_replaceExistingEntries() {
+        StandingQuery standingQuery = query("p1", "SEDE-1", "08:00", 30);
+        index.put(standingQuery);
+
+        standingQuery.setPreferredTime("18:00");
+        index.put(standingQuery);
+
+        assertEquals(1, index.size());
+        assertTrue(index.affected("SEDE-1", 8 * 60).isEmpty());
+        assertEquals(Set.of("p1"), passengers(index.affected("SEDE-1", 18 * 60)));
+
+        index.remove(standingQuery.getId());
+        assertEquals(0, index.size());
+        assertTrue(index.affected("SEDE-1", 18 * 60).isEmpty());
+    }
+
+    private static Set<String> passengers(List<StandingQueryIndex.Entry> entries) {
+        return entries.stream().map(StandingQueryIndex.Entry::passengerId).collect(Collectors.toSet());
+    }
+
+    private static StandingQuery query(String passengerId, String sede, String time, int window) {
+        return new StandingQuery(passengerId, sede, time, window, "40.4168,-3.7038", null);
+    }
+}
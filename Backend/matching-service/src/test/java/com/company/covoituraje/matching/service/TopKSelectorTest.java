@@ -0,0 +1,76 @@
+package com.company.covoituraje.matching.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TopKSelectorTest {
+
+    @Test
+    void drainDescending_keepsOnlyBestK() {
+        TopKSelector<String> selector = new TopKSelector<>(3);
+        selector.offer("a", 0.5);
+        selector.offer("b", 0.9);
+        selector.offer("c", 0.1);
+        selector.offer("d", 0.7);
+        selector.offer("e", 0.6);
+
+        List<TopKSelector.Scored<String>> result = selector.drainDescending();
+
+        assertEquals(List.of("b", "d", "e"), items(result));
+        assertEquals(0.9, result.get(0).score());
+        assertEquals(0, selector.size());
+    }
+
+    @Test
+    void drainDescending_tiesKeepOfferOrder() {
+        TopKSelector<String> selector = new TopKSelector<>(2);
+        selector.offer("first", 0.5);
+        selector.offer("second", 0.5);
+        selector.offer("third", 0.5);
+
+        assertEquals(List.of("first", "second"), items(selector.drainDescending()));
+    }
+
+    @Test
+    void drainDescending_matchesFullSort() {
+        Random random = new Random(42);
+        double[] scores = IntStream.range(0, 1000).mapToDouble(i -> Math.round(random.nextDouble() * 100) / 100.0).toArray();
+        TopKSelector<Integer> selector = new TopKSelector<>(10);
+        for (int i = 0; i < scores.length; i++) {
+            selector.offer(i, scores[i]);
+        }
+
+        List<Integer> expected = IntStream.range(0, scores.length).boxed()
+                .sorted((a, b) -> Double.compare(scores[b], scores[a]))
+                .limit(10)
+                .collect(Collectors.toList());
+        assertEquals(expected, items(selector.drainDescending()));
+    }
+
+    @Test
+    void threshold_isWorstSelectedScoreOnceFull() {
+        TopKSelector<String> selector = new TopKSelector<>(2);
+        assertEquals(Double.NEGATIVE_INFINITY, selector.threshold());
+
+        selector.offer("a", 0.3);
+        selector.offer("b", 0.8);
+
+        assertEquals(0.3, selector.threshold());
+        assertFalse(selector.offer("c", 0.2));
+    }
+
+    @Test
+    void constructor_rejectsNonPositiveCapacity() {
+        assertThrows(IllegalArgumentException.class, () -> new TopKSelector<>(0));
+    }
+
+    private static <T> List<T> items(List<TopKSelector.Scored<T>> scored) {
+        return scored.stream().map(TopKSelector.Scored::item).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,178 @@
+package com.company.covoituraje.matching.service;
+
+import com.company.covoituraje.http.ServiceIntegrationException;
+import com.company.covoituraje.shared.dto.TripDto;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TripSnapshotCacheTest {
+
+    private final AtomicLong clock = new AtomicLong();
+    private final List<Runnable> scheduledRefreshes = new ArrayList<>();
+
+    @Test
+    void get_withinTtl_doesNotReload() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        TripSnapshotCache cache = cache(sede -> { loads.incrementAndGet(); return snapshot(1); });
+
+        TripSnapshot first = cache.get("SEDE-1");
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(29));
+        TripSnapshot second = cache.get("SEDE-1");
+
+        assertSame(first, second);
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void get_whenStale_servesOldSnapshotAndRefreshesInBackground() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        TripSnapshotCache cache = cache(sede -> snapshot(loads.incrementAndGet()));
+
+        TripSnapshot first = cache.get("SEDE-1");
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(31));
+
+        assertSame(first, cache.get("SEDE-1"));
+        assertEquals(1, scheduledRefreshes.size());
+
+        scheduledRefreshes.get(0).run();
+        TripSnapshot refreshed = cache.get("SEDE-1");
+        assertNotSame(first, refreshed);
+        assertEquals(2, refreshed.trips().size());
+    }
+
+    @Test
+    void get_beyondMaxStale_reloadsOnRequest() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        TripSnapshotCache cache = cache(sede -> snapshot(loads.incrementAndGet()));
+
+        cache.get("SEDE-1");
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(400));
+
+        assertEquals(2, cache.get("SEDE-1").trips().size());
+        assertTrue(scheduledRefreshes.isEmpty());
+    }
+
+    @Test
+    void get_whenReloadFails_servesPreviousSnapshot() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        TripSnapshotCache cache = cache(sede -> {
+            if (loads.incrementAndGet() > 1) throw new ServiceIntegrationException("down");
+            return snapshot(1);
+        });
+
+        TripSnapshot first = cache.get("SEDE-1");
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(400));
+
+        assertSame(first, cache.get("SEDE-1"));
+    }
+
+    @Test
+    void get_withoutSnapshot_propagatesLoadFailure() {
+        TripSnapshotCache cache = cache(sede -> { throw new ServiceIntegrationException("down"); });
+
+        assertThrows(ServiceIntegrationException.class, () -> cache.get("SEDE-1"));
+    }
+
+    @Test
+    void get_concurrentMisses_shareOneLoad() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        TripSnapshotCache cache = cache(sede -> {
+            loads.incrementAndGet();
+            loading.countDown();
+            release.await();
+            return snapshot(1);
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<TripSnapshot>> results = new ArrayList<>();
+            results.add(executor.submit(() -> cache.get("SEDE-1")));
+            assertTrue(loading.await(5, TimeUnit.SECONDS));
+            for (int i = 0; i < 3; i++) {
+                results.add(executor.submit(() -> cache.get("SEDE-1")));
+            }
+            Thread.sleep(100);
+            release.countDown();
+
+            TripSnapshot first = results.get(0).get(5, TimeUnit.SECONDS);
+            for (Future<TripSnapshot> result : results) {
+                assertSame(first, result.get(5, TimeUnit.SECONDS));
+            }
+            assertEquals(1, loads.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void get_overCapacity_evictsLeastRecentlyUsedSede() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        TripSnapshotCache cache = new TripSnapshotCache(sede -> snapshot(loads.incrementAndGet()), 30, 300, 2,
+                scheduledRefreshes::add, clock::get);
+        cache.get("SEDE-1");
+        clock.addAndGet(1);
+        cache.get("SEDE-2");
+        clock.addAndGet(1);
+        cache.get("SEDE-1");
+
+        cache.get("SEDE-3");
+
+        // SEDE-2 was the least recently used
+        assertEquals(2, cache.size());
+        cache.get("SEDE-1");
+        assertEquals(3, loads.get());
+        cache.get("SEDE-2");
+        assertEquals(4, loads.get());
+    }
+
+    @Test
+    void get_firstLoadFails_doesNotKeepSede() {
+        TripSnapshotCache cache = cache(sede -> { throw new ServiceIntegrationException("HTTP 404", 404); });
+
+        assertThrows(ServiceIntegrationException.class, () -> cache.get("UNKNOWN"));
+
+        assertEquals(0, cache.size());
+    }
+
+    private TripSnapshotCache cache(TestLoader loader) {
+        return new TripSnapshotCache(sede -> {
+            try {
+                return loader.load(sede);
+            } catch (InterruptedException e) {
+                throw new ServiceIntegrationException("interrupted", e);
+            }
+        }, 30, 300, scheduledRefreshes::add, clock::get);
+    }
+
+    private static TripSnapshot snapshot(int tripCount) {
+        List<TripDto> trips = new ArrayList<>();
+        for (int i = 0; i < tripCount; i++) {
+            TripDto trip = new TripDto();
+            trip.id = "trip-" + i;
+            trip.driverId = "driver-" + i;
+            trip.destinationSedeId = "SEDE-1";
+            trip.dateTime = "2025-01-15T08:30:00Z";
+            trip.seatsTotal = 3;
+            trip.seatsFree = 2;
+            trips.add(trip);
+        }
+        return TripSnapshot.of(trips, 15.0);
+    }
+
+    private interface TestLoader {
+        TripSnapshot load(String sede) throws ServiceIntegrationException, InterruptedException;
+    }
+}
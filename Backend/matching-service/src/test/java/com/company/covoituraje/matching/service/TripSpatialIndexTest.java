@@ -0,0 +1,76 @@
+package com.company.covoituraje.matching.service;
+
+import com.company.covoituraje.matching.api.TripInfo;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TripSpatialIndexTest {
+
+    @Test
+    void candidates_onlyReturnsNearbyTripsInsideTimeWindow() {
+        TripSpatialIndex index = TripSpatialIndex.of(List.of(
+            trip("near-on-time", "SEDE-1", "40.4168,-3.7038", "2025-01-15T08:30:00Z"),
+            trip("near-late", "SEDE-1", "40.4200,-3.7000", "2025-01-15T11:00:00Z"),
+            trip("far-on-time", "SEDE-1", "41.3874,2.1686", "2025-01-15T08:15:00Z"),
+            trip("other-sede", "SEDE-2", "40.4168,-3.7038", "2025-01-15T08:30:00Z")
+        ));
+
+        List<TripInfo> result = index.candidates("SEDE-1", "40.4300,-3.6900", "08:00");
+
+        assertEquals(Set.of("near-on-time"), ids(result));
+    }
+
+    @Test
+    void candidates_withoutOriginOrTime_doesNotFilterThatDimension() {
+        TripSpatialIndex index = TripSpatialIndex.of(List.of(
+            trip("madrid", "SEDE-1", "40.4168,-3.7038", "2025-01-15T08:30:00Z"),
+            trip("barcelona", "SEDE-1", "41.3874,2.1686", "2025-01-15T18:00:00Z")
+        ));
+
+        assertEquals(Set.of("madrid", "barcelona"), ids(index.candidates("SEDE-1", "Madrid Norte", null)));
+        assertEquals(Set.of("madrid"), ids(index.candidates("SEDE-1", "40.4168,-3.7038", null)));
+        assertEquals(Set.of("barcelona"), ids(index.candidates("SEDE-1", null, "17:30")));
+    }
+
+    @Test
+    void candidates_timeWindowWrapsAroundMidnight() {
+        TripSpatialIndex index = TripSpatialIndex.of(List.of(
+            trip("after-midnight", "SEDE-1", "40.4168,-3.7038", "2025-01-16T00:30:00Z")
+        ));
+
+        assertEquals(Set.of("after-midnight"), ids(index.candidates("SEDE-1", null, "23:30")));
+    }
+
+    @Test
+    void candidates_unknownSede_returnsEmpty() {
+        TripSpatialIndex index = TripSpatialIndex.of(List.of(
+            trip("t1", "SEDE-1", "40.4168,-3.7038", "2025-01-15T08:30:00Z")
+        ));
+
+        assertTrue(index.candidates("SEDE-9", null, null).isEmpty());
+    }
+
+    private static Set<String> ids(List<TripInfo> trips) {
+        return trips.stream().map(t -> t.id).collect(Collectors.toSet());
+    }
+
+    private static TripInfo trip(String id, String sede, String origin, String dateTime) {
+        TripInfo trip = new TripInfo();
+        trip.id = id;
+        trip.driverId = "driver-" + id;
+        trip.destinationSedeId = sede;
+        trip.origin = origin;
+        trip.originLat = GeoScorer.parseLatitude(origin);
+        trip.originLng = GeoScorer.parseLongitude(origin);
+        trip.dateTime = dateTime;
+        DepartureTime.decode(trip);
+        trip.seatsTotal = 3;
+        trip.seatsFree = 2;
+        return trip;
+    }
+}
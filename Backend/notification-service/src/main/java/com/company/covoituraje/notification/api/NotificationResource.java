@@ -1,5 +1,6 @@
 package com.company.covoituraje.notification.api;
 
+import com.company.covoituraje.auth.ServiceAuth;
 import com.company.covoituraje.notification.domain.NotificationSubscription;
 import com.company.covoituraje.notification.repository.NotificationSubscriptionRepository;
 import com.company.covoituraje.notification.service.NotificationService;
@@ -24,9 +25,12 @@ public class NotificationResource {
     
     static final class AuthContext {
         private static final ThreadLocal<String> USER_ID = new ThreadLocal<>();
+        private static final ThreadLocal<List<String>> ROLES = new ThreadLocal<>();
         static void setUserId(String userId) { USER_ID.set(userId); }
         static String getUserId() { return USER_ID.get(); }
-        static void clear() { USER_ID.remove(); }
+        static void setRoles(List<String> roles) { ROLES.set(roles); }
+        static boolean hasRole(String role) { return ROLES.get() != null && ROLES.get().contains(role); }
+        static void clear() { USER_ID.remove(); ROLES.remove(); }
     }
 
     public NotificationResource() {}
@@ -113,6 +117,49 @@ public class NotificationResource {
         }
     }
 
+    /**
+     * Sends many notifications in one request: one subscription lookup for all the push
+     * recipients and concurrent sends. Only for other services (outbox relays, mass events):
+     * items name users, and email addresses are looked up in users-service.
+     */
+    @POST
+    @Path("/batch")
+    public Response sendBatch(
+        @HeaderParam("Accept-Language") String acceptLanguage,
+        BatchNotificationRequest request
+    ) {
+        try {
+            if (!AuthContext.hasRole(ServiceAuth.SERVICE_ROLE)) {
+                return Response.status(403).entity("{\"error\": \"Forbidden\"}").build();
+            }
+            if (request == null || request.items == null || request.items.isEmpty()) {
+                return Response.status(400).entity("{\"error\": \"Missing items\"}").build();
+            }
+            if (request.items.size() > NotificationService.MAX_BATCH_ITEMS) {
+                return Response.status(400).entity("{\"error\": \"Too many items, maximum is " + NotificationService.MAX_BATCH_ITEMS + "\"}").build();
+            }
+            for (NotificationService.BatchItem item : request.items) {
+                if (item == null || item.title == null || item.title.isBlank()) {
+                    return Response.status(400).entity("{\"error\": \"Every item needs a title\"}").build();
+                }
+                if (item.userId == null || item.userId.isBlank()) {
+                    return Response.status(400).entity("{\"error\": \"Every item needs a userId\"}").build();
+                }
+                if (item.channel == null) {
+                    item.channel = NotificationService.CHANNEL_PUSH;
+                }
+                if (!NotificationService.CHANNEL_PUSH.equals(item.channel)
+                        && !NotificationService.CHANNEL_EMAIL.equals(item.channel)) {
+                    return Response.status(400).entity("{\"error\": \"Unknown channel, use PUSH or EMAIL\"}").build();
+                }
+            }
+
+            return Response.ok(notificationService.sendBatch(request.items)).build();
+        } catch (Exception e) {
+            return Response.status(500).entity("{\"error\": \"Internal server error\"}").build();
+        }
+    }
+
     @GET
     @Path("/health")
     public Response health() {
@@ -134,4 +181,8 @@ public class NotificationResource {
         public String title;
         public String body;
     }
+
+    public static class BatchNotificationRequest {
+        public List<NotificationService.BatchItem> items;
+    }
 }
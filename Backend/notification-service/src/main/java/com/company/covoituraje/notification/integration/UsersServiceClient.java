@@ -0,0 +1,65 @@
+package com.company.covoituraje.notification.integration;
+
+import com.company.covoituraje.http.ServiceHttpClient;
+import com.company.covoituraje.http.ServiceIntegrationException;
+import jakarta.enterprise.context.ApplicationScoped;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Cliente de users-service para obtener las direcciones de email de los usuarios: los lotes de
+ * notificaciones solo indican el userId y el email se resuelve aquí, nunca lo da el llamante.
+ */
+@ApplicationScoped
+public class UsersServiceClient {
+
+    // Same limit as POST /users/batch in users-service
+    static final int MAX_IDS_PER_CALL = 500;
+
+    private final ServiceHttpClient httpClient;
+
+    public UsersServiceClient() {
+        String usersServiceUrl = System.getenv("USERS_SERVICE_URL");
+        if (usersServiceUrl == null || usersServiceUrl.isBlank()) {
+            usersServiceUrl = "http://localhost:8082";
+        }
+        this.httpClient = new ServiceHttpClient(usersServiceUrl);
+    }
+
+    public UsersServiceClient(ServiceHttpClient httpClient) {
+        this.httpClient = httpClient;
+    }
+
+    /**
+     * Emails de los usuarios indicados, con una llamada a POST /users/batch por cada
+     * MAX_IDS_PER_CALL usuarios. Los que no existen o no tienen email no aparecen en el
+     * mapa, como tampoco los de una llamada que falla.
+     */
+    public Map<String, String> findEmails(Collection<String> userIds) {
+        List<String> ids = new ArrayList<>(new LinkedHashSet<>(userIds));
+        Map<String, String> emails = new HashMap<>(ids.size() * 2);
+        for (int from = 0; from < ids.size(); from += MAX_IDS_PER_CALL) {
+            List<String> chunk = ids.subList(from, Math.min(from + MAX_IDS_PER_CALL, ids.size()));
+            Map<?, ?>[] users;
+            try {
+                users = httpClient.post("/users/batch", Map.of("ids", chunk), Map[].class);
+            } catch (ServiceIntegrationException e) {
+                System.err.println("Error fetching emails of " + chunk.size() + " users: " + e.getMessage());
+                continue;
+            }
+            for (Map<?, ?> user : users != null ? users : new Map<?, ?>[0]) {
+                Object id = user.get("id");
+                Object email = user.get("email");
+                if (id instanceof String && email instanceof String && !((String) email).isBlank()) {
+                    emails.put((String) id, (String) email);
+                }
+            }
+        }
+        return emails;
+    }
+}
@@ -4,22 +4,32 @@ import com.company.covoituraje.notification.domain.NotificationSubscription;
 import com.company.covoituraje.notification.infrastructure.JpaConfig;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
 import jakarta.persistence.EntityTransaction;
 import jakarta.persistence.TypedQuery;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.UUID;
 
 @ApplicationScoped
 public class NotificationSubscriptionRepository {
     
+    // Keeps each IN list well below the PostgreSQL bind parameter limit
+    static final int MAX_IN_LIST_SIZE = 1_000;
+    
     private final EntityManager entityManager;
+    private final EntityManagerFactory entityManagerFactory;
     
     public NotificationSubscriptionRepository() {
-        this.entityManager = JpaConfig.createEntityManager();
+        this.entityManagerFactory = JpaConfig.getEntityManagerFactory();
+        this.entityManager = entityManagerFactory.createEntityManager();
     }
     
     public NotificationSubscriptionRepository(EntityManager entityManager) {
         this.entityManager = entityManager;
+        this.entityManagerFactory = entityManager.getEntityManagerFactory();
     }
     
     public NotificationSubscription save(NotificationSubscription subscription) {
@@ -62,6 +72,46 @@ public class NotificationSubscriptionRepository {
         return query.getResultList();
     }
     
+    /**
+     * Active subscriptions of all the given users, one IN (...) query per MAX_IN_LIST_SIZE users.
+     */
+    public List<NotificationSubscription> findActiveByUserIds(Collection<String> userIds) {
+        List<NotificationSubscription> subscriptions = new ArrayList<>();
+        List<String> ids = new ArrayList<>(userIds);
+        for (int from = 0; from < ids.size(); from += MAX_IN_LIST_SIZE) {
+            TypedQuery<NotificationSubscription> query = entityManager.createQuery(
+                "SELECT ns FROM NotificationSubscription ns WHERE ns.userId IN :userIds AND ns.active = true",
+                NotificationSubscription.class
+            );
+            query.setParameter("userIds", ids.subList(from, Math.min(from + MAX_IN_LIST_SIZE, ids.size())));
+            subscriptions.addAll(query.getResultList());
+        }
+        return subscriptions;
+    }
+    
+    /**
+     * Marks the subscription inactive using its own short-lived EntityManager, so it is safe
+     * to call from the push worker threads.
+     */
+    public void deactivate(UUID id) {
+        EntityManager em = entityManagerFactory.createEntityManager();
+        EntityTransaction tx = em.getTransaction();
+        try {
+            tx.begin();
+            em.createQuery("UPDATE NotificationSubscription ns SET ns.active = false WHERE ns.id = :id")
+                .setParameter("id", id)
+                .executeUpdate();
+            tx.commit();
+        } catch (Exception e) {
+            if (tx.isActive()) {
+                tx.rollback();
+            }
+            throw e;
+        } finally {
+            em.close();
+        }
+    }
+    
     public void delete(NotificationSubscription subscription) {
         EntityTransaction tx = entityManager.getTransaction();
         try {
@@ -1,6 +1,7 @@
 package com.company.covoituraje.notification.service;
 
 import com.company.covoituraje.shared.i18n.MessageService;
+import jakarta.annotation.PreDestroy;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 import jakarta.mail.*;
@@ -8,10 +9,27 @@ import jakarta.mail.internet.InternetAddress;
 import jakarta.mail.internet.MimeMessage;
 
 import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
+/**
+ * Envío de emails a través de SmtpConnectionPool: las conexiones SMTP se abren una vez y se
+ * reutilizan para todos los mensajes, configuradas con SMTP_POOL_SIZE, SMTP_QUEUE_CAPACITY,
+ * SMTP_BATCH_SIZE y SMTP_MAX_ATTEMPTS.
+ */
 @ApplicationScoped
 public class EmailNotificationService {
     
+    static final int DEFAULT_POOL_SIZE = 3;
+    static final int DEFAULT_QUEUE_CAPACITY = 10_000;
+    static final int DEFAULT_BATCH_SIZE = 50;
+    static final int DEFAULT_MAX_ATTEMPTS = 3;
+    static final int SMTP_TIMEOUT_MS = 10_000;
+    // Longest a caller waits for the SMTP result; the email may still be sent later
+    static final long SEND_TIMEOUT_MS = 60_000;
+    
     @Inject
     MessageService messageService;
     
@@ -22,12 +40,48 @@ public class EmailNotificationService {
     private String fromEmail = System.getenv().getOrDefault("FROM_EMAIL", "noreply@covoituraje.com");
     
     private Session mailSession;
+    private SmtpConnectionPool smtpPool;
+    
+    public EmailNotificationService() {}
+    
+    public EmailNotificationService(Session mailSession, SmtpConnectionPool smtpPool, String fromEmail) {
+        this.mailSession = mailSession;
+        this.smtpPool = smtpPool;
+        this.fromEmail = fromEmail;
+    }
     
+    /**
+     * Envía el email y espera, como mucho SEND_TIMEOUT_MS, a que el servidor SMTP lo acepte.
+     * No lanza excepción: los fallos se registran.
+     */
     public void sendEmail(String to, String subject, String body) {
+        awaitResult(queueEmail(to, subject, body), System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(SEND_TIMEOUT_MS));
+    }
+    
+    /**
+     * Espera el resultado de un email encolado hasta deadlineNanos (según System.nanoTime());
+     * false si no ha llegado a tiempo.
+     */
+    static boolean awaitResult(CompletableFuture<Boolean> result, long deadlineNanos) {
         try {
-            if (mailSession == null) {
-                initializeMailSession();
-            }
+            return result.get(Math.max(0, deadlineNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            System.err.println("Timed out waiting for the SMTP server");
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException e) {
+            return false;
+        }
+    }
+    
+    /**
+     * Encola el email y devuelve enseguida; el resultado es true cuando el servidor SMTP lo ha aceptado
+     */
+    public CompletableFuture<Boolean> queueEmail(String to, String subject, String body) {
+        try {
+            SmtpConnectionPool pool = pool();
             
             MimeMessage message = new MimeMessage(mailSession);
             message.setFrom(new InternetAddress(fromEmail));
@@ -35,11 +89,12 @@ public class EmailNotificationService {
             message.setSubject(subject);
             message.setText(body, "UTF-8", "html");
             
-            Transport.send(message);
+            return pool.submit(message);
             
         } catch (Exception e) {
             System.err.println("Error sending email: " + e.getMessage());
             // Don't throw exception to avoid breaking the main flow
+            return CompletableFuture.completedFuture(false);
         }
     }
     
@@ -57,6 +112,28 @@ public class EmailNotificationService {
         sendEmail(email, subject, body);
     }
     
+    @PreDestroy
+    public synchronized void shutdown() {
+        if (smtpPool != null) {
+            smtpPool.shutdown();
+        }
+    }
+    
+    private synchronized SmtpConnectionPool pool() {
+        if (smtpPool == null) {
+            if (mailSession == null) {
+                initializeMailSession();
+            }
+            smtpPool = new SmtpConnectionPool(mailSession,
+                smtpUser.isEmpty() ? null : smtpUser, smtpUser.isEmpty() ? null : smtpPassword,
+                envInt("SMTP_POOL_SIZE", DEFAULT_POOL_SIZE),
+                envInt("SMTP_QUEUE_CAPACITY", DEFAULT_QUEUE_CAPACITY),
+                envInt("SMTP_BATCH_SIZE", DEFAULT_BATCH_SIZE),
+                envInt("SMTP_MAX_ATTEMPTS", DEFAULT_MAX_ATTEMPTS));
+        }
+        return smtpPool;
+    }
+    
     private void initializeMailSession() {
         try {
             java.util.Properties props = new java.util.Properties();
@@ -64,6 +141,9 @@ public class EmailNotificationService {
             props.put("mail.smtp.port", smtpPort);
             props.put("mail.smtp.auth", !smtpUser.isEmpty());
             props.put("mail.smtp.starttls.enable", "true");
+            // Pooled connections must not block a worker forever on a stalled server
+            props.put("mail.smtp.connectiontimeout", SMTP_TIMEOUT_MS);
+            props.put("mail.smtp.timeout", SMTP_TIMEOUT_MS);
             
             if (!smtpUser.isEmpty()) {
                 mailSession = Session.getInstance(props, new Authenticator() {
@@ -81,4 +161,12 @@ public class EmailNotificationService {
             mailSession = Session.getInstance(new java.util.Properties());
         }
     }
+    
+    private static int envInt(String name, int defaultValue) {
+        try {
+            return Integer.parseInt(System.getenv().getOrDefault(name, String.valueOf(defaultValue)));
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
 }
@@ -1,18 +1,30 @@
 package com.company.covoituraje.notification.service;
 
 import com.company.covoituraje.notification.domain.NotificationSubscription;
+import com.company.covoituraje.notification.integration.UsersServiceClient;
 import com.company.covoituraje.notification.repository.NotificationSubscriptionRepository;
 import com.company.covoituraje.shared.i18n.MessageService;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 @ApplicationScoped
 public class NotificationService {
     
+    public static final String CHANNEL_PUSH = "PUSH";
+    public static final String CHANNEL_EMAIL = "EMAIL";
+    public static final int MAX_BATCH_ITEMS = 1_000;
+    
     @Inject
     private NotificationSubscriptionRepository subscriptionRepository;
     
@@ -22,6 +34,12 @@ public class NotificationService {
     @Inject
     private EmailNotificationService emailNotificationService;
     
+    @Inject
+    private PushDispatcher pushDispatcher;
+    
+    @Inject
+    private UsersServiceClient usersServiceClient;
+    
     @Inject
     private MessageService messageService;
     
@@ -48,26 +66,88 @@ public class NotificationService {
         }
     }
     
+    /**
+     * Encola el envío a todas las suscripciones activas del usuario y vuelve sin esperar:
+     * PushDispatcher las envía en paralelo y reintenta en segundo plano.
+     */
     public void sendPushNotification(String userId, String title, String body) {
         List<NotificationSubscription> subscriptions = subscriptionRepository.findActiveByUserId(userId);
         for (NotificationSubscription subscription : subscriptions) {
-            PushNotificationService.SendOutcome outcome = pushNotificationService.sendNotificationWithOutcome(subscription, title, body);
-            if (outcome == PushNotificationService.SendOutcome.RETRYABLE_FAILURE) {
-                // simple bounded retry with backoff
-                int attempts = 0;
-                while (attempts < 2 && outcome == PushNotificationService.SendOutcome.RETRYABLE_FAILURE) {
-                    attempts++;
-                    try {
-                        Thread.sleep(250L * attempts);
-                    } catch (InterruptedException ignored) {}
-                    outcome = pushNotificationService.sendNotificationWithOutcome(subscription, title, body);
+            dispatch(subscription, title, body);
+        }
+    }
+    
+    /**
+     * Envía un lote de notificaciones. Las suscripciones de todos los destinatarios push se
+     * obtienen con una sola consulta y los envíos push se encolan en PushDispatcher sin esperar
+     * su resultado; las direcciones de todos los destinatarios email se piden a users-service
+     * en una sola llamada, los emails se encolan en el pool SMTP, que los envía por conexiones
+     * ya abiertas, y el método vuelve cuando el servidor los ha aceptado o rechazado.
+     */
+    public BatchResult sendBatch(List<BatchItem> items) {
+        Set<String> pushRecipients = new HashSet<>();
+        Set<String> emailRecipients = new HashSet<>();
+        for (BatchItem item : items) {
+            if (CHANNEL_EMAIL.equals(item.channel)) {
+                emailRecipients.add(item.userId);
+            } else {
+                pushRecipients.add(item.userId);
+            }
+        }
+        Map<String, List<NotificationSubscription>> subscriptionsByUser = new HashMap<>();
+        if (!pushRecipients.isEmpty()) {
+            for (NotificationSubscription subscription : subscriptionRepository.findActiveByUserIds(pushRecipients)) {
+                subscriptionsByUser.computeIfAbsent(subscription.getUserId(), k -> new ArrayList<>()).add(subscription);
+            }
+        }
+        
+        Map<String, String> emailByUser = emailRecipients.isEmpty()
+                ? Map.of() : usersServiceClient.findEmails(emailRecipients);
+        
+        BatchResult result = new BatchResult();
+        List<CompletableFuture<Boolean>> emails = new ArrayList<>();
+        for (BatchItem item : items) {
+            if (CHANNEL_EMAIL.equals(item.channel)) {
+                String address = emailByUser.get(item.userId);
+                if (address == null) {
+                    result.skipped++;
+                    continue;
                 }
+                emails.add(emailNotificationService.queueEmail(address, item.title, item.body));
+                continue;
             }
-            if (outcome == PushNotificationService.SendOutcome.GONE) {
-                subscription.setActive(false);
-                subscriptionRepository.save(subscription);
+            List<NotificationSubscription> subscriptions = subscriptionsByUser.get(item.userId);
+            if (subscriptions == null) {
+                result.skipped++;
+                continue;
+            }
+            for (NotificationSubscription subscription : subscriptions) {
+                dispatch(subscription, item.title, item.body);
+                result.pushQueued++;
             }
         }
+        
+        // One deadline for the whole batch: a stalled SMTP server must not hold the request
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(EmailNotificationService.SEND_TIMEOUT_MS);
+        for (CompletableFuture<Boolean> email : emails) {
+            if (EmailNotificationService.awaitResult(email, deadline)) {
+                result.emailsSent++;
+            }
+        }
+        return result;
+    }
+    
+    private void dispatch(NotificationSubscription subscription, String title, String body) {
+        pushDispatcher.dispatch(subscription, title, body).thenAccept(outcome -> {
+            if (outcome == PushNotificationService.SendOutcome.GONE) {
+                try {
+                    // Runs on a push worker: deactivate() does not touch the shared EntityManager
+                    subscriptionRepository.deactivate(subscription.getId());
+                } catch (Exception e) {
+                    System.err.println("Error deactivating subscription " + subscription.getId() + ": " + e.getMessage());
+                }
+            }
+        });
     }
     
     public void sendEmailNotification(String userId, String email, String subject, String body) {
@@ -93,4 +173,30 @@ public class NotificationService {
         // Send email notification
         emailNotificationService.sendTripCancellation(email, tripId, locale);
     }
+    
+    // Una notificación del lote: push a las suscripciones de userId o email a su dirección en users-service
+    public static class BatchItem {
+        public String userId;
+        public String title;
+        public String body;
+        public String channel;
+        
+        public BatchItem() {}
+        
+        public BatchItem(String userId, String title, String body, String channel) {
+            this.userId = userId;
+            this.title = title;
+            this.body = body;
+            this.channel = channel;
+        }
+    }
+    
+    public static class BatchResult {
+        // Sends handed to PushDispatcher, one per active subscription of each push item
+        public int pushQueued;
+        // Emails accepted by the SMTP server
+        public int emailsSent;
+        // Push items whose user has no active subscription and email items without address
+        public int skipped;
+    }
 }
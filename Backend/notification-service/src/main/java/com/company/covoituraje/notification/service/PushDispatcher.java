@@ -0,0 +1,155 @@
+package com.company.covoituraje.notification.service;
+
+import com.company.covoituraje.notification.domain.NotificationSubscription;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Envío de notificaciones push fuera del hilo de la petición. Cada suscripción se envía en
+ * un pool acotado de hilos, de modo que los endpoints de un usuario (o de un lote) se
+ * atienden en paralelo. Los fallos reintentables no esperan en ningún hilo: el reintento se
+ * programa en un ScheduledExecutorService con espera exponencial y jitter, y vuelve al pool
+ * cuando vence. Una ráfaga de fallos no puede por tanto agotar los hilos del servidor.
+ *
+ * Si la cola del pool está llena el envío se rechaza y se considera un fallo reintentable.
+ */
+@ApplicationScoped
+public class PushDispatcher {
+    
+    static final int DEFAULT_WORKER_THREADS = 16;
+    static final int DEFAULT_QUEUE_CAPACITY = 10_000;
+    static final int DEFAULT_MAX_ATTEMPTS = 3;
+    static final long DEFAULT_BASE_DELAY_MS = 250;
+    static final long DEFAULT_MAX_DELAY_MS = 30_000;
+    
+    @Inject
+    private PushNotificationService pushNotificationService;
+    
+    private ThreadPoolExecutor workers;
+    private ScheduledExecutorService retryScheduler;
+    private int maxAttempts;
+    private long baseDelayMs;
+    private long maxDelayMs;
+    
+    // For CDI; pools are created in start()
+    public PushDispatcher() {}
+    
+    public PushDispatcher(PushNotificationService pushNotificationService, int workerThreads, int queueCapacity,
+                          int maxAttempts, long baseDelayMs, long maxDelayMs) {
+        this.pushNotificationService = pushNotificationService;
+        init(workerThreads, queueCapacity, maxAttempts, baseDelayMs, maxDelayMs);
+    }
+    
+    /**
+     * Configuración desde PUSH_WORKER_THREADS, PUSH_QUEUE_CAPACITY y PUSH_MAX_ATTEMPTS
+     */
+    @PostConstruct
+    void start() {
+        init(envInt("PUSH_WORKER_THREADS", DEFAULT_WORKER_THREADS),
+             envInt("PUSH_QUEUE_CAPACITY", DEFAULT_QUEUE_CAPACITY),
+             envInt("PUSH_MAX_ATTEMPTS", DEFAULT_MAX_ATTEMPTS),
+             DEFAULT_BASE_DELAY_MS, DEFAULT_MAX_DELAY_MS);
+    }
+    
+    private void init(int workerThreads, int queueCapacity, int maxAttempts, long baseDelayMs, long maxDelayMs) {
+        this.maxAttempts = maxAttempts;
+        this.baseDelayMs = baseDelayMs;
+        this.maxDelayMs = maxDelayMs;
+        AtomicInteger workerCount = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(workerThreads, workerThreads, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                Thread thread = new Thread(runnable, "push-worker-" + workerCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        this.retryScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "push-retry");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    
+    /**
+     * Encola el envío y devuelve enseguida. El resultado se completa con el desenlace final:
+     * SUCCESS, GONE, o RETRYABLE_FAILURE cuando se agotan los intentos.
+     */
+    public CompletableFuture<PushNotificationService.SendOutcome> dispatch(NotificationSubscription subscription,
+                                                                         String title, String body) {
+        CompletableFuture<PushNotificationService.SendOutcome> result = new CompletableFuture<>();
+        submit(subscription, title, body, 1, result);
+        return result;
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        if (retryScheduler != null) retryScheduler.shutdownNow();
+        if (workers != null) workers.shutdown();
+    }
+    
+    private void submit(NotificationSubscription subscription, String title, String body, int attempt,
+                        CompletableFuture<PushNotificationService.SendOutcome> result) {
+        try {
+            workers.execute(() -> attempt(subscription, title, body, attempt, result));
+        } catch (RejectedExecutionException e) {
+            retryOrGiveUp(subscription, title, body, attempt, result);
+        }
+    }
+    
+    private void attempt(NotificationSubscription subscription, String title, String body, int attempt,
+                         CompletableFuture<PushNotificationService.SendOutcome> result) {
+        PushNotificationService.SendOutcome outcome;
+        try {
+            outcome = pushNotificationService.sendNotificationWithOutcome(subscription, title, body);
+        } catch (RuntimeException e) {
+            outcome = PushNotificationService.SendOutcome.RETRYABLE_FAILURE;
+        }
+        if (outcome == PushNotificationService.SendOutcome.RETRYABLE_FAILURE) {
+            retryOrGiveUp(subscription, title, body, attempt, result);
+        } else {
+            result.complete(outcome);
+        }
+    }
+    
+    private void retryOrGiveUp(NotificationSubscription subscription, String title, String body, int attempt,
+                               CompletableFuture<PushNotificationService.SendOutcome> result) {
+        if (attempt >= maxAttempts) {
+            System.err.println("Giving up push to " + subscription.getEndpoint() + " after " + attempt + " attempts");
+            result.complete(PushNotificationService.SendOutcome.RETRYABLE_FAILURE);
+            return;
+        }
+        try {
+            retryScheduler.schedule(() -> submit(subscription, title, body, attempt + 1, result),
+                retryDelayMs(attempt), TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // Shutting down
+            result.complete(PushNotificationService.SendOutcome.RETRYABLE_FAILURE);
+        }
+    }
+    
+    // Equal jitter: half of the exponential delay plus a random part, so retries of a burst spread out
+    long retryDelayMs(int attempt) {
+        long exponential = Math.min(maxDelayMs, baseDelayMs << Math.min(attempt - 1, 20));
+        long half = exponential / 2;
+        return half + ThreadLocalRandom.current().nextLong(half + 1);
+    }
+    
+    private static int envInt(String name, int defaultValue) {
+        try {
+            return Integer.parseInt(System.getenv().getOrDefault(name, String.valueOf(defaultValue)));
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+}
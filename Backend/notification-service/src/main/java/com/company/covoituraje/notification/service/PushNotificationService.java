@@ -6,62 +6,75 @@ import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 import jakarta.json.Json;
 import jakarta.json.JsonObject;
-import nl.martijndwars.webpush.PushService;
-import nl.martijndwars.webpush.Subscription;
-import org.apache.http.HttpResponse;
-import org.apache.http.client.HttpClient;
-import org.apache.http.client.methods.HttpPost;
-import org.apache.http.entity.StringEntity;
-import org.apache.http.impl.client.HttpClients;
 
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
-import java.security.PublicKey;
-import java.security.spec.InvalidKeySpecException;
+import java.security.GeneralSecurityException;
+import java.time.Clock;
+import java.time.Duration;
 import java.util.Base64;
 
+/**
+ * Entrega de notificaciones Web Push: el contenido se cifra para la suscripción (RFC 8291),
+ * se firma la cabecera VAPID (RFC 8292, cacheada por push service en VapidTokenCache) y se
+ * envía al endpoint con un HttpClient HTTP/2 compartido, que mantiene abiertas y multiplexa
+ * las conexiones con cada push service.
+ */
 @ApplicationScoped
 public class PushNotificationService {
     
+    static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(10);
+    // Seconds the push service keeps the message while the browser is offline
+    static final int MESSAGE_TTL_SECONDS = 86_400;
+    
     @Inject
     private VapidConfig vapidConfig;
     
-    private PushService pushService;
+    private final HttpClient httpClient;
+    private final Clock clock;
+    private volatile VapidTokenCache vapidTokens;
+    
+    public PushNotificationService() {
+        this.httpClient = SharedHttpClientHolder.INSTANCE;
+        this.clock = Clock.systemUTC();
+    }
+    
+    public PushNotificationService(VapidConfig vapidConfig, HttpClient httpClient, Clock clock) {
+        this.vapidConfig = vapidConfig;
+        this.httpClient = httpClient;
+        this.clock = clock;
+    }
     
     public void sendNotification(NotificationSubscription subscription, String title, String body) {
-        try {
-            if (pushService == null) {
-                initializePushService();
-            }
-            
-            String payload = createPayload(title, body);
-            // Simplified implementation for now
-            System.out.println("Sending push notification to: " + subscription.getEndpoint());
-            System.out.println("Title: " + title + ", Body: " + body);
-            
-        } catch (Exception e) {
-            System.err.println("Error sending push notification: " + e.getMessage());
-            // Don't throw exception to avoid breaking the main flow
+        // Don't throw exception to avoid breaking the main flow
+        SendOutcome outcome = sendNotificationWithOutcome(subscription, title, body);
+        if (outcome != SendOutcome.SUCCESS) {
+            System.err.println("Push notification to " + subscription.getEndpoint() + " not delivered: " + outcome);
         }
     }
 
     public SendOutcome sendNotificationWithOutcome(NotificationSubscription subscription, String title, String body) {
+        if (subscription.getEndpoint() == null || subscription.getEndpoint().isBlank()) {
+            return SendOutcome.GONE;
+        }
+        HttpRequest request;
         try {
-            if (pushService == null) {
-                initializePushService();
-            }
-            String payload = createPayload(title, body);
-            // Here we would construct a real web push notification using subscription keys and endpoint.
-            // As a simplified placeholder, we log and assume success unless the endpoint looks clearly invalid.
-            if (subscription.getEndpoint() == null || subscription.getEndpoint().isBlank()) {
-                return SendOutcome.GONE;
-            }
-            System.out.println("[Push] -> " + subscription.getEndpoint() + " | payload=" + payload);
-            return SendOutcome.SUCCESS;
-        } catch (Exception e) {
-            String message = e.getMessage() == null ? "" : e.getMessage();
-            if (message.contains("410") || message.contains("404")) {
-                return SendOutcome.GONE;
-            }
+            request = buildRequest(subscription, createPayload(title, body));
+        } catch (GeneralSecurityException | IllegalArgumentException e) {
+            System.err.println("Error preparing push notification for " + subscription.getEndpoint() + ": " + e.getMessage());
+            return SendOutcome.FAILED;
+        }
+        try {
+            HttpResponse<Void> response = httpClient.send(request, HttpResponse.BodyHandlers.discarding());
+            return outcomeOf(response.statusCode());
+        } catch (IOException e) {
+            return SendOutcome.RETRYABLE_FAILURE;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
             return SendOutcome.RETRYABLE_FAILURE;
         }
     }
@@ -69,7 +82,9 @@ public class PushNotificationService {
     public enum SendOutcome {
         SUCCESS,
         RETRYABLE_FAILURE,
-        GONE
+        GONE,
+        // Rejected by the push service (bad request, VAPID mismatch, payload too large) or invalid subscription keys
+        FAILED
     }
     
     public String createPayload(String title, String body) {
@@ -86,12 +101,54 @@ public class PushNotificationService {
         return payload.toString();
     }
     
-    private void initializePushService() throws Exception {
-        pushService = new PushService();
-        pushService.setSubject(vapidConfig.getSubject());
-        pushService.setPublicKey(vapidConfig.getPublicKey());
-        pushService.setPrivateKey(vapidConfig.getPrivateKey());
+    private HttpRequest buildRequest(NotificationSubscription subscription, String payload) throws GeneralSecurityException {
+        URI endpoint = URI.create(subscription.getEndpoint());
+        Base64.Decoder decoder = Base64.getUrlDecoder();
+        byte[] encrypted = WebPushEncryption.encrypt(payload.getBytes(StandardCharsets.UTF_8),
+            decoder.decode(subscription.getP256dhKey()), decoder.decode(subscription.getAuthKey()));
+        return HttpRequest.newBuilder(endpoint)
+            .timeout(REQUEST_TIMEOUT)
+            .header("Authorization", vapidTokens().authorizationHeader(endpoint))
+            .header("Content-Encoding", "aes128gcm")
+            .header("Content-Type", "application/octet-stream")
+            .header("TTL", String.valueOf(MESSAGE_TTL_SECONDS))
+            .POST(HttpRequest.BodyPublishers.ofByteArray(encrypted))
+            .build();
+    }
+    
+    // vapidConfig is injected after construction
+    private VapidTokenCache vapidTokens() throws GeneralSecurityException {
+        VapidTokenCache tokens = vapidTokens;
+        if (tokens == null) {
+            synchronized (this) {
+                if (vapidTokens == null) {
+                    vapidTokens = new VapidTokenCache(vapidConfig.getSubject(), vapidConfig.getPublicKey(),
+                        vapidConfig.getPrivateKey(), clock);
+                }
+                tokens = vapidTokens;
+            }
+        }
+        return tokens;
+    }
+    
+    static SendOutcome outcomeOf(int statusCode) {
+        if (statusCode >= 200 && statusCode < 300) {
+            return SendOutcome.SUCCESS;
+        }
+        if (statusCode == 404 || statusCode == 410) {
+            return SendOutcome.GONE;
+        }
+        if (statusCode == 408 || statusCode == 429 || statusCode >= 500) {
+            return SendOutcome.RETRYABLE_FAILURE;
+        }
+        return SendOutcome.FAILED;
     }
     
-    // Simplified implementation - removed complex web push subscription creation
+    // One client for every push service: HTTP/2 connections are kept open and multiplexed
+    private static final class SharedHttpClientHolder {
+        static final HttpClient INSTANCE = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_2)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+    }
 }
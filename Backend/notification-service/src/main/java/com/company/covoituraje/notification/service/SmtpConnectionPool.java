@@ -0,0 +1,218 @@
+package com.company.covoituraje.notification.service;
+
+import com.sun.mail.smtp.SMTPAddressFailedException;
+import com.sun.mail.smtp.SMTPSendFailedException;
+import jakarta.mail.Message;
+import jakarta.mail.MessagingException;
+import jakarta.mail.SendFailedException;
+import jakarta.mail.Session;
+import jakarta.mail.Transport;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pool de conexiones SMTP abiertas y autenticadas. Cada hilo del pool tiene su propia
+ * conexión, la abre (con STARTTLS y login) la primera vez que la necesita y envía por ella
+ * todos los mensajes que saca de la cola, por lotes, en lugar de conectar y desconectar
+ * por cada email. Si la conexión falla se cierra y el mensaje se reintenta con una conexión
+ * nueva; una conexión sin uso durante IDLE_CLOSE_MS se cierra antes de que lo haga el servidor.
+ * Las respuestas 4xx del servidor (buzón ocupado, greylisting, límites de envío) son temporales
+ * y también se reintentan; las 5xx descartan el mensaje.
+ *
+ * Si la cola está llena el email se descarta y su resultado es false.
+ */
+public class SmtpConnectionPool {
+
+    static final long IDLE_CLOSE_MS = 30_000;
+    static final long RETRY_DELAY_MS = 200;
+    static final long SHUTDOWN_TIMEOUT_MS = 10_000;
+
+    private final Session session;
+    private final String user; // null: no authentication
+    private final String password;
+    private final int batchSize;
+    private final int maxAttempts;
+    private final LinkedBlockingQueue<Job> queue;
+    private final List<Thread> workers = new ArrayList<>();
+    private volatile boolean running = true;
+
+    public SmtpConnectionPool(Session session, String user, String password, int connections,
+                              int queueCapacity, int batchSize, int maxAttempts) {
+        this.session = session;
+        this.user = user;
+        this.password = password;
+        this.batchSize = batchSize;
+        this.maxAttempts = maxAttempts;
+        this.queue = new LinkedBlockingQueue<>(queueCapacity);
+        for (int i = 1; i <= connections; i++) {
+            Thread worker = new Thread(this::runWorker, "smtp-connection-" + i);
+            worker.setDaemon(true);
+            worker.start();
+            workers.add(worker);
+        }
+    }
+
+    /**
+     * Encola el mensaje y devuelve enseguida; el resultado es true cuando el servidor lo ha
+     * aceptado y false si se descarta o se agotan los intentos.
+     */
+    public CompletableFuture<Boolean> submit(Message message) {
+        Job job = new Job(message);
+        if (!running || !queue.offer(job)) {
+            System.err.println("Email queue full or closed, dropping email");
+            job.result.complete(false);
+        }
+        return job.result;
+    }
+
+    public int pending() {
+        return queue.size();
+    }
+
+    /**
+     * Espera a que los hilos terminen el lote en curso, cierra las conexiones y descarta lo pendiente
+     */
+    public void shutdown() {
+        running = false;
+        for (Thread worker : workers) {
+            worker.interrupt();
+        }
+        for (Thread worker : workers) {
+            try {
+                worker.join(SHUTDOWN_TIMEOUT_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        Job job;
+        while ((job = queue.poll()) != null) {
+            job.result.complete(false);
+        }
+    }
+
+    private void runWorker() {
+        Transport transport = null;
+        List<Job> batch = new ArrayList<>(batchSize);
+        try {
+            while (running) {
+                Job first;
+                try {
+                    first = queue.poll(IDLE_CLOSE_MS, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    break;
+                }
+                if (first == null) {
+                    transport = close(transport);
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                for (Job job : batch) {
+                    transport = deliver(transport, job);
+                }
+                batch.clear();
+            }
+        } finally {
+            for (Job job : batch) {
+                job.result.complete(false);
+            }
+            close(transport);
+        }
+    }
+
+    // Returns the connection to keep using: the same one, a new one after a failure, or null
+    private Transport deliver(Transport transport, Job job) {
+        Exception lastError = null;
+        for (int attempt = 1; attempt <= maxAttempts; attempt++) {
+            try {
+                // No isConnected() check: it costs a round trip per message; a dead connection fails the send instead
+                if (transport == null) {
+                    transport = session.getTransport("smtp");
+                    transport.connect(user, password);
+                }
+                transport.sendMessage(job.message, job.message.getAllRecipients());
+                job.result.complete(true);
+                return transport;
+            } catch (SendFailedException e) {
+                if (isConnectionLost(e)) {
+                    // No reply at all (code -1): the server dropped the connection between two messages
+                    lastError = e;
+                    transport = close(transport);
+                } else if (!isTransient(e)) {
+                    // Recipients rejected by the server: another connection would get the same answer
+                    System.err.println("Email rejected by SMTP server: " + e.getMessage());
+                    job.result.complete(false);
+                    return transport;
+                } else {
+                    // The connection is still usable: only the message waits before the next attempt
+                    lastError = e;
+                }
+            } catch (MessagingException | RuntimeException e) {
+                // RuntimeException too (e.g. IllegalStateException "Not connected"): it must not end the worker
+                lastError = e;
+                transport = close(transport);
+            }
+            if (attempt < maxAttempts && !sleep(RETRY_DELAY_MS * attempt)) {
+                break;
+            }
+        }
+        System.err.println("Error sending email: " + (lastError != null ? lastError.getMessage() : "interrupted"));
+        job.result.complete(false);
+        return transport;
+    }
+
+    // 4xx replies, for the message or for any of its recipients, may succeed on a later attempt
+    static boolean isTransient(MessagingException e) {
+        Exception current = e;
+        for (int depth = 0; current instanceof MessagingException && depth < 10; depth++) {
+            int code = current instanceof SMTPSendFailedException sendFailed ? sendFailed.getReturnCode()
+                    : current instanceof SMTPAddressFailedException addressFailed ? addressFailed.getReturnCode()
+                    : 0;
+            if (code >= 400 && code < 500) {
+                return true;
+            }
+            current = ((MessagingException) current).getNextException();
+        }
+        return false;
+    }
+
+    // JavaMail reports a reply it could not read (EOF) as a send failure with return code -1
+    static boolean isConnectionLost(MessagingException e) {
+        return e instanceof SMTPSendFailedException sendFailed && sendFailed.getReturnCode() < 0;
+    }
+
+    private static Transport close(Transport transport) {
+        if (transport != null) {
+            try {
+                transport.close();
+            } catch (MessagingException | RuntimeException ignored) {
+                // The connection is discarded anyway
+            }
+        }
+        return null;
+    }
+
+    private static boolean sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static final class Job {
+        final Message message;
+        final CompletableFuture<Boolean> result = new CompletableFuture<>();
+
+        Job(Message message) {
+            this.message = message;
+        }
+    }
+}
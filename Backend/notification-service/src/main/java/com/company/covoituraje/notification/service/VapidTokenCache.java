@@ -0,0 +1,99 @@
+package com.company.covoituraje.notification.service;
+
+import jakarta.json.Json;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.Signature;
+import java.security.interfaces.ECPrivateKey;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cabeceras Authorization VAPID (RFC 8292) para los push services. El JWT firmado con ES256
+ * depende solo del origen del push service, así que se firma una vez por origen y se reutiliza
+ * hasta poco antes de caducar, en lugar de firmar uno por mensaje.
+ */
+public class VapidTokenCache {
+
+    static final Duration TOKEN_LIFETIME = Duration.ofHours(12);
+    static final Duration RENEW_BEFORE_EXPIRY = Duration.ofMinutes(30);
+
+    private static final Base64.Encoder BASE64URL = Base64.getUrlEncoder().withoutPadding();
+    private static final String JWT_HEADER = BASE64URL.encodeToString(
+        "{\"typ\":\"JWT\",\"alg\":\"ES256\"}".getBytes(StandardCharsets.UTF_8));
+
+    private final String subject;
+    private final String publicKey;
+    private final ECPrivateKey privateKey;
+    private final Clock clock;
+    private final ConcurrentHashMap<String, Token> tokens = new ConcurrentHashMap<>();
+
+    /**
+     * @param publicKey  clave pública VAPID en base64url (punto sin comprimir), tal como la recibe el navegador
+     * @param privateKey clave privada VAPID en base64url (escalar de 32 bytes)
+     */
+    public VapidTokenCache(String subject, String publicKey, String privateKey, Clock clock) throws GeneralSecurityException {
+        if (publicKey == null || privateKey == null) {
+            throw new IllegalArgumentException("VAPID_PUBLIC_KEY and VAPID_PRIVATE_KEY are required");
+        }
+        // Validates the public key; it is sent as is in the k= parameter
+        WebPushEncryption.publicKey(Base64.getUrlDecoder().decode(publicKey));
+        this.subject = subject;
+        this.publicKey = publicKey;
+        this.privateKey = WebPushEncryption.privateKey(Base64.getUrlDecoder().decode(privateKey));
+        this.clock = clock;
+    }
+
+    /**
+     * Valor de la cabecera Authorization para una petición al endpoint
+     */
+    public String authorizationHeader(URI endpoint) throws GeneralSecurityException {
+        String audience = origin(endpoint);
+        long now = clock.instant().getEpochSecond();
+        Token token = tokens.get(audience);
+        if (token == null || now >= token.renewAtEpochSecond) {
+            // Two threads may sign at once for the same origin; either token is valid
+            token = sign(audience, now);
+            tokens.put(audience, token);
+        }
+        return "vapid t=" + token.jwt + ", k=" + publicKey;
+    }
+
+    private Token sign(String audience, long now) throws GeneralSecurityException {
+        long expiresAt = now + TOKEN_LIFETIME.getSeconds();
+        String claims = Json.createObjectBuilder()
+            .add("aud", audience)
+            .add("exp", expiresAt)
+            .add("sub", subject)
+            .build()
+            .toString();
+        String signingInput = JWT_HEADER + "." + BASE64URL.encodeToString(claims.getBytes(StandardCharsets.UTF_8));
+        // JWS wants the raw r || s signature, not DER
+        Signature signature = Signature.getInstance("SHA256withECDSAinP1363Format");
+        signature.initSign(privateKey);
+        signature.update(signingInput.getBytes(StandardCharsets.US_ASCII));
+        String jwt = signingInput + "." + BASE64URL.encodeToString(signature.sign());
+        return new Token(jwt, expiresAt - RENEW_BEFORE_EXPIRY.getSeconds());
+    }
+
+    static String origin(URI endpoint) {
+        if (endpoint.getScheme() == null || endpoint.getHost() == null) {
+            throw new IllegalArgumentException("Invalid push endpoint: " + endpoint);
+        }
+        return endpoint.getScheme() + "://" + endpoint.getHost() + (endpoint.getPort() != -1 ? ":" + endpoint.getPort() : "");
+    }
+
+    private static final class Token {
+        final String jwt;
+        final long renewAtEpochSecond;
+
+        Token(String jwt, long renewAtEpochSecond) {
+            this.jwt = jwt;
+            this.renewAtEpochSecond = renewAtEpochSecond;
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.company.covoituraje.notification.service;
+
+import javax.crypto.Cipher;
+import javax.crypto.KeyAgreement;
+import javax.crypto.Mac;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.AlgorithmParameters;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.SecureRandom;
+import java.security.interfaces.ECPrivateKey;
+import java.security.interfaces.ECPublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.security.spec.ECParameterSpec;
+import java.security.spec.ECPoint;
+import java.security.spec.ECPrivateKeySpec;
+import java.security.spec.ECPublicKeySpec;
+import java.util.Arrays;
+
+/**
+ * Cifrado del contenido de un mensaje Web Push (RFC 8291, codificación aes128gcm de RFC 8188)
+ * con la clave p256dh y el secreto auth de la suscripción. Solo usa el proveedor criptográfico
+ * del JDK: ECDH sobre P-256, HKDF-SHA-256 y AES-128-GCM.
+ */
+public final class WebPushEncryption {
+
+    // Single record: the push service accepts up to 4096 bytes of encrypted body
+    static final int RECORD_SIZE = 4096;
+    static final int HEADER_SIZE = 16 + 4 + 1 + 65;
+    static final int TAG_SIZE = 16;
+    public static final int MAX_PLAINTEXT_SIZE = RECORD_SIZE - HEADER_SIZE - TAG_SIZE - 1;
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+    private static final ECParameterSpec P256 = p256();
+
+    private WebPushEncryption() {}
+
+    /**
+     * Cifra plaintext para la suscripción y devuelve el cuerpo de la petición al push service
+     *
+     * @param uaPublicKey clave p256dh de la suscripción (punto sin comprimir, 65 bytes)
+     * @param authSecret  secreto auth de la suscripción (16 bytes)
+     */
+    public static byte[] encrypt(byte[] plaintext, byte[] uaPublicKey, byte[] authSecret) throws GeneralSecurityException {
+        byte[] salt = new byte[16];
+        RANDOM.nextBytes(salt);
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+        generator.initialize(P256, RANDOM);
+        return encrypt(plaintext, uaPublicKey, authSecret, salt, generator.generateKeyPair());
+    }
+
+    // Fixed salt and application server key pair, for the RFC 8291 test vector
+    static byte[] encrypt(byte[] plaintext, byte[] uaPublicKey, byte[] authSecret, byte[] salt,
+                          KeyPair asKeyPair) throws GeneralSecurityException {
+        if (plaintext.length > MAX_PLAINTEXT_SIZE) {
+            throw new IllegalArgumentException("Push payload too large: " + plaintext.length + " bytes");
+        }
+        if (authSecret.length != 16) {
+            throw new IllegalArgumentException("Invalid auth secret length: " + authSecret.length);
+        }
+        byte[] asPublicKey = encodePublicKey((ECPublicKey) asKeyPair.getPublic());
+
+        KeyAgreement agreement = KeyAgreement.getInstance("ECDH");
+        agreement.init(asKeyPair.getPrivate());
+        agreement.doPhase(publicKey(uaPublicKey), true);
+        byte[] ecdhSecret = agreement.generateSecret();
+
+        // RFC 8291 section 3.4: combine the ECDH secret with the auth secret
+        byte[] keyInfo = concat("WebPush: info\0".getBytes(StandardCharsets.US_ASCII), uaPublicKey, asPublicKey);
+        byte[] ikm = hkdf(authSecret, ecdhSecret, keyInfo, 32);
+        // RFC 8188 section 2.2 and 2.3: content encryption key and nonce
+        byte[] cek = hkdf(salt, ikm, "Content-Encoding: aes128gcm\0".getBytes(StandardCharsets.US_ASCII), 16);
+        byte[] nonce = hkdf(salt, ikm, "Content-Encoding: nonce\0".getBytes(StandardCharsets.US_ASCII), 12);
+
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(cek, "AES"), new GCMParameterSpec(TAG_SIZE * 8, nonce));
+        // 0x02 delimits the last (and only) record, with no padding
+        byte[] record = Arrays.copyOf(plaintext, plaintext.length + 1);
+        record[plaintext.length] = 2;
+        byte[] ciphertext = cipher.doFinal(record);
+
+        return ByteBuffer.allocate(HEADER_SIZE + ciphertext.length)
+            .put(salt)
+            .putInt(RECORD_SIZE)
+            .put((byte) asPublicKey.length)
+            .put(asPublicKey)
+            .put(ciphertext)
+            .array();
+    }
+
+    /**
+     * Clave pública P-256 a partir de su punto sin comprimir (0x04 || X || Y)
+     */
+    static ECPublicKey publicKey(byte[] uncompressedPoint) throws GeneralSecurityException {
+        if (uncompressedPoint.length != 65 || uncompressedPoint[0] != 4) {
+            throw new IllegalArgumentException("Invalid P-256 public key");
+        }
+        BigInteger x = new BigInteger(1, Arrays.copyOfRange(uncompressedPoint, 1, 33));
+        BigInteger y = new BigInteger(1, Arrays.copyOfRange(uncompressedPoint, 33, 65));
+        return (ECPublicKey) KeyFactory.getInstance("EC").generatePublic(new ECPublicKeySpec(new ECPoint(x, y), P256));
+    }
+
+    /**
+     * Clave privada P-256 a partir de su escalar (32 bytes)
+     */
+    static ECPrivateKey privateKey(byte[] scalar) throws GeneralSecurityException {
+        if (scalar.length != 32) {
+            throw new IllegalArgumentException("Invalid P-256 private key");
+        }
+        return (ECPrivateKey) KeyFactory.getInstance("EC").generatePrivate(new ECPrivateKeySpec(new BigInteger(1, scalar), P256));
+    }
+
+    static byte[] encodePublicKey(ECPublicKey key) {
+        byte[] point = new byte[65];
+        point[0] = 4;
+        copyUnsigned(key.getW().getAffineX(), point, 1);
+        copyUnsigned(key.getW().getAffineY(), point, 33);
+        return point;
+    }
+
+    static ECParameterSpec p256Parameters() {
+        return P256;
+    }
+
+    // HKDF-SHA-256 (RFC 5869) for outputs of at most one block
+    private static byte[] hkdf(byte[] salt, byte[] ikm, byte[] info, int length) throws GeneralSecurityException {
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(salt, "HmacSHA256"));
+        byte[] prk = mac.doFinal(ikm);
+        mac.init(new SecretKeySpec(prk, "HmacSHA256"));
+        mac.update(info);
+        mac.update((byte) 1);
+        return Arrays.copyOf(mac.doFinal(), length);
+    }
+
+    private static void copyUnsigned(BigInteger value, byte[] target, int offset) {
+        byte[] bytes = value.toByteArray();
+        int length = Math.min(bytes.length, 32);
+        System.arraycopy(bytes, bytes.length - length, target, offset + 32 - length, length);
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        int length = 0;
+        for (byte[] part : parts) length += part.length;
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        for (byte[] part : parts) buffer.put(part);
+        return buffer.array();
+    }
+
+    private static ECParameterSpec p256() {
+        try {
+            AlgorithmParameters parameters = AlgorithmParameters.getInstance("EC");
+            parameters.init(new ECGenParameterSpec("secp256r1"));
+            return parameters.getParameterSpec(ECParameterSpec.class);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("P-256 not supported by the JVM", e);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.company.covoituraje.notification.integration;
+
+import com.company.covoituraje.http.ServiceHttpClient;
+import com.company.covoituraje.http.ServiceIntegrationException;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class UsersServiceClientTest {
+
+    @Test
+    void findEmails_shouldLookUpEveryUserInOneCallPerChunk() throws Exception {
+        ServiceHttpClient httpClient = mock(ServiceHttpClient.class);
+        List<Integer> chunkSizes = new ArrayList<>();
+        when(httpClient.post(eq("/users/batch"), any(), eq(Map[].class))).thenAnswer(invocation -> {
+            List<?> ids = (List<?>) ((Map<?, ?>) invocation.getArgument(1)).get("ids");
+            chunkSizes.add(ids.size());
+            return ids.stream()
+                    .map(id -> Map.of("id", id, "email", id + "@example.com"))
+                    .toArray(Map[]::new);
+        });
+        List<String> userIds = IntStream.range(0, UsersServiceClient.MAX_IDS_PER_CALL + 1)
+                .mapToObj(i -> "user-" + i).toList();
+
+        Map<String, String> emails = new UsersServiceClient(httpClient).findEmails(userIds);
+
+        assertEquals(List.of(UsersServiceClient.MAX_IDS_PER_CALL, 1), chunkSizes);
+        assertEquals(userIds.size(), emails.size());
+        assertEquals("user-7@example.com", emails.get("user-7"));
+    }
+
+    @Test
+    void findEmails_shouldLeaveOutUsersWithoutAddressOrWhoseCallFailed() throws Exception {
+        ServiceHttpClient httpClient = mock(ServiceHttpClient.class);
+        when(httpClient.post(eq("/users/batch"), any(), eq(Map[].class)))
+                .thenReturn(new Map<?, ?>[] {Map.of("id", "user-a", "email", "a@example.com"), Map.of("id", "user-b", "email", "")})
+                .thenThrow(new ServiceIntegrationException("HTTP 503", 503));
+        UsersServiceClient client = new UsersServiceClient(httpClient);
+
+        assertEquals(Map.of("user-a", "a@example.com"), client.findEmails(List.of("user-a", "user-b", "user-c")));
+        assertEquals(Map.of(), client.findEmails(List.of("user-a")));
+    }
+}
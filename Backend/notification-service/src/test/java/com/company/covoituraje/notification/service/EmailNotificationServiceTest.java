@@ -5,6 +5,8 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -83,4 +85,29 @@ class EmailNotificationServiceTest {
         // Test passes if no exception is thrown
         assertTrue(true);
     }
-}
\ No newline at end of file
+
+    @Test
+    void awaitResult_withoutAnswerBeforeTheDeadline_returnsFalse() {
+        // Given: the SMTP server never answers
+        CompletableFuture<Boolean> result = new CompletableFuture<>();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(100);
+
+        // When
+        boolean sent = EmailNotificationService.awaitResult(result, deadline);
+
+        // Then
+        assertFalse(sent);
+    }
+
+    @Test
+    void awaitResult_withAnswerBeforeTheDeadline_returnsIt() {
+        // Given
+        CompletableFuture<Boolean> result = CompletableFuture.completedFuture(true);
+
+        // When
+        boolean sent = EmailNotificationService.awaitResult(result, System.nanoTime());
+
+        // Then
+        assertTrue(sent);
+    }
+}
@@ -0,0 +1,114 @@
+package com.company.covoituraje.notification.service;
+
+import com.company.covoituraje.notification.domain.NotificationSubscription;
+import com.company.covoituraje.notification.integration.UsersServiceClient;
+import com.company.covoituraje.notification.repository.NotificationSubscriptionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class NotificationServiceBatchTest {
+
+    private NotificationService notificationService;
+    private NotificationSubscriptionRepository subscriptionRepository;
+    private PushNotificationService pushNotificationService;
+    private EmailNotificationService emailNotificationService;
+    private PushDispatcher pushDispatcher;
+    private UsersServiceClient usersServiceClient;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        notificationService = new NotificationService();
+        subscriptionRepository = mock(NotificationSubscriptionRepository.class);
+        pushNotificationService = mock(PushNotificationService.class);
+        emailNotificationService = mock(EmailNotificationService.class);
+        pushDispatcher = mock(PushDispatcher.class);
+        usersServiceClient = mock(UsersServiceClient.class);
+
+        inject("subscriptionRepository", subscriptionRepository);
+        inject("pushNotificationService", pushNotificationService);
+        inject("emailNotificationService", emailNotificationService);
+        inject("pushDispatcher", pushDispatcher);
+        inject("usersServiceClient", usersServiceClient);
+    }
+
+    private void inject(String fieldName, Object value) throws Exception {
+        var field = NotificationService.class.getDeclaredField(fieldName);
+        field.setAccessible(true);
+        field.set(notificationService, value);
+    }
+
+    private static NotificationSubscription subscription(String userId, String endpoint) {
+        return new NotificationSubscription(userId, endpoint, "p256dh", "auth");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void shouldLookUpAllRecipientsWithOneQuery() {
+        NotificationSubscription a1 = subscription("user-a", "https://push.example/a1");
+        NotificationSubscription a2 = subscription("user-a", "https://push.example/a2");
+        NotificationSubscription b = subscription("user-b", "https://push.example/b");
+        when(subscriptionRepository.findActiveByUserIds(any())).thenReturn(List.of(a1, a2, b));
+        when(pushDispatcher.dispatch(any(), anyString(), anyString()))
+            .thenReturn(CompletableFuture.completedFuture(PushNotificationService.SendOutcome.SUCCESS));
+
+        NotificationService.BatchResult result = notificationService.sendBatch(List.of(
+            new NotificationService.BatchItem("user-a", "Sede cerrada", "Viajes cancelados", null),
+            new NotificationService.BatchItem("user-b", "Sede cerrada", "Viajes cancelados", "PUSH"),
+            new NotificationService.BatchItem("user-c", "Sede cerrada", "Viajes cancelados", "PUSH")));
+
+        ArgumentCaptor<Collection<String>> userIds = ArgumentCaptor.forClass(Collection.class);
+        verify(subscriptionRepository, times(1)).findActiveByUserIds(userIds.capture());
+        assertEquals(3, userIds.getValue().size());
+        verify(subscriptionRepository, never()).findActiveByUserId(anyString());
+        assertEquals(3, result.pushQueued);
+        assertEquals(1, result.skipped);
+        verify(pushDispatcher).dispatch(a2, "Sede cerrada", "Viajes cancelados");
+    }
+
+    @Test
+    void shouldDeactivateGoneSubscriptions() {
+        NotificationSubscription gone = subscription("user-a", "https://push.example/gone");
+        when(subscriptionRepository.findActiveByUserIds(any())).thenReturn(List.of(gone));
+        gone.setId(UUID.randomUUID());
+        when(pushDispatcher.dispatch(eq(gone), anyString(), anyString()))
+            .thenReturn(CompletableFuture.completedFuture(PushNotificationService.SendOutcome.GONE));
+
+        NotificationService.BatchResult result = notificationService.sendBatch(List.of(
+            new NotificationService.BatchItem("user-a", "Title", "Body", "PUSH")));
+
+        assertEquals(1, result.pushQueued);
+        verify(subscriptionRepository).deactivate(gone.getId());
+    }
+
+    @Test
+    void shouldSendEmailItemsToTheAddressKnownByUsersService() {
+        NotificationService.BatchItem email = new NotificationService.BatchItem("user-a", "Subject", "Body", "EMAIL");
+        NotificationService.BatchItem noAddress = new NotificationService.BatchItem("user-b", "Subject", "Body", "EMAIL");
+        when(usersServiceClient.findEmails(Set.of("user-a", "user-b"))).thenReturn(Map.of("user-a", "user-a@example.com"));
+
+        when(emailNotificationService.queueEmail("user-a@example.com", "Subject", "Body"))
+            .thenReturn(CompletableFuture.completedFuture(true));
+
+        NotificationService.BatchResult result = notificationService.sendBatch(List.of(email, noAddress));
+
+        verify(emailNotificationService).queueEmail("user-a@example.com", "Subject", "Body");
+        verify(usersServiceClient, times(1)).findEmails(any());
+        verify(subscriptionRepository, never()).findActiveByUserIds(any());
+        assertEquals(1, result.emailsSent);
+        assertEquals(1, result.skipped);
+    }
+}
@@ -0,0 +1,101 @@
+package com.company.covoituraje.notification.service;
+
+import com.company.covoituraje.notification.domain.NotificationSubscription;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class PushDispatcherTest {
+
+    private PushNotificationService pushNotificationService;
+    private PushDispatcher dispatcher;
+    private final NotificationSubscription subscription =
+        new NotificationSubscription("user-001", "https://push.example/1", "p256dh", "auth");
+
+    @BeforeEach
+    void setUp() {
+        pushNotificationService = mock(PushNotificationService.class);
+        dispatcher = new PushDispatcher(pushNotificationService, 4, 100, 3, 10, 40);
+    }
+
+    @AfterEach
+    void tearDown() {
+        dispatcher.shutdown();
+    }
+
+    @Test
+    void shouldRetryRetryableFailuresUntilSuccess() throws Exception {
+        when(pushNotificationService.sendNotificationWithOutcome(any(), anyString(), anyString()))
+            .thenReturn(PushNotificationService.SendOutcome.RETRYABLE_FAILURE)
+            .thenReturn(PushNotificationService.SendOutcome.SUCCESS);
+
+        PushNotificationService.SendOutcome outcome = dispatcher.dispatch(subscription, "Title", "Body").get(5, TimeUnit.SECONDS);
+
+        assertEquals(PushNotificationService.SendOutcome.SUCCESS, outcome);
+        verify(pushNotificationService, times(2)).sendNotificationWithOutcome(subscription, "Title", "Body");
+    }
+
+    @Test
+    void shouldGiveUpAfterMaxAttempts() throws Exception {
+        when(pushNotificationService.sendNotificationWithOutcome(any(), anyString(), anyString()))
+            .thenReturn(PushNotificationService.SendOutcome.RETRYABLE_FAILURE);
+
+        PushNotificationService.SendOutcome outcome = dispatcher.dispatch(subscription, "Title", "Body").get(5, TimeUnit.SECONDS);
+
+        assertEquals(PushNotificationService.SendOutcome.RETRYABLE_FAILURE, outcome);
+        verify(pushNotificationService, times(3)).sendNotificationWithOutcome(subscription, "Title", "Body");
+    }
+
+    @Test
+    void shouldNotRetryGoneSubscriptions() throws Exception {
+        when(pushNotificationService.sendNotificationWithOutcome(any(), anyString(), anyString()))
+            .thenReturn(PushNotificationService.SendOutcome.GONE);
+
+        assertEquals(PushNotificationService.SendOutcome.GONE,
+            dispatcher.dispatch(subscription, "Title", "Body").get(5, TimeUnit.SECONDS));
+        verify(pushNotificationService, times(1)).sendNotificationWithOutcome(any(), anyString(), anyString());
+    }
+
+    @Test
+    void shouldReturnImmediatelyAndSendInParallel() throws Exception {
+        CountDownLatch allStarted = new CountDownLatch(4);
+        CountDownLatch release = new CountDownLatch(1);
+        when(pushNotificationService.sendNotificationWithOutcome(any(), anyString(), anyString())).thenAnswer(invocation -> {
+            allStarted.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return PushNotificationService.SendOutcome.SUCCESS;
+        });
+
+        CompletableFuture<?>[] results = new CompletableFuture<?>[4];
+        for (int i = 0; i < 4; i++) {
+            results[i] = dispatcher.dispatch(subscription, "Title", "Body");
+        }
+
+        // All four endpoints are being sent at the same time while the caller goes on
+        assertTrue(allStarted.await(5, TimeUnit.SECONDS));
+        assertFalse(results[0].isDone());
+        release.countDown();
+        CompletableFuture.allOf(results).get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void retryDelayShouldGrowWithJitterUpToTheMaximum() {
+        for (int i = 0; i < 100; i++) {
+            long first = dispatcher.retryDelayMs(1);
+            long third = dispatcher.retryDelayMs(3);
+            long capped = dispatcher.retryDelayMs(10);
+            assertTrue(first >= 5 && first <= 10, "first retry " + first);
+            assertTrue(third >= 20 && third <= 40, "third retry " + third);
+            assertTrue(capped >= 20 && capped <= 40, "capped retry " + capped);
+        }
+    }
+}
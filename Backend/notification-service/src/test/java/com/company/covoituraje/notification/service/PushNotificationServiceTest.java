@@ -2,9 +2,21 @@ package com.company.covoituraje.notification.service;
 
 import com.company.covoituraje.notification.config.VapidConfig;
 import com.company.covoituraje.notification.domain.NotificationSubscription;
+import com.sun.net.httpserver.HttpServer;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.BeforeEach;
 
+import java.net.InetSocketAddress;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.interfaces.ECPrivateKey;
+import java.security.interfaces.ECPublicKey;
+import java.time.Clock;
+import java.util.Base64;
+import java.util.concurrent.atomic.AtomicReference;
+
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
@@ -84,4 +96,103 @@ class PushNotificationServiceTest {
         assertTrue(payload.contains("\"title\""));
         assertTrue(payload.contains("\"body\""));
     }
+    
+    @Test
+    void shouldPostEncryptedPayloadWithVapidAuthorization() throws Exception {
+        // Given
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+        generator.initialize(WebPushEncryption.p256Parameters());
+        KeyPair browser = generator.generateKeyPair();
+        byte[] browserPublic = WebPushEncryption.encodePublicKey((ECPublicKey) browser.getPublic());
+        byte[] auth = new byte[16];
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        AtomicReference<com.sun.net.httpserver.Headers> headers = new AtomicReference<>();
+        AtomicReference<byte[]> received = new AtomicReference<>();
+        HttpServer server = stubPushService(201, headers, received);
+        try {
+            NotificationSubscription subscription = new NotificationSubscription("user-001",
+                "http://localhost:" + server.getAddress().getPort() + "/push/abc",
+                encoder.encodeToString(browserPublic), encoder.encodeToString(auth));
+            
+            // When
+            PushNotificationService.SendOutcome outcome = stubbedService().sendNotificationWithOutcome(subscription, "Hola", "Reserva confirmada");
+            
+            // Then
+            assertEquals(PushNotificationService.SendOutcome.SUCCESS, outcome);
+            assertEquals("aes128gcm", headers.get().getFirst("Content-Encoding"));
+            assertEquals("86400", headers.get().getFirst("TTL"));
+            assertTrue(headers.get().getFirst("Authorization").startsWith("vapid t="));
+            byte[] payload = WebPushEncryptionTest.decrypt(received.get(), (ECPrivateKey) browser.getPrivate(), browserPublic, auth);
+            assertEquals(stubbedService().createPayload("Hola", "Reserva confirmada"), new String(payload, StandardCharsets.UTF_8));
+        } finally {
+            server.stop(0);
+        }
+    }
+    
+    @Test
+    void shouldMapPushServiceResponsesToOutcomes() throws Exception {
+        assertEquals(PushNotificationService.SendOutcome.GONE, outcomeForStatus(410));
+        assertEquals(PushNotificationService.SendOutcome.GONE, outcomeForStatus(404));
+        assertEquals(PushNotificationService.SendOutcome.RETRYABLE_FAILURE, outcomeForStatus(429));
+        assertEquals(PushNotificationService.SendOutcome.RETRYABLE_FAILURE, outcomeForStatus(500));
+        assertEquals(PushNotificationService.SendOutcome.FAILED, outcomeForStatus(400));
+    }
+    
+    @Test
+    void shouldReturnFailedForInvalidSubscriptionKeys() {
+        // Given
+        NotificationSubscription subscription = new NotificationSubscription(
+            "user-001", "https://push.example/abc", "p256dh-key", "auth-key");
+        
+        // When & Then
+        assertEquals(PushNotificationService.SendOutcome.FAILED,
+            pushNotificationService.sendNotificationWithOutcome(subscription, "Test", "Body"));
+    }
+    
+    private PushNotificationService.SendOutcome outcomeForStatus(int status) throws Exception {
+        HttpServer server = stubPushService(status, new AtomicReference<>(), new AtomicReference<>());
+        try {
+            KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+            generator.initialize(WebPushEncryption.p256Parameters());
+            Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+            NotificationSubscription subscription = new NotificationSubscription("user-001",
+                "http://localhost:" + server.getAddress().getPort() + "/push/abc",
+                encoder.encodeToString(WebPushEncryption.encodePublicKey((ECPublicKey) generator.generateKeyPair().getPublic())),
+                encoder.encodeToString(new byte[16]));
+            return stubbedService().sendNotificationWithOutcome(subscription, "Test", "Body");
+        } finally {
+            server.stop(0);
+        }
+    }
+    
+    private PushNotificationService stubbedService() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+        generator.initialize(WebPushEncryption.p256Parameters());
+        KeyPair vapid = generator.generateKeyPair();
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        byte[] scalar = ((ECPrivateKey) vapid.getPrivate()).getS().toByteArray();
+        byte[] privateKey = new byte[32];
+        int length = Math.min(scalar.length, 32);
+        System.arraycopy(scalar, scalar.length - length, privateKey, 32 - length, length);
+        
+        VapidConfig config = mock(VapidConfig.class);
+        when(config.getSubject()).thenReturn("mailto:test@example.com");
+        when(config.getPublicKey()).thenReturn(encoder.encodeToString(WebPushEncryption.encodePublicKey((ECPublicKey) vapid.getPublic())));
+        when(config.getPrivateKey()).thenReturn(encoder.encodeToString(privateKey));
+        // Plain HTTP stub: the client falls back to HTTP/1.1 without TLS
+        return new PushNotificationService(config, HttpClient.newHttpClient(), Clock.systemUTC());
+    }
+    
+    private static HttpServer stubPushService(int status, AtomicReference<com.sun.net.httpserver.Headers> headers,
+                                              AtomicReference<byte[]> body) throws Exception {
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/push", exchange -> {
+            headers.set(exchange.getRequestHeaders());
+            body.set(exchange.getRequestBody().readAllBytes());
+            exchange.sendResponseHeaders(status, -1);
+            exchange.close();
+        });
+        server.start();
+        return server;
+    }
 }
@@ -0,0 +1,265 @@
+package com.company.covoituraje.notification.service;
+
+import com.sun.mail.smtp.SMTPSendFailedException;
+import jakarta.mail.Address;
+import jakarta.mail.Message;
+import jakarta.mail.Session;
+import jakarta.mail.internet.InternetAddress;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SmtpConnectionPoolTest {
+
+    private SmtpStub smtp;
+    private SmtpConnectionPool pool;
+
+    @AfterEach
+    void tearDown() throws Exception {
+        if (pool != null) pool.shutdown();
+        if (smtp != null) smtp.close();
+    }
+
+    @Test
+    void shouldSendManyMessagesOverFewConnections() throws Exception {
+        // Given
+        smtp = new SmtpStub(0);
+        pool = new SmtpConnectionPool(session(smtp.port()), null, null, 2, 100, 10, 3);
+
+        // When
+        List<CompletableFuture<Boolean>> results = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            results.add(pool.submit(message(smtp.port(), "user" + i + "@example.com")));
+        }
+
+        // Then
+        for (CompletableFuture<Boolean> result : results) {
+            assertTrue(result.get(10, TimeUnit.SECONDS));
+        }
+        assertEquals(30, smtp.messages.size());
+        assertTrue(smtp.connections.get() <= 2, "connections: " + smtp.connections.get());
+    }
+
+    @Test
+    void shouldReconnectWhenTheServerDropsTheConnection() throws Exception {
+        // Given: the server closes every connection after 3 messages
+        smtp = new SmtpStub(3);
+        pool = new SmtpConnectionPool(session(smtp.port()), null, null, 1, 100, 10, 3);
+
+        // When
+        List<CompletableFuture<Boolean>> results = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            results.add(pool.submit(message(smtp.port(), "user" + i + "@example.com")));
+        }
+
+        // Then
+        for (CompletableFuture<Boolean> result : results) {
+            assertTrue(result.get(10, TimeUnit.SECONDS));
+        }
+        assertEquals(10, smtp.messages.size());
+        assertEquals(4, smtp.connections.get());
+    }
+
+    @Test
+    void shouldTellADroppedConnectionFromARejection() {
+        // JavaMail reports an EOF while reading the reply as a send failure with code -1
+        SMTPSendFailedException eof = new SMTPSendFailedException("MAIL FROM", -1, "[EOF]", null, null, null, null);
+        SMTPSendFailedException rejected = new SMTPSendFailedException("MAIL FROM", 550, "550 Rejected", null, null, null, null);
+
+        assertTrue(SmtpConnectionPool.isConnectionLost(eof));
+        assertFalse(SmtpConnectionPool.isConnectionLost(rejected));
+        assertFalse(SmtpConnectionPool.isTransient(eof));
+    }
+
+    @Test
+    void shouldRetryMessagesTheServerDefersWith4xx() throws Exception {
+        // Given: the server answers "451 try again later" to the first two messages
+        smtp = new SmtpStub(0, 2);
+        pool = new SmtpConnectionPool(session(smtp.port()), null, null, 1, 100, 10, 3);
+
+        // When
+        CompletableFuture<Boolean> result = pool.submit(message(smtp.port(), "user@example.com"));
+
+        // Then
+        assertTrue(result.get(10, TimeUnit.SECONDS));
+        assertEquals(1, smtp.messages.size());
+    }
+
+    @Test
+    void shouldKeepTheWorkerAliveWhenSendingThrowsRuntimeException() throws Exception {
+        // Given
+        smtp = new SmtpStub(0);
+        pool = new SmtpConnectionPool(session(smtp.port()), null, null, 1, 100, 10, 2);
+        MimeMessage broken = new MimeMessage(session(smtp.port())) {
+            @Override
+            public Address[] getAllRecipients() {
+                throw new IllegalStateException("Not connected");
+            }
+        };
+
+        // When
+        CompletableFuture<Boolean> failed = pool.submit(broken);
+        CompletableFuture<Boolean> next = pool.submit(message(smtp.port(), "user@example.com"));
+
+        // Then
+        assertFalse(failed.get(10, TimeUnit.SECONDS));
+        assertTrue(next.get(10, TimeUnit.SECONDS));
+        assertEquals(1, smtp.messages.size());
+    }
+
+    @Test
+    void shouldReportFailureWhenTheServerIsUnreachable() throws Exception {
+        // Given
+        int closedPort;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            closedPort = socket.getLocalPort();
+        }
+        pool = new SmtpConnectionPool(session(closedPort), null, null, 1, 100, 10, 2);
+
+        // When
+        CompletableFuture<Boolean> result = pool.submit(message(closedPort, "user@example.com"));
+
+        // Then
+        assertFalse(result.get(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void shouldRejectMessagesWhenTheQueueIsFull() throws Exception {
+        // Given: no workers, so nothing leaves the queue
+        pool = new SmtpConnectionPool(session(1025), null, null, 0, 1, 10, 1);
+        pool.submit(message(1025, "first@example.com"));
+
+        // When
+        CompletableFuture<Boolean> result = pool.submit(message(1025, "second@example.com"));
+
+        // Then
+        assertFalse(result.get(1, TimeUnit.SECONDS));
+        assertEquals(1, pool.pending());
+    }
+
+    private static Session session(int port) {
+        Properties props = new Properties();
+        props.put("mail.smtp.host", "localhost");
+        props.put("mail.smtp.port", String.valueOf(port));
+        props.put("mail.smtp.starttls.enable", "true");
+        props.put("mail.smtp.connectiontimeout", "2000");
+        props.put("mail.smtp.timeout", "2000");
+        return Session.getInstance(props);
+    }
+
+    private static MimeMessage message(int port, String to) throws Exception {
+        MimeMessage message = new MimeMessage(session(port));
+        message.setFrom(new InternetAddress("noreply@covoituraje.com"));
+        message.setRecipients(Message.RecipientType.TO, InternetAddress.parse(to));
+        message.setSubject("Reserva confirmada");
+        message.setText("<p>Hola</p>", "UTF-8", "html");
+        return message;
+    }
+
+    // Minimal SMTP server: accepts every command and records the messages received
+    private static final class SmtpStub implements AutoCloseable {
+        final ServerSocket server;
+        final int dropAfterMessages; // 0: never
+        final AtomicInteger deferredReplies; // messages answered with 451 before accepting any
+        final AtomicInteger connections = new AtomicInteger();
+        final List<String> messages = new CopyOnWriteArrayList<>();
+
+        SmtpStub(int dropAfterMessages) throws IOException {
+            this(dropAfterMessages, 0);
+        }
+
+        SmtpStub(int dropAfterMessages, int deferredReplies) throws IOException {
+            this.server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+            this.dropAfterMessages = dropAfterMessages;
+            this.deferredReplies = new AtomicInteger(deferredReplies);
+            Thread acceptor = new Thread(this::accept, "smtp-stub");
+            acceptor.setDaemon(true);
+            acceptor.start();
+        }
+
+        int port() {
+            return server.getLocalPort();
+        }
+
+        private void accept() {
+            while (!server.isClosed()) {
+                try {
+                    Socket socket = server.accept();
+                    connections.incrementAndGet();
+                    Thread handler = new Thread(() -> handle(socket), "smtp-stub-connection");
+                    handler.setDaemon(true);
+                    handler.start();
+                } catch (IOException e) {
+                    return;
+                }
+            }
+        }
+
+        private void handle(Socket socket) {
+            try (socket) {
+                BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+                OutputStream out = socket.getOutputStream();
+                reply(out, "220 localhost SMTP stub");
+                int received = 0;
+                String line;
+                while ((line = in.readLine()) != null) {
+                    String command = line.toUpperCase();
+                    if (command.startsWith("EHLO")) {
+                        reply(out, "250-localhost\r\n250 8BITMIME");
+                    } else if (command.startsWith("DATA")) {
+                        reply(out, "354 End data with <CR><LF>.<CR><LF>");
+                        StringBuilder data = new StringBuilder();
+                        while ((line = in.readLine()) != null && !line.equals(".")) {
+                            data.append(line).append('\n');
+                        }
+                        if (deferredReplies.getAndDecrement() > 0) {
+                            reply(out, "451 Try again later");
+                            continue;
+                        }
+                        messages.add(data.toString());
+                        reply(out, "250 OK");
+                        received++;
+                        if (dropAfterMessages > 0 && received == dropAfterMessages) {
+                            return;
+                        }
+                    } else if (command.startsWith("QUIT")) {
+                        reply(out, "221 Bye");
+                        return;
+                    } else {
+                        reply(out, "250 OK");
+                    }
+                }
+            } catch (IOException ignored) {
+                // Connection closed by the client
+            }
+        }
+
+        private static void reply(OutputStream out, String reply) throws IOException {
+            out.write((reply + "\r\n").getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            server.close();
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.company.covoituraje.notification.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Signature;
+import java.security.interfaces.ECPrivateKey;
+import java.security.interfaces.ECPublicKey;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VapidTokenCacheTest {
+
+    private static final Base64.Encoder BASE64URL = Base64.getUrlEncoder().withoutPadding();
+
+    private MutableClock clock;
+    private KeyPair keyPair;
+    private String publicKey;
+    private VapidTokenCache cache;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+        generator.initialize(WebPushEncryption.p256Parameters());
+        keyPair = generator.generateKeyPair();
+        publicKey = BASE64URL.encodeToString(WebPushEncryption.encodePublicKey((ECPublicKey) keyPair.getPublic()));
+        String privateKey = BASE64URL.encodeToString(toScalar((ECPrivateKey) keyPair.getPrivate()));
+        clock = new MutableClock(Instant.parse("2026-01-01T00:00:00Z"));
+        cache = new VapidTokenCache("mailto:test@example.com", publicKey, privateKey, clock);
+    }
+
+    @Test
+    void shouldReuseTokenForTheSamePushService() throws Exception {
+        // When
+        String first = cache.authorizationHeader(URI.create("https://fcm.googleapis.com/fcm/send/a"));
+        String second = cache.authorizationHeader(URI.create("https://fcm.googleapis.com/fcm/send/b"));
+        String other = cache.authorizationHeader(URI.create("https://updates.push.services.mozilla.com/wpush/v2/c"));
+
+        // Then
+        assertEquals(first, second);
+        assertNotEquals(first, other);
+        assertTrue(first.startsWith("vapid t="));
+        assertTrue(first.endsWith(", k=" + publicKey));
+    }
+
+    @Test
+    void shouldRenewTokenBeforeItExpires() throws Exception {
+        // Given
+        URI endpoint = URI.create("https://fcm.googleapis.com/fcm/send/a");
+        String first = cache.authorizationHeader(endpoint);
+
+        // When
+        clock.advance(VapidTokenCache.TOKEN_LIFETIME.minus(VapidTokenCache.RENEW_BEFORE_EXPIRY).minusSeconds(1));
+        String stillValid = cache.authorizationHeader(endpoint);
+        clock.advance(Duration.ofSeconds(1));
+        String renewed = cache.authorizationHeader(endpoint);
+
+        // Then
+        assertEquals(first, stillValid);
+        assertNotEquals(first, renewed);
+    }
+
+    @Test
+    void shouldSignClaimsWithTheVapidKey() throws Exception {
+        // When
+        String header = cache.authorizationHeader(URI.create("https://push.example:8443/send/a"));
+
+        // Then
+        String jwt = header.substring("vapid t=".length(), header.indexOf(", k="));
+        String[] parts = jwt.split("\\.");
+        assertEquals(3, parts.length);
+        String claims = new String(Base64.getUrlDecoder().decode(parts[1]), StandardCharsets.UTF_8);
+        assertTrue(claims.contains("\"aud\":\"https://push.example:8443\""));
+        assertTrue(claims.contains("\"sub\":\"mailto:test@example.com\""));
+        long expectedExp = clock.instant().plus(VapidTokenCache.TOKEN_LIFETIME).getEpochSecond();
+        assertTrue(claims.contains("\"exp\":" + expectedExp));
+
+        Signature verifier = Signature.getInstance("SHA256withECDSAinP1363Format");
+        verifier.initVerify(keyPair.getPublic());
+        verifier.update((parts[0] + "." + parts[1]).getBytes(StandardCharsets.US_ASCII));
+        assertTrue(verifier.verify(Base64.getUrlDecoder().decode(parts[2])));
+    }
+
+    @Test
+    void shouldRejectMissingOrInvalidKeys() {
+        assertThrows(IllegalArgumentException.class,
+            () -> new VapidTokenCache("mailto:test@example.com", null, null, clock));
+        assertThrows(IllegalArgumentException.class,
+            () -> new VapidTokenCache("mailto:test@example.com", "not-a-key", "not-a-key", clock));
+    }
+
+    private static byte[] toScalar(ECPrivateKey key) {
+        byte[] bytes = key.getS().toByteArray();
+        byte[] scalar = new byte[32];
+        int length = Math.min(bytes.length, 32);
+        System.arraycopy(bytes, bytes.length - length, scalar, 32 - length, length);
+        return scalar;
+    }
+
+    private static final class MutableClock extends Clock {
+        private Instant now;
+
+        MutableClock(Instant now) {
+            this.now = now;
+        }
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.company.covoituraje.notification.service;
+
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.Cipher;
+import javax.crypto.KeyAgreement;
+import javax.crypto.Mac;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.interfaces.ECPrivateKey;
+import java.security.interfaces.ECPublicKey;
+import java.util.Arrays;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test del cifrado Web Push con el vector de RFC 8291 (apéndice A) y descifrado de ida y vuelta
+ */
+class WebPushEncryptionTest {
+
+    private static final String PLAINTEXT = "When I grow up, I want to be a watermelon";
+    private static final String AS_PRIVATE = "yfWPiYE-n46HLnH0KqZOF1fJJU3MYrct3AELtAQ-oRw";
+    private static final String AS_PUBLIC = "BP4z9KsN6nGRTbVYI_c7VJSPQTBtkgcy27mlmlMoZIIgDll6e3vCYLocInmYWAmS6TlzAC8wEqKK6PBru3jl7A8";
+    private static final String UA_PUBLIC = "BCVxsr7N_eNgVRqvHtD0zTZsEc6-VV-JvLexhqUzORcxaOzi6-AYWXvTBHm4bjyPjs7Vd8pZGH6SRpkNtoIAiw4";
+    private static final String UA_PRIVATE = "q1dXpw3UpT5VOmu_cf_v6ih07Aems3njxI-JWgLcM94";
+    private static final String AUTH = "BTBZMqHH6r4Tts7J_aSIgg";
+    private static final String SALT = "DGv6ra1nlYgDCS1FRnbzlw";
+    private static final String EXPECTED_BODY = "DGv6ra1nlYgDCS1FRnbzlwAAEABBBP4z9KsN6nGRTbVYI_c7VJSPQTBtkgcy27mlmlMoZIIgDll6e3vCYLocInmYWAmS6TlzAC8wEqKK6PBru3jl7A_yl95bQpu6cVPTpK4Mqgkf1CXztLVBSt2Ks3oZwbuwXPXLWyouBWLVWGNWQexSgSxsj_Qulcy4a-fN";
+
+    private static byte[] b64(String value) {
+        return Base64.getUrlDecoder().decode(value);
+    }
+
+    @Test
+    void shouldMatchRfc8291TestVector() throws Exception {
+        // Given
+        KeyPair asKeyPair = new KeyPair(WebPushEncryption.publicKey(b64(AS_PUBLIC)), WebPushEncryption.privateKey(b64(AS_PRIVATE)));
+
+        // When
+        byte[] body = WebPushEncryption.encrypt(PLAINTEXT.getBytes(StandardCharsets.UTF_8), b64(UA_PUBLIC), b64(AUTH),
+            b64(SALT), asKeyPair);
+
+        // Then
+        assertEquals(EXPECTED_BODY, Base64.getUrlEncoder().withoutPadding().encodeToString(body));
+    }
+
+    @Test
+    void shouldBeDecryptableByTheSubscription() throws Exception {
+        // Given
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+        generator.initialize(WebPushEncryption.p256Parameters());
+        KeyPair ua = generator.generateKeyPair();
+        byte[] uaPublic = WebPushEncryption.encodePublicKey((ECPublicKey) ua.getPublic());
+        byte[] auth = new byte[16];
+        Arrays.fill(auth, (byte) 7);
+
+        // When
+        byte[] body = WebPushEncryption.encrypt(PLAINTEXT.getBytes(StandardCharsets.UTF_8), uaPublic, auth);
+
+        // Then
+        assertEquals(PLAINTEXT, new String(decrypt(body, (ECPrivateKey) ua.getPrivate(), uaPublic, auth), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void shouldRejectPayloadsLargerThanOneRecord() throws Exception {
+        // Given
+        byte[] tooLarge = new byte[WebPushEncryption.MAX_PLAINTEXT_SIZE + 1];
+
+        // When & Then
+        assertThrows(IllegalArgumentException.class, () -> WebPushEncryption.encrypt(tooLarge, b64(UA_PUBLIC), b64(AUTH)));
+    }
+
+    @Test
+    void shouldRejectInvalidSubscriptionKeys() {
+        assertThrows(IllegalArgumentException.class,
+            () -> WebPushEncryption.encrypt(new byte[1], new byte[10], b64(AUTH)));
+        assertThrows(IllegalArgumentException.class,
+            () -> WebPushEncryption.encrypt(new byte[1], b64(UA_PUBLIC), new byte[3]));
+    }
+
+    /**
+     * Descifrado del lado del navegador (RFC 8291 sección 3), usado también por PushNotificationServiceTest
+     */
+    static byte[] decrypt(byte[] body, ECPrivateKey uaPrivate, byte[] uaPublic, byte[] auth) throws Exception {
+        ByteBuffer buffer = ByteBuffer.wrap(body);
+        byte[] salt = new byte[16];
+        buffer.get(salt);
+        buffer.getInt();
+        byte[] asPublic = new byte[buffer.get()];
+        buffer.get(asPublic);
+        byte[] ciphertext = new byte[buffer.remaining()];
+        buffer.get(ciphertext);
+
+        KeyAgreement agreement = KeyAgreement.getInstance("ECDH");
+        agreement.init(uaPrivate);
+        agreement.doPhase(WebPushEncryption.publicKey(asPublic), true);
+        byte[] ecdh = agreement.generateSecret();
+
+        byte[] keyInfo = concat("WebPush: info\0".getBytes(StandardCharsets.US_ASCII), uaPublic, asPublic);
+        byte[] ikm = hkdf(auth, ecdh, keyInfo, 32);
+        byte[] cek = hkdf(salt, ikm, "Content-Encoding: aes128gcm\0".getBytes(StandardCharsets.US_ASCII), 16);
+        byte[] nonce = hkdf(salt, ikm, "Content-Encoding: nonce\0".getBytes(StandardCharsets.US_ASCII), 12);
+
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.DECRYPT_MODE, new SecretKeySpec(cek, "AES"), new GCMParameterSpec(128, nonce));
+        byte[] record = cipher.doFinal(ciphertext);
+        assertEquals(2, record[record.length - 1]);
+        return Arrays.copyOf(record, record.length - 1);
+    }
+
+    private static byte[] hkdf(byte[] salt, byte[] ikm, byte[] info, int length) throws Exception {
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(salt, "HmacSHA256"));
+        byte[] prk = mac.doFinal(ikm);
+        mac.init(new SecretKeySpec(prk, "HmacSHA256"));
+        mac.update(info);
+        mac.update((byte) 1);
+        return Arrays.copyOf(mac.doFinal(), length);
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        ByteBuffer buffer = ByteBuffer.allocate(Arrays.stream(parts).mapToInt(p -> p.length).sum());
+        for (byte[] part : parts) buffer.put(part);
+        return buffer.array();
+    }
+}
@@ -0,0 +1,31 @@
+package com.company.covoituraje.auth;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+/**
+ * Autenticación de las llamadas entre microservicios. ServiceHttpClient envía la cabecera
+ * X-Service-Token con el secreto compartido SERVICE_AUTH_TOKEN y los AuthFilter conceden el
+ * rol SERVICE a quien la presenta correcta. Un JWT con el rol de realm SERVICE también cuenta
+ * como servicio. Sin SERVICE_AUTH_TOKEN no se acepta ninguna cabecera.
+ */
+public final class ServiceAuth {
+    public static final String HEADER = "X-Service-Token";
+    public static final String SERVICE_ROLE = "SERVICE";
+    public static final String ADMIN_ROLE = "ADMIN";
+
+    private ServiceAuth() {}
+
+    public static String configuredToken() {
+        String token = System.getenv("SERVICE_AUTH_TOKEN");
+        return token == null || token.isBlank() ? null : token;
+    }
+
+    /**
+     * Compara en tiempo constante el token presentado con el configurado
+     */
+    public static boolean matches(String presented, String expected) {
+        if (presented == null || expected == null) return false;
+        return MessageDigest.isEqual(presented.getBytes(StandardCharsets.UTF_8), expected.getBytes(StandardCharsets.UTF_8));
+    }
+}
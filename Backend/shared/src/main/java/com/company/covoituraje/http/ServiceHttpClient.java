@@ -1,5 +1,6 @@
 package com.company.covoituraje.http;
 
+import com.company.covoituraje.auth.ServiceAuth;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 
@@ -11,13 +12,15 @@ import java.net.http.HttpResponse;
 import java.time.Duration;
 
 /**
- * Cliente HTTP compartido para comunicación entre microservicios
+ * Cliente HTTP compartido para comunicación entre microservicios. Si SERVICE_AUTH_TOKEN está
+ * definido, todas las peticiones llevan la cabecera X-Service-Token (ver ServiceAuth).
  */
 public class ServiceHttpClient {
     
     private final java.net.http.HttpClient httpClient;
     private final ObjectMapper objectMapper;
     private final String baseUrl;
+    private final String serviceToken = ServiceAuth.configuredToken();
     
     public ServiceHttpClient(String baseUrl) {
         this.baseUrl = baseUrl;
@@ -55,6 +58,9 @@ public class ServiceHttpClient {
             if (authToken != null) {
                 requestBuilder.header("Authorization", "Bearer " + authToken);
             }
+            if (serviceToken != null) {
+                requestBuilder.header(ServiceAuth.HEADER, serviceToken);
+            }
             
             HttpRequest request = requestBuilder.build();
             HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
@@ -63,7 +69,8 @@ public class ServiceHttpClient {
                 return objectMapper.readValue(response.body(), responseType);
             } else {
                 throw new ServiceIntegrationException(
-                    "HTTP " + response.statusCode() + " error calling " + baseUrl + path + ": " + response.body()
+                    "HTTP " + response.statusCode() + " error calling " + baseUrl + path + ": " + response.body(),
+                    response.statusCode()
                 );
             }
         } catch (IOException | InterruptedException e) {
@@ -94,6 +101,9 @@ public class ServiceHttpClient {
             if (authToken != null) {
                 requestBuilder.header("Authorization", "Bearer " + authToken);
             }
+            if (serviceToken != null) {
+                requestBuilder.header(ServiceAuth.HEADER, serviceToken);
+            }
             
             HttpRequest request = requestBuilder.build();
             HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
@@ -102,7 +112,8 @@ public class ServiceHttpClient {
                 return objectMapper.readValue(response.body(), responseType);
             } else {
                 throw new ServiceIntegrationException(
-                    "HTTP " + response.statusCode() + " error calling " + baseUrl + path + ": " + response.body()
+                    "HTTP " + response.statusCode() + " error calling " + baseUrl + path + ": " + response.body(),
+                    response.statusCode()
                 );
             }
         } catch (IOException | InterruptedException e) {
@@ -133,6 +144,9 @@ public class ServiceHttpClient {
             if (authToken != null) {
                 requestBuilder.header("Authorization", "Bearer " + authToken);
             }
+            if (serviceToken != null) {
+                requestBuilder.header(ServiceAuth.HEADER, serviceToken);
+            }
             
             HttpRequest request = requestBuilder.build();
             HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
@@ -141,7 +155,8 @@ public class ServiceHttpClient {
                 return objectMapper.readValue(response.body(), responseType);
             } else {
                 throw new ServiceIntegrationException(
-                    "HTTP " + response.statusCode() + " error calling " + baseUrl + path + ": " + response.body()
+                    "HTTP " + response.statusCode() + " error calling " + baseUrl + path + ": " + response.body(),
+                    response.statusCode()
                 );
             }
         } catch (IOException | InterruptedException e) {
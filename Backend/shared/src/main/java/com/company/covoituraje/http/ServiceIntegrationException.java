@@ -4,12 +4,30 @@ package com.company.covoituraje.http;
  * Excepción lanzada cuando hay problemas en la comunicación entre servicios
  */
 public class ServiceIntegrationException extends Exception {
+
+    // 0 when the call failed before an HTTP response arrived (timeout, connection refused...)
+    private final int statusCode;
     
     public ServiceIntegrationException(String message) {
         super(message);
+        this.statusCode = 0;
+    }
+
+    public ServiceIntegrationException(String message, int statusCode) {
+        super(message);
+        this.statusCode = statusCode;
     }
     
     public ServiceIntegrationException(String message, Throwable cause) {
         super(message, cause);
+        this.statusCode = cause instanceof ServiceIntegrationException
+                ? ((ServiceIntegrationException) cause).statusCode : 0;
+    }
+
+    /**
+     * Código HTTP devuelto por el servicio remoto, o 0 si no llegó a haber respuesta
+     */
+    public int getStatusCode() {
+        return statusCode;
     }
 }
@@ -0,0 +1,24 @@
+package com.company.covoituraje.shared.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * DTO compartido para reservar o liberar plazas de un trip (POST /trips/{id}/reservations)
+ */
+public class SeatReservationDto {
+
+    @JsonProperty("seats")
+    public Integer seats;
+
+    @JsonProperty("tripId")
+    public String tripId;
+
+    @JsonProperty("seatsFree")
+    public Integer seatsFree;
+
+    public SeatReservationDto() {}
+
+    public SeatReservationDto(int seats) {
+        this.seats = seats;
+    }
+}
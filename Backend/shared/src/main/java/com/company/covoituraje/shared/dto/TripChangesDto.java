@@ -0,0 +1,40 @@
+package com.company.covoituraje.shared.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+/**
+ * DTO compartido para el feed de cambios de trips (GET /trips/changes)
+ */
+public class TripChangesDto {
+    
+    @JsonProperty("since")
+    public long since;
+    
+    @JsonProperty("nextSince")
+    public long nextSince;
+    
+    @JsonProperty("hasMore")
+    public boolean hasMore;
+    
+    @JsonProperty("upserts")
+    public List<TripDto> upserts;
+    
+    @JsonProperty("tombstones")
+    public List<Tombstone> tombstones;
+    
+    public static class Tombstone {
+        @JsonProperty("id")
+        public String id;
+        
+        @JsonProperty("destinationSedeId")
+        public String destinationSedeId;
+        
+        @JsonProperty("version")
+        public long version;
+        
+        @JsonProperty("deletedAt")
+        public String deletedAt;
+    }
+}
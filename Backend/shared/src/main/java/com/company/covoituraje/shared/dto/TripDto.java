@@ -28,6 +28,9 @@ public class TripDto {
     @JsonProperty("seatsFree")
     public Integer seatsFree;
     
+    @JsonProperty("version")
+    public Long version;
+    
     @JsonProperty("createdAt")
     public String createdAt;
     
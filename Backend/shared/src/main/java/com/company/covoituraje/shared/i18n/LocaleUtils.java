@@ -37,6 +37,16 @@ public class LocaleUtils {
         return DEFAULT_LOCALE;
     }
     
+    /**
+     * Resolves the locale for an Accept-Language header value.
+     * 
+     * @param acceptLanguageHeader the Accept-Language header value
+     * @return the parsed locale, or DEFAULT_LOCALE if parsing fails
+     */
+    public static Locale fromAcceptLanguage(String acceptLanguageHeader) {
+        return parseAcceptLanguage(acceptLanguageHeader);
+    }
+    
     /**
      * Creates a Locale from a language tag (e.g., "ca-ES", "en-US").
      * 
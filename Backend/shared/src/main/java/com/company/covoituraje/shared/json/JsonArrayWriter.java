@@ -0,0 +1,96 @@
+package com.company.covoituraje.shared.json;
+
+import com.company.covoituraje.shared.pagination.PageCursor;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Escritura de un array JSON elemento a elemento a partir de un Stream, sin materializar
+ * la lista completa. Pensado para respuestas StreamingOutput que leen de un cursor JPA:
+ * la memoria depende del tamaño del buffer, no del número de elementos.
+ */
+public final class JsonArrayWriter {
+
+    /** Elementos escritos entre dos flush al cliente. */
+    public static final int FLUSH_EVERY = 100;
+
+    // Same output as the default JSON-B provider: nulls omitted, dates as ISO strings
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .setSerializationInclusion(JsonInclude.Include.NON_NULL)
+            .configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false);
+
+    private JsonArrayWriter() {
+    }
+
+    /**
+     * Escribe los elementos como array JSON y cierra el Stream (y con él el cursor)
+     * aunque el cliente corte la conexión. El primer elemento se envía de inmediato
+     * para no retrasar el primer byte; el resto cada FLUSH_EVERY elementos.
+     */
+    public static <T> void write(OutputStream output, Stream<T> items) throws IOException {
+        try (Stream<T> source = items;
+             JsonGenerator generator = MAPPER.getFactory().createGenerator(output)) {
+            generator.writeStartArray();
+            int written = 0;
+            Iterator<T> it = source.iterator();
+            while (it.hasNext()) {
+                MAPPER.writeValue(generator, it.next());
+                written++;
+                if (written == 1 || written % FLUSH_EVERY == 0) {
+                    generator.flush();
+                }
+            }
+            generator.writeEndArray();
+        }
+    }
+
+    /**
+     * Escribe una página de la paginación por keyset como {"items": [...], "nextCursor": "..."}.
+     * rows debe traer hasta limit + 1 filas en el orden del keyset: la fila extra solo indica
+     * que hay página siguiente. Los filtros van en la consulta: filtrar aquí dejaría páginas
+     * cortas o vacías con nextCursor. El Stream se cierra siempre.
+     */
+    public static <T> void writePage(OutputStream output, Stream<T> rows, int limit,
+                                     Function<? super T, ?> mapper, Function<? super T, PageCursor> cursorOf) throws IOException {
+        try (Stream<T> source = rows;
+             JsonGenerator generator = MAPPER.getFactory().createGenerator(output)) {
+            generator.writeStartObject();
+            generator.writeArrayFieldStart("items");
+            int read = 0;
+            int written = 0;
+            T last = null;
+            boolean hasMore = false;
+            Iterator<T> it = source.iterator();
+            while (it.hasNext()) {
+                T row = it.next();
+                if (read == limit) {
+                    hasMore = true;
+                    break;
+                }
+                read++;
+                last = row;
+                MAPPER.writeValue(generator, mapper.apply(row));
+                written++;
+                if (written == 1 || written % FLUSH_EVERY == 0) {
+                    generator.flush();
+                }
+            }
+            generator.writeEndArray();
+            if (hasMore) {
+                generator.writeStringField("nextCursor", cursorOf.apply(last).encode());
+            }
+            generator.writeEndObject();
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.company.covoituraje.shared.outbox;
+
+import com.company.covoituraje.http.ServiceHttpClient;
+import com.company.covoituraje.http.ServiceIntegrationException;
+
+import java.util.List;
+
+public class NotificationBatchClient {
+
+    private final ServiceHttpClient httpClient;
+
+    public NotificationBatchClient(String baseUrl) {
+        this.httpClient = new ServiceHttpClient(baseUrl);
+    }
+
+    public NotificationBatchClient(ServiceHttpClient httpClient) {
+        this.httpClient = httpClient;
+    }
+
+    /**
+     * Sends several notifications in one request (POST /notifications/batch).
+     * Used by the notification outbox relay.
+     */
+    public BatchResponse sendBatch(List<BatchItem> items) throws ServiceIntegrationException {
+        return httpClient.post("/notifications/batch", new BatchRequest(items), BatchResponse.class);
+    }
+
+    public static class BatchItem {
+        public String userId;
+        public String title;
+        public String body;
+        public String channel;
+        public BatchItem() {}
+        public BatchItem(String userId, String title, String body) {
+            this.userId = userId;
+            this.title = title;
+            this.body = body;
+            this.channel = "PUSH";
+        }
+    }
+
+    public static class BatchRequest {
+        public List<BatchItem> items;
+        public BatchRequest() {}
+        public BatchRequest(List<BatchItem> items) {
+            this.items = items;
+        }
+    }
+
+    public static class BatchResponse {
+        public int pushQueued;
+        public int emailsSent;
+        public int skipped;
+    }
+}
@@ -0,0 +1,85 @@
+package com.company.covoituraje.shared.outbox;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Id;
+import jakarta.persistence.MappedSuperclass;
+import jakarta.persistence.Transient;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+/**
+ * Notificación pendiente de entregar a notification-service. Cada servicio la mapea a la tabla
+ * notification_outbox de su esquema con una entidad que extiende esta clase, la guarda en la
+ * misma transacción que su cambio y la entrega NotificationOutboxRelay.
+ */
+@MappedSuperclass
+public class NotificationOutboxEvent {
+
+    @Id
+    @Column(name = "id")
+    private UUID id;
+
+    @Column(name = "event_type", nullable = false, length = 50)
+    private String eventType;
+
+    @Column(name = "recipient_id", nullable = false)
+    private String recipientId;
+
+    @Column(name = "title", nullable = false)
+    private String title;
+
+    @Column(name = "body", nullable = false, columnDefinition = "TEXT")
+    private String body;
+
+    @Column(name = "attempts", nullable = false)
+    private int attempts;
+
+    @Column(name = "next_attempt_at", nullable = false)
+    private OffsetDateTime nextAttemptAt;
+
+    @Column(name = "last_error", columnDefinition = "TEXT")
+    private String lastError;
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private OffsetDateTime createdAt;
+
+    // Set by the relay once notification-service accepted the event; the row is then deleted
+    @Transient
+    private boolean delivered;
+
+    // Default constructor for JPA
+    public NotificationOutboxEvent() {}
+
+    public NotificationOutboxEvent(String eventType, String recipientId, String title, String body) {
+        this.id = UUID.randomUUID();
+        this.eventType = eventType;
+        this.recipientId = recipientId;
+        this.title = title;
+        this.body = body;
+        this.createdAt = OffsetDateTime.now();
+        this.nextAttemptAt = this.createdAt;
+    }
+
+    // Business methods
+    public void markDelivered() {
+        this.delivered = true;
+    }
+
+    public void scheduleRetry(String error, OffsetDateTime nextAttemptAt) {
+        this.attempts++;
+        this.lastError = error;
+        this.nextAttemptAt = nextAttemptAt;
+    }
+
+    public UUID getId() { return id; }
+    public String getEventType() { return eventType; }
+    public String getRecipientId() { return recipientId; }
+    public String getTitle() { return title; }
+    public String getBody() { return body; }
+    public int getAttempts() { return attempts; }
+    public OffsetDateTime getNextAttemptAt() { return nextAttemptAt; }
+    public String getLastError() { return lastError; }
+    public OffsetDateTime getCreatedAt() { return createdAt; }
+    public boolean isDelivered() { return delivered; }
+}
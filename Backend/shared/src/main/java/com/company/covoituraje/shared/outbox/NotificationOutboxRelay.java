@@ -0,0 +1,170 @@
+package com.company.covoituraje.shared.outbox;
+
+import com.company.covoituraje.http.ServiceIntegrationException;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Entrega a notification-service las notificaciones de la tabla notification_outbox del servicio.
+ * Un hilo en segundo plano toma los eventos pendientes en lotes y envía cada lote en una sola
+ * petición a POST /notifications/batch; los entregados se borran y
+ * los fallidos se reintentan más tarde con espera exponencial. La entrega es al menos una vez:
+ * un evento solo se borra cuando notification-service lo ha aceptado, de modo que una caída
+ * entre el envío y el borrado provoca un reenvío, nunca una pérdida.
+ */
+public class NotificationOutboxRelay implements AutoCloseable {
+
+    static final int DEFAULT_BATCH_SIZE = 100;
+    // Items accepted by POST /notifications/batch
+    static final int MAX_BATCH_SIZE = 1_000;
+    static final long DEFAULT_POLL_INTERVAL_MS = 500;
+    static final Duration INITIAL_BACKOFF = Duration.ofSeconds(1);
+    static final Duration MAX_BACKOFF = Duration.ofMinutes(5);
+    static final long SHUTDOWN_TIMEOUT_MS = 10_000;
+
+    private static NotificationOutboxRelay shared;
+
+    private final NotificationOutboxRepository repository;
+    private final NotificationBatchClient notificationClient;
+    private final int batchSize;
+    private final long pollIntervalMs;
+
+    private Thread worker;
+    private volatile boolean running;
+    private volatile boolean closed;
+
+    public NotificationOutboxRelay(NotificationOutboxRepository repository, NotificationBatchClient notificationClient) {
+        this(repository, notificationClient, DEFAULT_BATCH_SIZE, DEFAULT_POLL_INTERVAL_MS);
+    }
+
+    public NotificationOutboxRelay(NotificationOutboxRepository repository, NotificationBatchClient notificationClient,
+                                   int batchSize, long pollIntervalMs) {
+        this.repository = repository;
+        this.notificationClient = notificationClient;
+        this.batchSize = Math.min(batchSize, MAX_BATCH_SIZE);
+        this.pollIntervalMs = pollIntervalMs;
+    }
+
+    /**
+     * Relay compartido del servicio, configurado con NOTIFICATION_SERVICE_URL,
+     * NOTIFICATION_OUTBOX_BATCH_SIZE y NOTIFICATION_OUTBOX_POLL_MS. Arranca al primer uso con
+     * el outbox que devuelve repository; las llamadas siguientes no lo usan.
+     */
+    public static synchronized NotificationOutboxRelay shared(Supplier<NotificationOutboxRepository> repository) {
+        if (shared == null) {
+            String notificationServiceUrl = System.getenv().getOrDefault("NOTIFICATION_SERVICE_URL", "http://localhost:8085/api");
+            int batchSize = (int) envLong("NOTIFICATION_OUTBOX_BATCH_SIZE", DEFAULT_BATCH_SIZE);
+            long pollMs = envLong("NOTIFICATION_OUTBOX_POLL_MS", DEFAULT_POLL_INTERVAL_MS);
+            NotificationOutboxRelay relay = new NotificationOutboxRelay(repository.get(),
+                    new NotificationBatchClient(notificationServiceUrl), batchSize, pollMs);
+            relay.start();
+            Runtime.getRuntime().addShutdownHook(new Thread(relay::close, "notification-outbox-shutdown"));
+            shared = relay;
+        }
+        return shared;
+    }
+
+    public synchronized void start() {
+        if (running || closed) return;
+        running = true;
+        worker = new Thread(this::runRelay, "notification-outbox-relay");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Entrega lotes de eventos pendientes hasta que no quedan más que entregar ahora.
+     *
+     * @return eventos entregados
+     */
+    public int relay() {
+        int delivered = 0;
+        while (true) {
+            int[] batchDelivered = new int[1];
+            int taken = repository.processDue(batchSize, OffsetDateTime.now(),
+                    batch -> batchDelivered[0] = deliver(batch));
+            delivered += batchDelivered[0];
+            // A short batch means nothing else is due; a failed one waits for its backoff
+            if (taken < batchSize || batchDelivered[0] < taken) {
+                return delivered;
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        Thread thread;
+        synchronized (this) {
+            if (closed) return;
+            closed = true;
+            running = false;
+            thread = worker;
+        }
+        if (thread != null) {
+            thread.interrupt();
+            try {
+                thread.join(SHUTDOWN_TIMEOUT_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void runRelay() {
+        while (running) {
+            try {
+                relay();
+            } catch (RuntimeException e) {
+                System.err.println("Error relaying notification outbox: " + e.getMessage());
+            }
+            try {
+                Thread.sleep(pollIntervalMs);
+            } catch (InterruptedException e) {
+                break;
+            }
+        }
+    }
+
+    private int deliver(List<NotificationOutboxEvent> batch) {
+        List<NotificationBatchClient.BatchItem> items = new ArrayList<>(batch.size());
+        for (NotificationOutboxEvent event : batch) {
+            items.add(new NotificationBatchClient.BatchItem(event.getRecipientId(), event.getTitle(), event.getBody()));
+        }
+        try {
+            notificationClient.sendBatch(items);
+        } catch (ServiceIntegrationException e) {
+            System.err.println("Error delivering " + batch.size() + " notifications, will retry: " + e.getMessage());
+            for (NotificationOutboxEvent event : batch) {
+                retryLater(event, e);
+            }
+            return 0;
+        }
+        for (NotificationOutboxEvent event : batch) {
+            event.markDelivered();
+        }
+        return batch.size();
+    }
+
+    private static void retryLater(NotificationOutboxEvent event, ServiceIntegrationException error) {
+        Duration backoff = backoff(event.getAttempts());
+        event.scheduleRetry(error.getMessage(), OffsetDateTime.now().plus(backoff));
+    }
+
+    // 1s, 2s, 4s... capped at MAX_BACKOFF
+    static Duration backoff(int previousAttempts) {
+        Duration backoff = INITIAL_BACKOFF.multipliedBy(1L << Math.min(previousAttempts, 20));
+        return backoff.compareTo(MAX_BACKOFF) > 0 ? MAX_BACKOFF : backoff;
+    }
+
+    private static long envLong(String name, long defaultValue) {
+        try {
+            return Long.parseLong(System.getenv().getOrDefault(name, String.valueOf(defaultValue)));
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.company.covoituraje.shared.outbox;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.EntityTransaction;
+import jakarta.persistence.Table;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Read side of a service's notification outbox, used by the relay thread. Events are written
+ * together with the change that raised them by the service's own repository. The table comes
+ * from the @Table (schema and name) of the service's outbox entity.
+ * Each call uses its own short-lived EntityManager.
+ */
+public class NotificationOutboxRepository {
+
+    private final EntityManagerFactory entityManagerFactory;
+    private final Class<? extends NotificationOutboxEvent> entityType;
+    private final String lockDueSql;
+
+    public NotificationOutboxRepository(EntityManagerFactory entityManagerFactory,
+                                        Class<? extends NotificationOutboxEvent> entityType) {
+        this.entityManagerFactory = entityManagerFactory;
+        this.entityType = entityType;
+        Table table = entityType.getAnnotation(Table.class);
+        if (table == null || table.schema().isEmpty()) {
+            throw new IllegalArgumentException(entityType.getName() + " must declare its outbox schema and table in @Table");
+        }
+        this.lockDueSql = "SELECT * FROM " + table.schema() + "." + table.name() + " WHERE next_attempt_at <= ?1 " +
+            "ORDER BY next_attempt_at, created_at LIMIT ?2 FOR UPDATE SKIP LOCKED";
+    }
+
+    /**
+     * Locks up to limit due events and hands them to the handler, which marks each one delivered
+     * or schedules its retry. In the same transaction delivered events are deleted and the rest
+     * keep their new attempt state. SKIP LOCKED lets several relays run without sending an
+     * event twice; an event is only deleted after delivery, so a crash means a resend.
+     *
+     * @return the number of events handed to the handler
+     */
+    @SuppressWarnings("unchecked")
+    public int processDue(int limit, OffsetDateTime now, Consumer<List<NotificationOutboxEvent>> handler) {
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        EntityTransaction tx = entityManager.getTransaction();
+        try {
+            tx.begin();
+            List<NotificationOutboxEvent> due = entityManager.createNativeQuery(lockDueSql, entityType)
+                .setParameter(1, now)
+                .setParameter(2, limit)
+                .getResultList();
+            if (!due.isEmpty()) {
+                handler.accept(due);
+                for (NotificationOutboxEvent event : due) {
+                    if (event.isDelivered()) {
+                        entityManager.remove(event);
+                    }
+                }
+            }
+            tx.commit();
+            return due.size();
+        } catch (Exception e) {
+            if (tx.isActive()) {
+                tx.rollback();
+            }
+            throw e;
+        } finally {
+            entityManager.close();
+        }
+    }
+
+    public long countPending() {
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        try {
+            String entityName = entityManager.getMetamodel().entity(entityType).getName();
+            return entityManager.createQuery("SELECT COUNT(e) FROM " + entityName + " e", Long.class).getSingleResult();
+        } finally {
+            entityManager.close();
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.company.covoituraje.shared.pagination;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Posición de una paginación por keyset: el valor de la columna de ordenación y el id
+ * de la última fila devuelta. Se entrega al cliente como un token opaco que debe
+ * devolver tal cual para pedir la página siguiente.
+ */
+public final class PageCursor {
+
+    public static final int DEFAULT_LIMIT = 50;
+    public static final int MAX_LIMIT = 500;
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private final String key;
+    private final String id;
+
+    public PageCursor(String key, String id) {
+        if (key == null || id == null) {
+            throw new IllegalArgumentException("cursor key and id are required");
+        }
+        this.key = key;
+        this.id = id;
+    }
+
+    public String key() { return key; }
+    public String id() { return id; }
+
+    public String encode() {
+        return encodePart(key) + "." + encodePart(id);
+    }
+
+    /**
+     * Decodifica un token generado por encode().
+     *
+     * @throws IllegalArgumentException si el token no tiene el formato esperado
+     */
+    public static PageCursor decode(String token) {
+        if (token == null) {
+            throw new IllegalArgumentException("cursor is required");
+        }
+        int separator = token.indexOf('.');
+        if (separator < 0 || token.indexOf('.', separator + 1) >= 0) {
+            throw new IllegalArgumentException("malformed cursor");
+        }
+        return new PageCursor(decodePart(token.substring(0, separator)), decodePart(token.substring(separator + 1)));
+    }
+
+    /**
+     * Tamaño de página a usar: DEFAULT_LIMIT si no se indica o no es positivo, y como máximo MAX_LIMIT.
+     */
+    public static int resolveLimit(Integer limit) {
+        if (limit == null || limit <= 0) return DEFAULT_LIMIT;
+        return Math.min(limit, MAX_LIMIT);
+    }
+
+    /**
+     * true si la petición pide paginación (se ha indicado limit o cursor).
+     */
+    public static boolean isRequested(Integer limit, String cursor) {
+        return limit != null || (cursor != null && !cursor.isBlank());
+    }
+
+    private static String encodePart(String value) {
+        return ENCODER.encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String decodePart(String value) {
+        return new String(DECODER.decode(value), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,89 @@
+package com.company.covoituraje.shared.json;
+
+import com.company.covoituraje.shared.pagination.PageCursor;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JsonArrayWriterTest {
+
+    public static class Item {
+        public String id;
+        public Integer seats;
+
+        Item(String id, Integer seats) {
+            this.id = id;
+            this.seats = seats;
+        }
+    }
+
+    @Test
+    void write_emptyStream_writesEmptyArray() throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        JsonArrayWriter.write(output, Stream.empty());
+
+        assertEquals("[]", output.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void write_items_writesArrayInOrderWithoutNulls() throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        JsonArrayWriter.write(output, Stream.of(new Item("a", 3), new Item("b", null)));
+
+        assertEquals("[{\"id\":\"a\",\"seats\":3},{\"id\":\"b\"}]", output.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void write_closesSourceStream() throws Exception {
+        AtomicBoolean closed = new AtomicBoolean(false);
+        Stream<Item> items = IntStream.range(0, 250)
+                .mapToObj(i -> new Item("t" + i, i))
+                .onClose(() -> closed.set(true));
+
+        JsonArrayWriter.write(new ByteArrayOutputStream(), items);
+
+        assertTrue(closed.get());
+    }
+
+    @Test
+    void write_closesSourceStreamWhenMappingFails() {
+        AtomicBoolean closed = new AtomicBoolean(false);
+        Stream<Item> items = Stream.of("x", "y")
+                .<Item>map(s -> { throw new IllegalStateException("boom"); })
+                .onClose(() -> closed.set(true));
+
+        assertThrows(IllegalStateException.class,
+                () -> JsonArrayWriter.write(new ByteArrayOutputStream(), items));
+        assertTrue(closed.get());
+    }
+
+    @Test
+    void writePage_withExtraRow_writesItemsAndNextCursor() throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        JsonArrayWriter.writePage(output, Stream.of(new Item("a", 1), new Item("b", 2), new Item("c", 3)), 2,
+                item -> item, item -> new PageCursor(String.valueOf(item.seats), item.id));
+
+        String expectedCursor = new PageCursor("2", "b").encode();
+        assertEquals("{\"items\":[{\"id\":\"a\",\"seats\":1},{\"id\":\"b\",\"seats\":2}],\"nextCursor\":\"" + expectedCursor + "\"}",
+                output.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void writePage_lastPage_omitsNextCursor() throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        JsonArrayWriter.writePage(output, Stream.of(new Item("a", 1)), 2,
+                item -> item, item -> new PageCursor(item.id, item.id));
+
+        assertEquals("{\"items\":[{\"id\":\"a\",\"seats\":1}]}", output.toString(StandardCharsets.UTF_8));
+    }
+}
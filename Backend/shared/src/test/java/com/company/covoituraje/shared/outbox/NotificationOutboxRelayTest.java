@@ -0,0 +1,100 @@
+package com.company.covoituraje.shared.outbox;
+
+import com.company.covoituraje.http.ServiceIntegrationException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Test del relay del outbox de notificaciones: entrega, reintentos y espera exponencial
+ */
+class NotificationOutboxRelayTest {
+
+    private NotificationOutboxRepository repository;
+    private NotificationBatchClient notificationClient;
+    private NotificationOutboxRelay relay;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(NotificationOutboxRepository.class);
+        notificationClient = mock(NotificationBatchClient.class);
+        relay = new NotificationOutboxRelay(repository, notificationClient, 2, 60_000);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void dueBatches(List<NotificationOutboxEvent>... batches) {
+        var stub = when(repository.processDue(eq(2), any(OffsetDateTime.class), any()));
+        for (List<NotificationOutboxEvent> batch : batches) {
+            stub = stub.thenAnswer(invocation -> {
+                invocation.<Consumer<List<NotificationOutboxEvent>>>getArgument(2).accept(batch);
+                return batch.size();
+            });
+        }
+        stub.thenReturn(0);
+    }
+
+    private static NotificationOutboxEvent event(String recipient) {
+        return new NotificationOutboxEvent("TEST", recipient, "Reserva confirmada", "Tu reserva ha sido confirmada");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void relay_ShouldSendEachDueBatchInOneRequest() throws Exception {
+        // Arrange
+        NotificationOutboxEvent a = event("user-a");
+        NotificationOutboxEvent b = event("user-b");
+        NotificationOutboxEvent c = event("user-c");
+        dueBatches(List.of(a, b), List.of(c));
+
+        // Act
+        int delivered = relay.relay();
+
+        // Assert
+        assertEquals(3, delivered);
+        assertTrue(a.isDelivered() && b.isDelivered() && c.isDelivered());
+        ArgumentCaptor<List<NotificationBatchClient.BatchItem>> items = ArgumentCaptor.forClass(List.class);
+        verify(notificationClient, times(2)).sendBatch(items.capture());
+        assertEquals(List.of("user-a", "user-b"), items.getAllValues().get(0).stream().map(item -> item.userId).toList());
+        assertEquals(a.getTitle(), items.getAllValues().get(0).get(0).title);
+        verify(repository, times(2)).processDue(eq(2), any(OffsetDateTime.class), any());
+    }
+
+    @Test
+    void relay_ShouldScheduleRetryOfTheWholeBatchWhenDeliveryFails() throws Exception {
+        // Arrange
+        NotificationOutboxEvent first = event("user-a");
+        NotificationOutboxEvent second = event("user-b");
+        when(notificationClient.sendBatch(anyList())).thenThrow(new ServiceIntegrationException("Connection refused"));
+        dueBatches(List.of(first, second));
+
+        // Act
+        int delivered = relay.relay();
+
+        // Assert
+        assertEquals(0, delivered);
+        for (NotificationOutboxEvent event : List.of(first, second)) {
+            assertFalse(event.isDelivered());
+            assertEquals(1, event.getAttempts());
+            assertEquals("Connection refused", event.getLastError());
+            assertTrue(event.getNextAttemptAt().isAfter(OffsetDateTime.now()));
+        }
+        // Not retried in the same pass
+        verify(repository, times(1)).processDue(anyInt(), any(), any());
+    }
+
+    @Test
+    void backoff_ShouldDoubleUpToTheMaximum() {
+        assertEquals(Duration.ofSeconds(1), NotificationOutboxRelay.backoff(0));
+        assertEquals(Duration.ofSeconds(8), NotificationOutboxRelay.backoff(3));
+        assertEquals(NotificationOutboxRelay.MAX_BACKOFF, NotificationOutboxRelay.backoff(30));
+    }
+}
@@ -0,0 +1,59 @@
+package com.company.covoituraje.shared.pagination;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PageCursorTest {
+
+    @Test
+    void encode_decode_roundTrip() {
+        PageCursor cursor = new PageCursor("2025-01-01T08:00:00Z", "3f1c2a8e-1111-2222-3333-444455556666");
+
+        PageCursor decoded = PageCursor.decode(cursor.encode());
+
+        assertEquals(cursor.key(), decoded.key());
+        assertEquals(cursor.id(), decoded.id());
+    }
+
+    @Test
+    void encode_keyWithSeparators_roundTrips() {
+        PageCursor cursor = new PageCursor("Núria | García.López", "user.1");
+
+        PageCursor decoded = PageCursor.decode(cursor.encode());
+
+        assertEquals("Núria | García.López", decoded.key());
+        assertEquals("user.1", decoded.id());
+    }
+
+    @Test
+    void encode_isUrlSafe() {
+        String token = new PageCursor("??>>~~", "//++").encode();
+
+        assertTrue(token.matches("[A-Za-z0-9_.-]+"), token);
+    }
+
+    @Test
+    void decode_malformed_throws() {
+        assertThrows(IllegalArgumentException.class, () -> PageCursor.decode("no-separator"));
+        assertThrows(IllegalArgumentException.class, () -> PageCursor.decode("a.b.c"));
+        assertThrows(IllegalArgumentException.class, () -> PageCursor.decode("***.***"));
+        assertThrows(IllegalArgumentException.class, () -> PageCursor.decode(null));
+    }
+
+    @Test
+    void resolveLimit_appliesDefaultAndCap() {
+        assertEquals(PageCursor.DEFAULT_LIMIT, PageCursor.resolveLimit(null));
+        assertEquals(PageCursor.DEFAULT_LIMIT, PageCursor.resolveLimit(0));
+        assertEquals(10, PageCursor.resolveLimit(10));
+        assertEquals(PageCursor.MAX_LIMIT, PageCursor.resolveLimit(100_000));
+    }
+
+    @Test
+    void isRequested_whenLimitOrCursorGiven() {
+        assertFalse(PageCursor.isRequested(null, null));
+        assertFalse(PageCursor.isRequested(null, " "));
+        assertTrue(PageCursor.isRequested(20, null));
+        assertTrue(PageCursor.isRequested(null, "abc.def"));
+    }
+}
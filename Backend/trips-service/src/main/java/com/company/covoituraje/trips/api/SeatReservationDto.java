@@ -0,0 +1,7 @@
+package com.company.covoituraje.trips.api;
+
+public class SeatReservationDto {
+    public int seats;         // request: seats to reserve or release
+    public String tripId;     // response
+    public Integer seatsFree; // response: seats left after the operation
+}
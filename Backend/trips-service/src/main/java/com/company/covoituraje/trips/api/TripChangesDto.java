@@ -0,0 +1,18 @@
+package com.company.covoituraje.trips.api;
+
+import java.util.List;
+
+public class TripChangesDto {
+    public long since;
+    public long nextSince; // pass as ?since= on the next poll
+    public boolean hasMore;
+    public List<TripDto> upserts;
+    public List<Tombstone> tombstones;
+
+    public static class Tombstone {
+        public String id;
+        public String destinationSedeId;
+        public long version;
+        public String deletedAt; // ISO8601
+    }
+}
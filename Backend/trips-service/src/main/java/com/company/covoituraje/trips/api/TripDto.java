@@ -8,6 +8,7 @@ public class TripDto {
     public String dateTime; // ISO8601
     public int seatsTotal;
     public int seatsFree;
+    public long version; // change feed version
 
     public static class Origin {
         public Double lat;
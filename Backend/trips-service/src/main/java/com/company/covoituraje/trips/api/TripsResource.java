@@ -1,17 +1,26 @@
 package com.company.covoituraje.trips.api;
 
+import com.company.covoituraje.auth.ServiceAuth;
 import com.company.covoituraje.trips.domain.Trip;
+import com.company.covoituraje.trips.domain.TripTombstone;
+import com.company.covoituraje.trips.infrastructure.TripFilter;
 import com.company.covoituraje.trips.infrastructure.TripRepository;
+import com.company.covoituraje.trips.integration.MatchingServiceClient;
 import com.company.covoituraje.shared.i18n.MessageService;
 import com.company.covoituraje.shared.i18n.LocaleUtils;
+import com.company.covoituraje.shared.json.JsonArrayWriter;
+import com.company.covoituraje.shared.pagination.PageCursor;
 import jakarta.ws.rs.*;
 import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.StreamingOutput;
 
 import java.time.OffsetDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
+import java.util.OptionalInt;
 import java.util.UUID;
 
 @Path("/trips")
@@ -19,29 +28,50 @@ import java.util.UUID;
 @Consumes(MediaType.APPLICATION_JSON)
 public class TripsResource {
 
+    static final int DEFAULT_CHANGES_LIMIT = 500;
+    static final int MAX_CHANGES_LIMIT = 5000;
+    static final double DEFAULT_NEARBY_RADIUS_KM = 10.0;
+    static final double MAX_NEARBY_RADIUS_KM = 100.0;
+    static final int DEFAULT_NEARBY_LIMIT = 20;
+    static final int MAX_NEARBY_LIMIT = 100;
+
     private final TripRepository repository;
     private final MessageService messageService;
+    private final MatchingServiceClient matchingClient;
     
     static final class AuthContext {
         private static final ThreadLocal<String> USER_ID = new ThreadLocal<>();
+        private static final ThreadLocal<List<String>> ROLES = new ThreadLocal<>();
         static void setUserId(String userId) { USER_ID.set(userId); }
         static String getUserId() { return USER_ID.get(); }
-        static void clear() { USER_ID.remove(); }
+        static void setRoles(List<String> roles) { ROLES.set(roles); }
+        static boolean hasRole(String role) { return ROLES.get() != null && ROLES.get().contains(role); }
+        static void clear() { USER_ID.remove(); ROLES.remove(); }
     }
 
     public TripsResource() {
         this.repository = new TripRepository();
         this.messageService = new MessageService();
+        String matchingServiceUrl = System.getenv().getOrDefault("MATCHING_SERVICE_URL", "http://localhost:8084/api");
+        this.matchingClient = new MatchingServiceClient(matchingServiceUrl);
     }
 
     public TripsResource(TripRepository repository) {
         this.repository = repository;
         this.messageService = new MessageService();
+        this.matchingClient = null;
     }
 
     public TripsResource(TripRepository repository, MessageService messageService) {
         this.repository = repository;
         this.messageService = messageService;
+        this.matchingClient = null;
+    }
+
+    public TripsResource(TripRepository repository, MessageService messageService, MatchingServiceClient matchingClient) {
+        this.repository = repository;
+        this.messageService = messageService;
+        this.matchingClient = matchingClient;
     }
 
     @POST
@@ -62,59 +92,74 @@ public class TripsResource {
         Trip trip = new Trip(currentUser, originString, create.destinationSedeId, dateTime, create.seatsTotal);
         trip = repository.save(trip);
         
-        return mapToDto(trip);
+        TripDto dto = mapToDto(trip);
+        publishTripChanged(dto);
+        return dto;
     }
 
+    /**
+     * Streams the matching trips straight from the database cursor to the response,
+     * so large listings neither buffer every row nor delay the first byte.
+     * Every filter runs in the database; HH:mm ranges compare the UTC departure time of day.
+     * With limit or cursor the response is one keyset page: {"items": [...], "nextCursor": "..."}.
+     */
     @GET
-    public List<TripDto> list(@QueryParam("destinationSedeId") String destinationSedeId,
-                             @QueryParam("from") String from,
-                             @QueryParam("to") String to,
-                             @QueryParam("status") String status,
-                             @HeaderParam("Accept-Language") String acceptLanguage) {
+    public StreamingOutput list(@QueryParam("destinationSedeId") String destinationSedeId,
+                                @QueryParam("from") String from,
+                                @QueryParam("to") String to,
+                                @QueryParam("status") String status,
+                                @QueryParam("limit") Integer limit,
+                                @QueryParam("cursor") String cursor,
+                                @HeaderParam("Accept-Language") String acceptLanguage) {
         
-        // Prefer full datetime ISO filtering if both from/to are ISO-8601
+        TripFilter filter = new TripFilter();
+        if (destinationSedeId != null && !destinationSedeId.isBlank()) {
+            filter.destinationSedeId(destinationSedeId);
+        }
+
+        // Prefer full datetime ISO filtering if both from/to are ISO-8601, else HH:mm
         java.time.OffsetDateTime fromDt = parseIsoDatetime(from);
         java.time.OffsetDateTime toDt = parseIsoDatetime(to);
-        List<Trip> trips;
         if (fromDt != null && toDt != null) {
-            if (destinationSedeId != null && !destinationSedeId.isBlank()) {
-                trips = repository.findByDestinationSedeIdAndDateTimeBetween(destinationSedeId, fromDt, toDt);
-            } else {
-                trips = repository.findByDateTimeBetween(fromDt, toDt);
-            }
+            filter.dateTimeBetween(fromDt, toDt);
         } else {
-            // Fallback: load base set and filter by HH:mm if provided
-            if (destinationSedeId != null) {
-                trips = repository.findByDestinationSedeId(destinationSedeId);
-            } else {
-                trips = repository.findAll();
-            }
-            if ((from != null && !from.isBlank()) || (to != null && !to.isBlank())) {
-                Integer fromMinutes = parseTimeToMinutes(from);
-                Integer toMinutes = parseTimeToMinutes(to);
-                trips = trips.stream()
-                        .filter(t -> withinRangeByTimeOfDay(t.getDateTime(), fromMinutes, toMinutes))
-                        .collect(java.util.stream.Collectors.toList());
-            }
+            filter.minuteOfDayBetween(parseTimeToMinutes(from), parseTimeToMinutes(to));
         }
 
-        // Filter by status if provided
-        if (status != null && !status.isBlank()) {
-            java.time.OffsetDateTime now = java.time.OffsetDateTime.now();
-            if ("COMPLETED".equalsIgnoreCase(status)) {
-                trips = trips.stream()
-                        .filter(t -> t.getDateTime().isBefore(now))
-                        .collect(java.util.stream.Collectors.toList());
-            } else if ("ACTIVE".equalsIgnoreCase(status)) {
-                trips = trips.stream()
-                        .filter(t -> t.getDateTime().isAfter(now) || t.getDateTime().isEqual(now))
-                        .collect(java.util.stream.Collectors.toList());
-            }
+        // Filter by status if provided: COMPLETED trips already left, ACTIVE ones leave from now on
+        java.time.OffsetDateTime now = java.time.OffsetDateTime.now();
+        if ("COMPLETED".equalsIgnoreCase(status)) {
+            filter.departingBefore(now);
+        } else if ("ACTIVE".equalsIgnoreCase(status)) {
+            filter.departingFrom(now);
         }
 
-        return trips.stream()
-                .map(this::mapToDto)
-                .collect(ArrayList::new, ArrayList::add, ArrayList::addAll);
+        if (PageCursor.isRequested(limit, cursor)) {
+            int pageSize = PageCursor.resolveLimit(limit);
+            PageCursor after = decodeCursor(cursor, acceptLanguage);
+            java.time.OffsetDateTime afterDateTime = after != null ? java.time.OffsetDateTime.parse(after.key()) : null;
+            UUID afterId = after != null ? UUID.fromString(after.id()) : null;
+            return output -> JsonArrayWriter.writePage(output,
+                    repository.streamPage(filter, afterDateTime, afterId, pageSize + 1),
+                    pageSize, this::mapToDto,
+                    t -> new PageCursor(t.getDateTime().format(DateTimeFormatter.ISO_OFFSET_DATE_TIME), t.getId().toString()));
+        }
+
+        return output -> JsonArrayWriter.write(output, repository.stream(filter).map(this::mapToDto));
+    }
+
+    // Cursors are opaque to clients; anything we did not issue is a bad request
+    private PageCursor decodeCursor(String cursor, String acceptLanguage) {
+        if (cursor == null || cursor.isBlank()) return null;
+        try {
+            PageCursor decoded = PageCursor.decode(cursor);
+            java.time.OffsetDateTime.parse(decoded.key());
+            UUID.fromString(decoded.id());
+            return decoded;
+        } catch (RuntimeException e) {
+            Locale locale = LocaleUtils.fromAcceptLanguage(acceptLanguage);
+            throw new BadRequestException(messageService.getMessage("common.error.invalid_cursor", locale));
+        }
     }
 
     private Integer parseTimeToMinutes(String hhmm) {
@@ -129,13 +174,6 @@ public class TripsResource {
         }
     }
 
-    private boolean withinRangeByTimeOfDay(java.time.OffsetDateTime dateTime, Integer fromMinutes, Integer toMinutes) {
-        int minutes = dateTime.getHour() * 60 + dateTime.getMinute();
-        if (fromMinutes != null && minutes < fromMinutes) return false;
-        if (toMinutes != null && minutes > toMinutes) return false;
-        return true;
-    }
-
     private java.time.OffsetDateTime parseIsoDatetime(String iso) {
         if (iso == null || iso.isBlank()) return null;
         try {
@@ -145,6 +183,88 @@ public class TripsResource {
         }
     }
 
+    /**
+     * Change feed: trips inserted/updated and trips deleted after the given version,
+     * in version order. Consumers store nextSince and pass it on the next poll.
+     */
+    @GET
+    @Path("/changes")
+    public TripChangesDto changes(@QueryParam("since") Long since,
+                                  @QueryParam("limit") Integer limit) {
+        long sinceVersion = since != null && since > 0 ? since : 0L;
+        int max = limit == null || limit <= 0 ? DEFAULT_CHANGES_LIMIT : Math.min(limit, MAX_CHANGES_LIMIT);
+
+        // Versions past the fence may still be joined by a lower one that commits later
+        long upToVersion = repository.committedVersion();
+        // Fetch one extra row per source to know whether more changes remain
+        List<Trip> upserts = repository.findChangedSince(sinceVersion, upToVersion, max + 1);
+        List<TripTombstone> tombstones = repository.findTombstonesSince(sinceVersion, upToVersion, max + 1);
+
+        TripChangesDto dto = new TripChangesDto();
+        dto.since = sinceVersion;
+        dto.nextSince = sinceVersion;
+        dto.upserts = new ArrayList<>();
+        dto.tombstones = new ArrayList<>();
+
+        // Merge both version-ordered lists, keeping the first max changes
+        int u = 0;
+        int d = 0;
+        while (dto.upserts.size() + dto.tombstones.size() < max && (u < upserts.size() || d < tombstones.size())) {
+            boolean takeUpsert = d >= tombstones.size()
+                    || (u < upserts.size() && upserts.get(u).getVersion() < tombstones.get(d).getVersion());
+            if (takeUpsert) {
+                Trip trip = upserts.get(u++);
+                dto.upserts.add(mapToDto(trip));
+                dto.nextSince = trip.getVersion();
+            } else {
+                TripTombstone tombstone = tombstones.get(d++);
+                dto.tombstones.add(mapTombstoneToDto(tombstone));
+                dto.nextSince = tombstone.getVersion();
+            }
+        }
+        dto.hasMore = u < upserts.size() || d < tombstones.size();
+        return dto;
+    }
+
+    /**
+     * Available trips to a sede leaving from within radiusKm of (lat, lng), nearest first.
+     * With k, the k nearest trips instead, with no radius (radiusKm and limit are ignored).
+     * The departure window defaults to [now, open-ended); from/to are ISO-8601.
+     */
+    @GET
+    @Path("/nearby")
+    public List<TripDto> nearby(@QueryParam("destinationSedeId") String destinationSedeId,
+                                @QueryParam("lat") Double lat,
+                                @QueryParam("lng") Double lng,
+                                @QueryParam("radiusKm") Double radiusKm,
+                                @QueryParam("from") String from,
+                                @QueryParam("to") String to,
+                                @QueryParam("limit") Integer limit,
+                                @QueryParam("k") Integer k,
+                                @HeaderParam("Accept-Language") String acceptLanguage) {
+        if (destinationSedeId == null || destinationSedeId.isBlank() || lat == null || lng == null) {
+            Locale locale = LocaleUtils.fromAcceptLanguage(acceptLanguage);
+            throw new BadRequestException(messageService.getMessage("trips.error.location_required", locale));
+        }
+        double radius = radiusKm == null || radiusKm <= 0 ? DEFAULT_NEARBY_RADIUS_KM : Math.min(radiusKm, MAX_NEARBY_RADIUS_KM);
+        int max = limit == null || limit <= 0 ? DEFAULT_NEARBY_LIMIT : Math.min(limit, MAX_NEARBY_LIMIT);
+        java.time.OffsetDateTime fromDt = parseIsoDatetime(from);
+        if (fromDt == null) {
+            fromDt = java.time.OffsetDateTime.now();
+        }
+
+        java.time.OffsetDateTime toDt = parseIsoDatetime(to);
+
+        List<Trip> trips = k != null && k > 0
+                ? repository.findNearestAvailable(destinationSedeId, lat, lng, fromDt, toDt, Math.min(k, MAX_NEARBY_LIMIT))
+                : repository.findAvailableNear(destinationSedeId, lat, lng, radius, fromDt, toDt, max);
+        List<TripDto> result = new ArrayList<>();
+        for (Trip trip : trips) {
+            result.add(mapToDto(trip));
+        }
+        return result;
+    }
+
     @GET
     @Path("/{id}")
     public TripDto getById(@PathParam("id") String id, @HeaderParam("Accept-Language") String acceptLanguage) {
@@ -183,6 +303,16 @@ public class TripsResource {
             throw new ForbiddenException(message);
         }
 
+        // Seats first: the reserved seats are counted by the UPDATE itself, not from the trip read above
+        if (update != null && update.seatsTotal > 0 && update.seatsTotal != trip.getSeatsTotal()) {
+            OptionalInt seatsFree = repository.resizeSeats(tripId, update.seatsTotal);
+            if (seatsFree.isEmpty()) {
+                throw seatChangeRejected(tripId, "trips.error.seats_below_reserved", acceptLanguage);
+            }
+            trip.setSeatsTotal(update.seatsTotal);
+            trip.setSeatsFree(seatsFree.getAsInt());
+        }
+
         // Apply partial updates
         if (update != null) {
             if (update.destinationSedeId != null && !update.destinationSedeId.isBlank()) {
@@ -192,13 +322,6 @@ public class TripsResource {
                 OffsetDateTime dt = OffsetDateTime.parse(update.dateTime, DateTimeFormatter.ISO_OFFSET_DATE_TIME);
                 trip.setDateTime(dt);
             }
-            if (update.seatsTotal > 0) {
-                // Calculate currently occupied seats
-                int currentOccupiedSeats = trip.getSeatsTotal() - trip.getSeatsFree();
-                trip.setSeatsTotal(update.seatsTotal);
-                // Recalculate free seats: new total - occupied seats
-                trip.setSeatsFree(update.seatsTotal - currentOccupiedSeats);
-            }
             if (update.origin != null) {
                 String originString = update.origin.lat + "," + update.origin.lng;
                 trip.setOrigin(originString);
@@ -206,7 +329,9 @@ public class TripsResource {
         }
 
         trip = repository.save(trip);
-        return mapToDto(trip);
+        TripDto dto = mapToDto(trip);
+        publishTripChanged(dto);
+        return dto;
     }
 
     @DELETE
@@ -236,22 +361,102 @@ public class TripsResource {
         repository.delete(trip);
     }
 
+    /**
+     * Reserves seats atomically: the decrement and the availability check are the same
+     * UPDATE, so simultaneous bookings on a popular trip cannot oversell it.
+     * Only booking-service may call it (SERVICE role); 409 when the trip does not have that many seats free.
+     */
+    @POST
+    @Path("/{id}/reservations")
+    public SeatReservationDto reserveSeats(@PathParam("id") String id, SeatReservationDto request,
+                                           @HeaderParam("Accept-Language") String acceptLanguage) {
+        UUID tripId = requireSeatChange(id, request, acceptLanguage);
+        OptionalInt seatsFree = repository.reserveSeats(tripId, request.seats);
+        if (seatsFree.isEmpty()) {
+            throw seatChangeRejected(tripId, "trips.error.not_enough_seats", acceptLanguage);
+        }
+        return seatReservation(tripId, seatsFree.getAsInt());
+    }
+
+    /**
+     * Gives back seats taken through reserveSeats (booking cancelled or failed).
+     * Only booking-service may call it (SERVICE role); 409 when releasing would leave more
+     * free seats than the trip has.
+     */
+    @POST
+    @Path("/{id}/reservations/release")
+    public SeatReservationDto releaseSeats(@PathParam("id") String id, SeatReservationDto request,
+                                           @HeaderParam("Accept-Language") String acceptLanguage) {
+        UUID tripId = requireSeatChange(id, request, acceptLanguage);
+        OptionalInt seatsFree = repository.releaseSeats(tripId, request.seats);
+        if (seatsFree.isEmpty()) {
+            throw seatChangeRejected(tripId, "trips.error.invalid_seats", acceptLanguage);
+        }
+        return seatReservation(tripId, seatsFree.getAsInt());
+    }
+
+    // Seats are only taken or given back for bookings, never directly by end users
+    private UUID requireSeatChange(String id, SeatReservationDto request, String acceptLanguage) {
+        if (!AuthContext.hasRole(ServiceAuth.SERVICE_ROLE)) {
+            Locale locale = LocaleUtils.fromAcceptLanguage(acceptLanguage);
+            String message = messageService.getMessage("common.error.service_only", locale);
+            throw new ForbiddenException(message);
+        }
+        if (request == null || request.seats <= 0) {
+            Locale locale = LocaleUtils.fromAcceptLanguage(acceptLanguage);
+            String message = messageService.getMessage("trips.error.invalid_seats", locale);
+            throw new BadRequestException(message);
+        }
+        return UUID.fromString(id);
+    }
+
+    // The conditional UPDATE matched no row: tell a missing trip (404) from a seat conflict (409)
+    private WebApplicationException seatChangeRejected(UUID tripId, String conflictKey, String acceptLanguage) {
+        Locale locale = LocaleUtils.fromAcceptLanguage(acceptLanguage);
+        if (repository.findById(tripId).isEmpty()) {
+            return new NotFoundException(messageService.getMessage("trips.error.trip_not_found", locale));
+        }
+        return new ClientErrorException(messageService.getMessage(conflictKey, locale), Response.Status.CONFLICT);
+    }
+
+    private SeatReservationDto seatReservation(UUID tripId, int seatsFree) {
+        SeatReservationDto dto = new SeatReservationDto();
+        dto.tripId = tripId.toString();
+        dto.seatsFree = seatsFree;
+        return dto;
+    }
+
+    // Reverse matching: let matching-service evaluate waiting passengers against this trip
+    private void publishTripChanged(TripDto dto) {
+        if (matchingClient != null) {
+            matchingClient.publishTripChanged(dto);
+        }
+    }
+
     private TripDto mapToDto(Trip trip) {
         TripDto dto = new TripDto();
         dto.id = trip.getId().toString();
         dto.driverId = trip.getDriverId();
         
-        // Convert origin string to TripDto.Origin
-        String[] coords = trip.getOrigin().split(",");
         TripDto.Origin origin = new TripDto.Origin();
-        origin.lat = Double.parseDouble(coords[0]);
-        origin.lng = Double.parseDouble(coords[1]);
+        origin.lat = trip.getOriginLat();
+        origin.lng = trip.getOriginLng();
         dto.origin = origin;
         
         dto.destinationSedeId = trip.getDestinationSedeId();
         dto.dateTime = trip.getDateTime().format(DateTimeFormatter.ISO_OFFSET_DATE_TIME);
         dto.seatsTotal = trip.getSeatsTotal();
         dto.seatsFree = trip.getSeatsFree();
+        dto.version = trip.getVersion() != null ? trip.getVersion() : 0L;
+        return dto;
+    }
+
+    private TripChangesDto.Tombstone mapTombstoneToDto(TripTombstone tombstone) {
+        TripChangesDto.Tombstone dto = new TripChangesDto.Tombstone();
+        dto.id = tombstone.getTripId().toString();
+        dto.destinationSedeId = tombstone.getDestinationSedeId();
+        dto.version = tombstone.getVersion();
+        dto.deletedAt = tombstone.getDeletedAt().format(DateTimeFormatter.ISO_OFFSET_DATE_TIME);
         return dto;
     }
 }
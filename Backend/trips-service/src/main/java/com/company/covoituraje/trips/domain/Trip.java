@@ -1,6 +1,7 @@
 package com.company.covoituraje.trips.domain;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.Formula;
 import java.time.OffsetDateTime;
 import java.util.UUID;
 
@@ -18,18 +19,35 @@ public class Trip {
     @Column(name = "origin", nullable = false)
     private String origin;
     
+    // Parsed once from origin on write; the database derives the origin_point geography from them
+    @Column(name = "origin_lat")
+    private Double originLat;
+    
+    @Column(name = "origin_lng")
+    private Double originLng;
+    
     @Column(name = "destination_sede_id", nullable = false)
     private String destinationSedeId;
     
     @Column(name = "date_time", nullable = false)
     private OffsetDateTime dateTime;
     
-    @Column(name = "seats_total", nullable = false)
+    // Departure minute of day (0-1439) in UTC, computed by the database. The expression must stay
+    // identical to idx_trips_minute_of_day (V6 migration) so time-of-day filters can use the index.
+    @Formula("(date_part('hour', timezone('UTC', date_time)) * 60 + date_part('minute', timezone('UTC', date_time)))")
+    private Integer departureMinuteOfDay;
+    
+    // Seat counts are only written on insert; afterwards they change through the conditional
+    // UPDATEs in TripRepository (reserveSeats, releaseSeats, resizeSeats), never from a stale entity
+    @Column(name = "seats_total", nullable = false, updatable = false)
     private Integer seatsTotal;
     
-    @Column(name = "seats_free", nullable = false)
+    @Column(name = "seats_free", nullable = false, updatable = false)
     private Integer seatsFree;
     
+    @Column(name = "version", nullable = false, unique = true)
+    private Long version;
+    
     @Column(name = "created_at", nullable = false, updatable = false)
     private OffsetDateTime createdAt;
     
@@ -44,7 +62,7 @@ public class Trip {
                 OffsetDateTime dateTime, Integer seatsTotal) {
         this.id = UUID.randomUUID();
         this.driverId = driverId;
-        this.origin = origin;
+        setOrigin(origin);
         this.destinationSedeId = destinationSedeId;
         this.dateTime = dateTime;
         this.seatsTotal = seatsTotal;
@@ -61,7 +79,25 @@ public class Trip {
     public void setDriverId(String driverId) { this.driverId = driverId; }
 
     public String getOrigin() { return origin; }
-    public void setOrigin(String origin) { this.origin = origin; }
+    public void setOrigin(String origin) {
+        this.origin = origin;
+        this.originLat = null;
+        this.originLng = null;
+        // "lat,lng"; anything else leaves the coordinates unknown
+        if (origin == null) return;
+        String[] coords = origin.split(",");
+        if (coords.length != 2) return;
+        try {
+            this.originLat = Double.parseDouble(coords[0].trim());
+            this.originLng = Double.parseDouble(coords[1].trim());
+        } catch (NumberFormatException e) {
+            this.originLat = null;
+            this.originLng = null;
+        }
+    }
+
+    public Double getOriginLat() { return originLat; }
+    public Double getOriginLng() { return originLng; }
 
     public String getDestinationSedeId() { return destinationSedeId; }
     public void setDestinationSedeId(String destinationSedeId) { this.destinationSedeId = destinationSedeId; }
@@ -69,12 +105,17 @@ public class Trip {
     public OffsetDateTime getDateTime() { return dateTime; }
     public void setDateTime(OffsetDateTime dateTime) { this.dateTime = dateTime; }
 
+    public Integer getDepartureMinuteOfDay() { return departureMinuteOfDay; }
+
     public Integer getSeatsTotal() { return seatsTotal; }
     public void setSeatsTotal(Integer seatsTotal) { this.seatsTotal = seatsTotal; }
 
     public Integer getSeatsFree() { return seatsFree; }
     public void setSeatsFree(Integer seatsFree) { this.seatsFree = seatsFree; }
 
+    public Long getVersion() { return version; }
+    public void setVersion(Long version) { this.version = version; }
+
     public OffsetDateTime getCreatedAt() { return createdAt; }
     public void setCreatedAt(OffsetDateTime createdAt) { this.createdAt = createdAt; }
 
@@ -0,0 +1,45 @@
+package com.company.covoituraje.trips.domain;
+
+import jakarta.persistence.*;
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+@Entity
+@Table(name = "trip_tombstones", schema = "trips")
+public class TripTombstone {
+
+    @Id
+    @Column(name = "trip_id")
+    private UUID tripId;
+
+    @Column(name = "destination_sede_id", nullable = false)
+    private String destinationSedeId;
+
+    @Column(name = "version", nullable = false, unique = true)
+    private Long version;
+
+    @Column(name = "deleted_at", nullable = false)
+    private OffsetDateTime deletedAt;
+
+    // Default constructor for JPA
+    public TripTombstone() {}
+
+    public TripTombstone(UUID tripId, String destinationSedeId, Long version) {
+        this.tripId = tripId;
+        this.destinationSedeId = destinationSedeId;
+        this.version = version;
+        this.deletedAt = OffsetDateTime.now();
+    }
+
+    public UUID getTripId() { return tripId; }
+    public void setTripId(UUID tripId) { this.tripId = tripId; }
+
+    public String getDestinationSedeId() { return destinationSedeId; }
+    public void setDestinationSedeId(String destinationSedeId) { this.destinationSedeId = destinationSedeId; }
+
+    public Long getVersion() { return version; }
+    public void setVersion(Long version) { this.version = version; }
+
+    public OffsetDateTime getDeletedAt() { return deletedAt; }
+    public void setDeletedAt(OffsetDateTime deletedAt) { this.deletedAt = deletedAt; }
+}
@@ -0,0 +1,57 @@
+package com.company.covoituraje.trips.infrastructure;
+
+import java.time.OffsetDateTime;
+
+/**
+ * Optional restrictions for trip listings, all translated into the WHERE clause.
+ * Unset criteria do not filter.
+ */
+public class TripFilter {
+
+    private String destinationSedeId;
+    private OffsetDateTime from;
+    private OffsetDateTime to;
+    private Integer fromMinuteOfDay;
+    private Integer toMinuteOfDay;
+    private OffsetDateTime departingBefore;
+    private OffsetDateTime departingFrom;
+
+    public TripFilter destinationSedeId(String destinationSedeId) {
+        this.destinationSedeId = destinationSedeId;
+        return this;
+    }
+
+    // Departure between from and to, both inclusive
+    public TripFilter dateTimeBetween(OffsetDateTime from, OffsetDateTime to) {
+        this.from = from;
+        this.to = to;
+        return this;
+    }
+
+    // Departure time of day (UTC minute of day, both inclusive), whatever the date
+    public TripFilter minuteOfDayBetween(Integer fromMinuteOfDay, Integer toMinuteOfDay) {
+        this.fromMinuteOfDay = fromMinuteOfDay;
+        this.toMinuteOfDay = toMinuteOfDay;
+        return this;
+    }
+
+    // Trips that already left (COMPLETED)
+    public TripFilter departingBefore(OffsetDateTime instant) {
+        this.departingBefore = instant;
+        return this;
+    }
+
+    // Trips leaving now or later (ACTIVE)
+    public TripFilter departingFrom(OffsetDateTime instant) {
+        this.departingFrom = instant;
+        return this;
+    }
+
+    String getDestinationSedeId() { return destinationSedeId; }
+    OffsetDateTime getFrom() { return from; }
+    OffsetDateTime getTo() { return to; }
+    Integer getFromMinuteOfDay() { return fromMinuteOfDay; }
+    Integer getToMinuteOfDay() { return toMinuteOfDay; }
+    OffsetDateTime getDepartingBefore() { return departingBefore; }
+    OffsetDateTime getDepartingFrom() { return departingFrom; }
+}
@@ -1,16 +1,34 @@
 package com.company.covoituraje.trips.infrastructure;
 
 import com.company.covoituraje.trips.domain.Trip;
+import com.company.covoituraje.trips.domain.TripTombstone;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.EntityTransaction;
+import jakarta.persistence.Query;
 import jakarta.persistence.TypedQuery;
+import org.hibernate.jpa.HibernateHints;
 import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.OptionalInt;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 public class TripRepository {
     
+    // Writers hold this advisory lock shared from taking a version until commit; the change feed
+    // takes it exclusively for an instant to learn which versions are all committed
+    private static final long VERSION_FENCE_KEY = 0x7472697073L; // "trips"
+
+    // Passenger location as geography, for the PostGIS proximity queries
+    private static final String POINT_SQL = "CAST(ST_SetSRID(ST_MakePoint(:lng, :lat), 4326) AS geography)";
+
+    // Rows fetched per round trip when streaming from a JDBC cursor
+    static final int STREAM_FETCH_SIZE = 500;
+    
     private final EntityManager entityManager;
     
     public TripRepository() {
@@ -25,6 +43,7 @@ public class TripRepository {
         EntityTransaction tx = entityManager.getTransaction();
         try {
             tx.begin();
+            trip.setVersion(nextVersion());
             if (trip.getId() == null) {
                 entityManager.persist(trip);
             } else {
@@ -78,6 +97,86 @@ public class TripRepository {
         return query.getResultList();
     }
 
+    /**
+     * Trips matching the filter in (dateTime, id) order, read through a JDBC cursor and
+     * detached once read, so memory does not grow with the result size.
+     * The caller must close the stream.
+     */
+    public Stream<Trip> stream(TripFilter filter) {
+        return stream(listingQuery(filter, null, null));
+    }
+
+    /**
+     * One page of the trips matching the filter in (dateTime, id) order. Keyset pagination:
+     * the page starts right after (afterDateTime, afterId), so deep pages cost the same as
+     * the first one (index idx_trips_date_time_id and idx_trips_sede_date_time_id).
+     * Pass null afterDateTime/afterId for the first page.
+     */
+    public Stream<Trip> streamPage(TripFilter filter, OffsetDateTime afterDateTime, UUID afterId, int limit) {
+        TypedQuery<Trip> query = listingQuery(filter, afterDateTime, afterId);
+        query.setMaxResults(limit);
+        return stream(query);
+    }
+
+    // Every criterion is a WHERE predicate; the time of day uses the departureMinuteOfDay formula,
+    // backed by the idx_trips_minute_of_day expression index
+    private TypedQuery<Trip> listingQuery(TripFilter filter, OffsetDateTime afterDateTime, UUID afterId) {
+        StringBuilder jpql = new StringBuilder("SELECT t FROM Trip t WHERE 1 = 1");
+        if (filter.getDestinationSedeId() != null) {
+            jpql.append(" AND t.destinationSedeId = :destinationSedeId");
+        }
+        if (filter.getFrom() != null) {
+            jpql.append(" AND t.dateTime >= :from");
+        }
+        if (filter.getTo() != null) {
+            jpql.append(" AND t.dateTime <= :to");
+        }
+        if (filter.getFromMinuteOfDay() != null) {
+            jpql.append(" AND t.departureMinuteOfDay >= :fromMinuteOfDay");
+        }
+        if (filter.getToMinuteOfDay() != null) {
+            jpql.append(" AND t.departureMinuteOfDay <= :toMinuteOfDay");
+        }
+        if (filter.getDepartingBefore() != null) {
+            jpql.append(" AND t.dateTime < :departingBefore");
+        }
+        if (filter.getDepartingFrom() != null) {
+            jpql.append(" AND t.dateTime >= :departingFrom");
+        }
+        if (afterDateTime != null && afterId != null) {
+            jpql.append(" AND (t.dateTime > :afterDateTime OR (t.dateTime = :afterDateTime AND t.id > :afterId))");
+        }
+        jpql.append(" ORDER BY t.dateTime ASC, t.id ASC");
+
+        TypedQuery<Trip> query = entityManager.createQuery(jpql.toString(), Trip.class);
+        if (filter.getDestinationSedeId() != null) {
+            query.setParameter("destinationSedeId", filter.getDestinationSedeId());
+        }
+        if (filter.getFrom() != null) {
+            query.setParameter("from", filter.getFrom());
+        }
+        if (filter.getTo() != null) {
+            query.setParameter("to", filter.getTo());
+        }
+        if (filter.getFromMinuteOfDay() != null) {
+            query.setParameter("fromMinuteOfDay", filter.getFromMinuteOfDay());
+        }
+        if (filter.getToMinuteOfDay() != null) {
+            query.setParameter("toMinuteOfDay", filter.getToMinuteOfDay());
+        }
+        if (filter.getDepartingBefore() != null) {
+            query.setParameter("departingBefore", filter.getDepartingBefore());
+        }
+        if (filter.getDepartingFrom() != null) {
+            query.setParameter("departingFrom", filter.getDepartingFrom());
+        }
+        if (afterDateTime != null && afterId != null) {
+            query.setParameter("afterDateTime", afterDateTime);
+            query.setParameter("afterId", afterId);
+        }
+        return query;
+    }
+
     public List<Trip> findByDriverId(String driverId) {
         TypedQuery<Trip> query = entityManager.createQuery(
             "SELECT t FROM Trip t WHERE t.driverId = :driverId ORDER BY t.dateTime ASC", 
@@ -96,6 +195,87 @@ public class TripRepository {
         return query.getResultList();
     }
 
+    /**
+     * Available trips (free seats) to a sede whose origin lies within radiusKm of (lat, lng)
+     * and whose departure falls in [from, to], nearest first. The radius and the distance
+     * ordering run in PostGIS on the GiST-indexed origin_point column. A null to leaves the
+     * window open-ended.
+     */
+    public List<Trip> findAvailableNear(String destinationSedeId, double lat, double lng, double radiusKm,
+                                        OffsetDateTime from, OffsetDateTime to, int limit) {
+        StringBuilder sql = new StringBuilder(
+            "SELECT t.id FROM trips.trips t" +
+            " WHERE t.destination_sede_id = :destinationSedeId AND t.seats_free > 0" +
+            " AND t.date_time >= :from" +
+            " AND ST_DWithin(t.origin_point, " + POINT_SQL + ", :radiusMeters)");
+        if (to != null) {
+            sql.append(" AND t.date_time <= :to");
+        }
+        sql.append(" ORDER BY t.origin_point <-> ").append(POINT_SQL).append(", t.id LIMIT :limit");
+
+        Query query = entityManager.createNativeQuery(sql.toString());
+        query.setParameter("destinationSedeId", destinationSedeId);
+        query.setParameter("from", from);
+        if (to != null) {
+            query.setParameter("to", to);
+        }
+        query.setParameter("lat", lat);
+        query.setParameter("lng", lng);
+        query.setParameter("radiusMeters", radiusKm * 1000.0);
+        query.setParameter("limit", limit);
+        return findAllByIdInOrder(query.getResultList());
+    }
+
+    /**
+     * The k available trips to a sede departing in [from, to] with the origin nearest to
+     * (lat, lng), however far, nearest first, using the GiST index for the k-nearest-neighbour
+     * ordering. A null to leaves the window open-ended.
+     */
+    public List<Trip> findNearestAvailable(String destinationSedeId, double lat, double lng,
+                                           OffsetDateTime from, OffsetDateTime to, int k) {
+        StringBuilder sql = new StringBuilder(
+            "SELECT t.id FROM trips.trips t" +
+            " WHERE t.destination_sede_id = :destinationSedeId AND t.seats_free > 0" +
+            " AND t.date_time >= :from AND t.origin_point IS NOT NULL");
+        if (to != null) {
+            sql.append(" AND t.date_time <= :to");
+        }
+        sql.append(" ORDER BY t.origin_point <-> ").append(POINT_SQL).append(", t.id LIMIT :limit");
+
+        Query query = entityManager.createNativeQuery(sql.toString());
+        query.setParameter("destinationSedeId", destinationSedeId);
+        query.setParameter("from", from);
+        if (to != null) {
+            query.setParameter("to", to);
+        }
+        query.setParameter("lat", lat);
+        query.setParameter("lng", lng);
+        query.setParameter("limit", k);
+        return findAllByIdInOrder(query.getResultList());
+    }
+
+    // Native queries only return ids, so entities are loaded through the regular mapping
+    private List<Trip> findAllByIdInOrder(List<?> ids) {
+        if (ids.isEmpty()) return List.of();
+        List<UUID> tripIds = new ArrayList<>(ids.size());
+        for (Object id : ids) {
+            tripIds.add(id instanceof UUID ? (UUID) id : UUID.fromString(id.toString()));
+        }
+        TypedQuery<Trip> query = entityManager.createQuery(
+            "SELECT t FROM Trip t WHERE t.id IN :ids", Trip.class);
+        query.setParameter("ids", tripIds);
+        Map<UUID, Trip> byId = new HashMap<>();
+        for (Trip trip : query.getResultList()) {
+            byId.put(trip.getId(), trip);
+        }
+        List<Trip> ordered = new ArrayList<>(tripIds.size());
+        for (UUID id : tripIds) {
+            Trip trip = byId.get(id);
+            if (trip != null) ordered.add(trip);
+        }
+        return ordered;
+    }
+
     public void delete(Trip trip) {
         EntityTransaction tx = entityManager.getTransaction();
         try {
@@ -104,6 +284,7 @@ public class TripRepository {
             if (!entityManager.contains(trip)) {
                 trip = entityManager.merge(trip);
             }
+            entityManager.persist(new TripTombstone(trip.getId(), trip.getDestinationSedeId(), nextVersion()));
             entityManager.remove(trip);
             tx.commit();
         } catch (Exception e) {
@@ -113,4 +294,134 @@ public class TripRepository {
             throw e;
         }
     }
+
+    /**
+     * Takes seats from a trip with a single conditional UPDATE, so concurrent reservations
+     * can never oversell and each one holds the row lock only for that statement instead of
+     * a read-check-write round trip. Returns the seats left, or empty when the trip does not
+     * exist or has fewer than the requested seats free.
+     */
+    public OptionalInt reserveSeats(UUID tripId, int seats) {
+        return adjustSeats(
+            "UPDATE trips.trips SET seats_free = seats_free - :seats, version = :version, updated_at = CURRENT_TIMESTAMP" +
+            " WHERE id = :id AND seats_free >= :seats RETURNING seats_free",
+            tripId, seats);
+    }
+
+    /**
+     * Gives back seats taken by reserveSeats. Returns the seats now free, or empty when the
+     * trip does not exist or the release would exceed seats_total.
+     */
+    public OptionalInt releaseSeats(UUID tripId, int seats) {
+        return adjustSeats(
+            "UPDATE trips.trips SET seats_free = seats_free + :seats, version = :version, updated_at = CURRENT_TIMESTAMP" +
+            " WHERE id = :id AND seats_free + :seats <= seats_total RETURNING seats_free",
+            tripId, seats);
+    }
+
+    /**
+     * Changes the seats of a trip keeping the reserved ones: seats_free moves by the same
+     * amount as seats_total, computed from the row as it is when the UPDATE runs. Returns the
+     * seats now free, or empty when the trip does not exist or more seats than the new total
+     * are already reserved.
+     */
+    public OptionalInt resizeSeats(UUID tripId, int seatsTotal) {
+        return adjustSeats(
+            "UPDATE trips.trips SET seats_total = :seats, seats_free = seats_free + (:seats - seats_total)," +
+            " version = :version, updated_at = CURRENT_TIMESTAMP" +
+            " WHERE id = :id AND seats_free + (:seats - seats_total) >= 0 RETURNING seats_free",
+            tripId, seatsTotal);
+    }
+
+    // Every seat change gets a new version so the change feed reports seatsFree. The version is
+    // taken before the UPDATE, like in save(), so the fence lock is always acquired before the
+    // row lock; a rejected change just leaves a gap in the sequence.
+    private OptionalInt adjustSeats(String sql, UUID tripId, int seats) {
+        EntityTransaction tx = entityManager.getTransaction();
+        try {
+            tx.begin();
+            long version = nextVersion();
+            List<?> rows = entityManager.createNativeQuery(sql)
+                    .setParameter("seats", seats)
+                    .setParameter("version", version)
+                    .setParameter("id", tripId)
+                    .getResultList();
+            tx.commit();
+            return rows.isEmpty() ? OptionalInt.empty() : OptionalInt.of(((Number) rows.get(0)).intValue());
+        } catch (Exception e) {
+            if (tx.isActive()) {
+                tx.rollback();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Highest change version below which every write has committed or rolled back. Versions
+     * come from a sequence and may commit out of order, so the change feed must not read past
+     * this fence or a consumer could skip a version that commits later. Waits only for the
+     * writes in flight at the time of the call.
+     */
+    public long committedVersion() {
+        EntityTransaction tx = entityManager.getTransaction();
+        try {
+            tx.begin();
+            entityManager.createNativeQuery("SELECT 1 FROM pg_advisory_xact_lock(" + VERSION_FENCE_KEY + ")")
+                    .getSingleResult();
+            Number fence = (Number) entityManager.createNativeQuery(
+                "SELECT CASE WHEN is_called THEN last_value ELSE last_value - 1 END FROM trips.trip_versions")
+                .getSingleResult();
+            tx.commit();
+            return fence.longValue();
+        } catch (Exception e) {
+            if (tx.isActive()) {
+                tx.rollback();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Trips inserted or updated in (sinceVersion, upToVersion], oldest change first.
+     */
+    public List<Trip> findChangedSince(long sinceVersion, long upToVersion, int limit) {
+        TypedQuery<Trip> query = entityManager.createQuery(
+            "SELECT t FROM Trip t WHERE t.version > :since AND t.version <= :upTo ORDER BY t.version ASC", Trip.class);
+        query.setParameter("since", sinceVersion);
+        query.setParameter("upTo", upToVersion);
+        query.setMaxResults(limit);
+        return query.getResultList();
+    }
+
+    /**
+     * Trips deleted in (sinceVersion, upToVersion], oldest change first.
+     */
+    public List<TripTombstone> findTombstonesSince(long sinceVersion, long upToVersion, int limit) {
+        TypedQuery<TripTombstone> query = entityManager.createQuery(
+            "SELECT d FROM TripTombstone d WHERE d.version > :since AND d.version <= :upTo ORDER BY d.version ASC",
+            TripTombstone.class);
+        query.setParameter("since", sinceVersion);
+        query.setParameter("upTo", upToVersion);
+        query.setMaxResults(limit);
+        return query.getResultList();
+    }
+
+    private <T> Stream<T> stream(TypedQuery<T> query) {
+        query.setHint(HibernateHints.HINT_FETCH_SIZE, STREAM_FETCH_SIZE);
+        query.setHint(HibernateHints.HINT_READ_ONLY, true);
+        return query.getResultStream().map(entity -> {
+            entityManager.detach(entity);
+            return entity;
+        });
+    }
+
+    // Must run inside the write transaction; the shared fence lock is released on commit/rollback.
+    // Writers never wait for each other here, only for an in-progress committedVersion() call.
+    private long nextVersion() {
+        entityManager.createNativeQuery("SELECT 1 FROM pg_advisory_xact_lock_shared(" + VERSION_FENCE_KEY + ")")
+                .getSingleResult();
+        Number version = (Number) entityManager.createNativeQuery("SELECT nextval('trips.trip_versions')")
+                .getSingleResult();
+        return version.longValue();
+    }
 }
@@ -0,0 +1,71 @@
+package com.company.covoituraje.trips.integration;
+
+import com.company.covoituraje.http.ServiceHttpClient;
+import com.company.covoituraje.http.ServiceIntegrationException;
+import com.company.covoituraje.trips.api.TripDto;
+
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cliente para publicar en matching-service los trips creados o modificados
+ * (matching inverso contra las búsquedas permanentes de los pasajeros).
+ * El envío es asíncrono: la petición del conductor no espera a matching-service.
+ */
+public class MatchingServiceClient {
+
+    static final int EVENT_QUEUE_CAPACITY = 1_000;
+
+    private final ServiceHttpClient httpClient;
+    private final Executor executor;
+
+    public MatchingServiceClient(String matchingServiceUrl) {
+        this(new ServiceHttpClient(matchingServiceUrl), EventExecutorHolder.INSTANCE);
+    }
+
+    public MatchingServiceClient(ServiceHttpClient httpClient, Executor executor) {
+        this.httpClient = httpClient;
+        this.executor = executor;
+    }
+
+    /**
+     * Publica el trip en segundo plano. Si la cola de envíos está llena el evento se descarta;
+     * los pasajeros lo seguirán encontrando con GET /matches.
+     */
+    public void publishTripChanged(TripDto trip) {
+        try {
+            executor.execute(() -> {
+                try {
+                    sendTripChanged(trip);
+                } catch (ServiceIntegrationException e) {
+                    System.err.println("Error publishing trip " + trip.id + " to matching-service: " + e.getMessage());
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            System.err.println("Dropping trip event " + trip.id + ": matching event queue is full");
+        }
+    }
+
+    /**
+     * Envía el trip de forma síncrona
+     */
+    public void sendTripChanged(TripDto trip) throws ServiceIntegrationException {
+        httpClient.post("/matches/trip-events", trip, Map.class);
+    }
+
+    // Un único hilo daemon compartido por todas las peticiones, con cola acotada
+    private static final class EventExecutorHolder {
+        static final ThreadPoolExecutor INSTANCE = new ThreadPoolExecutor(
+                1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(EVENT_QUEUE_CAPACITY),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "matching-trip-events");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+}
@@ -0,0 +1,28 @@
+-- Set search path to trips schema
+SET search_path TO trips, public;
+
+-- Monotonically increasing change version, assigned on every insert/update
+ALTER TABLE trips ADD COLUMN IF NOT EXISTS version BIGINT;
+
+UPDATE trips t
+SET version = v.rn
+FROM (SELECT id, ROW_NUMBER() OVER (ORDER BY updated_at, id) AS rn FROM trips) v
+WHERE t.id = v.id AND t.version IS NULL;
+
+ALTER TABLE trips ALTER COLUMN version SET NOT NULL;
+
+CREATE UNIQUE INDEX IF NOT EXISTS idx_trips_version ON trips(version);
+
+-- Deleted trips, so consumers of the change feed can drop them
+CREATE TABLE IF NOT EXISTS trip_tombstones (
+    trip_id UUID PRIMARY KEY,
+    destination_sede_id VARCHAR(255) NOT NULL,
+    version BIGINT NOT NULL,
+    deleted_at TIMESTAMP WITH TIME ZONE DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE UNIQUE INDEX IF NOT EXISTS idx_trip_tombstones_version ON trip_tombstones(version);
+
+-- Add comments
+COMMENT ON COLUMN trips.version IS 'Change feed version, shared with trip_tombstones';
+COMMENT ON TABLE trip_tombstones IS 'Deleted trips exposed through GET /trips/changes';
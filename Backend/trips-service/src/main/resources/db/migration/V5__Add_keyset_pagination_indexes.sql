@@ -0,0 +1,10 @@
+-- Set search path to trips schema
+SET search_path TO trips, public;
+
+-- Keyset pagination of GET /trips walks (date_time, id); the sede variant filters first
+CREATE INDEX IF NOT EXISTS idx_trips_date_time_id ON trips(date_time, id);
+CREATE INDEX IF NOT EXISTS idx_trips_sede_date_time_id ON trips(destination_sede_id, date_time, id);
+
+-- Covered by the composite indexes above
+DROP INDEX IF EXISTS idx_trips_date_time;
+DROP INDEX IF EXISTS idx_trips_destination_sede_id;
@@ -0,0 +1,10 @@
+-- Set search path to trips schema
+SET search_path TO trips, public;
+
+-- Departure minute of day in UTC, for the HH:mm filters of GET /trips.
+-- Must stay identical to the @Formula of Trip.departureMinuteOfDay so the planner matches it.
+CREATE INDEX IF NOT EXISTS idx_trips_minute_of_day
+    ON trips ((date_part('hour', timezone('UTC', date_time)) * 60 + date_part('minute', timezone('UTC', date_time))));
+
+CREATE INDEX IF NOT EXISTS idx_trips_sede_minute_of_day
+    ON trips (destination_sede_id, (date_part('hour', timezone('UTC', date_time)) * 60 + date_part('minute', timezone('UTC', date_time))));
@@ -0,0 +1,30 @@
+-- Set search path to trips schema
+SET search_path TO trips, public;
+
+-- Normally created by scripts/init-db.sql; kept here for databases set up without it
+CREATE EXTENSION IF NOT EXISTS postgis SCHEMA public;
+
+-- Origin coordinates, parsed once from the legacy "lat,lng" text
+ALTER TABLE trips ADD COLUMN IF NOT EXISTS origin_lat DOUBLE PRECISION;
+ALTER TABLE trips ADD COLUMN IF NOT EXISTS origin_lng DOUBLE PRECISION;
+
+UPDATE trips
+SET origin_lat = split_part(origin, ',', 1)::DOUBLE PRECISION,
+    origin_lng = split_part(origin, ',', 2)::DOUBLE PRECISION
+WHERE origin_lat IS NULL
+  AND origin ~ '^\s*-?[0-9]+(\.[0-9]+)?\s*,\s*-?[0-9]+(\.[0-9]+)?\s*$';
+
+-- Geographic origin kept in sync by the database, for radius and k-nearest searches
+ALTER TABLE trips ADD COLUMN IF NOT EXISTS origin_point geography(Point, 4326)
+    GENERATED ALWAYS AS (
+        CASE WHEN origin_lat IS NOT NULL AND origin_lng IS NOT NULL
+             THEN ST_SetSRID(ST_MakePoint(origin_lng, origin_lat), 4326)::geography
+        END
+    ) STORED;
+
+CREATE INDEX IF NOT EXISTS idx_trips_origin_point ON trips USING GIST (origin_point);
+
+-- Add comments
+COMMENT ON COLUMN trips.origin_lat IS 'Latitude of the trip origin';
+COMMENT ON COLUMN trips.origin_lng IS 'Longitude of the trip origin';
+COMMENT ON COLUMN trips.origin_point IS 'Trip origin as geography, derived from origin_lat/origin_lng';
@@ -0,0 +1,14 @@
+-- Set search path to trips schema
+SET search_path TO trips, public;
+
+-- Change feed versions come from a sequence instead of MAX(version) + 1 under a global lock,
+-- so trip writes no longer queue behind each other; rolled back writes leave gaps
+CREATE SEQUENCE IF NOT EXISTS trip_versions;
+
+SELECT setval('trip_versions', GREATEST(
+    COALESCE((SELECT MAX(version) FROM trips), 0),
+    COALESCE((SELECT MAX(version) FROM trip_tombstones), 0),
+    1));
+
+-- Add comments
+COMMENT ON SEQUENCE trip_versions IS 'Change feed versions for trips.version and trip_tombstones.version';
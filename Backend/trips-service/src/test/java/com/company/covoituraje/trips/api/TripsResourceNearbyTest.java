@@ -0,0 +1,49 @@
+package com.company.covoituraje.trips.api;
+
+import com.company.covoituraje.shared.i18n.MessageService;
+import com.company.covoituraje.trips.domain.Trip;
+import com.company.covoituraje.trips.infrastructure.TripRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class TripsResourceNearbyTest {
+
+    private TripRepository repository;
+    private TripsResource resource;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(TripRepository.class);
+        resource = new TripsResource(repository, new MessageService());
+    }
+
+    @Test
+    void nearby_withK_returnsTheKNearestWithoutRadius() {
+        Trip trip = new Trip("driver-1", "41.3874,2.1686", "SEDE-1", OffsetDateTime.now().plusHours(2), 3);
+        when(repository.findNearestAvailable(eq("SEDE-1"), eq(40.4168), eq(-3.7038), any(), isNull(), eq(100)))
+                .thenReturn(List.of(trip));
+
+        List<TripDto> result = resource.nearby("SEDE-1", 40.4168, -3.7038, 5.0, null, null, null, 500, "en");
+
+        assertEquals(1, result.size());
+        verify(repository, never()).findAvailableNear(any(), anyDouble(), anyDouble(), anyDouble(), any(), any(), anyInt());
+    }
+
+    @Test
+    void nearby_withoutK_searchesWithinTheRadius() {
+        when(repository.findAvailableNear(eq("SEDE-1"), eq(40.4168), eq(-3.7038), eq(5.0), any(), isNull(), eq(20)))
+                .thenReturn(List.of());
+
+        List<TripDto> result = resource.nearby("SEDE-1", 40.4168, -3.7038, 5.0, null, null, null, null, "en");
+
+        assertTrue(result.isEmpty());
+        verify(repository, never()).findNearestAvailable(any(), anyDouble(), anyDouble(), any(), any(), anyInt());
+    }
+}
@@ -0,0 +1,151 @@
+package com.company.covoituraje.trips.api;
+
+import com.company.covoituraje.auth.ServiceAuth;
+import com.company.covoituraje.shared.i18n.MessageService;
+import com.company.covoituraje.trips.domain.Trip;
+import com.company.covoituraje.trips.infrastructure.TripRepository;
+import jakarta.ws.rs.BadRequestException;
+import jakarta.ws.rs.ClientErrorException;
+import jakarta.ws.rs.ForbiddenException;
+import jakarta.ws.rs.NotFoundException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class TripsResourceReservationTest {
+
+    private final UUID tripId = UUID.randomUUID();
+    private TripRepository repository;
+    private TripsResource resource;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(TripRepository.class);
+        resource = new TripsResource(repository, new MessageService());
+        TripsResource.AuthContext.setRoles(List.of(ServiceAuth.SERVICE_ROLE));
+    }
+
+    @AfterEach
+    void tearDown() {
+        TripsResource.AuthContext.clear();
+    }
+
+    private static SeatReservationDto seats(int seats) {
+        SeatReservationDto dto = new SeatReservationDto();
+        dto.seats = seats;
+        return dto;
+    }
+
+    @Test
+    void reserve_granted_returnsSeatsLeft() {
+        when(repository.reserveSeats(tripId, 2)).thenReturn(OptionalInt.of(1));
+
+        SeatReservationDto result = resource.reserveSeats(tripId.toString(), seats(2), "en");
+
+        assertEquals(tripId.toString(), result.tripId);
+        assertEquals(1, result.seatsFree);
+        verify(repository, never()).findById(any());
+    }
+
+    @Test
+    void reserve_notEnoughSeats_returns409() {
+        when(repository.reserveSeats(tripId, 3)).thenReturn(OptionalInt.empty());
+        when(repository.findById(tripId)).thenReturn(Optional.of(
+                new Trip("driver-1", "40.4,-3.7", "SEDE-1", OffsetDateTime.now().plusHours(1), 2)));
+
+        ClientErrorException e = assertThrows(ClientErrorException.class,
+                () -> resource.reserveSeats(tripId.toString(), seats(3), "en"));
+        assertEquals(409, e.getResponse().getStatus());
+    }
+
+    @Test
+    void reserve_unknownTrip_returns404() {
+        when(repository.reserveSeats(tripId, 1)).thenReturn(OptionalInt.empty());
+        when(repository.findById(tripId)).thenReturn(Optional.empty());
+
+        assertThrows(NotFoundException.class, () -> resource.reserveSeats(tripId.toString(), seats(1), "en"));
+    }
+
+    @Test
+    void reserve_endUserToken_returns403() {
+        TripsResource.AuthContext.clear();
+        TripsResource.AuthContext.setUserId("passenger-1");
+        TripsResource.AuthContext.setRoles(List.of("EMPLOYEE"));
+
+        assertThrows(ForbiddenException.class, () -> resource.reserveSeats(tripId.toString(), seats(1), "en"));
+        assertThrows(ForbiddenException.class, () -> resource.releaseSeats(tripId.toString(), seats(1), "en"));
+        verifyNoInteractions(repository);
+    }
+
+    @Test
+    void reserve_nonPositiveSeats_returns400() {
+        assertThrows(BadRequestException.class, () -> resource.reserveSeats(tripId.toString(), seats(0), "en"));
+        assertThrows(BadRequestException.class, () -> resource.reserveSeats(tripId.toString(), null, "en"));
+        verifyNoInteractions(repository);
+    }
+
+    @Test
+    void release_beyondTotal_returns409() {
+        when(repository.releaseSeats(tripId, 5)).thenReturn(OptionalInt.empty());
+        when(repository.findById(tripId)).thenReturn(Optional.of(
+                new Trip("driver-1", "40.4,-3.7", "SEDE-1", OffsetDateTime.now().plusHours(1), 2)));
+
+        ClientErrorException e = assertThrows(ClientErrorException.class,
+                () -> resource.releaseSeats(tripId.toString(), seats(5), "en"));
+        assertEquals(409, e.getResponse().getStatus());
+    }
+
+    @Test
+    void release_returnsSeatsFree() {
+        when(repository.releaseSeats(tripId, 1)).thenReturn(OptionalInt.of(2));
+
+        assertEquals(2, resource.releaseSeats(tripId.toString(), seats(1), "en").seatsFree);
+    }
+
+    private Trip driverTrip(int seatsTotal) {
+        Trip trip = new Trip("driver-1", "40.4,-3.7", "SEDE-1", OffsetDateTime.now().plusHours(1), seatsTotal);
+        trip.setId(tripId);
+        return trip;
+    }
+
+    private static TripCreateDto seatsTotal(int seatsTotal) {
+        TripCreateDto dto = new TripCreateDto();
+        dto.seatsTotal = seatsTotal;
+        return dto;
+    }
+
+    @Test
+    void update_newSeatsTotal_resizesInTheDatabase() {
+        TripsResource.AuthContext.setUserId("driver-1");
+        when(repository.findById(tripId)).thenReturn(Optional.of(driverTrip(4)));
+        when(repository.resizeSeats(tripId, 2)).thenReturn(OptionalInt.of(1));
+        when(repository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        TripDto result = resource.update(tripId.toString(), seatsTotal(2), "en");
+
+        assertEquals(2, result.seatsTotal);
+        assertEquals(1, result.seatsFree);
+        verify(repository).resizeSeats(tripId, 2);
+    }
+
+    @Test
+    void update_seatsTotalBelowReserved_returns409() {
+        TripsResource.AuthContext.setUserId("driver-1");
+        when(repository.findById(tripId)).thenReturn(Optional.of(driverTrip(4)));
+        when(repository.resizeSeats(tripId, 1)).thenReturn(OptionalInt.empty());
+
+        ClientErrorException e = assertThrows(ClientErrorException.class,
+                () -> resource.update(tripId.toString(), seatsTotal(1), "en"));
+        assertEquals(409, e.getResponse().getStatus());
+        verify(repository, never()).save(any());
+    }
+}
@@ -1,6 +1,8 @@
 package com.company.covoituraje.trips.integration;
 
 import com.company.covoituraje.trips.domain.Trip;
+import com.company.covoituraje.trips.domain.TripTombstone;
+import com.company.covoituraje.trips.infrastructure.TripFilter;
 import com.company.covoituraje.trips.infrastructure.TripRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -56,6 +58,8 @@ class TripRepositoryIntegrationTest {
         try (var connection = postgres.createConnection("")) {
             try (var statement = connection.createStatement()) {
                 statement.execute("CREATE SCHEMA IF NOT EXISTS trips;");
+                // Created by the V8 migration, not by hbm2ddl
+                statement.execute("CREATE SEQUENCE IF NOT EXISTS trips.trip_versions;");
             }
         } catch (Exception e) {
             throw new RuntimeException("Failed to create schema", e);
@@ -158,4 +162,179 @@ class TripRepositoryIntegrationTest {
         assertEquals(1, updatedTrip.getSeatsFree());
         assertEquals(3, updatedTrip.getSeatsTotal());
     }
+
+    @Test
+    void shouldReturnChangesAndTombstonesInVersionOrder() {
+        // Given
+        Trip trip1 = repository.save(new Trip("driver-1", "origin1", "SEDE-1", OffsetDateTime.now().plusHours(1), 3));
+        Trip trip2 = repository.save(new Trip("driver-2", "origin2", "SEDE-1", OffsetDateTime.now().plusHours(2), 3));
+        long afterInserts = trip2.getVersion();
+
+        // When
+        trip1.reserveSeats(1);
+        trip1 = repository.save(trip1);
+        repository.delete(trip2);
+
+        // Then
+        assertTrue(trip1.getVersion() > afterInserts);
+        List<Trip> changed = repository.findChangedSince(afterInserts, repository.committedVersion(), 10);
+        assertEquals(1, changed.size());
+        assertEquals(trip1.getId(), changed.get(0).getId());
+        assertEquals(2, changed.get(0).getSeatsFree());
+
+        List<TripTombstone> tombstones = repository.findTombstonesSince(afterInserts, repository.committedVersion(), 10);
+        assertEquals(1, tombstones.size());
+        assertEquals(trip2.getId(), tombstones.get(0).getTripId());
+        assertTrue(tombstones.get(0).getVersion() > trip1.getVersion());
+
+        // A deleted trip only shows up as a tombstone
+        assertEquals(1, repository.findChangedSince(0, Long.MAX_VALUE, 10).size());
+    }
+
+    @Test
+    void shouldFilterByUtcTimeOfDayAndStatusInTheDatabase() {
+        // Given
+        OffsetDateTime tomorrow = OffsetDateTime.now(java.time.ZoneOffset.UTC).plusDays(1).truncatedTo(java.time.temporal.ChronoUnit.DAYS);
+        Trip early = repository.save(new Trip("driver-1", "40.4,-3.7", "SEDE-1", tomorrow.withHour(7).withMinute(30), 3));
+        Trip onTime = repository.save(new Trip("driver-2", "40.4,-3.7", "SEDE-1", tomorrow.withHour(8).withMinute(15), 3));
+        // Same instant as 08:45 UTC, stored with a +02:00 offset
+        Trip otherOffset = repository.save(new Trip("driver-3", "40.4,-3.7", "SEDE-1",
+                tomorrow.withHour(8).withMinute(45).withOffsetSameInstant(java.time.ZoneOffset.ofHours(2)), 3));
+        repository.save(new Trip("driver-4", "40.4,-3.7", "SEDE-1", OffsetDateTime.now().minusDays(1).withHour(8).withMinute(20), 3));
+        em.clear();
+
+        // When
+        List<Trip> active;
+        try (var stream = repository.stream(new TripFilter()
+                .minuteOfDayBetween(8 * 60, 9 * 60)
+                .departingFrom(OffsetDateTime.now()))) {
+            active = stream.toList();
+        }
+
+        // Then
+        assertEquals(List.of(onTime.getId(), otherOffset.getId()), active.stream().map(Trip::getId).toList());
+        assertEquals(8 * 60 + 15, active.get(0).getDepartureMinuteOfDay());
+        assertFalse(active.stream().anyMatch(t -> t.getId().equals(early.getId())));
+    }
+
+    @Test
+    void shouldPageThroughTripsWithKeysetCursor() {
+        // Given
+        OffsetDateTime departure = OffsetDateTime.now().plusDays(1);
+        for (int i = 0; i < 5; i++) {
+            repository.save(new Trip("driver-" + i, "40.4,-3.7", "SEDE-1", departure, 3));
+        }
+        em.clear();
+
+        // When
+        List<Trip> firstPage;
+        try (var stream = repository.streamPage(new TripFilter(), null, null, 3)) {
+            firstPage = stream.toList();
+        }
+        Trip last = firstPage.get(firstPage.size() - 1);
+        List<Trip> secondPage;
+        try (var stream = repository.streamPage(new TripFilter(), last.getDateTime(), last.getId(), 3)) {
+            secondPage = stream.toList();
+        }
+
+        // Then: same departure for all, so the id breaks the tie and nothing repeats
+        assertEquals(3, firstPage.size());
+        assertEquals(2, secondPage.size());
+        assertTrue(secondPage.stream().noneMatch(t -> firstPage.stream().anyMatch(f -> f.getId().equals(t.getId()))));
+    }
+
+    @Test
+    void shouldFindAvailableTripsNearestFirstWithinRadius() {
+        // Given: origin_point is created by the V7 migration, not by hbm2ddl
+        addOriginPointColumn();
+        OffsetDateTime departure = OffsetDateTime.now().plusHours(2);
+        Trip far = repository.save(new Trip("driver-1", "40.5000,-3.7000", "SEDE-1", departure, 3));    // ~9.3 km
+        Trip near = repository.save(new Trip("driver-2", "40.4200,-3.7040", "SEDE-1", departure, 3));   // ~0.4 km
+        repository.save(new Trip("driver-3", "41.3874,2.1686", "SEDE-1", departure, 3));                // Barcelona
+        repository.save(new Trip("driver-4", "40.4170,-3.7030", "SEDE-2", departure, 3));                // other sede
+        Trip full = new Trip("driver-5", "40.4169,-3.7037", "SEDE-1", departure, 1);
+        full.reserveSeats(1);
+        repository.save(full);
+        em.clear();
+
+        // When
+        List<Trip> result = repository.findAvailableNear("SEDE-1", 40.4168, -3.7038, 15.0,
+                OffsetDateTime.now(), null, 10);
+
+        // Then
+        assertEquals(List.of(near.getId(), far.getId()), result.stream().map(Trip::getId).toList());
+        assertEquals(40.42, result.get(0).getOriginLat(), 1e-9);
+        assertEquals(-3.704, result.get(0).getOriginLng(), 1e-9);
+        List<Trip> nearest = repository.findNearestAvailable("SEDE-1", 40.4168, -3.7038, OffsetDateTime.now(), null, 3);
+        assertEquals(3, nearest.size()); // no radius: Barcelona comes third
+        assertEquals(List.of(near.getId(), far.getId()), nearest.subList(0, 2).stream().map(Trip::getId).toList());
+    }
+
+    @Test
+    void shouldReserveAndReleaseSeatsAtomically() {
+        // Given
+        Trip trip = repository.save(new Trip("driver-1", "40.4168,-3.7038", "SEDE-1", OffsetDateTime.now().plusHours(2), 3));
+        long createdVersion = trip.getVersion();
+
+        // When / Then
+        assertEquals(1, repository.reserveSeats(trip.getId(), 2).getAsInt());
+        assertTrue(repository.reserveSeats(trip.getId(), 2).isEmpty());
+        assertEquals(0, repository.reserveSeats(trip.getId(), 1).getAsInt());
+        assertTrue(repository.releaseSeats(trip.getId(), 4).isEmpty());
+        assertEquals(3, repository.releaseSeats(trip.getId(), 3).getAsInt());
+        assertTrue(repository.reserveSeats(java.util.UUID.randomUUID(), 1).isEmpty());
+
+        em.clear();
+        Trip reloaded = repository.findById(trip.getId()).orElseThrow();
+        assertEquals(3, reloaded.getSeatsFree());
+        // Every accepted seat change reaches the change feed
+        assertTrue(reloaded.getVersion() >= createdVersion + 4);
+    }
+
+    @Test
+    void shouldNotOversellUnderConcurrentReservations() throws Exception {
+        // Given
+        Trip trip = repository.save(new Trip("driver-1", "40.4168,-3.7038", "SEDE-1", OffsetDateTime.now().plusHours(2), 4));
+        int attempts = 32;
+        var pool = java.util.concurrent.Executors.newFixedThreadPool(8);
+        var start = new java.util.concurrent.CountDownLatch(1);
+        List<java.util.concurrent.Future<Boolean>> results = new java.util.ArrayList<>();
+
+        // When
+        for (int i = 0; i < attempts; i++) {
+            results.add(pool.submit(() -> {
+                EntityManager threadEm = emf.createEntityManager();
+                try {
+                    start.await();
+                    return new TripRepository(threadEm).reserveSeats(trip.getId(), 1).isPresent();
+                } finally {
+                    threadEm.close();
+                }
+            }));
+        }
+        start.countDown();
+        int granted = 0;
+        for (var result : results) {
+            if (result.get()) granted++;
+        }
+        pool.shutdown();
+
+        // Then
+        assertEquals(4, granted);
+        em.clear();
+        assertEquals(0, repository.findById(trip.getId()).orElseThrow().getSeatsFree());
+    }
+
+    private void addOriginPointColumn() {
+        try (var connection = postgres.createConnection("")) {
+            try (var statement = connection.createStatement()) {
+                statement.execute("CREATE EXTENSION IF NOT EXISTS postgis SCHEMA public;");
+                statement.execute("ALTER TABLE trips.trips ADD COLUMN IF NOT EXISTS origin_point geography(Point, 4326) " +
+                        "GENERATED ALWAYS AS (CASE WHEN origin_lat IS NOT NULL AND origin_lng IS NOT NULL " +
+                        "THEN ST_SetSRID(ST_MakePoint(origin_lng, origin_lat), 4326)::geography END) STORED;");
+            }
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to add origin_point column", e);
+        }
+    }
 }
@@ -9,6 +9,7 @@ import jakarta.ws.rs.ext.Provider;
 import com.company.covoituraje.auth.JwtValidator;
 import com.company.covoituraje.auth.JwtValidationException;
 import com.company.covoituraje.auth.AuthUtils;
+import com.company.covoituraje.auth.ServiceAuth;
 
 @Provider
 @Priority(Priorities.AUTHENTICATION)
@@ -16,6 +17,7 @@ public class AuthFilter implements ContainerRequestFilter {
     private final JwtValidator jwtValidator;
     private final boolean requireEmployeeRole;
     private final boolean authDisabled;
+    private final String serviceToken;
 
     public AuthFilter() {
         String issuer = System.getenv("OIDC_ISSUER_URI");
@@ -24,20 +26,25 @@ public class AuthFilter implements ContainerRequestFilter {
         String require = System.getenv("REQUIRE_ROLE_EMPLOYEE");
         this.requireEmployeeRole = "true".equalsIgnoreCase(require);
         this.authDisabled = "true".equalsIgnoreCase(System.getenv("AUTH_DISABLED"));
+        this.serviceToken = ServiceAuth.configuredToken();
     }
 
     // Injectable constructor for tests
     public AuthFilter(JwtValidator jwtValidator) {
-        this.jwtValidator = jwtValidator;
-        this.requireEmployeeRole = false;
-        this.authDisabled = false;
+        this(jwtValidator, false);
     }
 
     // Injectable constructor for tests with role flag
     public AuthFilter(JwtValidator jwtValidator, boolean requireEmployeeRole) {
+        this(jwtValidator, requireEmployeeRole, null);
+    }
+
+    // Injectable constructor for tests with the service token
+    public AuthFilter(JwtValidator jwtValidator, boolean requireEmployeeRole, String serviceToken) {
         this.jwtValidator = jwtValidator;
         this.requireEmployeeRole = requireEmployeeRole;
         this.authDisabled = false;
+        this.serviceToken = serviceToken;
     }
 
     @Override
@@ -59,6 +66,18 @@ public class AuthFilter implements ContainerRequestFilter {
             UsersResource.AuthContext.setUserId(devUser);
             return;
         }
+        // Calls from other services (e.g. notification-service resolving an email) carry the
+        // shared service token and may come without a user JWT
+        String presentedServiceToken = requestContext.getHeaderString(ServiceAuth.HEADER);
+        if (presentedServiceToken != null) {
+            if (!ServiceAuth.matches(presentedServiceToken, serviceToken)) {
+                requestContext.abortWith(Response.status(Response.Status.UNAUTHORIZED).build());
+                return;
+            }
+            if (requestContext.getHeaderString("Authorization") == null) {
+                return;
+            }
+        }
         String auth = requestContext.getHeaderString("Authorization");
         if (auth == null || !auth.startsWith("Bearer ")) {
             requestContext.abortWith(Response.status(Response.Status.UNAUTHORIZED).build());
@@ -0,0 +1,7 @@
+package com.company.covoituraje.users.api;
+
+import java.util.List;
+
+public class UserBatchRequest {
+    public List<String> ids;
+}
@@ -4,18 +4,24 @@ import com.company.covoituraje.users.domain.User;
 import com.company.covoituraje.users.infrastructure.UserRepository;
 import com.company.covoituraje.shared.i18n.MessageService;
 import com.company.covoituraje.shared.i18n.LocaleUtils;
+import com.company.covoituraje.shared.json.JsonArrayWriter;
+import com.company.covoituraje.shared.pagination.PageCursor;
 import jakarta.ws.rs.*;
 import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.StreamingOutput;
 
-import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.stream.Stream;
 
 @Path("/users")
 @Produces(MediaType.APPLICATION_JSON)
 @Consumes(MediaType.APPLICATION_JSON)
 public class UsersResource {
 
+    static final int MAX_BATCH_IDS = 500;
+
     private final UserRepository repository;
     private final MessageService messageService;
 
@@ -84,23 +90,73 @@ public class UsersResource {
         return mapToDto(user);
     }
 
+    /**
+     * Streams the directory from the database cursor to the response, so exports of the
+     * whole user base run in constant memory.
+     * With limit or cursor the response is one keyset page: {"items": [...], "nextCursor": "..."}.
+     */
     @GET
-    public List<UserDto> list(@QueryParam("sedeId") String sedeId,
-                             @QueryParam("role") String role,
-                             @HeaderParam("Accept-Language") String acceptLanguage) {
+    public StreamingOutput list(@QueryParam("sedeId") String sedeId,
+                                @QueryParam("role") String role,
+                                @QueryParam("limit") Integer limit,
+                                @QueryParam("cursor") String cursor,
+                                @HeaderParam("Accept-Language") String acceptLanguage) {
         
-        List<User> users;
-        if (sedeId != null) {
-            users = repository.findBySedeId(sedeId);
-        } else if (role != null) {
-            users = repository.findByRole(role);
-        } else {
-            users = repository.findAll();
+        if (PageCursor.isRequested(limit, cursor)) {
+            int pageSize = PageCursor.resolveLimit(limit);
+            PageCursor after = decodeCursor(cursor, acceptLanguage);
+            // Same precedence as the unpaginated listing: sede first, then role
+            String roleFilter = sedeId != null ? null : role;
+            return output -> JsonArrayWriter.writePage(output,
+                    repository.streamPage(sedeId, roleFilter,
+                            after != null ? after.key() : null, after != null ? after.id() : null, pageSize + 1),
+                    pageSize, this::mapToDto, u -> new PageCursor(u.getName(), u.getId()));
         }
-        
-        return users.stream()
+
+        return output -> {
+            Stream<User> users;
+            if (sedeId != null) {
+                users = repository.streamBySedeId(sedeId);
+            } else if (role != null) {
+                users = repository.streamByRole(role);
+            } else {
+                users = repository.streamAll();
+            }
+            
+            JsonArrayWriter.write(output, users.map(this::mapToDto));
+        };
+    }
+
+    // Cursors are opaque to clients; anything we did not issue is a bad request
+    private PageCursor decodeCursor(String cursor, String acceptLanguage) {
+        if (cursor == null || cursor.isBlank()) return null;
+        try {
+            return PageCursor.decode(cursor);
+        } catch (RuntimeException e) {
+            Locale locale = LocaleUtils.parseAcceptLanguage(acceptLanguage);
+            throw new BadRequestException(messageService.getMessage("common.error.invalid_cursor", locale));
+        }
+    }
+
+    /**
+     * Looks up many users in one query, e.g. the recipients of a notification batch.
+     * Unknown ids are left out of the response.
+     */
+    @POST
+    @Path("/batch")
+    public List<UserDto> getByIds(UserBatchRequest request, @HeaderParam("Accept-Language") String acceptLanguage) {
+        if (request == null || request.ids == null || request.ids.isEmpty()) {
+            Locale locale = LocaleUtils.parseAcceptLanguage(acceptLanguage);
+            throw new BadRequestException(messageService.getMessage("users.error.batch_ids_required", locale));
+        }
+        if (request.ids.size() > MAX_BATCH_IDS) {
+            Locale locale = LocaleUtils.parseAcceptLanguage(acceptLanguage);
+            throw new BadRequestException(messageService.getMessage("users.error.batch_too_large", locale,
+                    String.valueOf(MAX_BATCH_IDS)));
+        }
+        return repository.findByIds(new HashSet<>(request.ids)).stream()
                 .map(this::mapToDto)
-                .collect(ArrayList::new, ArrayList::add, ArrayList::addAll);
+                .toList();
     }
 
     @GET
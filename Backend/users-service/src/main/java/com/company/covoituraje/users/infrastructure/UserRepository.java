@@ -4,11 +4,17 @@ import com.company.covoituraje.users.domain.User;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.EntityTransaction;
 import jakarta.persistence.TypedQuery;
+import org.hibernate.jpa.HibernateHints;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 public class UserRepository {
     
+    // Rows fetched per round trip when streaming from a JDBC cursor
+    static final int STREAM_FETCH_SIZE = 500;
+    
     private final EntityManager entityManager;
     
     public UserRepository() {
@@ -43,6 +49,17 @@ public class UserRepository {
         return Optional.ofNullable(user);
     }
 
+    /**
+     * Users with any of the given ids, in no particular order; unknown ids are left out.
+     */
+    public List<User> findByIds(Collection<String> ids) {
+        if (ids.isEmpty()) return List.of();
+        TypedQuery<User> query = entityManager.createQuery(
+            "SELECT u FROM User u WHERE u.id IN :ids", User.class);
+        query.setParameter("ids", ids);
+        return query.getResultList();
+    }
+
     public Optional<User> findByEmail(String email) {
         TypedQuery<User> query = entityManager.createQuery(
             "SELECT u FROM User u WHERE u.email = :email", User.class);
@@ -73,6 +90,65 @@ public class UserRepository {
         return query.getResultList();
     }
 
+    /**
+     * Streaming variants of the listings: rows are read through a JDBC cursor
+     * and detached once read. The caller must close the stream.
+     */
+    public Stream<User> streamAll() {
+        return stream(entityManager.createQuery(
+            "SELECT u FROM User u ORDER BY u.name ASC", User.class));
+    }
+
+    public Stream<User> streamBySedeId(String sedeId) {
+        TypedQuery<User> query = entityManager.createQuery(
+            "SELECT u FROM User u WHERE u.sedeId = :sedeId ORDER BY u.name ASC",
+            User.class);
+        query.setParameter("sedeId", sedeId);
+        return stream(query);
+    }
+
+    public Stream<User> streamByRole(String role) {
+        TypedQuery<User> query = entityManager.createQuery(
+            "SELECT u FROM User u WHERE u.role = :role ORDER BY u.name ASC",
+            User.class);
+        query.setParameter("role", role);
+        return stream(query);
+    }
+
+    /**
+     * One page of users in (name, id) order, optionally restricted to a sede or a role.
+     * Keyset pagination: the page starts right after (afterName, afterId), so deep pages
+     * cost the same as the first one (indexes idx_users_name_id, idx_users_sede_name_id and
+     * idx_users_role_name_id). Pass null afterName/afterId for the first page.
+     */
+    public Stream<User> streamPage(String sedeId, String role, String afterName, String afterId, int limit) {
+        StringBuilder jpql = new StringBuilder("SELECT u FROM User u WHERE 1 = 1");
+        if (sedeId != null) {
+            jpql.append(" AND u.sedeId = :sedeId");
+        }
+        if (role != null) {
+            jpql.append(" AND u.role = :role");
+        }
+        if (afterName != null && afterId != null) {
+            jpql.append(" AND (u.name > :afterName OR (u.name = :afterName AND u.id > :afterId))");
+        }
+        jpql.append(" ORDER BY u.name ASC, u.id ASC");
+
+        TypedQuery<User> query = entityManager.createQuery(jpql.toString(), User.class);
+        if (sedeId != null) {
+            query.setParameter("sedeId", sedeId);
+        }
+        if (role != null) {
+            query.setParameter("role", role);
+        }
+        if (afterName != null && afterId != null) {
+            query.setParameter("afterName", afterName);
+            query.setParameter("afterId", afterId);
+        }
+        query.setMaxResults(limit);
+        return stream(query);
+    }
+
     public void delete(User user) {
         EntityTransaction tx = entityManager.getTransaction();
         try {
@@ -86,4 +162,13 @@ public class UserRepository {
             throw e;
         }
     }
+
+    private <T> Stream<T> stream(TypedQuery<T> query) {
+        query.setHint(HibernateHints.HINT_FETCH_SIZE, STREAM_FETCH_SIZE);
+        query.setHint(HibernateHints.HINT_READ_ONLY, true);
+        return query.getResultStream().map(entity -> {
+            entityManager.detach(entity);
+            return entity;
+        });
+    }
 }
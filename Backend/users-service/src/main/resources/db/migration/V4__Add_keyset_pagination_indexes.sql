@@ -0,0 +1,11 @@
+-- Set search path to users schema
+SET search_path TO users, public;
+
+-- Keyset pagination of GET /users walks (name, id), optionally within a sede or a role
+CREATE INDEX IF NOT EXISTS idx_users_name_id ON users(name, id);
+CREATE INDEX IF NOT EXISTS idx_users_sede_name_id ON users(sede_id, name, id);
+CREATE INDEX IF NOT EXISTS idx_users_role_name_id ON users(role, name, id);
+
+-- Covered by the composite indexes above
+DROP INDEX IF EXISTS idx_users_sede_id;
+DROP INDEX IF EXISTS idx_users_role;
@@ -5,6 +5,10 @@ import com.company.covoituraje.users.infrastructure.UserRepository;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.EntityManagerFactory;
 import jakarta.persistence.Persistence;
+import jakarta.ws.rs.core.StreamingOutput;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -13,6 +17,7 @@ import org.testcontainers.junit.jupiter.Container;
 import org.testcontainers.junit.jupiter.Testcontainers;
 import org.testcontainers.utility.DockerImageName;
 
+import java.io.ByteArrayOutputStream;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -73,28 +78,83 @@ class UsersResourceMoreTest {
 
     @Test
     void list_bySede_filters() {
-        List<UserDto> list = resource.list("SEDE-1", null, "en");
+        List<UserDto> list = readList(resource.list("SEDE-1", null, null, null, "en"));
         assertEquals(2, list.size());
         assertTrue(list.stream().allMatch(u -> "SEDE-1".equals(u.sedeId)));
     }
 
     @Test
     void list_byRole_filters() {
-        List<UserDto> list = resource.list(null, "EMPLOYEE", "en");
+        List<UserDto> list = readList(resource.list(null, "EMPLOYEE", null, null, "en"));
         assertEquals(2, list.size());
         assertTrue(list.stream().allMatch(u -> u.roles.contains("EMPLOYEE")));
     }
 
+    @Test
+    void list_paginated_followsCursorAcrossPages() throws Exception {
+        ObjectMapper mapper = new ObjectMapper();
+
+        JsonNode first = mapper.readTree(write(resource.list(null, null, 2, null, "en")));
+        assertEquals(2, first.get("items").size());
+        assertEquals("user-1", first.get("items").get(0).get("id").asText());
+        assertEquals("user-2", first.get("items").get(1).get("id").asText());
+        assertTrue(first.hasNonNull("nextCursor"));
+
+        JsonNode second = mapper.readTree(write(resource.list(null, null, 2, first.get("nextCursor").asText(), "en")));
+        assertEquals(1, second.get("items").size());
+        assertEquals("user-3", second.get("items").get(0).get("id").asText());
+        assertFalse(second.has("nextCursor"));
+    }
+
+    @Test
+    void list_invalidCursor_badRequest() {
+        assertThrows(jakarta.ws.rs.BadRequestException.class, () -> resource.list(null, null, 2, "not-a-cursor", "en"));
+    }
+
     @Test
     void getById_notFound() {
         assertThrows(jakarta.ws.rs.NotFoundException.class, () -> resource.getById("missing", "en"));
     }
 
+    @Test
+    void getByIds_returnsKnownUsersOnly() {
+        UserBatchRequest request = new UserBatchRequest();
+        request.ids = List.of("user-1", "user-2", "user-1", "missing");
+
+        List<UserDto> users = resource.getByIds(request, "en");
+
+        assertEquals(List.of("u1@company.com", "u2@company.com"),
+                users.stream().map(u -> u.email).sorted().toList());
+    }
+
+    @Test
+    void getByIds_tooMany_badRequest() {
+        UserBatchRequest request = new UserBatchRequest();
+        request.ids = java.util.stream.IntStream.rangeClosed(0, UsersResource.MAX_BATCH_IDS)
+                .mapToObj(i -> "user-" + i).toList();
+
+        assertThrows(jakarta.ws.rs.BadRequestException.class, () -> resource.getByIds(request, "en"));
+    }
+
     @Test
     void getMe_missingUserId_badRequest() {
         UsersResource.AuthContext.clear();
         assertThrows(jakarta.ws.rs.BadRequestException.class, () -> resource.getMe("en"));
     }
+
+    private static List<UserDto> readList(StreamingOutput output) {
+        try {
+            return new ObjectMapper().readValue(write(output), new TypeReference<List<UserDto>>() {});
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static byte[] write(StreamingOutput output) throws Exception {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        output.write(buffer);
+        return buffer.toByteArray();
+    }
 }
 
 